@@ -20,7 +20,15 @@
 
 package org.codegist.crest;
 
+import org.codegist.common.lang.Disposable;
+import org.codegist.crest.util.DaemonThreadFactory;
+
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
 
 /**
  * <p><b>CRest</b> is a rest annotated interface builder.</p>
@@ -43,14 +51,17 @@ import java.util.Map;
  * SimpleRestService service = crest.build(SimpleRestService.class); // rest interface once built should be kept and re-used for any futur use
  * </pre></code>
  * <p><b>CRest</b> handle annotations from {@link org.codegist.crest.annotate} package as well as <a href="http://jsr311.java.net/">JAX-RS 1.0</a> {@link javax.ws.rs} if the later is available in the classpath.</p>
- * <p>Also note: <b>CRest</b> is an expensive object to create and should be created once at the application bootstrap and re-used. <b>CRest</b> instances are threadsafe.</p>
+ * <p>Interface methods declaring a {@link java.util.concurrent.Future} or a {@code java.util.concurrent.CompletableFuture} return type are executed asynchronously: the request is built on the calling thread and executed by the executor set with {@link org.codegist.crest.CRestBuilder#setAsyncExecutor(java.util.concurrent.ExecutorService)}, the future's type argument being the expected response type. CompletableFuture methods return a future completed once the call is done, that can be composed with.</p>
+ * <p>Asynchronous methods offload the call, they do not make it non-blocking: the request executor chain and the response handler are synchronous, so an executor thread is held for the whole call whatever the {@link org.codegist.crest.io.http.HttpChannelFactory} in use. To run many concurrent calls without as many platform threads, execute them on virtual threads, see {@link org.codegist.crest.CRestBuilder#useVirtualThreads()}.</p>
+ * <p>Interface methods declaring a {@link java.util.Iterator} or {@link org.codegist.crest.util.CloseableIterator} return type get their response streamed: elements are deserialized one at a time as the iterator is consumed (only supported by the default JSON deserializer, for top-level arrays and newline delimited JSON).</p>
+ * <p>Also note: <b>CRest</b> is an expensive object to create and should be created once at the application bootstrap and re-used. <b>CRest</b> instances are threadsafe. Once not needed anymore, a <b>CRest</b> instance should be disposed to release the threads it owns.</p>
  * @author Laurent Gilles (laurent.gilles@codegist.org)
  * @see org.codegist.crest.CRestBuilder
  * @see org.codegist.crest.annotate
  * @see javax.ws.rs
  * @see <a href="http://jsr311.java.net/">JAX-RS 1.0</a>
  */
-public abstract class CRest {
+public abstract class CRest implements Disposable {
 
     /**
      * <p>Build an instance of an annotated interface.</p>
@@ -59,6 +70,49 @@ public abstract class CRest {
      */
     public abstract <T> T build(Class<T> interfaze) throws CRestException;
 
+    /**
+     * <p>Invokes the given calls concurrently, usually interface method calls made on instances built by this <b>CRest</b> instance, and waits for all of them to complete.</p>
+     * <p>At most <code>maxParallelism</code> calls are in flight at any time, the calls being run on threads created for the batch only, so that they never compete with asynchronous interface methods for the threads of the executor given to {@link org.codegist.crest.CRestBuilder#setAsyncExecutor(java.util.concurrent.ExecutorService)}.</p>
+     * <p>Calls that have not completed once the timeout is reached are cancelled and reported as failed with a {@link org.codegist.crest.io.DeadlineExceededException}. An {@link java.lang.Error} thrown by a call aborts the batch and is rethrown once the calls in flight are cancelled.</p>
+     * @param calls calls to invoke
+     * @param maxParallelism maximum number of calls to run concurrently
+     * @param timeout maximum time in milliseconds to wait for the whole batch to complete
+     * @return the outcome of each call, in the order of the given calls
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @see org.codegist.crest.CRest#invokeAll(java.util.List, int, long, java.util.concurrent.ExecutorService)
+     */
+    public <T> List<CallResult<T>> invokeAll(List<? extends Callable<? extends T>> calls, int maxParallelism, long timeout) throws InterruptedException {
+        ExecutorService executor = newFixedThreadPool(Math.max(1, Math.min(maxParallelism, calls.size())), new DaemonThreadFactory("crest-invoke-all"));
+        try {
+            return invokeAll(calls, maxParallelism, timeout, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * <p>Invokes the given calls concurrently on the given executor, and waits for all of them to complete.</p>
+     * <p>The executor must be able to run <code>maxParallelism</code> tasks at once and should not be the one given to {@link org.codegist.crest.CRestBuilder#setAsyncExecutor(java.util.concurrent.ExecutorService)}: calls made to asynchronous interface methods and waiting for their result would otherwise hold the threads their own result needs.</p>
+     * @param calls calls to invoke
+     * @param maxParallelism maximum number of calls to run concurrently
+     * @param timeout maximum time in milliseconds to wait for the whole batch to complete
+     * @param executor executor to run the calls on, left running once the batch is done
+     * @return the outcome of each call, in the order of the given calls
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @see org.codegist.crest.CRest#invokeAll(java.util.List, int, long)
+     */
+    public <T> List<CallResult<T>> invokeAll(List<? extends Callable<? extends T>> calls, int maxParallelism, long timeout, ExecutorService executor) throws InterruptedException {
+        return new ScatterGather<T>(executor, calls, maxParallelism).run(timeout);
+    }
+
+    /**
+     * <p>Releases the resources held by this <b>CRest</b> instance, eg the threads it created to execute asynchronous interface methods. Executors given to the {@link org.codegist.crest.CRestBuilder} are left untouched.</p>
+     * <p>Interface instances built by this <b>CRest</b> instance must not be used anymore once disposed. Default implementation does nothing.</p>
+     */
+    public void dispose() {
+
+    }
+
     /**
      * <p>Build a <b>CRest</b> instance.</p>
      * @return a <b>CRest</b> instance
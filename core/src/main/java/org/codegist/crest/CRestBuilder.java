@@ -20,6 +20,7 @@
 
 package org.codegist.crest;
 
+import org.codegist.common.lang.Disposable;
 import org.codegist.common.reflect.JdkProxyFactory;
 import org.codegist.common.reflect.ProxyFactory;
 import org.codegist.crest.config.*;
@@ -46,14 +47,18 @@ import org.codegist.crest.serializer.jaxb.JaxbDeserializer;
 import org.codegist.crest.serializer.primitive.*;
 import org.codegist.crest.util.ComponentFactory;
 import org.codegist.crest.util.ComponentRegistry;
+import org.codegist.crest.util.DaemonThreadFactory;
+import org.codegist.crest.util.VirtualThreads;
 
 import java.io.File;
 import java.io.InputStream;
 import java.io.Reader;
 import java.lang.annotation.Annotation;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 import static java.util.Collections.singletonMap;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.codegist.common.collect.Arrays.arrify;
 import static org.codegist.common.collect.Collections.asSet;
 import static org.codegist.common.collect.Maps.putIfAbsent;
@@ -68,6 +73,7 @@ import static org.codegist.crest.util.Placeholders.compile;
 public class CRestBuilder {
 
     private static final int MIN_ERROR_STATUS_CODE = HttpConstants.HTTP_BAD_REQUEST;
+    private static final int DEFAULT_ASYNC_THREADS = 32;
 
     private final Map<String, Object> crestProperties = new HashMap<String, Object>();
     private final RequestBuilderFactory requestBuilderFactory = new HttpRequestBuilderFactory();
@@ -76,7 +82,7 @@ public class CRestBuilder {
 
     private final Set<String> plainTextMimes = asSet("plain/text");
     private final Set<String> xmlMimes = asSet("application/xml", "text/xml");
-    private final Set<String> jsonMimes = asSet("application/json", "application/javascript", "text/javascript", "text/json");
+    private final Set<String> jsonMimes = asSet("application/json", "application/javascript", "text/javascript", "text/json", "application/x-ndjson");
 
     private final Map<String, Object> xmlDeserializerConfig = new HashMap<String, Object>();
 
@@ -126,6 +132,18 @@ public class CRestBuilder {
     private Class<? extends HttpChannelFactory> httpChannelFactoryClass = HttpURLConnectionHttpChannelFactory.class;
     private HttpChannelFactory httpChannelFactory;
     private ProxyFactory proxyFactory;
+    private ExecutorService asyncExecutor;
+    private int asyncThreads = DEFAULT_ASYNC_THREADS;
+    private boolean virtualThreads;
+    private boolean circuitBreaker;
+    private boolean concurrencyLimiter;
+    private boolean hedging;
+    private boolean bulkheads;
+    private boolean responseCache;
+    private boolean lazyMethodConfigs;
+    private boolean generatedProxies;
+    private boolean prewarmMethodConfigs;
+    private final Map<String, RateLimit> endpointRateLimits = new HashMap<String, RateLimit>();
     private String auth;
     private String username;
     private String password;
@@ -142,6 +160,7 @@ public class CRestBuilder {
         putIfAbsentAndNotNull(crestProperties, DefaultResponseHandler.MIN_ERROR_STATUS_CODE_PROP, MIN_ERROR_STATUS_CODE);
         putIfAbsentAndNotNull(crestProperties, CRestConfig.class.getName() + "#placeholders", compile(placeholders));
         CRestConfig crestConfig = new DefaultCRestConfig(crestProperties);
+        List<Disposable> resources = new ArrayList<Disposable>();
 
         ComponentRegistry<String,Deserializer> mimeDeserializerRegistry = buildDeserializerRegistry(crestConfig);
         ComponentRegistry<Class<?>,Deserializer> classDeserializerRegistry = classDeserializerBuilder.build(crestConfig);
@@ -164,7 +183,7 @@ public class CRestBuilder {
         ResponseDeserializer baseResponseDeserializer = new ResponseDeserializerComposite(deserializersResponseDeserializer, mimeResponseDeserializer, classResponseDeserializer);
         ResponseDeserializer customTypeResponseDeserializer = new ResponseDeserializerComposite(classResponseDeserializer, mimeResponseDeserializer);
 
-        RequestExecutor requestExecutor = buildRequestExecutor(plainChannelFactory, authorization, baseResponseDeserializer, customTypeResponseDeserializer);
+        RequestExecutor requestExecutor = buildRequestExecutor(crestConfig, plainChannelFactory, authorization, baseResponseDeserializer, customTypeResponseDeserializer, resources);
 
 
 
@@ -172,9 +191,11 @@ public class CRestBuilder {
             this.annotationHandlerBuilder.register(JaxRsAnnotations.getMapping());
         }
 
-        InterfaceConfigFactory configFactory = new AnnotationDrivenInterfaceConfigFactory(icbf, annotationHandlerBuilder.build(crestConfig));
+        ExecutorService pAsyncExecutor = buildAsyncExecutor(resources);
 
-        return new DefaultCRest(pProxyFactory, requestExecutor, requestBuilderFactory, configFactory);
+        InterfaceConfigFactory configFactory = new AnnotationDrivenInterfaceConfigFactory(icbf, annotationHandlerBuilder.build(crestConfig), lazyMethodConfigs, prewarmMethodConfigs ? pAsyncExecutor : null);
+
+        return new DefaultCRest(pProxyFactory, requestExecutor, requestBuilderFactory, configFactory, pAsyncExecutor, resources, generatedProxies);
     }
 
     private static <K,V> void putIfAbsentAndNotNull(Map<K, V> map, K key, V value){
@@ -195,12 +216,52 @@ public class CRestBuilder {
         }
     }
 
-    private RequestExecutor buildRequestExecutor(HttpChannelFactory plainChannelFactory, Authorization authorization, ResponseDeserializer baseResponseDeserializer, ResponseDeserializer customTypeResponseDeserializer){
+    private ExecutorService buildAsyncExecutor(List<Disposable> resources){
+        if(asyncExecutor != null) {
+            return asyncExecutor;
+        }
+        ExecutorService executor;
+        if(virtualThreads) {
+            executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        }else{
+            executor = newFixedThreadPool(asyncThreads, new DaemonThreadFactory("crest-async"));
+        }
+        resources.add(new ExecutorServiceShutdown(executor));
+        return executor;
+    }
+
+    private RequestExecutor buildRequestExecutor(CRestConfig crestConfig, HttpChannelFactory plainChannelFactory, Authorization authorization, ResponseDeserializer baseResponseDeserializer, ResponseDeserializer customTypeResponseDeserializer, List<Disposable> resources){
         HttpChannelFactory channelFactory = plainChannelFactory;
         if(authorization != null) {
             channelFactory = new AuthorizationHttpChannelFactory(plainChannelFactory, authorization, httpEntityParamExtrators);
         }
-        return new RetryingRequestExecutor(new HttpRequestExecutor(channelFactory, baseResponseDeserializer, customTypeResponseDeserializer), MIN_ERROR_STATUS_CODE);
+        RequestExecutor requestExecutor = new HttpRequestExecutor(channelFactory, baseResponseDeserializer, customTypeResponseDeserializer);
+        if(circuitBreaker) {
+            requestExecutor = new CircuitBreakingRequestExecutor(requestExecutor, crestConfig);
+        }
+        // hedging sits below the limiters: the hedge delay only starts once the local permits are granted, so that time spent waiting on them is never mistaken for a slow server
+        if(hedging) {
+            ExecutorService hedgingExecutor = HedgingRequestExecutor.newExecutorService(crestConfig);
+            resources.add(new ExecutorServiceShutdown(hedgingExecutor));
+            HedgingRequestExecutor hedgingRequestExecutor = new HedgingRequestExecutor(requestExecutor, crestConfig, hedgingExecutor);
+            resources.add(hedgingRequestExecutor);
+            requestExecutor = hedgingRequestExecutor;
+        }
+        if(concurrencyLimiter) {
+            requestExecutor = new ConcurrencyLimitingRequestExecutor(requestExecutor, crestConfig, baseResponseDeserializer, customTypeResponseDeserializer);
+        }
+        requestExecutor = new RateLimitingRequestExecutor(requestExecutor, crestConfig, endpointRateLimits);
+        requestExecutor = new RetryingRequestExecutor(requestExecutor, MIN_ERROR_STATUS_CODE, crestConfig);
+        if(bulkheads) {
+            requestExecutor = new BulkheadRequestExecutor(requestExecutor, crestConfig, baseResponseDeserializer, customTypeResponseDeserializer);
+        }
+        requestExecutor = new CoalescingRequestExecutor(requestExecutor, baseResponseDeserializer, customTypeResponseDeserializer);
+        if(responseCache) {
+            CachingRequestExecutor cachingRequestExecutor = new CachingRequestExecutor(requestExecutor, crestConfig, baseResponseDeserializer, customTypeResponseDeserializer);
+            resources.add(cachingRequestExecutor);
+            requestExecutor = cachingRequestExecutor;
+        }
+        return requestExecutor;
     }
 
     private ComponentRegistry<String,Deserializer> buildDeserializerRegistry(CRestConfig crestConfig) {
@@ -284,6 +345,7 @@ public class CRestBuilder {
      * @param httpChannelFactory http channel factory class to use
      * @return current builder
      * @see org.codegist.crest.io.http.HttpClientHttpChannelFactory
+     * @see org.codegist.crest.io.http.NioHttpChannelFactory
      * @see org.codegist.crest.io.http.HttpURLConnectionHttpChannelFactory
      */
     public CRestBuilder setHttpChannelFactory(Class<? extends HttpChannelFactory> httpChannelFactory) {
@@ -296,6 +358,7 @@ public class CRestBuilder {
      * @param httpChannelFactory http channel factory to use
      * @return current builder
      * @see org.codegist.crest.io.http.HttpClientHttpChannelFactory
+     * @see org.codegist.crest.io.http.NioHttpChannelFactory
      * @see org.codegist.crest.io.http.HttpURLConnectionHttpChannelFactory
      */
     public CRestBuilder setHttpChannelFactory(HttpChannelFactory httpChannelFactory) {
@@ -303,6 +366,162 @@ public class CRestBuilder {
         return this;
     }
 
+    /**
+     * <p>Overrides the default executor service used to execute asynchronous interface methods, eg methods declaring a {@link java.util.concurrent.Future} or a {@code java.util.concurrent.CompletableFuture} return type.</p>
+     * <p>Default is a pool of at most 32 daemon threads, calls exceeding it waiting for a thread to be available, see {@link org.codegist.crest.CRestBuilder#setAsyncThreads(int)}. Requests are executed with blocking I/O, each in-flight call holding an executor thread for its whole execution and response handling, whatever the channel factory. The given executor is not shut down when the <b>CRest</b> instance is disposed.</p>
+     * @param asyncExecutor executor service to use
+     * @return current builder
+     * @see org.codegist.crest.util.ReturnTypes#isAsync(java.lang.reflect.Method)
+     */
+    public CRestBuilder setAsyncExecutor(ExecutorService asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    /**
+     * <p>Overrides the maximum number of threads of the default executor used to execute asynchronous interface methods (default is 32), bounding the number of asynchronous calls in flight at once.</p>
+     * <p>Ignored if an executor has been set with {@link org.codegist.crest.CRestBuilder#setAsyncExecutor(java.util.concurrent.ExecutorService)} or if virtual threads are used.</p>
+     * @param asyncThreads maximum number of threads
+     * @return current builder
+     */
+    public CRestBuilder setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+        return this;
+    }
+
+    /**
+     * <p>Executes asynchronous interface methods on virtual threads, one per call, instead of the default bounded thread pool.</p>
+     * <p>Blocking I/O performed by the {@link org.codegist.crest.io.http.HttpChannel} then only parks the virtual thread, allowing a large number of concurrent in-flight calls without sizing a platform thread pool for the worst-case latency. Only asynchronous interface methods are affected: synchronous ones keep performing their blocking I/O on the calling thread, which only benefits from virtual threads if the caller runs on one itself.</p>
+     * <p>Requires Java 21 or later, building the <b>CRest</b> instance fails otherwise. Ignored if an executor has been set with {@link org.codegist.crest.CRestBuilder#setAsyncExecutor(java.util.concurrent.ExecutorService)}.</p>
+     * @return current builder
+     * @see org.codegist.crest.util.VirtualThreads
+     */
+    public CRestBuilder useVirtualThreads() {
+        this.virtualThreads = true;
+        return this;
+    }
+
+    /**
+     * <p>Stops calling a failing or slow remote server for a while, failing fast with a {@link org.codegist.crest.io.RequestRejectedException} rather than having every call wait for the socket timeout.</p>
+     * <p>Each attempt made by the retry handler is recorded by the circuit breaker, but rejected requests are not retried. Thresholds and circuits scope can be tuned through {@link org.codegist.crest.io.http.CircuitBreakingRequestExecutor} properties.</p>
+     * @return current builder
+     * @see org.codegist.crest.io.http.CircuitBreakingRequestExecutor
+     */
+    public CRestBuilder useCircuitBreaker() {
+        this.circuitBreaker = true;
+        return this;
+    }
+
+    /**
+     * <p>Bounds the number of in-flight requests per endpoint to a limit adapted to the observed latency, queuing or rejecting the excess requests with a {@link org.codegist.crest.io.RequestRejectedException} rather than piling them onto the connection pool.</p>
+     * <p>Unlike the static concurrency level, the limit is learnt per endpoint and reacts as soon as an endpoint slows down. Initial, min and max limits as well as the maximum queuing time can be tuned through {@link org.codegist.crest.io.http.ConcurrencyLimitingRequestExecutor} properties.</p>
+     * @return current builder
+     * @see org.codegist.crest.io.http.ConcurrencyLimitingRequestExecutor
+     */
+    public CRestBuilder useConcurrencyLimiter() {
+        this.concurrencyLimiter = true;
+        return this;
+    }
+
+    /**
+     * <p>Hedges GET, HEAD and OPTIONS requests: if no response came back within a percentile of the method's recent latencies, a second copy of the request is fired and the first response wins, the slowest attempt being cancelled.</p>
+     * <p>The first attempt runs on the caller's thread. Hedges run on a bounded pool of threads owned by the resulting <b>CRest</b> instance and shut down when it is disposed, a request is simply not hedged when no thread of the pool is available. Losing attempts are aborted right away by the NIO and java.net.http based channel factories only, other channel factories' attempts running to completion before being closed.</p>
+     * <p>Hedging applies once the rate limit and concurrency limit permits of the call are granted: a call waiting on a local permit is never hedged, and a hedge shares the permits of the call it duplicates. Each attempt is recorded by the circuit breaker when in use.</p>
+     * <p>Trades a few extra requests for a shorter latency tail when some remote server instances are occasionally slow. Percentile and delays can be tuned through {@link org.codegist.crest.io.http.HedgingRequestExecutor} properties.</p>
+     * @return current builder
+     * @see org.codegist.crest.io.http.HedgingRequestExecutor
+     */
+    public CRestBuilder useHedging() {
+        this.hedging = true;
+        return this;
+    }
+
+    /**
+     * <p>Isolates the interfaces build through the resulting <b>CRest</b> instance from one another: each interface gets its own bounded number of concurrent calls and wait queue, the excess calls being rejected with a {@link org.codegist.crest.io.RequestRejectedException}.</p>
+     * <p>Prevents a single slow remote server from holding all the connections shared by the interfaces, as bounded by the concurrency level. Bulkhead sizes, maximum waiting time and scope (interface or method) can be tuned through {@link org.codegist.crest.io.http.BulkheadRequestExecutor} properties.</p>
+     * @return current builder
+     * @see org.codegist.crest.io.http.BulkheadRequestExecutor
+     */
+    public CRestBuilder useBulkheads() {
+        this.bulkheads = true;
+        return this;
+    }
+
+    /**
+     * <p>Builds each interface method configuration on its first call rather than when the interface is built, shortening the build of interfaces having many methods of which only a few are used.</p>
+     * <p>Configuration errors are then raised on the method first call rather than by {@link org.codegist.crest.CRest#build(Class)}, and on every later call of the method.</p>
+     * @return current builder
+     * @see CRestBuilder#useLazyMethodConfigs(boolean)
+     */
+    public CRestBuilder useLazyMethodConfigs() {
+        return useLazyMethodConfigs(false);
+    }
+
+    /**
+     * <p>Builds each interface method configuration on its first call rather than when the interface is built, optionally building all of them in the background on the asynchronous executor right after the interface is built.</p>
+     * <p>Configuration errors are then raised on the method first call rather than by {@link org.codegist.crest.CRest#build(Class)}, and on every later call of the method.</p>
+     * @param prewarm whether to build the method configurations in the background
+     * @return current builder
+     * @see CRestBuilder#setAsyncExecutor(java.util.concurrent.ExecutorService)
+     */
+    public CRestBuilder useLazyMethodConfigs(boolean prewarm) {
+        this.lazyMethodConfigs = true;
+        this.prewarmMethodConfigs = prewarm;
+        return this;
+    }
+
+    /**
+     * <p>Builds interfaces with the implementation generated at compile time by the crest-processor annotation processor when there is one, rather than with a runtime proxy.</p>
+     * <p>A generated implementation resolves each method dispatch slot once and calls it directly, skipping the per-call method lookup and reflective proxy dispatch. Interfaces having no generated implementation, eg compiled without the crest-processor module on the compilation classpath, are still built with the proxy factory. Method configurations are built at runtime in both cases.</p>
+     * @return current builder
+     * @see org.codegist.crest.CRestBuilder#setProxyFactory(Class)
+     */
+    public CRestBuilder useGeneratedProxies() {
+        this.generatedProxies = true;
+        return this;
+    }
+
+    /**
+     * <p>Caches GET responses in memory as instructed by the server Cache-Control, Expires, ETag and Last-Modified headers.</p>
+     * <p>Fresh responses are served without hitting the network, stale ones are revalidated with a conditional request, a 304 Not Modified response getting the cached response served. The cache size can be tuned through {@link org.codegist.crest.io.http.CachingRequestExecutor} properties.</p>
+     * @return current builder
+     * @see org.codegist.crest.io.http.CachingRequestExecutor
+     */
+    public CRestBuilder useResponseCache() {
+        this.responseCache = true;
+        return this;
+    }
+
+    /**
+     * <p>Caches GET responses in memory and in the given directory, so that a restarted process gets cache hits for the responses cached by the previous one.</p>
+     * <p>Shortcut to:</p>
+     * <code><pre>
+     * CRestBuilder.useResponseCache().property(CachingRequestExecutor.DISK_DIRECTORY_PROP, directory.getPath())
+     * </pre></code>
+     * @param directory directory to store the cached responses in, created if missing
+     * @return current builder
+     * @see org.codegist.crest.CRestBuilder#useResponseCache()
+     * @see org.codegist.crest.io.http.CachingRequestExecutor#DISK_DIRECTORY_PROP
+     */
+    public CRestBuilder useResponseCache(File directory) {
+        return useResponseCache().property(CachingRequestExecutor.DISK_DIRECTORY_PROP, directory.getPath());
+    }
+
+    /**
+     * <p>Limits the rate at which requests are sent to the given endpoint, whatever interface or method they come from.</p>
+     * <p>Requests exceeding the rate wait for their turn or are rejected with a {@link org.codegist.crest.io.RequestRejectedException}, see {@link org.codegist.crest.io.http.RateLimitingRequestExecutor#MAX_WAIT_PROP}. Per method rate limits can be set with the @RateLimited annotation.</p>
+     * @param endpoint endpoint url, only its scheme, host and port are considered
+     * @param permits number of requests permitted per period, also being the maximum burst size
+     * @param period period in milliseconds
+     * @return current builder
+     * @see org.codegist.crest.io.http.RateLimitingRequestExecutor
+     * @see org.codegist.crest.annotate.RateLimited
+     */
+    public CRestBuilder rateLimit(String endpoint, int permits, long period) {
+        this.endpointRateLimits.put(endpoint, new RateLimit(permits, period));
+        return this;
+    }
+
     /**
      * Overrides the default concurrency level (default is 1).
      * @param concurrencyLevel Concurrency level various <b>CRest</b> should be able to deal with
@@ -395,6 +614,21 @@ public class CRestBuilder {
         return property(MethodConfig.METHOD_CONFIG_DEFAULT_ENDPOINT, endpoint);
     }
 
+    /**
+     * <p>Sets the default deadline of the calls made by all interfaces build through the resulting <b>CRest</b> instance.</p>
+     * <p>A deadline bounds a whole call, from invocation to response, including all retry attempts. Can be overridden per interface or method with the @Deadline annotation.</p>
+     * <p>Shortcut to:</p>
+     * <code><pre>
+     * CRestBuilder.property(MethodConfig.METHOD_CONFIG_DEFAULT_DEADLINE, deadline)
+     * </pre></code>
+     * @param deadline deadline in milliseconds, 0 for none
+     * @return current builder
+     * @see org.codegist.crest.annotate.Deadline
+     */
+    public CRestBuilder deadline(int deadline) {
+        return property(MethodConfig.METHOD_CONFIG_DEFAULT_DEADLINE, deadline);
+    }
+
     /**
      * <p>Adds all given placeholders to the string-based annotations placeholders replacement map.</p>
      * <p>Expects a map with keys being the placeholder name (used in string-based annotations) and with values being the value to be used as replacement.<p>
@@ -502,7 +736,7 @@ public class CRestBuilder {
      * <p>By default, <b>CRest</b> handle the following types:</p>
      * <ul>
      *   <li>application/xml, text/xml for Xml deserialization</li>
-     *   <li>application/json, application/javascript, text/javascript, text/json for Json deserialization</li>
+     *   <li>application/json, application/javascript, text/javascript, text/json, application/x-ndjson for Json deserialization</li>
      * </ul>
      * @param deserializer Deserializer class to use for the given mime-types
      * @param mimeTypes Response Content-Types to bind deserializer to
@@ -517,7 +751,7 @@ public class CRestBuilder {
      * <p>By default, <b>CRest</b> handle the following types:</p>
      * <ul>
      *   <li>application/xml, text/xml for Xml deserialization</li>
-     *   <li>application/json, application/javascript, text/javascript, text/json for Json deserialization</li>
+     *   <li>application/json, application/javascript, text/javascript, text/json, application/x-ndjson for Json deserialization</li>
      * </ul>
      * @param deserializer Deserializer class to use for the given mime-types
      * @param mimeTypes Response Content-Types to bind deserializer to
@@ -687,6 +921,7 @@ public class CRestBuilder {
      * <li>application/javascript</li>
      * <li>text/javascript</li>
      * <li>text/json</li>
+     * <li>application/x-ndjson</li>
      * </ul>
      * @param mimeTypes Response Content-Type mime-types to be consider as JSON mime-types
      * @return current builder
@@ -769,6 +1004,7 @@ public class CRestBuilder {
      * <li>application/javascript</li>
      * <li>text/javascript</li>
      * <li>text/json</li>
+     * <li>application/x-ndjson</li>
      * </ul>
      * @param deserializer deserializer to use for JSON response Content-Type requests
      * @return current builder
@@ -786,6 +1022,7 @@ public class CRestBuilder {
      * <li>application/javascript</li>
      * <li>text/javascript</li>
      * <li>text/json</li>
+     * <li>application/x-ndjson</li>
      * </ul>
      * @param deserializer deserializer to use for JSON response Content-Type requests
      * @param config State that will be passed to the deserializer along with the CRestConfig object if the deserializer has declared a single argument constructor with CRestConfig parameter type
@@ -799,4 +1036,17 @@ public class CRestBuilder {
         return this;
     }
 
+    private static final class ExecutorServiceShutdown implements Disposable {
+
+        private final ExecutorService executorService;
+
+        private ExecutorServiceShutdown(ExecutorService executorService) {
+            this.executorService = executorService;
+        }
+
+        public void dispose() {
+            executorService.shutdown();
+        }
+    }
+
 }
\ No newline at end of file
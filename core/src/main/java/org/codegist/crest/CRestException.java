@@ -21,6 +21,7 @@
 package org.codegist.crest;
 
 import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.ResponseStatusException;
 
 import java.lang.reflect.InvocationTargetException;
 
@@ -69,7 +70,17 @@ public class CRestException extends RuntimeException {
     }
 
     public static RuntimeException handle(RequestException e) {
-        return e.getCause() != null ? handle(e.getCause()) : new CRestException(e.getMessage(), e);
+        if(e.getCause() != null) {
+            return handle(e.getCause());
+        }
+        if(e.hasResponse()) {
+            try {
+                return new ResponseStatusException(e.getMessage(), e, e.getResponse().getStatusCode());
+            } catch (Exception statusException) {
+                // status unavailable, falls back to a plain CRestException
+            }
+        }
+        return new CRestException(e.getMessage(), e);
     }
 
     public static RuntimeException handle(IllegalArgumentException e) {
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest;
+
+/**
+ * Outcome of a single call of a scatter-gather batch, holding either the call's result or the exception it failed with.
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.CRest#invokeAll(java.util.List, int, long)
+ */
+public final class CallResult<T> {
+
+    private final T value;
+    private final Exception failure;
+
+    private CallResult(T value, Exception failure) {
+        this.value = value;
+        this.failure = failure;
+    }
+
+    static <T> CallResult<T> success(T value) {
+        return new CallResult<T>(value, null);
+    }
+
+    static <T> CallResult<T> failure(Exception failure) {
+        return new CallResult<T>(null, failure);
+    }
+
+    /**
+     * @return true if the call completed normally
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    /**
+     * @return the call result, null if the call failed
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return the exception the call failed with, null if the call succeeded
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return the call result
+     * @throws Exception the exception the call failed with
+     */
+    public T get() throws Exception {
+        if(failure != null) {
+            throw failure;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "CallResult[value=" + value + "]" : "CallResult[failure=" + failure + "]";
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest;
+
+import org.codegist.crest.config.Collapse;
+import org.codegist.crest.io.DeadlineExceededException;
+import org.codegist.crest.io.ResponseStatusException;
+import org.codegist.crest.util.ItemKeyExtractor;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Merges concurrent calls of a single-item method into calls of a bulk method, splitting the bulk result back to each caller.
+ * <p>The first caller of a batch leads it: it waits for the collapsing window to elapse, or for the batch to be full, then performs the bulk call on its own thread while the other callers wait for it to complete, at most for the given timeout.</p>
+ * <p>Items are found in a {@link java.util.Map} bulk result by identifier, and in a collection or array bulk result by the identifier the key extractor gives each of them. An item missing from the bulk result is returned as null, while a bulk result keyed by identifiers of another type fails the batch.</p>
+ * <p>A failing bulk call fails all the callers of the batch, each of them getting its own exception wrapping the bulk call failure.</p>
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.annotate.Collapsed
+ */
+abstract class Collapser {
+
+    private final Method bulkMethod;
+    private final Class<?> itemType;
+    private final ItemKeyExtractor keyExtractor;
+    private final long window;
+    private final int maxBatchSize;
+    private final long timeout;
+    private final Lock lock = new ReentrantLock();
+    private final Condition batchClosed = lock.newCondition();
+    private Batch current;
+
+    /**
+     * @param bulkMethod bulk method calls get merged into
+     * @param collapse collapsing settings
+     * @param timeout time in milliseconds the callers that joined a batch wait for its bulk call to complete, 0 to wait indefinitely
+     * @throws IllegalArgumentException if the bulk method does not take a single collection or array parameter, returns a collection or an array without any key extractor given, or returns a {@link java.util.Map} keyed by another type than its items
+     */
+    Collapser(Method bulkMethod, Collapse collapse, long timeout) {
+        Class<?>[] paramTypes = bulkMethod.getParameterTypes();
+        if(paramTypes.length != 1 || !(paramTypes[0].isArray() || paramTypes[0].isAssignableFrom(ArrayList.class) || paramTypes[0].isAssignableFrom(LinkedHashSet.class))) {
+            throw new IllegalArgumentException("Bulk method " + bulkMethod + " must take a single collection or array parameter");
+        }
+        Type itemType = itemTypeOf(bulkMethod);
+        Class<?> returnType = bulkMethod.getReturnType();
+        if(collapse.getKeyExtractor() == null && (returnType.isArray() || Collection.class.isAssignableFrom(returnType))) {
+            throw new IllegalArgumentException("Bulk method " + bulkMethod + " returns a collection or an array, a key extractor must be given to match its items to the requested ones");
+        }
+        Type keyType = mapKeyTypeOf(bulkMethod);
+        if(itemType instanceof Class && keyType instanceof Class && !box((Class<?>) keyType).isAssignableFrom(box((Class<?>) itemType))) {
+            throw new IllegalArgumentException("Bulk method " + bulkMethod + " returns a Map keyed by " + keyType + " while its items are " + itemType);
+        }
+        this.bulkMethod = bulkMethod;
+        this.itemType = itemType instanceof Class ? box((Class<?>) itemType) : null;
+        this.keyExtractor = collapse.getKeyExtractor();
+        this.window = collapse.getWindow();
+        this.maxBatchSize = collapse.getMaxBatchSize();
+        this.timeout = timeout;
+    }
+
+    /**
+     * Finds the bulk method a collapsed method calls get merged into, by name and parameter type
+     * @param methods candidate methods
+     * @param collapsed collapsed method, taking the item identifier as its only parameter
+     * @param into bulk method name
+     * @return the method of the given name taking as its only parameter an array, a list or a set whose item type is exactly the collapsed method parameter type
+     * @throws IllegalArgumentException if none or more than one method matches
+     */
+    static Method findBulkMethod(Method[] methods, Method collapsed, String into) {
+        Type[] paramTypes = collapsed.getGenericParameterTypes();
+        if(paramTypes.length != 1) {
+            throw new IllegalArgumentException("Collapsed method " + collapsed + " must take the item identifier as its only parameter");
+        }
+        Type itemType = paramTypes[0] instanceof Class ? box((Class<?>) paramTypes[0]) : paramTypes[0];
+        Method found = null;
+        for (Method method : methods) {
+            if(!method.getName().equals(into) || method.getParameterTypes().length != 1) {
+                continue;
+            }
+            Type bulkItemType = itemTypeOf(method);
+            if(bulkItemType instanceof Class) {
+                bulkItemType = box((Class<?>) bulkItemType);
+            }
+            if(itemType.equals(bulkItemType)) {
+                if(found != null) {
+                    throw new IllegalArgumentException("Bulk method " + into + " of collapsed method " + collapsed + " is ambiguous: " + found + " and " + method + " both take " + itemType + " items");
+                }
+                found = method;
+            }
+        }
+        if(found == null) {
+            throw new IllegalArgumentException("Bulk method " + into + " of collapsed method " + collapsed + " taking an array, a list or a set of " + itemType + " not found");
+        }
+        return found;
+    }
+
+    /**
+     * Calls the bulk method with the given arguments
+     * @param args bulk method arguments
+     * @return the bulk method result
+     * @throws Exception any exception thrown by the bulk method
+     */
+    abstract Object call(Object[] args) throws Exception;
+
+    /**
+     * Gets the given item, merging the lookup with the ones of concurrent callers
+     * @param item item identifier
+     * @return the item found in the bulk method result, null if missing
+     * @throws Exception the exception the bulk call failed with, wrapped for the callers that did not lead the batch
+     * @throws DeadlineExceededException if the bulk call did not complete within the timeout
+     */
+    Object invoke(Object item) throws Exception {
+        Batch batch;
+        boolean leader = false;
+        lock.lock();
+        try {
+            if(current == null) {
+                current = new Batch();
+                leader = true;
+            }
+            batch = current;
+            batch.items.add(item);
+            if(batch.items.size() >= maxBatchSize) {
+                current = null;
+                batchClosed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if(leader) {
+            lead(batch);
+            return batch.get(item);
+        }
+        return batch.await(item);
+    }
+
+    private void lead(Batch batch) {
+        boolean interrupted = false;
+        long deadline = System.currentTimeMillis() + window;
+        lock.lock();
+        try {
+            long remaining;
+            while (current == batch && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    batchClosed.await(remaining, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    break;
+                }
+            }
+            if(current == batch) {
+                current = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        batch.execute();
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Object toBulkArgument(Set<Object> items) {
+        Class<?> paramType = bulkMethod.getParameterTypes()[0];
+        if(paramType.isArray()) {
+            Object array = Array.newInstance(paramType.getComponentType(), items.size());
+            int i = 0;
+            for (Object item : items) {
+                Array.set(array, i++, item);
+            }
+            return array;
+        }else if(paramType.isAssignableFrom(ArrayList.class)) {
+            return new ArrayList<Object>(items);
+        }else{
+            return new LinkedHashSet<Object>(items);
+        }
+    }
+
+    private Map<Object,Object> split(Set<Object> items, Object result) throws Exception {
+        Map<Object,Object> split = new HashMap<Object,Object>();
+        if(result == null) {
+            return split;
+        }
+        Map<?,?> byKey;
+        if(result instanceof Map) {
+            byKey = (Map<?,?>) result;
+        }else if(result instanceof Collection || result.getClass().isArray()) {
+            if(keyExtractor == null) {
+                throw new IllegalStateException("Bulk method " + bulkMethod + " returned a " + result.getClass() + " while no key extractor is given to match its items to the requested ones");
+            }
+            Map<Object,Object> keyed = new HashMap<Object,Object>();
+            for (Object value : result instanceof Collection ? (Collection<?>) result : asList(result)) {
+                keyed.put(keyExtractor.keyOf(value), value);
+            }
+            byKey = keyed;
+        }else{
+            throw new IllegalStateException("Bulk method " + bulkMethod + " must return a Map, a collection or an array, got " + result.getClass());
+        }
+        checkKeys(byKey.keySet());
+        for (Object item : items) {
+            split.put(item, byKey.get(item));
+        }
+        return split;
+    }
+
+    /**
+     * Keys of another type than the requested items would never match any of them, silently returning null to every caller.
+     */
+    private void checkKeys(Set<?> keys) {
+        if(itemType == null) {
+            return;
+        }
+        for (Object key : keys) {
+            if(key != null && !itemType.isInstance(key)) {
+                throw new IllegalStateException("Bulk method " + bulkMethod + " result is keyed by " + key.getClass().getName() + " while the requested items are " + itemType.getName() + ", check its Map key type or its key extractor");
+            }
+        }
+    }
+
+    /**
+     * @return the item type of the bulk method array, list or set parameter, Object if unknown
+     */
+    private static Type itemTypeOf(Method bulkMethod) {
+        Type paramType = bulkMethod.getGenericParameterTypes()[0];
+        if(paramType instanceof GenericArrayType) {
+            return ((GenericArrayType) paramType).getGenericComponentType();
+        }else if(paramType instanceof Class && ((Class<?>) paramType).isArray()) {
+            return ((Class<?>) paramType).getComponentType();
+        }else if(paramType instanceof ParameterizedType) {
+            return ((ParameterizedType) paramType).getActualTypeArguments()[0];
+        }else{
+            return Object.class;
+        }
+    }
+
+    /**
+     * @return the key type of the bulk method {@link java.util.Map} return type, null if it does not return a parameterized Map
+     */
+    private static Type mapKeyTypeOf(Method bulkMethod) {
+        Type returnType = bulkMethod.getGenericReturnType();
+        if(returnType instanceof ParameterizedType && Map.class.isAssignableFrom((Class<?>) ((ParameterizedType) returnType).getRawType())) {
+            return ((ParameterizedType) returnType).getActualTypeArguments()[0];
+        }
+        return null;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if(!type.isPrimitive()) {
+            return type;
+        }else if(type == int.class) {
+            return Integer.class;
+        }else if(type == long.class) {
+            return Long.class;
+        }else if(type == short.class) {
+            return Short.class;
+        }else if(type == byte.class) {
+            return Byte.class;
+        }else if(type == char.class) {
+            return Character.class;
+        }else if(type == boolean.class) {
+            return Boolean.class;
+        }else if(type == double.class) {
+            return Double.class;
+        }else if(type == float.class) {
+            return Float.class;
+        }else{
+            return type;
+        }
+    }
+
+    /**
+     * The bulk call failure is shared by all the callers of the batch, each of them gets its own exception with its own stack trace.
+     */
+    private static Exception rethrown(Exception failure) {
+        ResponseStatusException status = ResultCache.statusOf(failure);
+        if(status != null) {
+            return new ResponseStatusException(status.getMessage(), failure, status.getStatusCode());
+        }
+        return new CRestException(failure.getMessage(), failure);
+    }
+
+    private static List<Object> asList(Object array) {
+        int length = Array.getLength(array);
+        List<Object> list = new ArrayList<Object>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(Array.get(array, i));
+        }
+        return list;
+    }
+
+    private final class Batch {
+
+        private final Set<Object> items = new LinkedHashSet<Object>();
+        private final long opened = System.currentTimeMillis();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Map<Object,Object> results;
+        private volatile Exception failure;
+
+        private void execute() {
+            try {
+                results = split(items, call(new Object[]{toBulkArgument(items)}));
+            } catch (Exception e) {
+                failure = e;
+            } catch (Error e) {
+                failure = new CRestException(e.getMessage(), e);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private Object await(Object item) throws Exception {
+            if(timeout <= 0) {
+                done.await();
+            }else if(!done.await(opened + window + timeout - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+                throw new DeadlineExceededException("Bulk call of " + bulkMethod + " did not complete within " + timeout + "ms");
+            }
+            if(failure != null) {
+                throw rethrown(failure);
+            }
+            return results.get(item);
+        }
+
+        private Object get(Object item) throws Exception {
+            if(failure != null) {
+                throw failure;
+            }
+            return results.get(item);
+        }
+    }
+}
@@ -20,19 +20,34 @@
 
 package org.codegist.crest;
 
+import org.codegist.common.lang.Disposable;
 import org.codegist.common.lang.Disposables;
 import org.codegist.common.reflect.ObjectMethodsAwareInvocationHandler;
 import org.codegist.common.reflect.ProxyFactory;
+import org.codegist.crest.config.Collapse;
 import org.codegist.crest.config.InterfaceConfig;
 import org.codegist.crest.config.InterfaceConfigFactory;
 import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.io.DeadlineExceededException;
 import org.codegist.crest.io.Request;
 import org.codegist.crest.io.RequestBuilderFactory;
 import org.codegist.crest.io.RequestExecutor;
 import org.codegist.crest.io.Response;
+import org.codegist.crest.util.CompletableFutures;
 import org.codegist.crest.util.Requests;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.codegist.crest.util.ReturnTypes.isAsync;
+import static org.codegist.crest.util.ReturnTypes.isCompletable;
+import static org.codegist.crest.util.ReturnTypes.isStreaming;
 
 /**
  * @author Laurent Gilles (laurent.gilles@codegist.org)
@@ -43,12 +58,33 @@ class DefaultCRest extends CRest {
     private final RequestExecutor requestExecutor;
     private final RequestBuilderFactory requestBuilderFactory;
     private final InterfaceConfigFactory configFactory;
+    private final ExecutorService asyncExecutor;
+    private final List<Disposable> resources;
+    private final boolean generatedProxies;
+
+    public DefaultCRest(ProxyFactory proxyFactory, RequestExecutor requestExecutor, RequestBuilderFactory requestBuilderFactory, InterfaceConfigFactory configFactory, ExecutorService asyncExecutor) {
+        this(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor, Collections.<Disposable>emptyList());
+    }
+
+    /**
+     * @param resources resources owned by this instance, disposed along with it
+     */
+    public DefaultCRest(ProxyFactory proxyFactory, RequestExecutor requestExecutor, RequestBuilderFactory requestBuilderFactory, InterfaceConfigFactory configFactory, ExecutorService asyncExecutor, List<Disposable> resources) {
+        this(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor, resources, false);
+    }
 
-    public DefaultCRest(ProxyFactory proxyFactory, RequestExecutor requestExecutor, RequestBuilderFactory requestBuilderFactory, InterfaceConfigFactory configFactory) {
+    /**
+     * @param resources resources owned by this instance, disposed along with it
+     * @param generatedProxies whether to build interfaces with their crest-processor generated implementation when available, falling back to the proxy factory otherwise
+     */
+    public DefaultCRest(ProxyFactory proxyFactory, RequestExecutor requestExecutor, RequestBuilderFactory requestBuilderFactory, InterfaceConfigFactory configFactory, ExecutorService asyncExecutor, List<Disposable> resources, boolean generatedProxies) {
         this.proxyFactory = proxyFactory;
         this.requestExecutor = requestExecutor;
         this.requestBuilderFactory = requestBuilderFactory;
         this.configFactory = configFactory;
+        this.asyncExecutor = asyncExecutor;
+        this.resources = resources;
+        this.generatedProxies = generatedProxies;
     }
 
     /**
@@ -58,35 +94,235 @@ class DefaultCRest extends CRest {
     public <T> T build(Class<T> interfaze) throws CRestException {
         try {
             InterfaceConfig interfaceConfig = configFactory.newConfig(interfaze);
-            return (T) proxyFactory.createProxy(interfaze.getClassLoader(), new CRestInvocationHandler(interfaceConfig), new Class[]{interfaze});
+            CRestInvocationHandler handler = new CRestInvocationHandler(interfaceConfig);
+            if(generatedProxies) {
+                T generated = GeneratedProxies.newProxy(interfaze, handler);
+                if(generated != null) {
+                    return generated;
+                }
+            }
+            return (T) proxyFactory.createProxy(interfaze.getClassLoader(), handler, new Class[]{interfaze});
         } catch (Exception e) {
             throw CRestException.handle(e);
         }
     }
 
-    final class CRestInvocationHandler<T> extends ObjectMethodsAwareInvocationHandler {
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void dispose() {
+        for (Disposable resource : resources) {
+            resource.dispose();
+        }
+    }
+
+    /**
+     * Invocation handler dispatching calls through a per-interface method index.
+     * <p>Each interface method is given a slot on creation, its config, collapser and result cache are resolved once into their slot, on first call so that lazily built configs stay lazy. A call then costs a single lookup of the method slot instead of one map lookup per concern, generated implementations resolving the slots once and skipping the lookup altogether.</p>
+     */
+    final class CRestInvocationHandler<T> extends ObjectMethodsAwareInvocationHandler implements MethodDispatcher {
 
         private final InterfaceConfig interfaceConfig;
+        private final Method[] methods;
+        private final Map<Method,Integer> indexes;
+        private final AtomicReferenceArray<MethodConfig> configs;
+        private final AtomicReferenceArray<Collapser> collapsers;
+        private final AtomicReferenceArray<ResultCache> resultCaches;
 
         CRestInvocationHandler(InterfaceConfig interfaceConfig) throws Exception {
             this.interfaceConfig = interfaceConfig;
+            this.methods = interfaceConfig.getInterface().getDeclaredMethods();
+            this.indexes = new HashMap<Method, Integer>(methods.length * 2);
+            for (int i = 0; i < methods.length; i++) {
+                indexes.put(methods[i], i);
+            }
+            this.configs = new AtomicReferenceArray<MethodConfig>(methods.length);
+            this.collapsers = new AtomicReferenceArray<Collapser>(methods.length);
+            this.resultCaches = new AtomicReferenceArray<ResultCache>(methods.length);
         }
 
         @Override
         protected Object doInvoke(Object proxy, Method method, Object[] args) throws Throwable {
-            MethodConfig mc = interfaceConfig.getMethodConfig(method);
+            return dispatch(indexOf(method), args);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public int indexOf(Method method) {
+            Integer index = indexes.get(method);
+            if(index == null) {
+                throw new IllegalArgumentException("Method " + method + " is not declared by " + interfaceConfig.getInterface());
+            }
+            return index;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public Object dispatch(int index, Object[] args) throws Exception {
+            Method method = methods[index];
+            MethodConfig mc = getMethodConfig(index);
+            if(mc.getCachePolicy() != null && !isAsync(method) && !isStreaming(method.getReturnType())) {
+                return getResultCache(index, mc).get(args, new CachedInvocation(index, method, mc, args));
+            }
+            return doInvokeUncached(index, method, mc, args);
+        }
+
+        private Object doInvokeUncached(int index, Method method, MethodConfig mc, Object[] args) throws Exception {
+            if(mc.getCollapse() != null) {
+                Collapser collapser = getCollapser(index, mc);
+                if(isAsync(method)) {
+                    return submit(method, new CollapsedInvocation(collapser, args[0]));
+                }
+                return collapser.invoke(args[0]);
+            }
             Request request = Requests.from(requestBuilderFactory, mc, args);
+            if(isAsync(method)) {
+                return submit(method, new AsyncInvocation(mc, request));
+            }
+            return invoke(mc, request);
+        }
+
+        private Object submit(Method method, Callable<Object> invocation) {
+            if(isCompletable(method)) {
+                return CompletableFutures.supplyAsync(invocation, asyncExecutor);
+            }
+            return asyncExecutor.submit(invocation);
+        }
+
+        private Object invoke(MethodConfig mc, Request request) throws Exception {
             Response response = null;
             try {
                 response = requestExecutor.execute(request);
-                return mc.getResponseHandler().handle(response);
+                // the deadline bounds the whole call, deserialization included
+                Requests.getRemainingTime(request);
+                Object result = mc.getResponseHandler().handle(response);
+                Requests.getRemainingTime(request);
+                return result;
             }catch(Exception e){
+                Exception failure = e;
+                if(Requests.isDeadlineExceeded(request, e)) {
+                    failure = new DeadlineExceededException("Deadline exceeded while handling the response of " + mc.getMethod(), e);
+                }
                 try {
-                    return mc.getErrorHandler().handle(request, e);
+                    return mc.getErrorHandler().handle(request, failure);
                 } finally {
-                    Disposables.dispose(response, e);
+                    Disposables.dispose(response, failure);
                 }
             }
         }
+
+        private MethodConfig getMethodConfig(int index) {
+            MethodConfig mc = configs.get(index);
+            if(mc == null) {
+                // the interface config returns the same instance to concurrent callers, no need to guard the slot
+                mc = interfaceConfig.getMethodConfig(methods[index]);
+                configs.set(index, mc);
+            }
+            return mc;
+        }
+
+        private ResultCache getResultCache(int index, MethodConfig mc) {
+            ResultCache resultCache = resultCaches.get(index);
+            if(resultCache == null) {
+                ResultCache newResultCache = new ResultCache(mc.getCachePolicy(), asyncExecutor);
+                if(resultCaches.compareAndSet(index, null, newResultCache)) {
+                    resultCache = newResultCache;
+                } else {
+                    resultCache = resultCaches.get(index);
+                }
+            }
+            return resultCache;
+        }
+
+        private Collapser getCollapser(int index, MethodConfig mc) {
+            Collapser collapser = collapsers.get(index);
+            if(collapser == null) {
+                Collapser newCollapser = newCollapser(mc);
+                if(collapsers.compareAndSet(index, null, newCollapser)) {
+                    collapser = newCollapser;
+                } else {
+                    collapser = collapsers.get(index);
+                }
+            }
+            return collapser;
+        }
+
+        private Collapser newCollapser(MethodConfig mc) {
+            Collapse collapse = mc.getCollapse();
+            Method method = Collapser.findBulkMethod(interfaceConfig.getInterface().getMethods(), mc.getMethod(), collapse.getInto());
+            final MethodConfig bulkMc = interfaceConfig.getMethodConfig(method);
+            return new Collapser(method, collapse, collapsedTimeout(mc, bulkMc)) {
+                Object call(Object[] args) throws Exception {
+                    return CRestInvocationHandler.this.invoke(bulkMc, Requests.from(requestBuilderFactory, bulkMc, args));
+                }
+            };
+        }
+
+        /**
+         * Callers that joined a batch wait for the collapsed method deadline, else for the bulk method deadline, else for the bulk method timeouts if both are set
+         */
+        private long collapsedTimeout(MethodConfig mc, MethodConfig bulkMc) {
+            if(mc.getDeadline() > 0) {
+                return mc.getDeadline();
+            }else if(bulkMc.getDeadline() > 0) {
+                return bulkMc.getDeadline();
+            }else if(bulkMc.getConnectionTimeout() > 0 && bulkMc.getSocketTimeout() > 0) {
+                return (long) bulkMc.getConnectionTimeout() + bulkMc.getSocketTimeout();
+            }else{
+                return 0;
+            }
+        }
+
+        private final class CachedInvocation implements Callable<Object> {
+
+            private final int index;
+            private final Method method;
+            private final MethodConfig mc;
+            private final Object[] args;
+
+            private CachedInvocation(int index, Method method, MethodConfig mc, Object[] args) {
+                this.index = index;
+                this.method = method;
+                this.mc = mc;
+                this.args = args;
+            }
+
+            public Object call() throws Exception {
+                return doInvokeUncached(index, method, mc, args);
+            }
+        }
+
+        private final class CollapsedInvocation implements Callable<Object> {
+
+            private final Collapser collapser;
+            private final Object item;
+
+            private CollapsedInvocation(Collapser collapser, Object item) {
+                this.collapser = collapser;
+                this.item = item;
+            }
+
+            public Object call() throws Exception {
+                return collapser.invoke(item);
+            }
+        }
+
+        private final class AsyncInvocation implements Callable<Object> {
+
+            private final MethodConfig mc;
+            private final Request request;
+
+            private AsyncInvocation(MethodConfig mc, Request request) {
+                this.mc = mc;
+                this.request = request;
+            }
+
+            public Object call() throws Exception {
+                return invoke(mc, request);
+            }
+        }
     }
 }
@@ -20,31 +20,42 @@
 
 package org.codegist.crest;
 
-import org.codegist.common.collect.Maps;
-
+import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * <p>Map backed config. Merged configs are layered over the config they derive from: only the merged properties are copied, lookups falling back to the parent config for the others.</p>
  * @author Laurent Gilles (laurent.gilles@codegist.org)
  */
 final class DefaultCRestConfig implements CRestConfig {
 
     private final Map<String,Object> config;
+    private final DefaultCRestConfig parent;
 
     public DefaultCRestConfig(Map<String, Object> m) {
+        this(m, null);
+    }
+
+    private DefaultCRestConfig(Map<String, Object> m, DefaultCRestConfig parent) {
         this.config = m;
+        this.parent = parent;
     }
 
     public CRestConfig merge(Map<String, Object> m){
-        return new DefaultCRestConfig(Maps.merge(this.config, m));
+        return new DefaultCRestConfig(new HashMap<String, Object>(m), this);
     }
 
     public <T> T get(String key) {
-        return (T) config.get(key);
+        return this.<T>get(key, null);
     }
 
+    @SuppressWarnings("unchecked")
     public <T> T get(String propName, T defaultIfNotFound){
-        return config.containsKey(propName) ? this.<T>get(propName) : defaultIfNotFound;
+        Object value = config.get(propName);
+        if(value != null || config.containsKey(propName)) {
+            return (T) value;
+        }
+        return parent != null ? parent.get(propName, defaultIfNotFound) : defaultIfNotFound;
     }
 
     public <T> T get(Class<?> key){
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Looks up the interface implementations generated at compile time by the crest-processor module.
+ * <p>A generated implementation is named after the interface binary name suffixed with {@value #GENERATED_CLASS_SUFFIX} and takes the {@link org.codegist.crest.MethodDispatcher} as its only constructor argument.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class GeneratedProxies {
+
+    static final String GENERATED_CLASS_SUFFIX = "$$CRest";
+
+    private GeneratedProxies(){
+        throw new IllegalStateException();
+    }
+
+    /**
+     * @param interfaze interface to implement
+     * @param dispatcher dispatcher to dispatch the calls to
+     * @param <T> interface type
+     * @return a new instance of the generated implementation, or null if none, or an incompatible one, has been generated for the given interface
+     * @throws Exception any exception thrown while instantiating the generated implementation
+     */
+    static <T> T newProxy(Class<T> interfaze, MethodDispatcher dispatcher) throws Exception {
+        Class<?> generated;
+        try {
+            generated = Class.forName(interfaze.getName() + GENERATED_CLASS_SUFFIX, true, interfaze.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if(!interfaze.isAssignableFrom(generated)) {
+            return null;
+        }
+        Constructor<?> constructor;
+        try {
+            constructor = generated.getConstructor(MethodDispatcher.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        return interfaze.cast(constructor.newInstance(dispatcher));
+    }
+}
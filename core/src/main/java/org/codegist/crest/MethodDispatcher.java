@@ -0,0 +1,50 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+
+package org.codegist.crest;
+
+import org.codegist.common.reflect.InvocationHandler;
+
+import java.lang.reflect.Method;
+
+/**
+ * Invocation handler whose interface methods are given a slot that can be resolved once and then dispatched to directly.
+ * <p>Called by the interface implementations generated at compile time by the crest-processor module, not meant to be used directly.</p>
+ * @author laurent.gilles@codegist.org
+ */
+public interface MethodDispatcher extends InvocationHandler {
+
+    /**
+     * @param method method declared by the interface
+     * @return the slot of the given method
+     * @throws IllegalArgumentException if the given method is not declared by the interface
+     */
+    int indexOf(Method method);
+
+    /**
+     * Invokes the interface method of the given slot.
+     * @param index method slot, as returned by {@link #indexOf(java.lang.reflect.Method)}
+     * @param args method arguments, null if the method takes none
+     * @return the method result
+     * @throws Exception any exception thrown by the invocation
+     */
+    Object dispatch(int index, Object[] args) throws Exception;
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest;
+
+import org.codegist.common.log.Logger;
+import org.codegist.crest.config.CachePolicy;
+import org.codegist.crest.io.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caches a method return values keyed by the method argument values, bounded in size and optionally in weight, evicting the least recently used values first.
+ * <p>Values older than the time-to-live are reloaded by the caller, unless they are still within the stale-while-revalidate period, in which case they are served while being reloaded on the given executor.</p>
+ * <p>Concurrent callers missing the same value share a single load, the first caller loading the value while the others wait for it.</p>
+ * <p>When the policy has a negative time-to-live, client errors are cached as well until they expire, each hit throwing a new {@link org.codegist.crest.io.ResponseStatusException} caused by the cached error.</p>
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.annotate.Cached
+ */
+final class ResultCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ResultCache.class);
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private final ConcurrentMap<Key, FutureTask<Object>> loads = new ConcurrentHashMap<Key, FutureTask<Object>>();
+    private final CachePolicy policy;
+    private final Executor refreshExecutor;
+    private final Lock lock = new ReentrantLock();
+    private long weight;
+
+    ResultCache(CachePolicy policy, Executor refreshExecutor) {
+        this.policy = policy;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * @param args method arguments
+     * @param loader loads the value when missing or stale
+     * @return the cached value if any, or the loaded one
+     * @throws Exception any exception thrown by the loader, or the cached client error
+     */
+    Object get(Object[] args, Callable<Object> loader) throws Exception {
+        Key key = new Key(args);
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+
+        long now = System.currentTimeMillis();
+        if(entry != null) {
+            long age = now - entry.loadedAt;
+            if(entry.failure != null) {
+                if(age < policy.getNegativeTtl()) {
+                    throw rethrown(entry.failure);
+                }
+            }else if(age < policy.getTtl()) {
+                return entry.value;
+            }else if(age < policy.getTtl() + policy.getStaleWhileRevalidate()) {
+                if(entry.refreshing.compareAndSet(false, true)) {
+                    refreshExecutor.execute(new Refresh(key, entry, loader));
+                }
+                return entry.value;
+            }
+        }
+
+        return load(key, loader, now);
+    }
+
+    private Object load(Key key, Callable<Object> loader, long now) throws Exception {
+        boolean loaded = false;
+        FutureTask<Object> load = loads.get(key);
+        if(load == null) {
+            FutureTask<Object> newLoad = new FutureTask<Object>(new Load(key, loader, now));
+            load = loads.putIfAbsent(key, newLoad);
+            if(load == null) {
+                load = newLoad;
+                loaded = true;
+                try {
+                    newLoad.run();
+                } finally {
+                    loads.remove(key, newLoad);
+                }
+            }
+        }
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            Exception failure = (Exception) e.getCause();
+            throw !loaded && isClientError(failure) ? rethrown(failure) : failure;
+        }
+    }
+
+    private static boolean isClientError(Throwable e) {
+        ResponseStatusException status = statusOf(e);
+        return status != null && CachePolicy.isNegativelyCacheable(status.getStatusCode());
+    }
+
+    static ResponseStatusException statusOf(Throwable e) {
+        for(Throwable t = e; t != null; t = t.getCause()) {
+            if(t instanceof ResponseStatusException) {
+                return (ResponseStatusException) t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cached errors are shared by all the callers, each of them gets its own exception with its own stack trace.
+     */
+    private static ResponseStatusException rethrown(Exception failure) {
+        ResponseStatusException status = statusOf(failure);
+        return new ResponseStatusException(status.getMessage(), failure, status.getStatusCode());
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getWeight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(Key key, Object value, long loadedAt) {
+        put(key, new Entry(value, null, loadedAt, policy.getWeigher().weigh(value)));
+    }
+
+    private void put(Key key, Entry entry) {
+        lock.lock();
+        try {
+            Entry previous = entries.remove(key);
+            if(previous != null) {
+                weight -= previous.weight;
+            }
+            if(policy.getMaxWeight() > 0 && entry.weight > policy.getMaxWeight()) {
+                return;
+            }
+            entries.put(key, entry);
+            weight += entry.weight;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > policy.getMaxSize() || (policy.getMaxWeight() > 0 && weight > policy.getMaxWeight())) {
+                weight -= eldest.next().weight;
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class Load implements Callable<Object> {
+
+        private final Key key;
+        private final Callable<Object> loader;
+        private final long now;
+
+        private Load(Key key, Callable<Object> loader, long now) {
+            this.key = key;
+            this.loader = loader;
+            this.now = now;
+        }
+
+        public Object call() throws Exception {
+            Object value;
+            try {
+                value = loader.call();
+            } catch (Exception e) {
+                if(policy.getNegativeTtl() > 0 && isClientError(e)) {
+                    put(key, new Entry(null, e, now, 0));
+                }
+                throw e;
+            }
+            put(key, value, now);
+            return value;
+        }
+    }
+
+    private final class Refresh implements Runnable {
+
+        private final Key key;
+        private final Entry entry;
+        private final Callable<Object> loader;
+
+        private Refresh(Key key, Entry entry, Callable<Object> loader) {
+            this.key = key;
+            this.entry = entry;
+            this.loader = loader;
+        }
+
+        public void run() {
+            try {
+                long now = System.currentTimeMillis();
+                put(key, loader.call(), now);
+            } catch (Exception e) {
+                LOGGER.debug(e, "Failed to refresh cached value, keeping stale value");
+            } finally {
+                entry.refreshing.set(false);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final Exception failure;
+        private final long loadedAt;
+        private final long weight;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(Object value, Exception failure, long loadedAt, long weight) {
+            this.value = value;
+            this.failure = failure;
+            this.loadedAt = loadedAt;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Key {
+
+        private final Object[] args;
+        private final int hashCode;
+
+        private Key(Object[] args) {
+            this.args = args != null ? args.clone() : new Object[0];
+            this.hashCode = Arrays.deepHashCode(this.args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.deepEquals(args, ((Key) o).args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
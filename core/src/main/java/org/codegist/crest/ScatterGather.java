@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest;
+
+import org.codegist.crest.io.DeadlineExceededException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs a batch of calls on the given executor with at most maxParallelism calls in flight, gathering their outcomes in order.
+ * <p>Calls that have not completed once the timeout is reached are cancelled and reported as failed with a {@link org.codegist.crest.io.DeadlineExceededException}.</p>
+ * <p>An {@link java.lang.Error} thrown by a call is recorded as its failure and aborts the batch: no further call is started, the calls in flight are cancelled and the error is rethrown by {@link #run(long)}.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class ScatterGather<T> {
+
+    private final List<? extends Callable<? extends T>> calls;
+    private final AtomicReferenceArray<CallResult<T>> results;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicReference<Error> error = new AtomicReference<Error>();
+    private final CountDownLatch completed;
+    private final ExecutorService executor;
+    private final int maxParallelism;
+
+    ScatterGather(ExecutorService executor, List<? extends Callable<? extends T>> calls, int maxParallelism) {
+        if(maxParallelism <= 0) {
+            throw new IllegalArgumentException("maxParallelism must be strictly positive, got " + maxParallelism);
+        }
+        this.executor = executor;
+        this.calls = new ArrayList<Callable<? extends T>>(calls);
+        this.maxParallelism = maxParallelism;
+        this.results = new AtomicReferenceArray<CallResult<T>>(this.calls.size());
+        this.completed = new CountDownLatch(this.calls.size());
+    }
+
+    List<CallResult<T>> run(long timeout) throws InterruptedException {
+        int workers = Math.min(maxParallelism, calls.size());
+        List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(new Worker()));
+            }
+            completed.await(timeout, TimeUnit.MILLISECONDS);
+        } finally {
+            next.set(calls.size());
+            // publish the deadline failures first so that the interruption caused by the cancellation can't be reported instead
+            for (int i = 0; i < calls.size(); i++) {
+                results.compareAndSet(i, null, CallResult.<T>failure(new DeadlineExceededException("Call " + i + " did not complete within " + timeout + "ms")));
+            }
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        if(error.get() != null) {
+            throw error.get();
+        }
+
+        List<CallResult<T>> gathered = new ArrayList<CallResult<T>>(calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            gathered.add(results.get(i));
+        }
+        return Collections.unmodifiableList(gathered);
+    }
+
+    private final class Worker implements Runnable {
+        public void run() {
+            int i;
+            while ((i = next.getAndIncrement()) < calls.size()) {
+                CallResult<T> result;
+                try {
+                    result = CallResult.<T>success(calls.get(i).call());
+                } catch (Exception e) {
+                    result = CallResult.failure(e);
+                } catch (Error e) {
+                    results.compareAndSet(i, null, CallResult.<T>failure(new CRestException(e.getMessage(), e)));
+                    abort(e);
+                    throw e;
+                }
+                results.compareAndSet(i, null, result);
+                completed.countDown();
+            }
+        }
+
+        private void abort(Error e) {
+            error.compareAndSet(null, e);
+            next.set(calls.size());
+            while (completed.getCount() > 0) {
+                completed.countDown();
+            }
+        }
+    }
+}
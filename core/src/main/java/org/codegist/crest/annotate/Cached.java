@@ -0,0 +1,72 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.annotate;
+
+import org.codegist.crest.util.UnitWeigher;
+import org.codegist.crest.util.Weigher;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Caches the return value of the annotated method, keyed by the method argument values.</p>
+ * <p>Cache hits are served without building nor executing any request. A value older than the time-to-live is served stale for the stale-while-revalidate period while it gets refreshed in the background, past that period the caller waits for it to be reloaded. Failed calls are not cached, unless a negative time-to-live is set in which case client errors (4xx status codes but 401, 408 and 429) are cached and rethrown for that period.</p>
+ * <p>Arguments are compared with their equals/hashCode methods. Concurrent calls missing the same value share a single request.</p>
+ * <p>Ignored for methods declaring a {@link java.util.concurrent.Future} return type, as well as for methods declaring a {@link java.util.Iterator} or {@link org.codegist.crest.util.CloseableIterator} return type, whose single-pass streamed values can't be shared.</p>
+ * <p>When set at interface level, it will applies to all methods where it is not already specified</p>
+ * @author laurent.gilles@codegist.org
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Cached {
+
+    /**
+     * time-to-live in milliseconds of the cached values
+     */
+    long value();
+
+    /**
+     * maximum number of cached values, the least recently used ones being evicted first. Default is 1000.
+     */
+    int maxSize() default 1000;
+
+    /**
+     * maximum total weight of the cached values as computed by the weigher, 0 for no limit. Default is 0.
+     */
+    long maxWeight() default 0;
+
+    /**
+     * weigher used to compute each cached value weight. Default gives every value a weight of 1.
+     */
+    Class<? extends Weigher> weigher() default UnitWeigher.class;
+
+    /**
+     * time in milliseconds past the time-to-live during which a stale value is served while being refreshed in the background, 0 for none. Default is 0.
+     */
+    long staleWhileRevalidate() default 0;
+
+    /**
+     * time-to-live in milliseconds of the cached client errors, 0 to never cache them. Default is 0.
+     */
+    long negativeTtl() default 0;
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.annotate;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Indicates that concurrent identical calls of the annotated method should share a single network round-trip.</p>
+ * <p>Calls are considered identical when they share the same HTTP method, URL and headers. The first call hits the server, later calls issued while it is in flight wait for its response and each deserialize their own copy of it.</p>
+ * <p>Only applies to GET, HEAD and OPTIONS methods as the response gets buffered in memory to be shared, it should not be used for methods returning large payloads.</p>
+ * <p>When set at interface level, it will applies to all methods where it is not already specified</p>
+ * @author laurent.gilles@codegist.org
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Coalesced {
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.annotate;
+
+import org.codegist.crest.util.ItemKeyExtractor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Indicates that concurrent calls of the annotated single-item method should be merged into calls of a bulk method of the same interface.</p>
+ * <p>The annotated method must take the item identifier as its only parameter, the bulk method taking a collection or an array of identifiers of that exact type as its only parameter, usually annotated with {@link org.codegist.crest.annotate.ListSeparator}:</p>
+ * <code><pre>
+ * &#64;GET &#64;Path("user/{id}")
+ * &#64;Collapsed(into = "getAll")
+ * User get(&#64;PathParam("id") String id);
+ *
+ * &#64;GET &#64;Path("users")
+ * Map&lt;String,User&gt; getAll(&#64;QueryParam("ids") &#64;ListSeparator(",") List&lt;String&gt; ids);
+ * </pre></code>
+ * <p>The first call opens a batch that stays open for the given window, or until it holds the maximum batch size, then the bulk method is called once with the distinct identifiers of all the calls that joined it. Each call gets its own item back from the bulk result, looked up by identifier if it is a {@link java.util.Map}, or by the identifier the key extractor gives each item if it is a collection or an array. An identifier missing from the bulk result gets null back, while a bulk result keyed by identifiers of another type fails the calls.</p>
+ * <p>A failing bulk call fails all the calls of the batch. The calls that joined a batch wait for its bulk call at most for the annotated method's deadline, or else for the bulk method's connection and socket timeouts, see {@link org.codegist.crest.annotate.Deadline}.</p>
+ * @author laurent.gilles@codegist.org
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Collapsed {
+
+    /**
+     * name of the bulk method the annotated method calls get merged into
+     */
+    String into();
+
+    /**
+     * time in milliseconds a batch stays open for other calls to join. Default is 10.
+     */
+    long window() default 10;
+
+    /**
+     * maximum number of distinct items merged in a single bulk call. Default is 100.
+     */
+    int maxBatchSize() default 100;
+
+    /**
+     * extractor of the identifier of each item of a bulk method returning a collection or an array, required for such bulk methods. Default is none, for bulk methods returning a {@link java.util.Map}.
+     */
+    Class<? extends ItemKeyExtractor> key() default ItemKeyExtractor.class;
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.annotate;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Indicates the rate at which the annotated method can be called, excess calls are delayed or rejected depending on the rate limiter configuration.</p>
+ * <p>Each method gets its own limit, endpoint-wide limits can be set with {@link org.codegist.crest.CRestBuilder#rateLimit(String, int, long)}.</p>
+ * <p>When set at interface level, it will applies to all methods where it is not already specified</p>
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.io.http.RateLimitingRequestExecutor
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface RateLimited {
+
+    /**
+     * number of calls permitted per period, also being the maximum burst size.
+     */
+    int value();
+
+    /**
+     * period in milliseconds. Default is 1000.
+     */
+    long period() default 1000;
+}
@@ -27,12 +27,14 @@ import org.codegist.crest.util.ComponentRegistry;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.concurrent.Executor;
 
 import static org.codegist.common.collect.Arrays.merge;
 
 /**
  * <p>Annotation based config factory.</p>
  * <p>The factory will lookup any annotation in the packages {@link org.codegist.crest.annotate} and {@link javax.ws.rs} on the given interface.</p>
+ * <p>In lazy mode, only the interface level annotations are handled upfront, each method annotations being handled and its config built on first access, or in the background if a pre-warm executor is given.</p>
  * <p/>
  * @author Laurent Gilles (laurent.gilles@codegist.org)
  */
@@ -40,45 +42,77 @@ public class AnnotationDrivenInterfaceConfigFactory implements InterfaceConfigFa
 
     private final InterfaceConfigBuilderFactory icbf;
     private final ComponentRegistry<Class<? extends Annotation>, AnnotationHandler> handlersRegistry;
+    private final boolean lazy;
+    private final Executor prewarmExecutor;
 
     /**
      * @param icbf the interface config builder factory to get InterfaceConfigBuilder instances from
      * @param handlersRegistry Annotation handlers registry
      */
     public AnnotationDrivenInterfaceConfigFactory(InterfaceConfigBuilderFactory icbf, ComponentRegistry<Class<? extends Annotation>,AnnotationHandler> handlersRegistry) {
+        this(icbf, handlersRegistry, false, null);
+    }
+
+    /**
+     * @param icbf the interface config builder factory to get InterfaceConfigBuilder instances from
+     * @param handlersRegistry Annotation handlers registry
+     * @param lazy whether to build method configs on first access
+     * @param prewarmExecutor executor to build the method configs in the background with when lazy, null to only build them on first access
+     */
+    public AnnotationDrivenInterfaceConfigFactory(InterfaceConfigBuilderFactory icbf, ComponentRegistry<Class<? extends Annotation>,AnnotationHandler> handlersRegistry, boolean lazy, Executor prewarmExecutor) {
         this.handlersRegistry = handlersRegistry;
         this.icbf = icbf;
+        this.lazy = lazy;
+        this.prewarmExecutor = prewarmExecutor;
     }
 
     @SuppressWarnings("unchecked")
     public InterfaceConfig newConfig(Class<?> interfaze) throws Exception {
-        InterfaceConfigBuilder config = icbf.newInstance(interfaze);
+        final InterfaceConfigBuilder config = icbf.newInstance(interfaze);
         
         for(Annotation annotation : interfaze.getAnnotations()){
             handlersRegistry.get(annotation.annotationType()).handleInterfaceAnnotation(annotation, config);
         }
 
-        for (Method meth : interfaze.getDeclaredMethods()) {
-            MethodConfigBuilder methodConfigBuilder = config.startMethodConfig(meth);
-            for(Annotation methAnnotation : meth.getAnnotations()){
-                handlersRegistry.get(methAnnotation.annotationType()).handleMethodAnnotation(methAnnotation, methodConfigBuilder);
-            }
-
-            Class<?>[] paramTypes = meth.getParameterTypes();
-            Type[] genParamTypes = meth.getGenericParameterTypes();
-            Annotation[][] paramAnnotations = meth.getParameterAnnotations();
-            for (int i = 0, max = paramTypes.length; i < max; i++) {
-                Type pType = genParamTypes[i];
-                Class<?> pClass = Types.getComponentClass(paramTypes[i], pType);
-                Annotation[] annotations = merge(Annotation.class, pClass.getAnnotations(), paramAnnotations[i]);
-
-                ParamConfigBuilder methodParamConfigBuilder = methodConfigBuilder.startParamConfig(i);
-                for(Annotation paramAnnotation : annotations){
-                    handlersRegistry.get(paramAnnotation.annotationType()).handleParameterAnnotation(paramAnnotation, methodParamConfigBuilder);
+        if(lazy) {
+            LazyInterfaceConfig lazyConfig = new LazyInterfaceConfig(interfaze) {
+                MethodConfig buildMethodConfig(Method meth) throws Exception {
+                    MethodConfigBuilder methodConfigBuilder = config.startMethodConfig(meth);
+                    handleMethodAnnotations(meth, methodConfigBuilder);
+                    return methodConfigBuilder.build();
                 }
+            };
+            if(prewarmExecutor != null) {
+                lazyConfig.prewarm(prewarmExecutor);
             }
+            return lazyConfig;
+        }
+
+        for (Method meth : interfaze.getDeclaredMethods()) {
+            handleMethodAnnotations(meth, config.startMethodConfig(meth));
         }
 
         return config.build();
     }
+
+    @SuppressWarnings("unchecked")
+    private void handleMethodAnnotations(Method meth, MethodConfigBuilder methodConfigBuilder) throws Exception {
+        for(Annotation methAnnotation : meth.getAnnotations()){
+            handlersRegistry.get(methAnnotation.annotationType()).handleMethodAnnotation(methAnnotation, methodConfigBuilder);
+        }
+
+        Class<?>[] paramTypes = meth.getParameterTypes();
+        Type[] genParamTypes = meth.getGenericParameterTypes();
+        Annotation[][] paramAnnotations = meth.getParameterAnnotations();
+        for (int i = 0, max = paramTypes.length; i < max; i++) {
+            Type pType = genParamTypes[i];
+            Class<?> pClass = Types.getComponentClass(paramTypes[i], pType);
+            Annotation[] annotations = merge(Annotation.class, pClass.getAnnotations(), paramAnnotations[i]);
+
+            ParamConfigBuilder methodParamConfigBuilder = methodConfigBuilder.startParamConfig(i);
+            for(Annotation paramAnnotation : annotations){
+                handlersRegistry.get(paramAnnotation.annotationType()).handleParameterAnnotation(paramAnnotation, methodParamConfigBuilder);
+            }
+        }
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config;
+
+import org.codegist.common.lang.ToStringBuilder;
+import org.codegist.crest.util.UnitWeigher;
+import org.codegist.crest.util.Weigher;
+
+/**
+ * Method result caching settings.
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.annotate.Cached
+ */
+public final class CachePolicy {
+
+    private final long ttl;
+    private final int maxSize;
+    private final long maxWeight;
+    private final Weigher weigher;
+    private final long staleWhileRevalidate;
+    private final long negativeTtl;
+
+    /**
+     * @param ttl time-to-live in milliseconds of the cached values
+     * @param maxSize maximum number of cached values
+     */
+    public CachePolicy(long ttl, int maxSize) {
+        this(ttl, maxSize, 0, new UnitWeigher(), 0, 0);
+    }
+
+    /**
+     * @param ttl time-to-live in milliseconds of the cached values
+     * @param maxSize maximum number of cached values
+     * @param maxWeight maximum total weight of the cached values, 0 for no limit
+     * @param weigher weigher used to compute each cached value weight
+     * @param staleWhileRevalidate time in milliseconds past the time-to-live during which a stale value is served while being refreshed, 0 for none
+     */
+    public CachePolicy(long ttl, int maxSize, long maxWeight, Weigher weigher, long staleWhileRevalidate) {
+        this(ttl, maxSize, maxWeight, weigher, staleWhileRevalidate, 0);
+    }
+
+    /**
+     * @param ttl time-to-live in milliseconds of the cached values
+     * @param maxSize maximum number of cached values
+     * @param maxWeight maximum total weight of the cached values, 0 for no limit
+     * @param weigher weigher used to compute each cached value weight
+     * @param staleWhileRevalidate time in milliseconds past the time-to-live during which a stale value is served while being refreshed, 0 for none
+     * @param negativeTtl time-to-live in milliseconds of the cached client errors, 0 to never cache them
+     * @see #isNegativelyCacheable(int)
+     */
+    public CachePolicy(long ttl, int maxSize, long maxWeight, Weigher weigher, long staleWhileRevalidate, long negativeTtl) {
+        if(ttl <= 0 || maxSize <= 0 || maxWeight < 0 || staleWhileRevalidate < 0 || negativeTtl < 0) {
+            throw new IllegalArgumentException("Invalid cache policy: ttl=" + ttl + ", maxSize=" + maxSize + ", maxWeight=" + maxWeight + ", staleWhileRevalidate=" + staleWhileRevalidate + ", negativeTtl=" + negativeTtl);
+        }
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.negativeTtl = negativeTtl;
+    }
+
+    /**
+     * @return time-to-live in milliseconds of the cached values
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * @return maximum number of cached values
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return maximum total weight of the cached values, 0 for no limit
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return weigher used to compute each cached value weight
+     */
+    public Weigher getWeigher() {
+        return weigher;
+    }
+
+    /**
+     * @return time in milliseconds past the time-to-live during which a stale value is served while being refreshed, 0 for none
+     */
+    public long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    /**
+     * @return time-to-live in milliseconds of the cached client errors, 0 to never cache them
+     */
+    public long getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    /**
+     * Client errors are deterministic for given arguments, except for 401 (credentials may get refreshed), 408 (timeout) and 429 (throttling).
+     * @param statusCode response status code
+     * @return whether a failure with the given status code can be cached
+     */
+    public static boolean isNegativelyCacheable(int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 401 && statusCode != 408 && statusCode != 429;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CachePolicy that = (CachePolicy) o;
+        return ttl == that.ttl
+                && maxSize == that.maxSize
+                && maxWeight == that.maxWeight
+                && staleWhileRevalidate == that.staleWhileRevalidate
+                && negativeTtl == that.negativeTtl
+                && weigher.getClass().equals(that.weigher.getClass());
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (ttl ^ (ttl >>> 32));
+        result = 31 * result + maxSize;
+        result = 31 * result + (int) (maxWeight ^ (maxWeight >>> 32));
+        result = 31 * result + weigher.getClass().hashCode();
+        result = 31 * result + (int) (staleWhileRevalidate ^ (staleWhileRevalidate >>> 32));
+        result = 31 * result + (int) (negativeTtl ^ (negativeTtl >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("ttl", ttl)
+                .append("maxSize", maxSize)
+                .append("maxWeight", maxWeight)
+                .append("weigher", weigher)
+                .append("staleWhileRevalidate", staleWhileRevalidate)
+                .append("negativeTtl", negativeTtl)
+                .toString();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config;
+
+import org.codegist.common.lang.ToStringBuilder;
+import org.codegist.crest.util.ItemKeyExtractor;
+
+/**
+ * Request collapsing settings of a single-item method, naming the bulk method concurrent calls get merged into.
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.annotate.Collapsed
+ */
+public final class Collapse {
+
+    private final String into;
+    private final long window;
+    private final int maxBatchSize;
+    private final ItemKeyExtractor keyExtractor;
+
+    /**
+     * @param into name of the bulk method of the same interface, taking a collection or an array as its only parameter
+     * @param window time in milliseconds a batch stays open for other calls to join
+     * @param maxBatchSize maximum number of distinct items merged in a single bulk call
+     */
+    public Collapse(String into, long window, int maxBatchSize) {
+        this(into, window, maxBatchSize, null);
+    }
+
+    /**
+     * @param into name of the bulk method of the same interface, taking a collection or an array as its only parameter
+     * @param window time in milliseconds a batch stays open for other calls to join
+     * @param maxBatchSize maximum number of distinct items merged in a single bulk call
+     * @param keyExtractor extractor of the identifier of the bulk method {@link java.util.List} or array result items, null if the bulk method returns a {@link java.util.Map}
+     */
+    public Collapse(String into, long window, int maxBatchSize, ItemKeyExtractor keyExtractor) {
+        if(into == null || into.length() == 0) {
+            throw new IllegalArgumentException("Bulk method name must be given");
+        }
+        if(window < 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Window must be positive and batch size strictly positive: window=" + window + ", maxBatchSize=" + maxBatchSize);
+        }
+        this.into = into;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * @return name of the bulk method calls get merged into
+     */
+    public String getInto() {
+        return into;
+    }
+
+    /**
+     * @return time in milliseconds a batch stays open for other calls to join
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * @return maximum number of distinct items merged in a single bulk call
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return extractor of the identifier of the bulk method {@link java.util.List} or array result items, null if the bulk method returns a {@link java.util.Map}
+     */
+    public ItemKeyExtractor getKeyExtractor() {
+        return keyExtractor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Collapse that = (Collapse) o;
+        return window == that.window
+                && maxBatchSize == that.maxBatchSize
+                && into.equals(that.into)
+                && (keyExtractor == null ? that.keyExtractor == null : that.keyExtractor != null && keyExtractor.getClass().equals(that.keyExtractor.getClass()));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = into.hashCode();
+        result = 31 * result + (int) (window ^ (window >>> 32));
+        result = 31 * result + maxBatchSize;
+        result = 31 * result + (keyExtractor != null ? keyExtractor.getClass().hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("into", into)
+                .append("window", window)
+                .append("maxBatchSize", maxBatchSize)
+                .append("keyExtractor", keyExtractor)
+                .toString();
+    }
+}
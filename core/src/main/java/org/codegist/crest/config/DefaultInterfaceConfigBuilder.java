@@ -33,138 +33,218 @@ import org.codegist.crest.util.ComponentRegistry;
 
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Method config builders are created on the first {@link #startMethodConfig(java.lang.reflect.Method)} call for their method, the settings made for all the methods being replayed on them, so that methods never configured cost nothing.
+ * <p>Thread-safe, method config builders being possibly started concurrently by lazily built interface configs.</p>
+ * @author laurent.gilles@codegist.org
+ */
 class DefaultInterfaceConfigBuilder extends ConfigBuilder implements InterfaceConfigBuilder {
 
     private final Class interfaze;
-    private final Map<Method, MethodConfigBuilder> methodBuilders;
+    private final ComponentRegistry<String,Deserializer> mimeDeserializerRegistry;
+    private final ComponentRegistry<Class<?>, Serializer> classSerializerRegistry;
+    private final Map<Method, MethodConfigBuilder> methodBuilders = new HashMap<Method, MethodConfigBuilder>();
+    private final List<MethodsSetting> methodsSettings = new ArrayList<MethodsSetting>();
 
 
     public DefaultInterfaceConfigBuilder(Class interfaze, CRestConfig crestConfig, ComponentRegistry<String,Deserializer> mimeDeserializerRegistry, ComponentRegistry<Class<?>, Serializer> classSerializerRegistry) {
         super(crestConfig);
         this.interfaze = interfaze;
-        this.methodBuilders = new HashMap<Method, MethodConfigBuilder>();
-        for (Method m : interfaze.getDeclaredMethods()) {
-            this.methodBuilders.put(m, new DefaultMethodConfigBuilder(this, m, crestConfig, mimeDeserializerRegistry, classSerializerRegistry));
-        }
+        this.mimeDeserializerRegistry = mimeDeserializerRegistry;
+        this.classSerializerRegistry = classSerializerRegistry;
     }
 
     public InterfaceConfig build() throws Exception {
         Map<Method, MethodConfig> mConfig = new HashMap<Method, MethodConfig>();
-        for (Map.Entry<Method, MethodConfigBuilder> entry : methodBuilders.entrySet()) {
-            mConfig.put(entry.getKey(), entry.getValue().build());
+        for (Method m : interfaze.getDeclaredMethods()) {
+            mConfig.put(m, startMethodConfig(m).build());
         }
         return new DefaultInterfaceConfig(interfaze, mConfig);
     }
 
     public MethodConfigBuilder startMethodConfig(Method meth) {
-        return this.methodBuilders.get(meth);
+        synchronized (methodBuilders) {
+            MethodConfigBuilder builder = methodBuilders.get(meth);
+            if(builder == null) {
+                if(!interfaze.equals(meth.getDeclaringClass())) {
+                    return null;
+                }
+                builder = new DefaultMethodConfigBuilder(this, meth, getCRestConfig(), mimeDeserializerRegistry, classSerializerRegistry);
+                for (MethodsSetting setting : methodsSettings) {
+                    setting.apply(builder);
+                }
+                methodBuilders.put(meth, builder);
+            }
+            return builder;
+        }
+    }
+
+    /**
+     * Applies the given setting to the method config builders started so far, and to the ones started later on.
+     */
+    private InterfaceConfigBuilder apply(MethodsSetting setting) {
+        synchronized (methodBuilders) {
+            methodsSettings.add(setting);
+            for (MethodConfigBuilder builder : methodBuilders.values()) {
+                setting.apply(builder);
+            }
+        }
+        return this;
     }
 
     /* METHODS SETTINGS METHODS */
 
 
-    public InterfaceConfigBuilder setMethodsCharset(Charset charset) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setCharset(charset);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsCharset(final Charset charset) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setCharset(charset);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsSocketTimeout(int socketTimeout) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setSocketTimeout(socketTimeout);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsSocketTimeout(final int socketTimeout) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setSocketTimeout(socketTimeout);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsConnectionTimeout(int connectionTimeout) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setConnectionTimeout(connectionTimeout);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsConnectionTimeout(final int connectionTimeout) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setConnectionTimeout(connectionTimeout);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsRequestInterceptor(Class<? extends RequestInterceptor> requestInterceptorClass)  {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setRequestInterceptor(requestInterceptorClass);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsRequestInterceptor(final Class<? extends RequestInterceptor> requestInterceptorClass) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setRequestInterceptor(requestInterceptorClass);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsResponseHandler(Class<? extends ResponseHandler> responseHandlerClass)  {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setResponseHandler(responseHandlerClass);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsResponseHandler(final Class<? extends ResponseHandler> responseHandlerClass) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setResponseHandler(responseHandlerClass);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsErrorHandler(Class<? extends ErrorHandler> errorHandlerClass)  {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setErrorHandler(errorHandlerClass);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsErrorHandler(final Class<? extends ErrorHandler> errorHandlerClass) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setErrorHandler(errorHandlerClass);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsRetryHandler(Class<? extends RetryHandler> retryHandlerClass)  {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setRetryHandler(retryHandlerClass);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsRetryHandler(final Class<? extends RetryHandler> retryHandlerClass) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setRetryHandler(retryHandlerClass);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsEntityWriter(Class<? extends EntityWriter> entityWriterClass)  {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setEntityWriter(entityWriterClass);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsEntityWriter(final Class<? extends EntityWriter> entityWriterClass) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setEntityWriter(entityWriterClass);
+            }
+        });
     }
 
 
-    public InterfaceConfigBuilder setMethodsConsumes(String... mimeTypes) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setConsumes(mimeTypes);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsCoalesced(final boolean coalesced) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setCoalesced(coalesced);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsDeserializer(Class<? extends Deserializer> deserializerClass) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setDeserializer(deserializerClass);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsDeadline(final int deadline) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setDeadline(deadline);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsProduces(String contentType) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setProduces(contentType);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsRateLimit(final RateLimit rateLimit) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setRateLimit(rateLimit);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsType(MethodType meth) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setType(meth);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsCachePolicy(final CachePolicy cachePolicy) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setCachePolicy(cachePolicy);
+            }
+        });
+    }
+
+    public InterfaceConfigBuilder setMethodsConsumes(final String... mimeTypes) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setConsumes(mimeTypes);
+            }
+        });
     }
 
+    public InterfaceConfigBuilder setMethodsDeserializer(final Class<? extends Deserializer> deserializerClass) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setDeserializer(deserializerClass);
+            }
+        });
+    }
 
-    public InterfaceConfigBuilder appendMethodsPath(String path) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.appendPath(path);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsProduces(final String contentType) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setProduces(contentType);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setMethodsEndPoint(String endPoint) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setEndPoint(endPoint);
-        }
-        return this;
+    public InterfaceConfigBuilder setMethodsType(final MethodType meth) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setType(meth);
+            }
+        });
+    }
+
+
+    public InterfaceConfigBuilder appendMethodsPath(final String path) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.appendPath(path);
+            }
+        });
+    }
+
+    public InterfaceConfigBuilder setMethodsEndPoint(final String endPoint) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setEndPoint(endPoint);
+            }
+        });
     }
 
 
@@ -172,144 +252,188 @@ class DefaultInterfaceConfigBuilder extends ConfigBuilder implements InterfaceCo
     /* PARAMS SETTINGS METHODS */
 
     public ParamConfigBuilder startMethodsExtraParamConfig() {
-        Iterator<MethodConfigBuilder> methodConfigBuilders = methodBuilders.values().iterator();
-        ParamConfigBuilder[] builders = new ParamConfigBuilder[methodBuilders.size()];
-        int i = 0;
-        while(methodConfigBuilders.hasNext()){
-            builders[i++] = methodConfigBuilders.next().startExtraParamConfig();
-        }
-        return new CompositeParamConfigBuilder(builders);
+        final CompositeParamConfigBuilder extraParamConfigBuilder = new CompositeParamConfigBuilder(new ParamConfigBuilder[0]);
+        apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                extraParamConfigBuilder.add(b.startExtraParamConfig());
+            }
+        });
+        return extraParamConfigBuilder;
     }
 
-    public InterfaceConfigBuilder setParamsSerializer(Class<? extends Serializer> paramSerializerClass) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setParamsSerializer(paramSerializerClass);
-        }
-        return this;
+    public InterfaceConfigBuilder setParamsSerializer(final Class<? extends Serializer> paramSerializerClass) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setParamsSerializer(paramSerializerClass);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setParamsEncoded(boolean encoded) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setParamsEncoded(encoded);
-        }
-        return this;
+    public InterfaceConfigBuilder setParamsEncoded(final boolean encoded) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setParamsEncoded(encoded);
+            }
+        });
     }
 
-    public InterfaceConfigBuilder setParamsListSeparator(String separator) {
-        for (MethodConfigBuilder b : methodBuilders.values()) {
-            b.setParamsListSeparator(separator);
-        }
-        return this;
+    public InterfaceConfigBuilder setParamsListSeparator(final String separator) {
+        return apply(new MethodsSetting() {
+            public void apply(MethodConfigBuilder b) {
+                b.setParamsListSeparator(separator);
+            }
+        });
+    }
+
+    private interface MethodsSetting {
+        void apply(MethodConfigBuilder b);
+    }
+
+    private interface ParamSetting {
+        void apply(ParamConfigBuilder builder);
     }
 
+    /**
+     * Applies its settings to the param config builders given so far, and replays them on the ones added later on.
+     */
     static final class CompositeParamConfigBuilder implements ParamConfigBuilder {
 
-        private final ParamConfigBuilder[] builders;
+        private final List<ParamConfigBuilder> builders;
+        private final List<ParamSetting> settings = new ArrayList<ParamSetting>();
 
         CompositeParamConfigBuilder(ParamConfigBuilder[] builders) {
-            this.builders = builders.clone();
+            this.builders = new ArrayList<ParamConfigBuilder>(Arrays.asList(builders));
         }
 
-        public ParamConfig build() throws Exception {
-            throw new UnsupportedOperationException();
+        synchronized void add(ParamConfigBuilder builder) {
+            for (ParamSetting setting : settings) {
+                setting.apply(builder);
+            }
+            builders.add(builder);
         }
 
-        public ParamConfigBuilder setName(String name) {
+        private synchronized ParamConfigBuilder apply(ParamSetting setting) {
+            settings.add(setting);
             for(ParamConfigBuilder builder : builders){
-                builder.setName(name);
+                setting.apply(builder);
             }
             return this;
         }
 
-        public ParamConfigBuilder setDefaultValue(String defaultValue) {
-            for(ParamConfigBuilder builder : builders){
-                builder.setDefaultValue(defaultValue);
-            }
-            return this;
+        public ParamConfig build() throws Exception {
+            throw new UnsupportedOperationException();
         }
 
-        public ParamConfigBuilder setType(ParamType type) {
-            for(ParamConfigBuilder builder : builders){
-                builder.setType(type);
-            }
-            return this;
+        public ParamConfigBuilder setName(final String name) {
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.setName(name);
+                }
+            });
         }
 
-        public ParamConfigBuilder setListSeparator(String listSeparator) {
-            for(ParamConfigBuilder builder : builders){
-                builder.setListSeparator(listSeparator);
-            }
-            return this;
+        public ParamConfigBuilder setDefaultValue(final String defaultValue) {
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.setDefaultValue(defaultValue);
+                }
+            });
         }
 
-        public ParamConfigBuilder setEncoded(boolean encoded) {
-            for(ParamConfigBuilder builder : builders){
-                builder.setEncoded(encoded);
-            }
-            return this;
+        public ParamConfigBuilder setType(final ParamType type) {
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.setType(type);
+                }
+            });
         }
 
-        public ParamConfigBuilder setMetaDatas(Map<String, Object> metadatas) {
-            for(ParamConfigBuilder builder : builders){
-                builder.setMetaDatas(metadatas);
-            }
-            return this;
+        public ParamConfigBuilder setListSeparator(final String listSeparator) {
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.setListSeparator(listSeparator);
+                }
+            });
         }
 
-        public ParamConfigBuilder setSerializer(Class<? extends Serializer> serializerClass) {
-            for(ParamConfigBuilder builder : builders){
-                builder.setSerializer(serializerClass);
-            }
-            return this;
+        public ParamConfigBuilder setEncoded(final boolean encoded) {
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.setEncoded(encoded);
+                }
+            });
+        }
+
+        public ParamConfigBuilder setMetaDatas(final Map<String, Object> metadatas) {
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.setMetaDatas(metadatas);
+                }
+            });
+        }
+
+        public ParamConfigBuilder setSerializer(final Class<? extends Serializer> serializerClass) {
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.setSerializer(serializerClass);
+                }
+            });
         }
 
         public ParamConfigBuilder forCookie() {
-            for(ParamConfigBuilder builder : builders){
-                builder.forCookie();
-            }
-            return this;
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.forCookie();
+                }
+            });
         }
 
         public ParamConfigBuilder forQuery() {
-            for(ParamConfigBuilder builder : builders){
-                builder.forQuery();
-            }
-            return this;
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.forQuery();
+                }
+            });
         }
 
         public ParamConfigBuilder forPath() {
-            for(ParamConfigBuilder builder : builders){
-                builder.forPath();
-            }
-            return this;
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.forPath();
+                }
+            });
         }
 
         public ParamConfigBuilder forForm() {
-            for(ParamConfigBuilder builder : builders){
-                builder.forForm();
-            }
-            return this;
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.forForm();
+                }
+            });
         }
 
         public ParamConfigBuilder forHeader() {
-            for(ParamConfigBuilder builder : builders){
-                builder.forHeader();
-            }
-            return this;
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.forHeader();
+                }
+            });
         }
 
         public ParamConfigBuilder forMatrix() {
-            for(ParamConfigBuilder builder : builders){
-                builder.forMatrix();
-            }
-            return this;
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.forMatrix();
+                }
+            });
         }
 
         public ParamConfigBuilder forMultiPart() {
-            for(ParamConfigBuilder builder : builders){
-                builder.forMultiPart();
-            }
-            return this;
+            return apply(new ParamSetting() {
+                public void apply(ParamConfigBuilder builder) {
+                    builder.forMultiPart();
+                }
+            });
         }
 
 
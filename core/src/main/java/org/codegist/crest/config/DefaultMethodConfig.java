@@ -41,6 +41,11 @@ class DefaultMethodConfig implements MethodConfig {
     private final int socketTimeout;
     private final int connectionTimeout;
     private final EntityWriter entityWriter;
+    private final boolean coalesced;
+    private final Collapse collapse;
+    private final CachePolicy cachePolicy;
+    private final int deadline;
+    private final RateLimit rateLimit;
     private final RequestInterceptor requestInterceptor;
     private final ResponseHandler responseHandler;
     private final ErrorHandler errorHandler;
@@ -49,7 +54,7 @@ class DefaultMethodConfig implements MethodConfig {
     private final ParamConfig[] extraParams;
     private final ParamConfig[] methodParamConfigs;
 
-    DefaultMethodConfig(Charset charset, Method method, PathTemplate path, String produces, String[] consumes, MethodType type, int socketTimeout, int connectionTimeout, EntityWriter entityWriter, RequestInterceptor requestInterceptor, ResponseHandler responseHandler, ErrorHandler errorHandler, RetryHandler retryHandler, Deserializer[] deserializers, ParamConfig[] methodParamConfigs, ParamConfig[] extraParams) {
+    DefaultMethodConfig(Charset charset, Method method, PathTemplate path, String produces, String[] consumes, MethodType type, int socketTimeout, int connectionTimeout, int deadline, RateLimit rateLimit, EntityWriter entityWriter, boolean coalesced, Collapse collapse, CachePolicy cachePolicy, RequestInterceptor requestInterceptor, ResponseHandler responseHandler, ErrorHandler errorHandler, RetryHandler retryHandler, Deserializer[] deserializers, ParamConfig[] methodParamConfigs, ParamConfig[] extraParams) {
         this.charset = charset;
         this.method = method;
         this.path = path;
@@ -59,6 +64,11 @@ class DefaultMethodConfig implements MethodConfig {
         this.socketTimeout = socketTimeout;
         this.connectionTimeout = connectionTimeout;
         this.entityWriter = entityWriter;
+        this.coalesced = coalesced;
+        this.collapse = collapse;
+        this.cachePolicy = cachePolicy;
+        this.deadline = deadline;
+        this.rateLimit = rateLimit;
         this.requestInterceptor = requestInterceptor;
         this.responseHandler = responseHandler;
         this.errorHandler = errorHandler;
@@ -108,6 +118,26 @@ class DefaultMethodConfig implements MethodConfig {
         return entityWriter;
     }
 
+    public int getDeadline() {
+        return deadline;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public boolean isCoalesced() {
+        return coalesced;
+    }
+
+    public Collapse getCollapse() {
+        return collapse;
+    }
+
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
     public RequestInterceptor getRequestInterceptor() {
         return requestInterceptor;
     }
@@ -72,6 +72,11 @@ class DefaultMethodConfigBuilder extends ConfigBuilder implements MethodConfigBu
     private Class<? extends ErrorHandler> errorHandler = ErrorDelegatorHandler.class;
     private Class<? extends RetryHandler> retryHandler = MaxAttemptRetryHandler.class;
     private Class<? extends EntityWriter> entityWriter = null;
+    private Boolean coalesced = false;
+    private Integer deadline = 0;
+    private RateLimit rateLimit = null;
+    private Collapse collapse = null;
+    private CachePolicy cachePolicy = null;
     private final List<Class<? extends Deserializer>> deserializers = new ArrayList<Class<? extends Deserializer>>();
     private final List<String> pathSegments = new ArrayList<String>();
     private final List<String> consumes = new ArrayList<String>(asList("*/*"));
@@ -99,6 +104,10 @@ class DefaultMethodConfigBuilder extends ConfigBuilder implements MethodConfigBu
         this.errorHandler = override(METHOD_CONFIG_DEFAULT_ERROR_HANDLER, this.errorHandler);
         this.retryHandler = override(METHOD_CONFIG_DEFAULT_RETRY_HANDLER, this.retryHandler);
         this.entityWriter = override(METHOD_CONFIG_DEFAULT_ENTITY_WRITER, this.entityWriter);
+        this.coalesced = override(METHOD_CONFIG_DEFAULT_COALESCED, this.coalesced);
+        this.deadline = override(METHOD_CONFIG_DEFAULT_DEADLINE, this.deadline);
+        this.rateLimit = override(METHOD_CONFIG_DEFAULT_RATE_LIMIT, this.rateLimit);
+        this.cachePolicy = override(METHOD_CONFIG_DEFAULT_CACHE_POLICY, this.cachePolicy);
         this.extraParams = override(METHOD_CONFIG_DEFAULT_EXTRA_PARAMS, new ParamConfig[0]);
 
         List<Class<? extends Deserializer>> pDeserializers = override(METHOD_CONFIG_DEFAULT_DESERIALIZERS, this.deserializers);
@@ -138,7 +147,12 @@ class DefaultMethodConfigBuilder extends ConfigBuilder implements MethodConfigBu
                 meth,
                 socketTimeout,
                 connectionTimeout,
+                deadline,
+                rateLimit,
                 getEntityWriter(allParams),
+                coalesced,
+                collapse,
+                cachePolicy,
                 instantiate(requestInterceptor),
                 instantiate(responseHandler),
                 instantiate(errorHandler),
@@ -279,6 +293,31 @@ class DefaultMethodConfigBuilder extends ConfigBuilder implements MethodConfigBu
         return this;
     }
 
+    public MethodConfigBuilder setCoalesced(boolean coalesced) {
+        this.coalesced = coalesced;
+        return this;
+    }
+
+    public MethodConfigBuilder setCollapse(Collapse collapse) {
+        this.collapse = collapse;
+        return this;
+    }
+
+    public MethodConfigBuilder setCachePolicy(CachePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+        return this;
+    }
+
+    public MethodConfigBuilder setDeadline(int deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    public MethodConfigBuilder setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
     /* PARAMS SETTINGS METHODS */
 
     public MethodConfigBuilder setParamsSerializer(Class<? extends Serializer> serializerClass) {
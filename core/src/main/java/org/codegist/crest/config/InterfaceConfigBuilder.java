@@ -106,6 +106,34 @@ public interface InterfaceConfigBuilder {
      * @return current builder
      */
     InterfaceConfigBuilder setMethodsEntityWriter(Class<? extends EntityWriter> entityWriterClass);
+
+    /**
+     * Indicates whether concurrent identical calls of all REST interface's methods should share a single network round-trip
+     * @param coalesced whether concurrent identical calls should be coalesced
+     * @return current builder
+     */
+    InterfaceConfigBuilder setMethodsCoalesced(boolean coalesced);
+
+    /**
+     * Indicates the deadline of all REST interface's methods calls, bounding each call including all its retry attempts
+     * @param deadline the deadline in milliseconds for all REST interface's methods, 0 for none
+     * @return current builder
+     */
+    InterfaceConfigBuilder setMethodsDeadline(int deadline);
+
+    /**
+     * Indicates the rate at which each of the REST interface's methods can be called
+     * @param rateLimit the rate limit of each REST interface's methods, null for none
+     * @return current builder
+     */
+    InterfaceConfigBuilder setMethodsRateLimit(RateLimit rateLimit);
+
+    /**
+     * Indicates that the return values of each of the REST interface's methods should be cached
+     * @param cachePolicy the result cache policy of each REST interface's methods, null for none
+     * @return current builder
+     */
+    InterfaceConfigBuilder setMethodsCachePolicy(CachePolicy cachePolicy);
                                                                   
     /**
      * Binds a deserializer for all interface method return types
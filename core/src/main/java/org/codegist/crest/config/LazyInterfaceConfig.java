@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config;
+
+import org.codegist.common.log.Logger;
+import org.codegist.crest.CRestException;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * {@link org.codegist.crest.config.InterfaceConfig} building each method config on first access.
+ * <p>A method config is built exactly once, by the first caller, concurrent callers waiting for it to complete. Once built, it is read without locking.</p>
+ * <p>A failed build is not retried, its failure being rethrown on every later access: configuration errors don't go away by themselves, and the method config builder of the failed attempt already holds part of the method's settings, which a second attempt would apply twice.</p>
+ * @author laurent.gilles@codegist.org
+ */
+abstract class LazyInterfaceConfig implements InterfaceConfig {
+
+    private static final Logger LOGGER = Logger.getLogger(LazyInterfaceConfig.class);
+    private final ConcurrentMap<Method, FutureTask<MethodConfig>> configs = new ConcurrentHashMap<Method, FutureTask<MethodConfig>>();
+    private final Class<?> interfaze;
+    private final Set<Method> methods;
+
+    LazyInterfaceConfig(Class<?> interfaze) {
+        this.interfaze = interfaze;
+        this.methods = new HashSet<Method>(Arrays.asList(interfaze.getDeclaredMethods()));
+    }
+
+    /**
+     * Builds the given method config, called once per method.
+     * @param meth method to build the config for
+     * @return the method config
+     * @throws Exception any exception thrown while building the config
+     */
+    abstract MethodConfig buildMethodConfig(Method meth) throws Exception;
+
+    public Class<?> getInterface() {
+        return interfaze;
+    }
+
+    public MethodConfig getMethodConfig(Method meth) {
+        FutureTask<MethodConfig> config = configs.get(meth);
+        if(config == null) {
+            if(!methods.contains(meth)) {
+                return null;
+            }
+            FutureTask<MethodConfig> newConfig = new FutureTask<MethodConfig>(new Build(meth));
+            config = configs.putIfAbsent(meth, newConfig);
+            if(config == null) {
+                config = newConfig;
+                newConfig.run();
+            }
+        }
+        try {
+            return config.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw CRestException.handle(e);
+        } catch (ExecutionException e) {
+            throw CRestException.handle(e.getCause());
+        }
+    }
+
+    /**
+     * Builds all the method configs in the background.
+     * @param executor executor to build the method configs with
+     */
+    void prewarm(Executor executor) {
+        executor.execute(new Runnable() {
+            public void run() {
+                for(Method meth : methods) {
+                    try {
+                        getMethodConfig(meth);
+                    } catch (RuntimeException e) {
+                        LOGGER.debug(e, "Failed to pre-build config of method %s", meth);
+                    }
+                }
+            }
+        });
+    }
+
+    private final class Build implements Callable<MethodConfig> {
+        private final Method meth;
+
+        private Build(Method meth) {
+            this.meth = meth;
+        }
+
+        public MethodConfig call() throws Exception {
+            return buildMethodConfig(meth);
+        }
+    }
+}
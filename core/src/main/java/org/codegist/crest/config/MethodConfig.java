@@ -216,6 +216,58 @@ public interface MethodConfig {
      */
     String METHOD_CONFIG_DEFAULT_ENTITY_WRITER = MethodConfig.class.getName() + "#entity-writer";
 
+    /**
+     * <p>CRestConfig property to override the default request coalescing behavior.</p>
+     * <p>Can be overridden by setting this property as follow:</p>
+     * <code><pre>
+     * Boolean coalesced = ...;
+     * CRest crest = CRest.property(MethodConfig.METHOD_CONFIG_DEFAULT_COALESCED, coalesced).buid();
+     * </pre></code>
+     * <p>Default is false</p>
+     * <p>Expects a {@link java.lang.Boolean}</p>
+     * @see org.codegist.crest.annotate.Coalesced
+     */
+    String METHOD_CONFIG_DEFAULT_COALESCED = MethodConfig.class.getName() + "#coalesced";
+
+    /**
+     * <p>CRestConfig property to override the default call deadline.</p>
+     * <p>Can be overridden by setting this property as follow:</p>
+     * <code><pre>
+     * Integer deadline = ...;
+     * CRest crest = CRest.property(MethodConfig.METHOD_CONFIG_DEFAULT_DEADLINE, deadline).buid();
+     * </pre></code>
+     * <p>Default is 0, meaning no deadline</p>
+     * <p>Expects a {@link java.lang.Integer} that represents milliseconds</p>
+     * @see org.codegist.crest.annotate.Deadline
+     */
+    String METHOD_CONFIG_DEFAULT_DEADLINE = MethodConfig.class.getName() + "#deadline";
+
+    /**
+     * <p>CRestConfig property to set a default rate limit, each method getting its own limit.</p>
+     * <p>Can be overridden by setting this property as follow:</p>
+     * <code><pre>
+     * RateLimit rateLimit = ...;
+     * CRest crest = CRest.property(MethodConfig.METHOD_CONFIG_DEFAULT_RATE_LIMIT, rateLimit).buid();
+     * </pre></code>
+     * <p>Default is null, meaning no rate limit</p>
+     * <p>Expects a {@link org.codegist.crest.config.RateLimit}</p>
+     * @see org.codegist.crest.annotate.RateLimited
+     */
+    String METHOD_CONFIG_DEFAULT_RATE_LIMIT = MethodConfig.class.getName() + "#rate-limit";
+
+    /**
+     * <p>CRestConfig property to set a default result cache policy, each method getting its own cache.</p>
+     * <p>Can be overridden by setting this property as follow:</p>
+     * <code><pre>
+     * CachePolicy cachePolicy = ...;
+     * CRest crest = CRest.property(MethodConfig.METHOD_CONFIG_DEFAULT_CACHE_POLICY, cachePolicy).buid();
+     * </pre></code>
+     * <p>Default is null, meaning results are not cached</p>
+     * <p>Expects a {@link org.codegist.crest.config.CachePolicy}</p>
+     * @see org.codegist.crest.annotate.Cached
+     */
+    String METHOD_CONFIG_DEFAULT_CACHE_POLICY = MethodConfig.class.getName() + "#cache-policy";
+
     /**
      * Indicates the encoding used for parameter url-encoding and request entity
      */
@@ -261,6 +313,16 @@ public interface MethodConfig {
      */
     int getConnectionTimeout();
 
+    /**
+     * Method's call deadline in milliseconds, bounding the whole call including all retry attempts, 0 if none
+     */
+    int getDeadline();
+
+    /**
+     * Method's rate limit, null if none
+     */
+    RateLimit getRateLimit();
+
     /**
      * Method's return handler
      */
@@ -286,6 +348,21 @@ public interface MethodConfig {
      */
     EntityWriter getEntityWriter();
 
+    /**
+     * Whether concurrent identical idempotent calls share a single network round-trip
+     */
+    boolean isCoalesced();
+
+    /**
+     * Method's request collapsing settings, null if concurrent calls are not collapsed
+     */
+    Collapse getCollapse();
+
+    /**
+     * Method's result cache policy, null if results are not cached
+     */
+    CachePolicy getCachePolicy();
+
     /**
      * Method's extra parameters that will be added by default for all requests
      */
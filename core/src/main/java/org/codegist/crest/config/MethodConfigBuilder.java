@@ -154,6 +154,41 @@ public interface MethodConfigBuilder {
      */
     MethodConfigBuilder setEntityWriter(Class<? extends EntityWriter> entityWriterClass);
 
+    /**
+     * Indicates whether concurrent identical calls of the REST interface's method should share a single network round-trip
+     * @param coalesced whether concurrent identical calls should be coalesced
+     * @return current builder
+     */
+    MethodConfigBuilder setCoalesced(boolean coalesced);
+
+    /**
+     * Indicates that concurrent calls of the REST interface's method should be merged into calls of a bulk method
+     * @param collapse the request collapsing settings, null for none
+     * @return current builder
+     */
+    MethodConfigBuilder setCollapse(Collapse collapse);
+
+    /**
+     * Indicates that the REST interface's method return values should be cached
+     * @param cachePolicy the result cache policy, null for none
+     * @return current builder
+     */
+    MethodConfigBuilder setCachePolicy(CachePolicy cachePolicy);
+
+    /**
+     * Indicates the deadline of the REST interface's method calls, bounding each call including all its retry attempts
+     * @param deadline the deadline in milliseconds the REST interface's method will use, 0 for none
+     * @return current builder
+     */
+    MethodConfigBuilder setDeadline(int deadline);
+
+    /**
+     * Indicates the rate at which the REST interface's method can be called
+     * @param rateLimit the rate limit of the REST interface's method, null for none
+     * @return current builder
+     */
+    MethodConfigBuilder setRateLimit(RateLimit rateLimit);
+
     /**
      * Binds a parameter serializer for the REST interface method's parameters
      * @param serializerClass parameter serializer of the REST interface method's parameters
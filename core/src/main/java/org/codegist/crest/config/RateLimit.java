@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config;
+
+import org.codegist.common.lang.ToStringBuilder;
+
+/**
+ * Client-side rate limit, a number of permits granted over a period of time.
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.annotate.RateLimited
+ */
+public final class RateLimit {
+
+    private final int permits;
+    private final long period;
+
+    /**
+     * @param permits number of requests permitted per period, also being the maximum burst size
+     * @param period period in milliseconds
+     */
+    public RateLimit(int permits, long period) {
+        if(permits <= 0 || period <= 0) {
+            throw new IllegalArgumentException("Permits and period must be strictly positive: permits=" + permits + ", period=" + period);
+        }
+        this.permits = permits;
+        this.period = period;
+    }
+
+    /**
+     * @return number of requests permitted per period
+     */
+    public int getPermits() {
+        return permits;
+    }
+
+    /**
+     * @return period in milliseconds
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RateLimit that = (RateLimit) o;
+        return permits == that.permits && period == that.period;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * permits + (int) (period ^ (period >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("permits", permits)
+                .append("period", period)
+                .toString();
+    }
+}
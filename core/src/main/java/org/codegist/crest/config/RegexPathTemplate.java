@@ -28,14 +28,17 @@ import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import static org.codegist.common.lang.Validate.isTrue;
 
 /**
- * Regex driven PathTemplate
+ * Regex driven PathTemplate.
+ * <p>The url template is compiled once into its literal segments and placeholders, builders only hold the merged values and write the url in a single pass on build.</p>
  * @author laurent.gilles@codegist.org
  */
 public final class RegexPathTemplate implements PathTemplate {
@@ -44,11 +47,24 @@ public final class RegexPathTemplate implements PathTemplate {
     private static final Pattern DEFAULT_VALIDATION_PATTERN = Pattern.compile("^[^/]+$");
 
     private final String urlTemplate;
-    private final Map<String, PathTemplate> templates;
+    private final String[] literals;
+    private final PathTemplate[] templates;
+    private final Map<String, Integer> indexes;
+    private final int literalsLength;
 
-    private RegexPathTemplate(String urlTemplate, Map<String, PathTemplate> templates) {
+    private RegexPathTemplate(String urlTemplate, List<String> literals, List<PathTemplate> templates) {
         this.urlTemplate = urlTemplate;
-        this.templates = templates;
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.templates = templates.toArray(new PathTemplate[templates.size()]);
+        this.indexes = new HashMap<String, Integer>();
+        for (int i = 0; i < this.templates.length; i++) {
+            this.indexes.put(this.templates[i].name, i);
+        }
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.literalsLength = length;
     }
 
     /**
@@ -60,24 +76,23 @@ public final class RegexPathTemplate implements PathTemplate {
 
     private final class DefaultPathBuilder implements PathBuilder {
 
-        private final Map<String, PathTemplate> remainingTemplates = new HashMap<String, PathTemplate>(templates);
-        private final StringBuilder url = new StringBuilder(urlTemplate);
+        private final String[] values = new String[templates.length];
         private final Charset charset;
+        private int remaining = templates.length;
+        private int valuesLength;
 
         private DefaultPathBuilder(Charset charset) {
             this.charset = charset;
         }
 
         public PathBuilder merge(String templateName, String templateValue, boolean encoded) throws UnsupportedEncodingException {
-            Validate.isTrue(remainingTemplates.containsKey(templateName), "Path parameters is unknown or has already been provided for base uri '%s' (template:%s)! Param: %s", url, urlTemplate, templateName);
-            PathTemplate template = remainingTemplates.remove(templateName);
-            template.validate(templateValue);
-            String tmpl = "{" + templateName + "}";
-
-            int start;
-            while((start = url.indexOf(tmpl)) != -1) {
-                url.replace(start, start + tmpl.length(), encode(templateValue, encoded));
-            }
+            Integer index = indexes.get(templateName);
+            Validate.isTrue(index != null && values[index] == null, "Path parameters is unknown or has already been provided for base uri '%s' (template:%s)! Param: %s", this, urlTemplate, templateName);
+            templates[index].validate(templateValue);
+            String value = encode(templateValue, encoded);
+            values[index] = value;
+            valuesLength += value.length();
+            remaining--;
             return this;
         }
 
@@ -86,22 +101,46 @@ public final class RegexPathTemplate implements PathTemplate {
         }
 
         public String build() {
-            State.isTrue(remainingTemplates.isEmpty(), "Not all path templates have been merged! (url=%s)", url);
-            return url.toString();
+            State.isTrue(remaining == 0, "Not all path templates have been merged! (url=%s)", this);
+            return toString();
+        }
+
+        /**
+         * @return the url merged so far, placeholders not yet merged being left as is
+         */
+        @Override
+        public String toString() {
+            StringBuilder url = new StringBuilder(literalsLength + valuesLength);
+            for (int i = 0; i < values.length; i++) {
+                url.append(literals[i]);
+                if (values[i] != null) {
+                    url.append(values[i]);
+                } else {
+                    url.append('{').append(templates[i].name).append('}');
+                }
+            }
+            return url.append(literals[values.length]).toString();
         }
     }
 
     private static final class PathTemplate {
         private final String name;
         private final Pattern validator;
+        private final boolean defaultValidator;
 
         private PathTemplate(String name, Pattern validator) {
             this.name = name;
             this.validator = validator;
+            this.defaultValidator = validator == DEFAULT_VALIDATION_PATTERN;
         }
 
         public void validate(String value) {
-            Validate.isTrue(validator.matcher(value).matches(), "Path param %s=%s don't matches expected format %s" , name,value,validator);
+            Validate.isTrue(defaultValidator ? isSingleSegment(value) : validator.matcher(value).matches(), "Path param %s=%s don't matches expected format %s" , name,value,validator);
+        }
+
+        /* same as DEFAULT_VALIDATION_PATTERN without going through a Matcher */
+        private static boolean isSingleSegment(String value) {
+            return value.length() > 0 && value.indexOf('/') == -1;
         }
     }
 
@@ -112,7 +151,10 @@ public final class RegexPathTemplate implements PathTemplate {
      */
     public static RegexPathTemplate create(String urlTemplate) {
         StringBuffer baseUrl = new StringBuffer();
-        Map<String, PathTemplate> templates = new HashMap<String, PathTemplate>();
+        StringBuilder literal = new StringBuilder();
+        List<String> literals = new ArrayList<String>();
+        List<PathTemplate> templates = new ArrayList<PathTemplate>();
+        Set<String> names = new HashSet<String>();
         CurlyBraceTokenizer t = new CurlyBraceTokenizer(urlTemplate);
         while (t.hasNext()) {
             String tok = t.next();
@@ -130,16 +172,20 @@ public final class RegexPathTemplate implements PathTemplate {
                     validationPattern = DEFAULT_VALIDATION_PATTERN;
                 }
                 Validate.isTrue(TEMPLATE_NAME_PATTERN.matcher(name).matches(), "Template name '%s' doesn't match the expected format: %s", name, TEMPLATE_NAME_PATTERN);
-                Validate.isFalse(templates.containsKey(name), "Template name '%s' is already defined!", name);
-                templates.put(name, new PathTemplate(name, validationPattern));
+                Validate.isTrue(names.add(name), "Template name '%s' is already defined!", name);
+                templates.add(new PathTemplate(name, validationPattern));
+                literals.add(literal.toString());
+                literal.setLength(0);
                 baseUrl.append("{").append(name).append("}");
             } else {
+                literal.append(tok);
                 baseUrl.append(tok);
             }
         }
+        literals.add(literal.toString());
         String url = baseUrl.toString();
         isTrue(!Urls.hasQueryString(url), "Given url contains a query string: %s", url);
-        return new RegexPathTemplate(url, templates);
+        return new RegexPathTemplate(url, literals, templates);
     }
 
 
@@ -38,8 +38,12 @@ public final class CRestAnnotations {
 
     public static Map<Class<? extends Annotation>, Class<? extends AnnotationHandler>> getMapping(){
         Map<Class<? extends Annotation>, Class<? extends AnnotationHandler>> handlers = new HashMap<Class<? extends Annotation>, Class<? extends AnnotationHandler>>();
+        handlers.put(Cached.class, CachedAnnotationHandler.class);
+        handlers.put(Coalesced.class, CoalescedAnnotationHandler.class);
+        handlers.put(Collapsed.class, CollapsedAnnotationHandler.class);
         handlers.put(ConnectionTimeout.class, ConnectionTimeoutAnnotationHandler.class);
         handlers.put(Consumes.class, ConsumesAnnotationHandler.class);
+        handlers.put(Deadline.class, DeadlineAnnotationHandler.class);
         handlers.put(CookieParam.class, CookieParamAnnotationHandler.class);
         handlers.put(CookieParams.class, CookieParamsAnnotationHandler.class);
         handlers.put(DELETE.class, DELETEAnnotationHandler.class);
@@ -68,6 +72,7 @@ public final class CRestAnnotations {
         handlers.put(PUT.class, PUTAnnotationHandler.class);
         handlers.put(QueryParam.class, QueryParamAnnotationHandler.class);
         handlers.put(QueryParams.class, QueryParamsAnnotationHandler.class);
+        handlers.put(RateLimited.class, RateLimitedAnnotationHandler.class);
         handlers.put(RequestInterceptor.class, RequestInterceptorAnnotationHandler.class);
         handlers.put(ResponseHandler.class, ResponseHandlerAnnotationHandler.class);
         handlers.put(RetryHandler.class, RetryHandlerAnnotationHandler.class);
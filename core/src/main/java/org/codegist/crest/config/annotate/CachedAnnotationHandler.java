@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config.annotate;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.annotate.Cached;
+import org.codegist.crest.config.CachePolicy;
+import org.codegist.crest.config.InterfaceConfigBuilder;
+import org.codegist.crest.config.MethodConfigBuilder;
+import org.codegist.crest.util.ComponentFactory;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+class CachedAnnotationHandler extends NoOpAnnotationHandler<Cached> {
+
+    private final CRestConfig crestConfig;
+
+    CachedAnnotationHandler(CRestConfig crestConfig) {
+        this.crestConfig = crestConfig;
+    }
+
+    @Override
+    public void handleInterfaceAnnotation(Cached annotation, InterfaceConfigBuilder builder) throws Exception {
+        builder.setMethodsCachePolicy(toCachePolicy(annotation));
+    }
+
+    @Override
+    public void handleMethodAnnotation(Cached annotation, MethodConfigBuilder builder) throws Exception {
+        builder.setCachePolicy(toCachePolicy(annotation));
+    }
+
+    private CachePolicy toCachePolicy(Cached annotation) throws Exception {
+        return new CachePolicy(annotation.value(), annotation.maxSize(), annotation.maxWeight(), ComponentFactory.instantiate(annotation.weigher(), crestConfig), annotation.staleWhileRevalidate(), annotation.negativeTtl());
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config.annotate;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.annotate.Collapsed;
+import org.codegist.crest.config.Collapse;
+import org.codegist.crest.config.MethodConfigBuilder;
+import org.codegist.crest.util.ComponentFactory;
+import org.codegist.crest.util.ItemKeyExtractor;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+class CollapsedAnnotationHandler extends NoOpAnnotationHandler<Collapsed> {
+
+    private final CRestConfig crestConfig;
+
+    CollapsedAnnotationHandler(CRestConfig crestConfig) {
+        this.crestConfig = crestConfig;
+    }
+
+    @Override
+    public void handleMethodAnnotation(Collapsed annotation, MethodConfigBuilder builder) throws Exception {
+        ItemKeyExtractor keyExtractor = ItemKeyExtractor.class.equals(annotation.key()) ? null : ComponentFactory.instantiate(annotation.key(), crestConfig);
+        builder.setCollapse(new Collapse(annotation.into(), annotation.window(), annotation.maxBatchSize(), keyExtractor));
+    }
+
+}
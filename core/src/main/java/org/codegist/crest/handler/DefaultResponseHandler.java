@@ -21,8 +21,8 @@
 package org.codegist.crest.handler;
 
 import org.codegist.crest.CRestConfig;
-import org.codegist.crest.CRestException;
 import org.codegist.crest.io.Response;
+import org.codegist.crest.io.ResponseStatusException;
 
 /**
  * @author Laurent Gilles (laurent.gilles@codegist.org)
@@ -40,8 +40,9 @@ public class DefaultResponseHandler implements ResponseHandler {
      * @inheritDoc
      */
     public Object handle(Response response) throws Exception {
-        if(response.getStatusCode() >= minErrorStatusCode) {
-            throw new CRestException("Response Status Code:" + response.getStatusCode() + "\nResponse: " + response.to(String.class));
+        int statusCode = response.getStatusCode();
+        if(statusCode >= minErrorStatusCode) {
+            throw new ResponseStatusException("Response Status Code:" + statusCode + "\nResponse: " + response.to(String.class), statusCode);
         }
         return response.deserialize();
     }
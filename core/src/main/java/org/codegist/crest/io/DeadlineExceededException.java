@@ -0,0 +1,42 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io;
+
+import org.codegist.crest.CRestException;
+
+/**
+ * Thrown when a call deadline is reached, either before an attempt is made or while it is in progress.
+ * <p>A call reaching its deadline while in progress fails with the timeout it has been given, which is then reported as the cause of this exception.</p>
+ * <p>Calls that passed their deadline are not retried.</p>
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.config.MethodConfig#getDeadline()
+ */
+public class DeadlineExceededException extends CRestException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io;
+
+import org.codegist.crest.CRestException;
+
+/**
+ * Thrown when a response status code denotes an error.
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.handler.DefaultResponseHandler
+ */
+public class ResponseStatusException extends CRestException {
+
+    private final int statusCode;
+
+    public ResponseStatusException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public ResponseStatusException(String message, Throwable cause, int statusCode) {
+        super(message, cause);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * @return the response status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Bounds the number of retries to a ratio of the number of requests, so that retries can't multiply the load put on an already struggling remote server.</p>
+ * <p>Each request deposits a fraction of a retry in the budget, and each retry withdraws a whole one. A minimum number of retries per second is always granted so that a low traffic still gets retried.</p>
+ * @author laurent.gilles@codegist.org
+ */
+class RetryBudget {
+
+    private final double ratio;
+    private final double maxBalance;
+    private final int minRetriesPerSecond;
+    private final Lock lock = new ReentrantLock();
+    private double balance = 0;
+    private long second = -1;
+    private int reserved = 0;
+
+    /**
+     * @param percent retries to requests ratio, in percent
+     * @param minRetriesPerSecond number of retries granted per second regardless of the ratio
+     */
+    RetryBudget(int percent, int minRetriesPerSecond) {
+        this.ratio = percent / 100d;
+        this.maxBalance = Math.max(1, ratio * 1000);
+        this.minRetriesPerSecond = minRetriesPerSecond;
+    }
+
+    void deposit() {
+        lock.lock();
+        try {
+            balance = Math.min(maxBalance, balance + ratio);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean tryWithdraw(long now) {
+        lock.lock();
+        try {
+            long current = now / 1000;
+            if(current != second) {
+                second = current;
+                reserved = minRetriesPerSecond;
+            }
+            if(reserved > 0) {
+                reserved--;
+                return true;
+            }
+            if(balance >= 1) {
+                balance -= 1;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
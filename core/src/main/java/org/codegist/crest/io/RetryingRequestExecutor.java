@@ -21,24 +21,112 @@
 package org.codegist.crest.io;
 
 import org.codegist.common.lang.Disposables;
+import org.codegist.common.log.Logger;
+import org.codegist.crest.CRestConfig;
 import org.codegist.crest.handler.RetryHandler;
+import org.codegist.crest.util.Requests;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.codegist.crest.util.Headers.getHeader;
+import static org.codegist.crest.util.Headers.parseDate;
+
 
 /**
  * <p>RequestExecutor implementation that used the request method config's retry handler to decides whether a failed request should be retried or not.</p>
+ * <p>By default, failed requests are retried immediately, as long as the retry handler allows it, except for 429 and 503 responses carrying a <code>Retry-After</code> header: they are always retried after the delay the remote server asked for, or not retried at all if it exceeds {@link org.codegist.crest.io.RetryingRequestExecutor#MAX_RETRY_AFTER_PROP}.</p>
+ * <p>When {@link org.codegist.crest.io.RetryingRequestExecutor#BACKOFF_BASE_PROP} is set, retries are also spaced out by an exponentially growing, randomized delay (decorrelated jitter), stretched to the <code>Retry-After</code> header if any. When {@link org.codegist.crest.io.RetryingRequestExecutor#RETRY_BUDGET_PERCENT_PROP} is set, retries are also bounded by a retry budget shared by all the requests, once exhausted, failed requests are not retried anymore.</p>
  * @author laurent.gilles@codegist.org
  * @see org.codegist.crest.config.MethodConfig#getRetryHandler() 
  */
 public class RetryingRequestExecutor implements RequestExecutor {
 
+    /**
+     * <p>CRestConfig property to set the base delay in milliseconds between two attempts. Set to 0 to disable the exponential backoff, <code>Retry-After</code> headers being honored regardless.</p>
+     * <p>Default is 0, retries are only delayed by <code>Retry-After</code> headers.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String BACKOFF_BASE_PROP = RetryingRequestExecutor.class.getName() + "#backoff-base";
+
+    /**
+     * <p>CRestConfig property to set the maximum delay in milliseconds between two attempts.</p>
+     * <p>Default is 10000 milliseconds.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String BACKOFF_MAX_PROP = RetryingRequestExecutor.class.getName() + "#backoff-max";
+
+    /**
+     * <p>CRestConfig property to set the maximum <code>Retry-After</code> delay in milliseconds to honor, a request asked to be retried later than that is not retried.</p>
+     * <p>Default is 60000 milliseconds.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String MAX_RETRY_AFTER_PROP = RetryingRequestExecutor.class.getName() + "#max-retry-after";
+
+    /**
+     * <p>CRestConfig property to set the retry budget as a retries to requests ratio, in percent. Set to a negative value to disable the retry budget.</p>
+     * <p>Default is -1, retries are not budgeted.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String RETRY_BUDGET_PERCENT_PROP = RetryingRequestExecutor.class.getName() + "#retry-budget-percent";
+
+    /**
+     * <p>CRestConfig property to set the number of retries per second granted regardless of the retry budget. Only used when {@link org.codegist.crest.io.RetryingRequestExecutor#RETRY_BUDGET_PERCENT_PROP} is set.</p>
+     * <p>Default is 10.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String RETRY_BUDGET_MIN_PER_SECOND_PROP = RetryingRequestExecutor.class.getName() + "#retry-budget-min-per-second";
+
+    private static final Logger LOGGER = Logger.getLogger(RetryingRequestExecutor.class);
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final long DEFAULT_BACKOFF_MAX = 10000l;
+    private static final long DEFAULT_MAX_RETRY_AFTER = 60000l;
     private final RequestExecutor delegate;
     private final int minErrorStatusCode;
+    private final long backoffBase;
+    private final long backoffMax;
+    private final long maxRetryAfter;
+    private final long retryAfterCap;
+    private final RetryBudget retryBudget;
 
     /**
+     * Retries without backoff nor retry budget, only honoring <code>Retry-After</code> headers up to the default maximum of 60 seconds.
      * @param delegate request executor to delegate the requests execution to
+     * @param minErrorStatusCode minimum response status code considered as a failure
      */
     public RetryingRequestExecutor(RequestExecutor delegate, int minErrorStatusCode) {
+        this(delegate, minErrorStatusCode, 0, DEFAULT_BACKOFF_MAX, DEFAULT_MAX_RETRY_AFTER, null);
+    }
+
+    /**
+     * @param delegate request executor to delegate the requests execution to
+     * @param minErrorStatusCode minimum response status code considered as a failure
+     * @param crestConfig CRest configuration
+     */
+    public RetryingRequestExecutor(RequestExecutor delegate, int minErrorStatusCode, CRestConfig crestConfig) {
+        this(delegate, minErrorStatusCode,
+                crestConfig.get(BACKOFF_BASE_PROP, 0l),
+                crestConfig.get(BACKOFF_MAX_PROP, DEFAULT_BACKOFF_MAX),
+                crestConfig.get(MAX_RETRY_AFTER_PROP, DEFAULT_MAX_RETRY_AFTER),
+                newRetryBudget(crestConfig));
+    }
+
+    private static RetryBudget newRetryBudget(CRestConfig crestConfig) {
+        int percent = crestConfig.get(RETRY_BUDGET_PERCENT_PROP, -1);
+        if(percent < 0) {
+            return null;
+        }
+        return new RetryBudget(percent, crestConfig.get(RETRY_BUDGET_MIN_PER_SECOND_PROP, 10));
+    }
+
+    private RetryingRequestExecutor(RequestExecutor delegate, int minErrorStatusCode, long backoffBase, long backoffMax, long maxRetryAfter, RetryBudget retryBudget) {
         this.delegate = delegate;
         this.minErrorStatusCode = minErrorStatusCode;
+        this.backoffBase = backoffBase;
+        this.backoffMax = backoffMax;
+        this.maxRetryAfter = maxRetryAfter;
+        // Retry-After delays are capped just past the maximum honored one, still telling the too far ones apart
+        this.retryAfterCap = maxRetryAfter < Long.MAX_VALUE ? maxRetryAfter + 1 : maxRetryAfter;
+        this.retryBudget = retryBudget;
     }
 
     /**
@@ -49,7 +137,11 @@ public class RetryingRequestExecutor implements RequestExecutor {
         RequestException exception = null;
         Response response;
         int attemptCount = 1;
-        do {
+        long backoff = backoffBase;
+        if(retryBudget != null) {
+            retryBudget.deposit();
+        }
+        while(true) {
             Disposables.dispose(exception);
             response = null;
             try {
@@ -62,7 +154,36 @@ public class RetryingRequestExecutor implements RequestExecutor {
             } catch (RequestException e) {
                 exception = e;
             }
-        }while(retryHandler.retry(exception, ++attemptCount));
+            if(!retryHandler.retry(exception, ++attemptCount)) {
+                break;
+            }
+            long delay = retryAfterOf(exception, retryAfterCap);
+            if(backoffBase > 0) {
+                backoff = nextBackoff(backoff);
+                delay = Math.max(backoff, delay);
+            }
+            if(delay > maxRetryAfter) {
+                LOGGER.debug("Not retrying, remote server asked to retry in %d ms", delay);
+                break;
+            }
+            if(delay >= remainingTime(request)) {
+                LOGGER.debug("Not retrying, deadline would be reached before next attempt");
+                break;
+            }
+            if(retryBudget != null && !retryBudget.tryWithdraw(System.currentTimeMillis())) {
+                LOGGER.debug("Not retrying, retry budget exhausted");
+                break;
+            }
+            if(delay > 0) {
+                LOGGER.debug("Retrying in %d ms", delay);
+                try {
+                    sleep(delay);
+                } catch (RequestException e) {
+                    Disposables.dispose(exception);
+                    throw e;
+                }
+            }
+        }
 
         // if response is not null after all retries attempts have been exhausted (status code >= 400), then return the response
         if(response != null) {
@@ -71,4 +192,70 @@ public class RetryingRequestExecutor implements RequestExecutor {
 
         throw exception;
     }
+
+    /**
+     * Decorrelated jitter: picks a random delay between the base delay and three times the previous one.
+     */
+    private long nextBackoff(long previous) {
+        long upper = Math.min(backoffMax, previous * 3);
+        return Math.min(backoffMax, backoffBase + (long) (Math.random() * Math.max(0, upper - backoffBase)));
+    }
+
+    private static long remainingTime(Request request) {
+        try {
+            return Requests.getRemainingTime(request);
+        } catch (DeadlineExceededException e) {
+            return 0;
+        }
+    }
+
+    void sleep(long millis) throws RequestException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(e);
+        }
+    }
+
+    static long retryAfterOf(RequestException exception, long max) {
+        if(!exception.hasResponse()) {
+            return 0;
+        }
+        try {
+            Response response = exception.getResponse();
+            int status = response.getStatusCode();
+            if(status != 429 && status != 503) {
+                return 0;
+            }
+            String retryAfter = getHeader(response.getHeaderFields(), RETRY_AFTER);
+            return retryAfter != null ? parseRetryAfter(retryAfter.trim(), System.currentTimeMillis(), max) : 0;
+        } catch (Exception e) {
+            LOGGER.debug(e, "Failed to read Retry-After header");
+            return 0;
+        }
+    }
+
+    /**
+     * @param value <code>Retry-After</code> header value, either a number of seconds or an HTTP date
+     * @param now current time in milliseconds
+     * @param max maximum delay in milliseconds to return
+     * @return the delay in milliseconds, capped at the given maximum, 0 if none or not parseable
+     */
+    static long parseRetryAfter(String value, long now, long max) {
+        long delay;
+        if(value.matches("\\d+")) {
+            try {
+                delay = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                delay = Long.MAX_VALUE;
+            }
+        }else if(value.matches("-\\d+")) {
+            delay = 0;
+        }else{
+            long date = parseDate(value);
+            delay = date > 0 ? Math.max(0, date - now) : 0;
+        }
+        return Math.min(delay, max);
+    }
 }
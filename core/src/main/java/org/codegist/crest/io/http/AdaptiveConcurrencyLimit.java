@@ -0,0 +1,155 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Concurrency limit learnt from the observed round-trip times, following the gradient algorithm.</p>
+ * <p>A long term exponential moving average of the round-trip time is compared to each new sample: as long as the sample stays within a tolerance of the average the limit grows by a queue allowance, as the latency rises the limit is scaled down by the ratio of the two, down to half of it. Dropped calls (errors, overload responses) multiplicatively decrease the limit.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class AdaptiveConcurrencyLimit {
+
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int LONG_WINDOW = 600;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private int inFlight;
+    private double longRtt;
+    private long samples;
+
+    /**
+     * @param initialLimit limit to start with
+     * @param minLimit lower bound of the limit
+     * @param maxLimit upper bound of the limit
+     */
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Acquires an in-flight slot, waiting at most the given time for one to be available
+     * @param maxWait maximum time in milliseconds to wait, 0 to not wait at all
+     * @return whether a slot has been acquired
+     * @throws InterruptedException interrupted while waiting
+     */
+    boolean acquire(long maxWait) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+            while(inFlight >= (int) limit) {
+                if(nanos <= 0) {
+                    return false;
+                }
+                nanos = available.awaitNanos(nanos);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a slot, updating the limit with the call outcome
+     * @param rtt call round-trip time in nanoseconds
+     * @param dropped whether the call has been dropped
+     */
+    void release(long rtt, boolean dropped) {
+        lock.lock();
+        try {
+            int wasInFlight = inFlight--;
+            if(dropped) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            } else {
+                update(rtt, wasInFlight);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a slot without updating the limit, for calls that did not reach the remote server
+     */
+    void cancel() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    double getLongRtt() {
+        lock.lock();
+        try {
+            return longRtt;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(long rtt, int wasInFlight) {
+        samples++;
+        longRtt += (rtt - longRtt) / Math.min(samples, LONG_WINDOW);
+        if(wasInFlight < limit / 2) {
+            // not using the current limit, the samples say nothing about it
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / Math.max(rtt, 1)));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.io.Response;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableMap;
+import static org.codegist.common.io.IOs.toByteArray;
+
+/**
+ * In-memory snapshot of a response, can be read any number of times.
+ * @author laurent.gilles@codegist.org
+ */
+final class BufferedHttpResource implements HttpResource {
+
+    private final int statusCode;
+    private final String statusMessage;
+    private final String contentType;
+    private final Charset charset;
+    private final String contentEncoding;
+    private final Map<String, List<String>> headerFields;
+    private final byte[] entity;
+
+    BufferedHttpResource(int statusCode, String statusMessage, String contentType, Charset charset, String contentEncoding, Map<String, List<String>> headerFields, byte[] entity) {
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.contentType = contentType;
+        this.charset = charset;
+        this.contentEncoding = contentEncoding;
+        this.headerFields = headerFields;
+        this.entity = entity;
+    }
+
+    /**
+     * Fully reads and disposes the given response
+     * @param response response to buffer
+     * @return buffered response resource
+     * @throws Exception Any exception thrown while reading the response
+     */
+    static BufferedHttpResource buffer(Response response) throws Exception {
+        try {
+            return new BufferedHttpResource(
+                    response.getStatusCode(),
+                    response instanceof HttpResponse ? ((HttpResponse) response).getStatusMessage() : null,
+                    response.getContentType(),
+                    response.getCharset(),
+                    response.getContentEncoding(),
+                    unmodifiableMap(new HashMap<String, List<String>>(response.getHeaderFields())),
+                    toByteArray(response.asStream(), true));
+        } finally {
+            response.dispose();
+        }
+    }
+
+    public InputStream getEntity() {
+        return new ByteArrayInputStream(entity);
+    }
+
+    byte[] getEntityBytes() {
+        return entity;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Same as {@link java.net.HttpURLConnection#getHeaderField(String)}: header names are case-insensitive, and the last value is returned for headers set multiple times.
+     */
+    public String getHeaderField(String field) {
+        List<String> values = headerFields.get(field);
+        if(values == null && field != null) {
+            for (Map.Entry<String, List<String>> header : headerFields.entrySet()) {
+                if(field.equalsIgnoreCase(header.getKey())) {
+                    values = header.getValue();
+                    break;
+                }
+            }
+        }
+        return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    public Map<String, List<String>> getHeaderFields() {
+        return headerFields;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void close() {
+        // nothing to release
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of concurrent calls with a bounded FIFO wait queue.
+ * @author laurent.gilles@codegist.org
+ */
+class Bulkhead {
+
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int maxConcurrentCalls;
+    private final int maxQueued;
+
+    Bulkhead(int maxConcurrentCalls, int maxQueued) {
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * @param maxWait maximum time in milliseconds to wait for a permit
+     * @return whether a permit has been acquired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean acquire(long maxWait) throws InterruptedException {
+        if(permits.tryAcquire()) {
+            return true;
+        }
+        if(maxWait <= 0) {
+            return false;
+        }
+        if(queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    int getActiveCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    int getQueuedCalls() {
+        return queued.get();
+    }
+}
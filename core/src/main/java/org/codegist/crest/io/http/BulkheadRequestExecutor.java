@@ -0,0 +1,152 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.common.log.Logger;
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.RequestRejectedException;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.serializer.ResponseDeserializer;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.codegist.crest.util.Requests.getRemainingTime;
+
+/**
+ * <p>RequestExecutor implementation that isolates the REST interfaces from one another, so that a slow remote server can't take all the connections shared by the <b>CRest</b> instance.</p>
+ * <p>Each REST interface, or each REST interface method, see {@link BulkheadRequestExecutor#SCOPE_PROP}, gets its own bounded number of concurrent calls. Calls exceeding it wait in a bounded queue up to {@link BulkheadRequestExecutor#MAX_WAIT_PROP} milliseconds, and are rejected with a {@link org.codegist.crest.io.RequestRejectedException} afterward. A call holds its slot across all its retry attempts, and until its response is disposed or its response stream closed, so that the slot covers the time the response entity is read.</p>
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.CRestBuilder#useBulkheads()
+ */
+public class BulkheadRequestExecutor implements RequestExecutor {
+
+    /**
+     * <p>CRestConfig property to set the maximum number of concurrent calls per bulkhead.</p>
+     * <p>Default is 10.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String MAX_CONCURRENT_CALLS_PROP = BulkheadRequestExecutor.class.getName() + "#max-concurrent-calls";
+
+    /**
+     * <p>CRestConfig property to set the maximum number of calls waiting for a slot per bulkhead, calls exceeding it are rejected right away.</p>
+     * <p>Default is 100.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String MAX_QUEUED_CALLS_PROP = BulkheadRequestExecutor.class.getName() + "#max-queued-calls";
+
+    /**
+     * <p>CRestConfig property to set the maximum time in milliseconds a call waits for a slot before being rejected.</p>
+     * <p>Default is 0, calls exceeding the maximum number of concurrent calls are rejected right away.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String MAX_WAIT_PROP = BulkheadRequestExecutor.class.getName() + "#max-wait";
+
+    /**
+     * <p>CRestConfig property to set what bulkheads are maintained for, either "interface" (REST interface) or "method" (REST interface method).</p>
+     * <p>Default is "interface".</p>
+     * <p>Expects a String</p>
+     */
+    public static final String SCOPE_PROP = BulkheadRequestExecutor.class.getName() + "#scope";
+
+    private static final Logger LOGGER = Logger.getLogger(BulkheadRequestExecutor.class);
+    private final ConcurrentMap<Object, Bulkhead> bulkheads = new ConcurrentHashMap<Object, Bulkhead>();
+    private final RequestExecutor delegate;
+    private final ResponseDeserializer baseResponseDeserializer;
+    private final ResponseDeserializer customTypeResponseDeserializer;
+    private final int maxConcurrentCalls;
+    private final int maxQueuedCalls;
+    private final long maxWait;
+    private final boolean methodScoped;
+
+    /**
+     * @param delegate request executor to delegate the requests execution to
+     * @param crestConfig CRest configuration
+     * @param baseResponseDeserializer the response deserializer to use for the deserialization process
+     * @param customTypeResponseDeserializer the response deserializer to use for custom deserialization process
+     */
+    public BulkheadRequestExecutor(RequestExecutor delegate, CRestConfig crestConfig, ResponseDeserializer baseResponseDeserializer, ResponseDeserializer customTypeResponseDeserializer) {
+        this.delegate = delegate;
+        this.baseResponseDeserializer = baseResponseDeserializer;
+        this.customTypeResponseDeserializer = customTypeResponseDeserializer;
+        this.maxConcurrentCalls = crestConfig.get(MAX_CONCURRENT_CALLS_PROP, 10);
+        this.maxQueuedCalls = crestConfig.get(MAX_QUEUED_CALLS_PROP, 100);
+        this.maxWait = crestConfig.get(MAX_WAIT_PROP, 0l);
+        this.methodScoped = "method".equals(crestConfig.get(SCOPE_PROP, "interface"));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Response execute(Request request) throws Exception {
+        Object key = keyOf(request);
+        final Bulkhead bulkhead = bulkheadOf(key);
+        boolean acquired;
+        try {
+            acquired = bulkhead.acquire(Math.min(maxWait, getRemainingTime(request)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(e);
+        }
+        if(!acquired) {
+            LOGGER.debug("Bulkhead full (%d active, %d queued), rejecting request: %s", bulkhead.getActiveCalls(), bulkhead.getQueuedCalls(), key);
+            throw new RequestRejectedException("Bulkhead full for " + key);
+        }
+        Response response = null;
+        boolean handedOver = false;
+        try {
+            response = delegate.execute(request);
+            Response held = new HttpResponse(baseResponseDeserializer, customTypeResponseDeserializer, request, new SlotHoldingHttpResource(response) {
+                protected void release() {
+                    bulkhead.release();
+                }
+            });
+            handedOver = true;
+            return held;
+        } finally {
+            if(!handedOver) {
+                if(response != null) {
+                    response.dispose();
+                }
+                bulkhead.release();
+            }
+        }
+    }
+
+    private Object keyOf(Request request) {
+        Method method = request.getMethodConfig().getMethod();
+        return methodScoped ? method : method.getDeclaringClass();
+    }
+
+    private Bulkhead bulkheadOf(Object key) {
+        Bulkhead bulkhead = bulkheads.get(key);
+        if(bulkhead != null) {
+            return bulkhead;
+        }
+        bulkhead = new Bulkhead(maxConcurrentCalls, maxQueuedCalls);
+        Bulkhead previous = bulkheads.putIfAbsent(key, bulkhead);
+        return previous != null ? previous : bulkhead;
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.common.collect.Arrays;
+import org.codegist.common.lang.Disposable;
+import org.codegist.common.lang.Disposables;
+import org.codegist.common.log.Logger;
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.CRestException;
+import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.config.MethodType;
+import org.codegist.crest.config.ParamType;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.param.EncodedPair;
+import org.codegist.crest.param.Param;
+import org.codegist.crest.param.SimpleEncodedPair;
+import org.codegist.crest.security.Authorization;
+import org.codegist.crest.serializer.ResponseDeserializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.codegist.crest.config.ParamType.COOKIE;
+import static org.codegist.crest.config.ParamType.HEADER;
+import static org.codegist.crest.io.http.HttpRequests.toUrl;
+import static org.codegist.crest.util.Headers.getHeader;
+import static org.codegist.crest.util.Headers.parseDate;
+import static org.codegist.crest.util.Requests.decorate;
+import static org.codegist.crest.util.ReturnTypes.getExpectedType;
+import static org.codegist.crest.util.ReturnTypes.isStreaming;
+
+/**
+ * <p>RequestExecutor implementation that caches GET responses as instructed by their Cache-Control, Expires, ETag and Last-Modified headers.</p>
+ * <p>Fresh responses are served from the cache without hitting the network. Stale responses holding a validator are revalidated with a conditional request (If-None-Match/If-Modified-Since), a 304 Not Modified response getting the cached response served and its freshness extended. Responses marked no-store or varying on any header are not cached, responses marked no-cache are always revalidated.</p>
+ * <p>Responses to authorized requests, either carrying an Authorization header or sent by a CRest instance configured with an {@link org.codegist.crest.security.Authorization}, are private to their user and not cached unless marked public, must-revalidate or s-maxage (RFC 9111 section 3.5).</p>
+ * <p>Entries are keyed by URL and hold the values of the request headers listed by the response Vary header, a request not matching them being a cache miss. Any successful non-GET request evicts the entry of its URL.</p>
+ * <p>Responses of methods streaming their response (see {@link org.codegist.crest.util.ReturnTypes#isStreaming(Class)}) are never cached.</p>
+ * <p>Cached responses are buffered in memory, the cache holds at most {@link org.codegist.crest.io.http.CachingRequestExecutor#MAX_ENTRIES_PROP} entries and {@link org.codegist.crest.io.http.CachingRequestExecutor#MAX_SIZE_PROP} bytes, evicting the least recently used ones when full. When {@link org.codegist.crest.io.http.CachingRequestExecutor#DISK_DIRECTORY_PROP} is set, responses are also stored in memory-mapped files in the given directory, surviving restarts.</p>
+ * @author laurent.gilles@codegist.org
+ */
+public class CachingRequestExecutor implements RequestExecutor, Disposable {
+
+    /**
+     * Maximum number of cached responses. Default is 1000.
+     */
+    public static final String MAX_ENTRIES_PROP = CachingRequestExecutor.class.getName() + "#max-entries";
+
+    /**
+     * Maximum total size in bytes of the cached responses held in memory, responses larger than it are not cached. Default is 64MB.
+     */
+    public static final String MAX_SIZE_PROP = CachingRequestExecutor.class.getName() + "#max-size";
+
+    /**
+     * Directory of the persistent second cache tier, as a String. Default is null, meaning responses are only cached in memory. A directory can only be used by one cache at a time, responses being only cached in memory when it is already in use.
+     */
+    public static final String DISK_DIRECTORY_PROP = CachingRequestExecutor.class.getName() + "#disk.directory";
+
+    /**
+     * Maximum total size in bytes of the persistent cache tier files, the oldest entries being evicted first. Default is 1GB.
+     */
+    public static final String DISK_MAX_SIZE_PROP = CachingRequestExecutor.class.getName() + "#disk.max-size";
+
+    /**
+     * Maximum size in bytes of the persistent cache tier segment files, at most 2GB. Responses larger than a segment are not stored on disk. Default is 64MB.
+     */
+    public static final String DISK_SEGMENT_SIZE_PROP = CachingRequestExecutor.class.getName() + "#disk.segment-size";
+
+    private static final Logger LOGGER = Logger.getLogger(CachingRequestExecutor.class);
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+    private static final long DEFAULT_MAX_SIZE = 64l * 1024l * 1024l;
+    private static final long DEFAULT_DISK_MAX_SIZE = 1024l * 1024l * 1024l;
+    private static final long DEFAULT_DISK_SEGMENT_SIZE = 64l * 1024l * 1024l;
+    private static final int NOT_MODIFIED = 304;
+    private static final int MIN_ERROR_STATUS_CODE = 400;
+
+    private final RequestExecutor delegate;
+    private final ResponseDeserializer baseResponseDeserializer;
+    private final ResponseDeserializer customTypeResponseDeserializer;
+    private final HttpCache cache;
+    private final long maxSize;
+    private final boolean authorized;
+
+    /**
+     * @param delegate request executor to delegate the requests execution to
+     * @param crestConfig crest configuration
+     * @param baseResponseDeserializer the response deserializer to use for the deserialization process
+     * @param customTypeResponseDeserializer the response deserializer to use for custom deserialization process
+     */
+    public CachingRequestExecutor(RequestExecutor delegate, CRestConfig crestConfig, ResponseDeserializer baseResponseDeserializer, ResponseDeserializer customTypeResponseDeserializer) {
+        this(delegate, baseResponseDeserializer, customTypeResponseDeserializer, newCache(crestConfig), crestConfig.get(MAX_SIZE_PROP, DEFAULT_MAX_SIZE), crestConfig.get(Authorization.class.getName()) != null);
+    }
+
+    CachingRequestExecutor(RequestExecutor delegate, ResponseDeserializer baseResponseDeserializer, ResponseDeserializer customTypeResponseDeserializer, HttpCache cache, long maxSize) {
+        this(delegate, baseResponseDeserializer, customTypeResponseDeserializer, cache, maxSize, false);
+    }
+
+    /**
+     * @param authorized whether all the requests get authorized, see {@link org.codegist.crest.security.Authorization}
+     */
+    CachingRequestExecutor(RequestExecutor delegate, ResponseDeserializer baseResponseDeserializer, ResponseDeserializer customTypeResponseDeserializer, HttpCache cache, long maxSize, boolean authorized) {
+        this.delegate = delegate;
+        this.baseResponseDeserializer = baseResponseDeserializer;
+        this.customTypeResponseDeserializer = customTypeResponseDeserializer;
+        this.cache = cache;
+        this.maxSize = maxSize;
+        this.authorized = authorized;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Response execute(Request request) throws Exception {
+        MethodType type = request.getMethodConfig().getType();
+        if(MethodType.HEAD.equals(type) || MethodType.OPTIONS.equals(type) || isStreaming(getExpectedType(request.getMethodConfig().getMethod()))) {
+            return delegate.execute(request);
+        }
+
+        String url = toUrl(request);
+        if(!MethodType.GET.equals(type)) {
+            Response response = delegate.execute(request);
+            if(response.getStatusCode() < MIN_ERROR_STATUS_CODE) {
+                cache.remove(url);
+            }
+            return response;
+        }
+
+        HttpCacheEntry entry = cache.get(url);
+        if(entry != null && !matches(entry, request)) {
+            entry = null;
+        }
+
+        long now = System.currentTimeMillis();
+        if(entry != null && entry.isFresh(now)) {
+            LOGGER.debug("Cache hit: %s", url);
+            return newResponse(request, entry.getResource());
+        }
+
+        Request sent = request;
+        if(entry != null && entry.isRevalidable()) {
+            LOGGER.debug("Revalidating stale cache entry: %s", url);
+            sent = decorate(request, new ConditionalRequest(request, entry));
+        }
+
+        Response response = delegate.execute(sent);
+        Map<String, List<String>> headers = response.getHeaderFields();
+        int status = response.getStatusCode();
+        if(status == NOT_MODIFIED && sent != request) {
+            response.dispose();
+            cache.refresh(url, expiresAt(headers, now));
+            LOGGER.debug("Cache entry revalidated: %s", url);
+            return newResponse(request, entry.getResource());
+        }
+
+        if(!isCacheable(status, headers, authorized || getRequestHeader(request, "Authorization") != null)) {
+            return response;
+        }
+        long expiresAt = expiresAt(headers, now);
+        String etag = getHeader(headers, "ETag");
+        String lastModified = getHeader(headers, "Last-Modified");
+        if(expiresAt <= now && etag == null && lastModified == null) {
+            return response;
+        }
+        if(contentLength(headers) > maxSize) {
+            LOGGER.debug("Response too large to be cached: %s", url);
+            return response;
+        }
+
+        BufferedHttpResource resource = BufferedHttpResource.buffer(response);
+        cache.put(url, new HttpCacheEntry(resource, varyHeaders(request, getHeader(headers, "Vary")), expiresAt, etag, lastModified));
+        LOGGER.debug("Cached response: %s", url);
+        return newResponse(request, resource);
+    }
+
+    public void dispose() {
+        Disposables.dispose(cache);
+    }
+
+    private static HttpCache newCache(CRestConfig crestConfig) {
+        HttpCache memory = new MemoryHttpCache(crestConfig.get(MAX_ENTRIES_PROP, DEFAULT_MAX_ENTRIES), crestConfig.get(MAX_SIZE_PROP, DEFAULT_MAX_SIZE));
+        String directory = crestConfig.get(DISK_DIRECTORY_PROP);
+        if(directory == null) {
+            return memory;
+        }
+        try {
+            return new TieredHttpCache(memory, new DiskHttpCache(new File(directory), crestConfig.get(DISK_MAX_SIZE_PROP, DEFAULT_DISK_MAX_SIZE), crestConfig.get(DISK_SEGMENT_SIZE_PROP, DEFAULT_DISK_SEGMENT_SIZE)));
+        } catch (DiskHttpCache.DirectoryLockedException e) {
+            LOGGER.warn(e, "Caching responses in memory only, disk cache directory %s is already in use", directory);
+            return memory;
+        } catch (IOException e) {
+            throw CRestException.handle(e);
+        }
+    }
+
+    private Response newResponse(Request request, BufferedHttpResource resource) throws Exception {
+        return new HttpResponse(baseResponseDeserializer, customTypeResponseDeserializer, request, resource);
+    }
+
+    private static boolean isCacheable(int status, Map<String, List<String>> headers, boolean authorized) {
+        if(status != 200 && status != 203) {
+            return false;
+        }
+        String vary = getHeader(headers, "Vary");
+        if(vary != null && vary.trim().equals("*")) {
+            return false;
+        }
+        String cacheControl = getHeader(headers, "Cache-Control");
+        if(authorized) {
+            return cacheControl != null
+                    && !hasDirective(cacheControl, "no-store")
+                    && (hasDirective(cacheControl, "public") || hasDirective(cacheControl, "must-revalidate") || getDirective(cacheControl, "s-maxage") != null);
+        }
+        return cacheControl == null || !hasDirective(cacheControl, "no-store");
+    }
+
+    static long expiresAt(Map<String, List<String>> headers, long now) {
+        String cacheControl = getHeader(headers, "Cache-Control");
+        if(cacheControl != null) {
+            if(hasDirective(cacheControl, "no-cache")) {
+                return now;
+            }
+            String maxAge = getDirective(cacheControl, "max-age");
+            if(maxAge != null) {
+                try {
+                    long age = parseSeconds(getHeader(headers, "Age"));
+                    return now + Math.max(0, Long.parseLong(maxAge) - age) * 1000;
+                } catch (NumberFormatException e) {
+                    LOGGER.debug("Ignoring malformed max-age directive: %s", cacheControl);
+                    return now;
+                }
+            }
+        }
+        long expires = parseDate(getHeader(headers, "Expires"));
+        if(expires <= 0) {
+            return now;
+        }
+        long date = parseDate(getHeader(headers, "Date"));
+        return date > 0 ? now + expires - date : expires;
+    }
+
+    private static boolean matches(HttpCacheEntry entry, Request request) {
+        for (Map.Entry<String, String> vary : entry.getVaryHeaders().entrySet()) {
+            String value = getRequestHeader(request, vary.getKey());
+            if(value == null ? vary.getValue() != null : !value.equals(vary.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String,String> varyHeaders(Request request, String vary) {
+        if(vary == null) {
+            return Collections.emptyMap();
+        }
+        Map<String,String> varyHeaders = new HashMap<String, String>();
+        for (String name : vary.split(",")) {
+            String pName = name.trim().toLowerCase(Locale.ENGLISH);
+            if(pName.length() > 0) {
+                varyHeaders.put(pName, getRequestHeader(request, pName));
+            }
+        }
+        return varyHeaders;
+    }
+
+    private static String getRequestHeader(Request request, String name) {
+        MethodConfig mc = request.getMethodConfig();
+        if("accept".equalsIgnoreCase(name)) {
+            return mc.getConsumes().length > 0 ? Arrays.join(",", mc.getConsumes()) : null;
+        }else if("content-type".equalsIgnoreCase(name)) {
+            return mc.getProduces();
+        }
+        StringBuilder value = null;
+        for (ParamType type : new ParamType[]{HEADER, COOKIE}) {
+            Iterator<EncodedPair> headers = request.getEncodedParamsIterator(type);
+            while(headers.hasNext()) {
+                EncodedPair header = headers.next();
+                if(name.equalsIgnoreCase(header.getName())) {
+                    value = value == null ? new StringBuilder() : value.append(',');
+                    value.append(header.getValue());
+                }
+            }
+        }
+        return value != null ? value.toString() : null;
+    }
+
+    private static boolean hasDirective(String cacheControl, String name) {
+        for (String directive : cacheControl.split(",")) {
+            if(directive.trim().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getDirective(String cacheControl, String name) {
+        for (String directive : cacheControl.split(",")) {
+            String[] pair = directive.trim().split("=", 2);
+            if(pair.length == 2 && pair[0].trim().equalsIgnoreCase(name)) {
+                return pair[1].trim().replace("\"", "");
+            }
+        }
+        return null;
+    }
+
+    private static long contentLength(Map<String, List<String>> headers) {
+        String contentLength = getHeader(headers, "Content-Length");
+        try {
+            return contentLength != null ? Long.parseLong(contentLength.trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long parseSeconds(String value) {
+        return value != null ? Long.parseLong(value.trim()) : 0;
+    }
+
+    private static final class ConditionalRequest implements Request {
+
+        private final Request delegate;
+        private final List<EncodedPair> conditions = new ArrayList<EncodedPair>(2);
+
+        private ConditionalRequest(Request delegate, HttpCacheEntry entry) {
+            this.delegate = delegate;
+            if(entry.getEtag() != null) {
+                conditions.add(new SimpleEncodedPair("If-None-Match", entry.getEtag()));
+            }
+            if(entry.getLastModified() != null) {
+                conditions.add(new SimpleEncodedPair("If-Modified-Since", entry.getLastModified()));
+            }
+        }
+
+        public List<Param> getParams(ParamType type) {
+            return delegate.getParams(type);
+        }
+
+        public Iterator<EncodedPair> getEncodedParamsIterator(ParamType type) {
+            if(!HEADER.equals(type)) {
+                return delegate.getEncodedParamsIterator(type);
+            }
+            List<EncodedPair> headers = new ArrayList<EncodedPair>();
+            Iterator<EncodedPair> iterator = delegate.getEncodedParamsIterator(type);
+            while(iterator.hasNext()) {
+                headers.add(iterator.next());
+            }
+            headers.addAll(conditions);
+            return headers.iterator();
+        }
+
+        public MethodConfig getMethodConfig() {
+            return delegate.getMethodConfig();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Count-based sliding window circuit breaker.
+ * <ul>
+ * <li>CLOSED: calls are permitted, their outcomes are recorded in the window. Opens once the window holds at least the minimum number of calls and either the failure rate or the slow call rate reaches its threshold.</li>
+ * <li>OPEN: calls are rejected until the open duration elapsed, then moves to HALF_OPEN.</li>
+ * <li>HALF_OPEN: a limited number of trial calls are permitted, once they all completed the circuit closes or opens again depending on their failure and slow call rates.</li>
+ * </ul>
+ * <p>Each state transition starts a new generation, outcomes of calls permitted during an earlier generation are ignored.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class CircuitBreaker {
+
+    enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final Lock lock = new ReentrantLock();
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDuration;
+    private final int minimumCalls;
+    private final long openDuration;
+    private final int halfOpenCalls;
+    private final byte[] window;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int position;
+    private int size;
+    private int failures;
+    private int slowCalls;
+    private int permitted;
+
+    /**
+     * @param failureRateThreshold failure rate, in percent, from which the circuit opens
+     * @param slowCallRateThreshold slow call rate, in percent, from which the circuit opens
+     * @param slowCallDuration duration in milliseconds from which a call is considered slow
+     * @param windowSize number of most recent calls the rates are computed on
+     * @param minimumCalls minimum number of recorded calls before the rates are evaluated
+     * @param openDuration time in milliseconds the circuit stays open before permitting trial calls
+     * @param halfOpenCalls number of trial calls permitted when half open
+     */
+    CircuitBreaker(int failureRateThreshold, int slowCallRateThreshold, long slowCallDuration, int windowSize, int minimumCalls, long openDuration, int halfOpenCalls) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDuration = slowCallDuration;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.openDuration = openDuration;
+        this.halfOpenCalls = Math.min(halfOpenCalls, windowSize);
+        this.window = new byte[windowSize];
+    }
+
+    /**
+     * @param now current time in milliseconds
+     * @return the generation the permitted call belongs to, -1 if the call is not permitted
+     */
+    long tryAcquire(long now) {
+        lock.lock();
+        try {
+            switch (state) {
+                case CLOSED:
+                    return generation;
+                case OPEN:
+                    if(now - openedAt < openDuration) {
+                        return -1;
+                    }
+                    transitionTo(State.HALF_OPEN, now);
+                    // fall through
+                default:
+                    if(permitted >= halfOpenCalls) {
+                        return -1;
+                    }
+                    permitted++;
+                    return generation;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the outcome of a permitted call
+     * @param generation generation given by {@link #tryAcquire(long)} when the call was permitted
+     * @param failed whether the call failed
+     * @param duration call duration in milliseconds
+     * @param now current time in milliseconds
+     */
+    void record(long generation, boolean failed, long duration, long now) {
+        lock.lock();
+        try {
+            if(generation != this.generation) {
+                return;
+            }
+            byte outcome = (byte) ((failed ? FAILED : 0) | (duration >= slowCallDuration ? SLOW : 0));
+            if(size == window.length) {
+                forget(window[position]);
+            } else {
+                size++;
+            }
+            window[position] = outcome;
+            position = (position + 1) % window.length;
+            if((outcome & FAILED) != 0) {
+                failures++;
+            }
+            if((outcome & SLOW) != 0) {
+                slowCalls++;
+            }
+
+            if(state == State.HALF_OPEN) {
+                if(size >= halfOpenCalls) {
+                    transitionTo(isOverThresholds() ? State.OPEN : State.CLOSED, now);
+                }
+            } else if(size >= minimumCalls && isOverThresholds()) {
+                transitionTo(State.OPEN, now);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isOverThresholds() {
+        return failures * 100 >= failureRateThreshold * size || slowCalls * 100 >= slowCallRateThreshold * size;
+    }
+
+    private void forget(byte outcome) {
+        if((outcome & FAILED) != 0) {
+            failures--;
+        }
+        if((outcome & SLOW) != 0) {
+            slowCalls--;
+        }
+    }
+
+    private void transitionTo(State state, long now) {
+        this.state = state;
+        this.generation++;
+        this.openedAt = now;
+        this.position = 0;
+        this.size = 0;
+        this.failures = 0;
+        this.slowCalls = 0;
+        this.permitted = 0;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.common.log.Logger;
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.RequestRejectedException;
+import org.codegist.crest.io.Response;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.codegist.crest.io.http.HttpRequests.toEndpoint;
+
+/**
+ * <p>RequestExecutor implementation that stops calling a failing or slow remote server for a while, rejecting the requests with a {@link org.codegist.crest.io.RequestRejectedException} instead.</p>
+ * <p>A circuit breaker is maintained per endpoint (scheme, host and port) or per REST interface method, see {@link CircuitBreakingRequestExecutor#SCOPE_PROP}. Any exception thrown by the delegate as well as any response with a status code greater or equal to {@link CircuitBreakingRequestExecutor#MIN_FAILURE_STATUS_CODE_PROP} counts as a failure.</p>
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.CRestBuilder#useCircuitBreaker()
+ */
+public class CircuitBreakingRequestExecutor implements RequestExecutor {
+
+    /**
+     * <p>CRestConfig property to set the failure rate, in percent, from which a circuit opens.</p>
+     * <p>Default is 50.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String FAILURE_RATE_THRESHOLD_PROP = CircuitBreakingRequestExecutor.class.getName() + "#failure-rate-threshold";
+
+    /**
+     * <p>CRestConfig property to set the slow call rate, in percent, from which a circuit opens.</p>
+     * <p>Default is 100.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String SLOW_CALL_RATE_THRESHOLD_PROP = CircuitBreakingRequestExecutor.class.getName() + "#slow-call-rate-threshold";
+
+    /**
+     * <p>CRestConfig property to set the duration in milliseconds from which a call is considered slow.</p>
+     * <p>Default is 10000 milliseconds.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String SLOW_CALL_DURATION_PROP = CircuitBreakingRequestExecutor.class.getName() + "#slow-call-duration";
+
+    /**
+     * <p>CRestConfig property to set the number of most recent calls the failure and slow call rates are computed on.</p>
+     * <p>Default is 100.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String WINDOW_SIZE_PROP = CircuitBreakingRequestExecutor.class.getName() + "#window-size";
+
+    /**
+     * <p>CRestConfig property to set the minimum number of calls to record before the failure and slow call rates are evaluated.</p>
+     * <p>Default is 20.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String MINIMUM_CALLS_PROP = CircuitBreakingRequestExecutor.class.getName() + "#minimum-calls";
+
+    /**
+     * <p>CRestConfig property to set the time in milliseconds an open circuit rejects calls before letting trial calls through.</p>
+     * <p>Default is 30000 milliseconds.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String OPEN_DURATION_PROP = CircuitBreakingRequestExecutor.class.getName() + "#open-duration";
+
+    /**
+     * <p>CRestConfig property to set the number of trial calls permitted once the open duration elapsed.</p>
+     * <p>Default is 5.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String HALF_OPEN_CALLS_PROP = CircuitBreakingRequestExecutor.class.getName() + "#half-open-calls";
+
+    /**
+     * <p>CRestConfig property to set the minimum response status code considered as a failure.</p>
+     * <p>Default is 500.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String MIN_FAILURE_STATUS_CODE_PROP = CircuitBreakingRequestExecutor.class.getName() + "#min-failure-status-code";
+
+    /**
+     * <p>CRestConfig property to set what circuits are maintained for, either "endpoint" (scheme, host and port) or "method" (REST interface method).</p>
+     * <p>Default is "endpoint".</p>
+     * <p>Expects a String</p>
+     */
+    public static final String SCOPE_PROP = CircuitBreakingRequestExecutor.class.getName() + "#scope";
+
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreakingRequestExecutor.class);
+    private final ConcurrentMap<Object, CircuitBreaker> circuits = new ConcurrentHashMap<Object, CircuitBreaker>();
+    private final RequestExecutor delegate;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDuration;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final long openDuration;
+    private final int halfOpenCalls;
+    private final int minFailureStatusCode;
+    private final boolean methodScoped;
+
+    /**
+     * @param delegate request executor to delegate the requests execution to
+     * @param crestConfig CRest configuration
+     */
+    public CircuitBreakingRequestExecutor(RequestExecutor delegate, CRestConfig crestConfig) {
+        this.delegate = delegate;
+        this.failureRateThreshold = crestConfig.get(FAILURE_RATE_THRESHOLD_PROP, 50);
+        this.slowCallRateThreshold = crestConfig.get(SLOW_CALL_RATE_THRESHOLD_PROP, 100);
+        this.slowCallDuration = crestConfig.get(SLOW_CALL_DURATION_PROP, 10000l);
+        this.windowSize = crestConfig.get(WINDOW_SIZE_PROP, 100);
+        this.minimumCalls = crestConfig.get(MINIMUM_CALLS_PROP, 20);
+        this.openDuration = crestConfig.get(OPEN_DURATION_PROP, 30000l);
+        this.halfOpenCalls = crestConfig.get(HALF_OPEN_CALLS_PROP, 5);
+        this.minFailureStatusCode = crestConfig.get(MIN_FAILURE_STATUS_CODE_PROP, 500);
+        this.methodScoped = "method".equals(crestConfig.get(SCOPE_PROP, "endpoint"));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Response execute(Request request) throws Exception {
+        Object key = keyOf(request);
+        CircuitBreaker circuit = circuitOf(key);
+        long generation = circuit.tryAcquire(System.currentTimeMillis());
+        if(generation < 0) {
+            LOGGER.debug("Circuit open, rejecting request: %s", key);
+            throw new RequestRejectedException("Circuit open for " + key);
+        }
+
+        long start = System.currentTimeMillis();
+        boolean failed = true;
+        try {
+            Response response = delegate.execute(request);
+            failed = response.getStatusCode() >= minFailureStatusCode;
+            return response;
+        } finally {
+            long now = System.currentTimeMillis();
+            circuit.record(generation, failed, now - start, now);
+        }
+    }
+
+    private Object keyOf(Request request) throws Exception {
+        if(methodScoped) {
+            return request.getMethodConfig().getMethod();
+        }
+        return toEndpoint(request);
+    }
+
+    private CircuitBreaker circuitOf(Object key) {
+        CircuitBreaker circuit = circuits.get(key);
+        if(circuit != null) {
+            return circuit;
+        }
+        circuit = new CircuitBreaker(failureRateThreshold, slowCallRateThreshold, slowCallDuration, windowSize, minimumCalls, openDuration, halfOpenCalls);
+        CircuitBreaker previous = circuits.putIfAbsent(key, circuit);
+        return previous != null ? previous : circuit;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.common.log.Logger;
+import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.config.MethodType;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.param.EncodedPair;
+import org.codegist.crest.serializer.ResponseDeserializer;
+
+import java.net.SocketTimeoutException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.codegist.crest.config.ParamType.COOKIE;
+import static org.codegist.crest.config.ParamType.HEADER;
+import static org.codegist.crest.io.http.HttpRequests.toUrl;
+import static org.codegist.crest.util.Requests.getRemainingTime;
+import static org.codegist.crest.util.ReturnTypes.getExpectedType;
+import static org.codegist.crest.util.ReturnTypes.isStreaming;
+
+/**
+ * <p>RequestExecutor implementation that shares a single network round-trip between concurrent identical requests.</p>
+ * <p>Only applies to GET, HEAD and OPTIONS requests of methods configured as coalesced and not streaming their response (see {@link org.codegist.crest.util.ReturnTypes#isStreaming(Class)}), any other request is passed through to the delegate. Two requests are identical when they have the same HTTP method, URL and headers.</p>
+ * <p>The first request is executed by the delegate and its response buffered in memory, requests issued while it is in flight wait for it and get their own copy of the response, that they each deserialize to their own expected type.</p>
+ * <p>If the first request fails, each waiting request fails with its own {@link org.codegist.crest.io.RequestException} wrapping the failure.</p>
+ * <p>A waiting request gives up once its own deadline is reached, or once its connection and socket timeouts have elapsed, as it would have if executed on its own.</p>
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.config.MethodConfig#isCoalesced()
+ */
+public class CoalescingRequestExecutor implements RequestExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(CoalescingRequestExecutor.class);
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+    private final RequestExecutor delegate;
+    private final ResponseDeserializer baseResponseDeserializer;
+    private final ResponseDeserializer customTypeResponseDeserializer;
+
+    /**
+     * @param delegate request executor to delegate the requests execution to
+     * @param baseResponseDeserializer the response deserializer to use for the deserialization process
+     * @param customTypeResponseDeserializer the response deserializer to use for custom deserialization process
+     */
+    public CoalescingRequestExecutor(RequestExecutor delegate, ResponseDeserializer baseResponseDeserializer, ResponseDeserializer customTypeResponseDeserializer) {
+        this.delegate = delegate;
+        this.baseResponseDeserializer = baseResponseDeserializer;
+        this.customTypeResponseDeserializer = customTypeResponseDeserializer;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Response execute(Request request) throws Exception {
+        MethodConfig mc = request.getMethodConfig();
+        if(!mc.isCoalesced() || !isIdempotent(mc.getType()) || isStreaming(getExpectedType(mc.getMethod()))) {
+            return delegate.execute(request);
+        }
+
+        String key = keyOf(request);
+        Flight flight = new Flight();
+        Flight inFlight = flights.putIfAbsent(key, flight);
+        if(inFlight != null) {
+            LOGGER.debug("Joining in-flight request: %s", key);
+            return inFlight.await(request);
+        }
+
+        try {
+            flight.land(BufferedHttpResource.buffer(delegate.execute(request)));
+        } catch (Exception e) {
+            flight.crash(e);
+            throw e;
+        } catch (Error e) {
+            flight.crash(new RequestException(e));
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+        return flight.await(request);
+    }
+
+    private static boolean isIdempotent(MethodType type) {
+        return MethodType.GET.equals(type) || MethodType.HEAD.equals(type) || MethodType.OPTIONS.equals(type);
+    }
+
+    private static String keyOf(Request request) throws Exception {
+        MethodConfig mc = request.getMethodConfig();
+        StringBuilder key = new StringBuilder(mc.getType().name()).append(' ').append(toUrl(request));
+        for(String consume : mc.getConsumes()) {
+            key.append('\n').append("Accept: ").append(consume);
+        }
+        appendHeaders(key, request.getEncodedParamsIterator(HEADER));
+        appendHeaders(key, request.getEncodedParamsIterator(COOKIE));
+        return key.toString();
+    }
+
+    private static void appendHeaders(StringBuilder key, Iterator<EncodedPair> headers) {
+        while(headers.hasNext()) {
+            EncodedPair header = headers.next();
+            key.append('\n').append(header.getName()).append(": ").append(header.getValue());
+        }
+    }
+
+    private static long timeoutOf(Request request) throws Exception {
+        MethodConfig mc = request.getMethodConfig();
+        long timeout = getRemainingTime(request);
+        if(mc.getConnectionTimeout() > 0 && mc.getSocketTimeout() > 0) {
+            timeout = Math.min(timeout, (long) mc.getConnectionTimeout() + mc.getSocketTimeout());
+        }
+        return timeout;
+    }
+
+    private final class Flight {
+
+        private final CountDownLatch landed = new CountDownLatch(1);
+        private volatile BufferedHttpResource resource;
+        private volatile Exception exception;
+
+        void land(BufferedHttpResource resource) {
+            this.resource = resource;
+            landed.countDown();
+        }
+
+        void crash(Exception exception) {
+            this.exception = exception;
+            landed.countDown();
+        }
+
+        Response await(Request request) throws Exception {
+            long timeout = timeoutOf(request);
+            if(timeout == Long.MAX_VALUE) {
+                landed.await();
+            }else if(!landed.await(timeout, TimeUnit.MILLISECONDS)) {
+                getRemainingTime(request);
+                throw new RequestException(new SocketTimeoutException("Timed out after " + timeout + "ms waiting for the in-flight identical request"));
+            }
+            if(exception != null) {
+                throw new RequestException(exception);
+            }
+            return new HttpResponse(baseResponseDeserializer, customTypeResponseDeserializer, request, resource);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.common.log.Logger;
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.RequestRejectedException;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.serializer.ResponseDeserializer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.codegist.crest.io.http.HttpRequests.toEndpoint;
+
+/**
+ * <p>RequestExecutor implementation that bounds the number of in-flight requests per endpoint (scheme, host and port) to a limit learnt from the observed latency.</p>
+ * <p>The limit grows while the round-trip time stays stable and shrinks as soon as it rises or the server signals an overload (any exception, 429 and 503 status codes). Requests exceeding the limit wait for a slot up to {@link ConcurrencyLimitingRequestExecutor#MAX_WAIT_PROP} milliseconds, and are rejected with a {@link org.codegist.crest.io.RequestRejectedException} afterward.</p>
+ * <p>A request holds its slot until its response is disposed or its response stream closed, so that the limit bounds the connections in use, response entities being read included. The round-trip time is however measured up to the response headers, so that responses consumed slowly by the caller don't read as a rising server latency.</p>
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.CRestBuilder#useConcurrencyLimiter()
+ */
+public class ConcurrencyLimitingRequestExecutor implements RequestExecutor {
+
+    /**
+     * <p>CRestConfig property to set the concurrency limit each endpoint starts with.</p>
+     * <p>Default is 20.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String INITIAL_LIMIT_PROP = ConcurrencyLimitingRequestExecutor.class.getName() + "#initial-limit";
+
+    /**
+     * <p>CRestConfig property to set the minimum concurrency limit.</p>
+     * <p>Default is 1.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String MIN_LIMIT_PROP = ConcurrencyLimitingRequestExecutor.class.getName() + "#min-limit";
+
+    /**
+     * <p>CRestConfig property to set the maximum concurrency limit.</p>
+     * <p>Default is 200.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String MAX_LIMIT_PROP = ConcurrencyLimitingRequestExecutor.class.getName() + "#max-limit";
+
+    /**
+     * <p>CRestConfig property to set the maximum time in milliseconds a request waits for an in-flight slot before being rejected.</p>
+     * <p>Default is 0, requests exceeding the limit are rejected right away.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String MAX_WAIT_PROP = ConcurrencyLimitingRequestExecutor.class.getName() + "#max-wait";
+
+    private static final Logger LOGGER = Logger.getLogger(ConcurrencyLimitingRequestExecutor.class);
+    private final ConcurrentMap<String, AdaptiveConcurrencyLimit> limits = new ConcurrentHashMap<String, AdaptiveConcurrencyLimit>();
+    private final RequestExecutor delegate;
+    private final ResponseDeserializer baseResponseDeserializer;
+    private final ResponseDeserializer customTypeResponseDeserializer;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWait;
+
+    /**
+     * @param delegate request executor to delegate the requests execution to
+     * @param crestConfig CRest configuration
+     * @param baseResponseDeserializer the response deserializer to use for the deserialization process
+     * @param customTypeResponseDeserializer the response deserializer to use for custom deserialization process
+     */
+    public ConcurrencyLimitingRequestExecutor(RequestExecutor delegate, CRestConfig crestConfig, ResponseDeserializer baseResponseDeserializer, ResponseDeserializer customTypeResponseDeserializer) {
+        this.delegate = delegate;
+        this.baseResponseDeserializer = baseResponseDeserializer;
+        this.customTypeResponseDeserializer = customTypeResponseDeserializer;
+        this.initialLimit = crestConfig.get(INITIAL_LIMIT_PROP, 20);
+        this.minLimit = crestConfig.get(MIN_LIMIT_PROP, 1);
+        this.maxLimit = crestConfig.get(MAX_LIMIT_PROP, 200);
+        this.maxWait = crestConfig.get(MAX_WAIT_PROP, 0l);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Response execute(Request request) throws Exception {
+        String endpoint = toEndpoint(request);
+        final AdaptiveConcurrencyLimit limit = limitOf(endpoint);
+        if(!limit.acquire(maxWait)) {
+            LOGGER.debug("Concurrency limit of %d reached, rejecting request: %s", limit.getLimit(), endpoint);
+            throw new RequestRejectedException("Concurrency limit reached for " + endpoint);
+        }
+
+        final long start = System.nanoTime();
+        Response response = null;
+        boolean handedOver = false;
+        try {
+            response = delegate.execute(request);
+            final long rtt = System.nanoTime() - start;
+            int status = response.getStatusCode();
+            final boolean overloaded = status == 429 || status == 503;
+            Response limited = new HttpResponse(baseResponseDeserializer, customTypeResponseDeserializer, request, new SlotHoldingHttpResource(response) {
+                protected void release() {
+                    limit.release(rtt, overloaded);
+                }
+            });
+            handedOver = true;
+            return limited;
+        } catch (RequestRejectedException e) {
+            limit.cancel();
+            handedOver = true;
+            throw e;
+        } finally {
+            if(!handedOver) {
+                if(response != null) {
+                    response.dispose();
+                }
+                limit.release(System.nanoTime() - start, true);
+            }
+        }
+    }
+
+    private AdaptiveConcurrencyLimit limitOf(String endpoint) {
+        AdaptiveConcurrencyLimit limit = limits.get(endpoint);
+        if(limit != null) {
+            return limit;
+        }
+        limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit);
+        AdaptiveConcurrencyLimit previous = limits.putIfAbsent(endpoint, limit);
+        return previous != null ? previous : limit;
+    }
+}
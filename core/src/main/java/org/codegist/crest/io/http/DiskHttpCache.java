@@ -0,0 +1,720 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.common.lang.Disposable;
+import org.codegist.common.log.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * Persistent {@link org.codegist.crest.io.http.HttpCache} storing entries in append-only segment files, read through memory-mapped buffers.
+ * <p>Each put, refresh or remove appends a self-describing record to the active segment, a new segment being started once the record would not fit in the segment size. Segments never exceed the segment size, itself bounded to 2GB, and entries not fitting in a segment are not stored. A refresh record only holds the entry's new freshness limit, so that revalidated entries don't get their response rewritten. An entry dropped from the index, be it removed or found unreadable, gets a remove record appended so that it doesn't come back once the cache is reopened.</p>
+ * <p>The index, mapping each key to the location of its latest record, is rebuilt by scanning the segments when the cache is opened, so that a restarted process gets the entries stored by the previous one. A truncated or corrupted record, as left by a crash, ends the scan of its segment which is truncated there, and segment files that can't be opened are deleted: a damaged cache never prevents the cache from being opened.</p>
+ * <p>Segment files grow by size classes, doubling up to the segment size, and are mapped once per size class. Entries are read from the mapping and deserialized outside of the cache lock, segments being only closed, trimmed or deleted once their last reader is done.</p>
+ * <p>A cache owns its directory through an exclusive lock on a lock file held until disposal, opening a second cache on the same directory, be it from this process or another one, fails with a {@link org.codegist.crest.io.http.DiskHttpCache.DirectoryLockedException}.</p>
+ * <p>Each time a new segment is started, the oldest segments holding less than half of live records are compacted: their live entries are copied to the active segment and the segments are deleted. Once the segments total size still exceeds the maximum size, the oldest segment is deleted along with the entries it holds.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class DiskHttpCache implements HttpCache, Disposable {
+
+    private static final Logger LOGGER = Logger.getLogger(DiskHttpCache.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String LOCK_FILE = ".lock";
+    private static final int RECORD_MARKER = 0xCAC4E001;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_PREFIX_SIZE = 2 + 65535 + 1 + 8;
+    private static final long MIN_SIZE_CLASS = 64 * 1024;
+    private static final byte REMOVED = 0;
+    private static final byte STORED = 1;
+    private static final byte REFRESHED = 2;
+
+    private final File directory;
+    private final long maxSize;
+    private final long segmentSize;
+    private final Lock lock = new ReentrantLock();
+    private final Map<String, Location> index = new HashMap<String, Location>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+    private final RandomAccessFile lockFile;
+    private final FileLock directoryLock;
+    private Segment active;
+
+    /**
+     * @param directory directory to store the segment files in, created if missing
+     * @param maxSize maximum total size in bytes of the segment files
+     * @param segmentSize maximum size in bytes of a segment file, bounded to {@link Integer#MAX_VALUE}
+     * @throws DirectoryLockedException if the directory is already used by another cache
+     * @throws IOException if the directory can't be created or locked
+     */
+    DiskHttpCache(File directory, long maxSize, long segmentSize) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + directory);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.segmentSize = Math.min(segmentSize, Integer.MAX_VALUE);
+        this.lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+        this.directoryLock = lock(lockFile, directory);
+        try {
+            open();
+        } catch (IOException e) {
+            dispose();
+            throw e;
+        } catch (RuntimeException e) {
+            dispose();
+            throw e;
+        }
+        LOGGER.debug("Opened disk cache %s with %d entries in %d segments", directory, index.size(), segments.size());
+    }
+
+    private static FileLock lock(RandomAccessFile lockFile, File directory) throws IOException {
+        FileLock lock;
+        try {
+            lock = lockFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } catch (IOException e) {
+            lockFile.close();
+            throw e;
+        }
+        if(lock == null) {
+            lockFile.close();
+            throw new DirectoryLockedException("Cache directory " + directory + " is already in use by another cache");
+        }
+        return lock;
+    }
+
+    private void open() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        for (File file : files) {
+            String id = file.getName().substring(SEGMENT_PREFIX.length(), file.getName().length() - SEGMENT_SUFFIX.length());
+            try {
+                segments.put(Long.parseLong(id), null);
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Ignoring unexpected cache file %s", file);
+            }
+        }
+        for (Long id : new ArrayList<Long>(segments.keySet())) {
+            File file = segmentFile(id);
+            Segment segment = null;
+            try {
+                segment = new Segment(id, file);
+                segments.put(id, segment);
+                scan(segment);
+            } catch (IOException e) {
+                LOGGER.debug(e, "Deleting unreadable cache segment %s", file);
+                segments.remove(id);
+                for (Iterator<Location> locations = index.values().iterator(); locations.hasNext(); ) {
+                    if(locations.next().segment == segment) {
+                        locations.remove();
+                    }
+                }
+                if(segment != null) {
+                    segment.retire(false, true);
+                }else if(!file.delete()) {
+                    LOGGER.debug("Failed to delete cache segment %s", file);
+                }
+            }
+        }
+        this.active = segments.isEmpty() ? newSegment(0) : segments.get(segments.lastKey());
+    }
+
+    public HttpCacheEntry get(String key) {
+        Location location;
+        ByteBuffer record;
+        lock.lock();
+        try {
+            location = index.get(key);
+            if(location == null) {
+                return null;
+            }
+            try {
+                record = location.segment.read(location.position, location.length);
+            } catch (IOException e) {
+                drop(key, location, e);
+                return null;
+            }
+            location.segment.acquire();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            return read(location, record);
+        } catch (IOException e) {
+            lock.lock();
+            try {
+                drop(key, location, e);
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        } finally {
+            location.segment.release();
+        }
+    }
+
+    public void put(String key, HttpCacheEntry entry) {
+        lock.lock();
+        try {
+            try {
+                index(key, append(toRecord(key, entry)));
+            } catch (IOException e) {
+                LOGGER.debug(e, "Failed to store cache entry %s", key);
+                if(unindex(key) != null) {
+                    appendRemoval(key);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void refresh(String key, long expiresAt) {
+        lock.lock();
+        try {
+            if(!index.containsKey(key)) {
+                return;
+            }
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeUTF(key);
+                out.writeByte(REFRESHED);
+                out.writeLong(expiresAt);
+                out.flush();
+                append(bytes.toByteArray());
+                Location location = index.get(key);
+                if(location != null) {
+                    index(key, location.refresh(expiresAt));
+                }
+            } catch (IOException e) {
+                LOGGER.debug(e, "Failed to store cache entry %s refresh", key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(String key) {
+        lock.lock();
+        try {
+            if(unindex(key) != null) {
+                appendRemoval(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void dispose() {
+        lock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if(segment != null) {
+                    segment.retire(true, false);
+                }
+            }
+            segments.clear();
+            index.clear();
+            if(directoryLock.isValid()) {
+                directoryLock.release();
+            }
+            lockFile.close();
+        } catch (IOException e) {
+            LOGGER.debug(e, "Failed to release cache directory %s", directory);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops an entry found unreadable, unless it has been replaced in the meantime. Must be called with the lock held.
+     */
+    private void drop(String key, Location location, IOException e) {
+        if(index.get(key) != location) {
+            return;
+        }
+        LOGGER.debug(e, "Dropping unreadable cache entry %s", key);
+        unindex(key);
+        appendRemoval(key);
+    }
+
+    private void appendRemoval(String key) {
+        try {
+            append(toRemovalRecord(key));
+        } catch (IOException e) {
+            LOGGER.debug(e, "Failed to store cache entry %s removal", key);
+        }
+    }
+
+    private Location append(byte[] payload) throws IOException {
+        if(!fits(payload)) {
+            active = newSegment(active.id + 1);
+            compact();
+            evict();
+        }
+        return write(payload);
+    }
+
+    /**
+     * Appends the given record to the active segment, starting a new segment without compacting if it doesn't fit.
+     */
+    private Location write(byte[] payload) throws IOException {
+        if(RECORD_HEADER_SIZE + (long) payload.length > segmentSize) {
+            throw new IOException("Record of " + payload.length + " bytes exceeds the segment size of " + segmentSize + " bytes");
+        }
+        if(!fits(payload)) {
+            active = newSegment(active.id + 1);
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(RECORD_MARKER).putInt(payload.length).put(payload).flip();
+        long position = active.append(record, segmentSize);
+        return new Location(active, (int) position + RECORD_HEADER_SIZE, payload.length, null);
+    }
+
+    private boolean fits(byte[] payload) {
+        return active.size + RECORD_HEADER_SIZE + payload.length <= segmentSize;
+    }
+
+    /**
+     * Copies the live entries of the oldest segments holding less than half of live records to the active segment, and deletes them.
+     */
+    private void compact() throws IOException {
+        while (segments.size() > 1) {
+            Segment oldest = segments.get(segments.firstKey());
+            if(oldest == active || oldest.live * 2 >= oldest.size) {
+                return;
+            }
+            for (Map.Entry<String, Location> entry : new ArrayList<Map.Entry<String, Location>>(index.entrySet())) {
+                if(entry.getValue().segment != oldest) {
+                    continue;
+                }
+                Location location = entry.getValue();
+                try {
+                    index(entry.getKey(), write(toRecord(entry.getKey(), read(location, location.segment.read(location.position, location.length)))));
+                } catch (IOException e) {
+                    LOGGER.debug(e, "Dropping unreadable cache entry %s", entry.getKey());
+                    unindex(entry.getKey());
+                    try {
+                        write(toRemovalRecord(entry.getKey()));
+                    } catch (IOException e1) {
+                        LOGGER.debug(e1, "Failed to store cache entry %s removal", entry.getKey());
+                    }
+                }
+            }
+            segments.remove(oldest.id);
+            delete(oldest);
+            LOGGER.debug("Compacted cache segment %s", oldest.file);
+        }
+    }
+
+    private void evict() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size;
+        }
+        while (size > maxSize && segments.size() > 1) {
+            Segment oldest = segments.remove(segments.firstKey());
+            size -= oldest.size;
+            for (Iterator<Location> locations = index.values().iterator(); locations.hasNext(); ) {
+                if(locations.next().segment == oldest) {
+                    locations.remove();
+                }
+            }
+            delete(oldest);
+            LOGGER.debug("Evicted cache segment %s", oldest.file);
+        }
+    }
+
+    private static void delete(Segment segment) {
+        segment.retire(false, true);
+    }
+
+    private void index(String key, Location location) {
+        Location previous = index.put(key, location);
+        if(previous != null) {
+            previous.segment.live -= previous.getRecordSize();
+        }
+        location.segment.live += location.getRecordSize();
+    }
+
+    private Location unindex(String key) {
+        Location previous = index.remove(key);
+        if(previous != null) {
+            previous.segment.live -= previous.getRecordSize();
+        }
+        return previous;
+    }
+
+    private static HttpCacheEntry read(Location location, ByteBuffer record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(toBytes(record)));
+        in.readUTF();
+        in.readByte();
+        HttpCacheEntry entry = readEntry(in);
+        return location.expiresAt != null ? entry.refresh(location.expiresAt) : entry;
+    }
+
+    private static byte[] toRecord(String key, HttpCacheEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key);
+        out.writeByte(STORED);
+        writeEntry(out, entry);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] toRemovalRecord(String key) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key);
+        out.writeByte(REMOVED);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Indexes the records of the given segment, truncating it after its last valid record.
+     * @throws IOException if the segment can't be read at all
+     */
+    private void scan(Segment segment) throws IOException {
+        long end = Math.min(segment.size, Integer.MAX_VALUE);
+        int position = 0;
+        while (position + RECORD_HEADER_SIZE <= end) {
+            ByteBuffer header = segment.read(position, RECORD_HEADER_SIZE);
+            int marker = header.getInt();
+            int length = header.getInt();
+            if(marker != RECORD_MARKER || length < 0 || position + RECORD_HEADER_SIZE + (long) length > end) {
+                break;
+            }
+            try {
+                scanRecord(segment, position, length);
+            } catch (IOException e) {
+                LOGGER.debug(e, "Found corrupted record in cache segment %s at %d", segment.file, position);
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if(position < segment.size) {
+            LOGGER.debug("Truncating cache segment %s after last valid record at %d", segment.file, position);
+            segment.truncate(position);
+        }
+    }
+
+    private void scanRecord(Segment segment, int position, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(toBytes(segment.read(position + RECORD_HEADER_SIZE, Math.min(length, MAX_RECORD_PREFIX_SIZE)))));
+        String key = in.readUTF();
+        byte kind = in.readByte();
+        if(kind == STORED) {
+            index(key, new Location(segment, position + RECORD_HEADER_SIZE, length, null));
+        }else if(kind == REFRESHED) {
+            long expiresAt = in.readLong();
+            Location location = index.get(key);
+            if(location != null) {
+                index(key, location.refresh(expiresAt));
+            }
+        }else if(kind == REMOVED) {
+            unindex(key);
+        }else{
+            throw new IOException("Unknown record kind " + kind);
+        }
+    }
+
+    private Segment newSegment(long id) throws IOException {
+        Segment segment = new Segment(id, segmentFile(id));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private File segmentFile(long id) {
+        return new File(directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    private static void writeEntry(DataOutputStream out, HttpCacheEntry entry) throws IOException {
+        BufferedHttpResource resource = entry.getResource();
+        out.writeInt(resource.getStatusCode());
+        writeString(out, resource.getStatusMessage());
+        writeString(out, resource.getContentType());
+        writeString(out, resource.getCharset() != null ? resource.getCharset().name() : null);
+        writeString(out, resource.getContentEncoding());
+        out.writeInt(resource.getHeaderFields().size());
+        for (Map.Entry<String, List<String>> header : resource.getHeaderFields().entrySet()) {
+            writeString(out, header.getKey());
+            out.writeInt(header.getValue().size());
+            for (String value : header.getValue()) {
+                writeString(out, value);
+            }
+        }
+        out.writeInt(entry.getVaryHeaders().size());
+        for (Map.Entry<String, String> vary : entry.getVaryHeaders().entrySet()) {
+            out.writeUTF(vary.getKey());
+            writeString(out, vary.getValue());
+        }
+        out.writeLong(entry.getExpiresAt());
+        writeString(out, entry.getEtag());
+        writeString(out, entry.getLastModified());
+        byte[] entity = resource.getEntityBytes();
+        out.writeInt(entity.length);
+        out.write(entity);
+    }
+
+    private static HttpCacheEntry readEntry(DataInputStream in) throws IOException {
+        int statusCode = in.readInt();
+        String statusMessage = readString(in);
+        String contentType = readString(in);
+        String charset = readString(in);
+        String contentEncoding = readString(in);
+        int headerCount = in.readInt();
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        for (int i = 0; i < headerCount; i++) {
+            String name = readString(in);
+            int valueCount = in.readInt();
+            List<String> values = new ArrayList<String>(valueCount);
+            for (int j = 0; j < valueCount; j++) {
+                values.add(readString(in));
+            }
+            headers.put(name, values);
+        }
+        int varyCount = in.readInt();
+        Map<String, String> varyHeaders = new HashMap<String, String>();
+        for (int i = 0; i < varyCount; i++) {
+            varyHeaders.put(in.readUTF(), readString(in));
+        }
+        long expiresAt = in.readLong();
+        String etag = readString(in);
+        String lastModified = readString(in);
+        byte[] entity = new byte[in.readInt()];
+        in.readFully(entity);
+        BufferedHttpResource resource = new BufferedHttpResource(statusCode, statusMessage, contentType, charset != null ? Charset.forName(charset) : null, contentEncoding, unmodifiableMap(headers), entity);
+        return new HttpCacheEntry(resource, varyHeaders, expiresAt, etag, lastModified);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if(value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static final class Location {
+        private final Segment segment;
+        private final int position;
+        private final int length;
+        private final Long expiresAt;
+
+        private Location(Segment segment, int position, int length, Long expiresAt) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.expiresAt = expiresAt;
+        }
+
+        private Location refresh(long expiresAt) {
+            return new Location(segment, position, length, expiresAt);
+        }
+
+        private int getRecordSize() {
+            return RECORD_HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * Thrown when opening a cache on a directory already used by another cache.
+     */
+    static final class DirectoryLockedException extends IOException {
+        DirectoryLockedException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Segment {
+
+        private final long id;
+        private final File file;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final AtomicInteger readers = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean retired;
+        private boolean trim;
+        private boolean delete;
+        private MappedByteBuffer map;
+        private long capacity;
+        private long size;
+        private long live;
+
+        private Segment(long id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            this.size = channel.size();
+            this.capacity = size;
+        }
+
+        /**
+         * Appends the given record, growing the file to the next size class if needed.
+         * @param limit maximum size of the segment, the record is expected to fit in it
+         */
+        private long append(ByteBuffer record, long limit) throws IOException {
+            long position = size;
+            long required = position + record.remaining();
+            if(required > capacity) {
+                long sizeClass = MIN_SIZE_CLASS;
+                while (sizeClass < required) {
+                    sizeClass <<= 1;
+                }
+                raf.setLength(Math.max(required, Math.min(sizeClass, limit)));
+                capacity = raf.length();
+            }
+            while (record.hasRemaining()) {
+                channel.write(record, size);
+                size = position + record.position();
+            }
+            return position;
+        }
+
+        /**
+         * @return a view of the given region of the segment, the segment being mapped again only once its file grew to a new size class
+         */
+        private ByteBuffer read(int position, int length) throws IOException {
+            if(map == null || map.capacity() < (long) position + length) {
+                map = channel.map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+            }
+            ByteBuffer buffer = map.duplicate();
+            buffer.position(position);
+            buffer.limit(position + length);
+            return buffer.slice();
+        }
+
+        private void truncate(long size) throws IOException {
+            map = null;
+            channel.truncate(size);
+            this.size = size;
+            this.capacity = size;
+        }
+
+        /**
+         * Registers a reader of the segment mapping. Must be called with the cache lock held, while the segment is still indexed.
+         */
+        private void acquire() {
+            readers.incrementAndGet();
+        }
+
+        private void release() {
+            if(readers.decrementAndGet() == 0 && retired) {
+                close();
+            }
+        }
+
+        /**
+         * Closes the segment once its last reader is done, as truncating a file still being read from its mapping fails the reader. Must be called with the cache lock held, once the segment is no longer indexed.
+         * @param trim whether to trim the file of the space allocated ahead of its last record
+         * @param delete whether to delete the file
+         */
+        private void retire(boolean trim, boolean delete) {
+            this.trim = trim;
+            this.delete = delete;
+            this.retired = true;
+            if(readers.get() == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            if(!closed.compareAndSet(false, true)) {
+                return;
+            }
+            map = null;
+            try {
+                if(trim && capacity > size) {
+                    channel.truncate(size);
+                }
+                channel.close();
+                raf.close();
+            } catch (IOException e) {
+                LOGGER.debug(e, "Failed to close cache segment %s", file);
+            }
+            if(delete && !file.delete()) {
+                LOGGER.debug("Failed to delete cache segment %s", file);
+            }
+        }
+    }
+}
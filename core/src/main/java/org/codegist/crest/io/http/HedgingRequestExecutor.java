@@ -0,0 +1,331 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.common.lang.Disposable;
+import org.codegist.common.lang.Disposables;
+import org.codegist.common.log.Logger;
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.config.MethodType;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.util.DaemonThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>RequestExecutor implementation that cuts the latency tail of idempotent requests by hedging them.</p>
+ * <p>GET, HEAD and OPTIONS requests are executed by the delegate on the caller's thread. If no response came back once the configured percentile of the method's recent latencies elapsed, a second copy of the request is fired on the hedging executor service. The first response wins, the other attempt is cancelled right away by interrupting its thread, and its response is closed if it still comes back.</p>
+ * <p>Hedges are never queued: when every thread of the hedging executor service is busy, the request is not hedged and simply waits for its first attempt.</p>
+ * <p>Interrupting an attempt aborts its connection with the {@link org.codegist.crest.io.http.NioHttpChannelFactory} or a java.net.http based channel factory. Channels doing blocking socket reads, as the default {@link org.codegist.crest.io.http.HttpURLConnectionHttpChannelFactory}, can't be interrupted: their losing attempt runs until the response comes back, then gets closed, meaning a winning hedge is only returned once the caller's own attempt is back.</p>
+ * <p>Any other request is passed through to the delegate.</p>
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.CRestBuilder#useHedging()
+ */
+public class HedgingRequestExecutor implements RequestExecutor, Disposable {
+
+    /**
+     * <p>CRestConfig property to set the percentile of the method's recent latencies after which a request is hedged.</p>
+     * <p>Default is 95.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String PERCENTILE_PROP = HedgingRequestExecutor.class.getName() + "#percentile";
+
+    /**
+     * <p>CRestConfig property to set the delay in milliseconds after which a request is hedged while not enough latencies have been recorded for its method.</p>
+     * <p>Default is 1000 milliseconds.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String INITIAL_DELAY_PROP = HedgingRequestExecutor.class.getName() + "#initial-delay";
+
+    /**
+     * <p>CRestConfig property to set the minimum delay in milliseconds after which a request is hedged.</p>
+     * <p>Default is 10 milliseconds.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String MIN_DELAY_PROP = HedgingRequestExecutor.class.getName() + "#min-delay";
+
+    /**
+     * <p>CRestConfig property to set the number of most recent latencies the percentile is computed on.</p>
+     * <p>Default is 100.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String WINDOW_SIZE_PROP = HedgingRequestExecutor.class.getName() + "#window-size";
+
+    /**
+     * <p>CRestConfig property to set the minimum number of latencies to record before the percentile is used.</p>
+     * <p>Default is 20.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String MINIMUM_SAMPLES_PROP = HedgingRequestExecutor.class.getName() + "#minimum-samples";
+
+    /**
+     * <p>CRestConfig property to set the maximum number of threads of the executor service created by {@link HedgingRequestExecutor#newExecutorService(org.codegist.crest.CRestConfig)}, bounding the number of hedges in flight at once.</p>
+     * <p>Default is 64.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String MAX_THREADS_PROP = HedgingRequestExecutor.class.getName() + "#max-threads";
+
+    private static final Logger LOGGER = Logger.getLogger(HedgingRequestExecutor.class);
+    private final ConcurrentMap<Method, LatencyWindow> windows = new ConcurrentHashMap<Method, LatencyWindow>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("crest-hedging-timer"));
+    private final RequestExecutor delegate;
+    private final ExecutorService executor;
+    private final int percentile;
+    private final long initialDelay;
+    private final long minDelay;
+    private final int windowSize;
+    private final int minimumSamples;
+
+    /**
+     * @param delegate request executor to delegate the requests execution to
+     * @param crestConfig CRest configuration
+     * @param executor executor service the hedges are executed on. Should reject tasks rather than queue them when busy, as the one returned by {@link HedgingRequestExecutor#newExecutorService(org.codegist.crest.CRestConfig)} does.
+     */
+    public HedgingRequestExecutor(RequestExecutor delegate, CRestConfig crestConfig, ExecutorService executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.percentile = crestConfig.get(PERCENTILE_PROP, 95);
+        this.initialDelay = crestConfig.get(INITIAL_DELAY_PROP, 1000l);
+        this.minDelay = crestConfig.get(MIN_DELAY_PROP, 10l);
+        this.windowSize = crestConfig.get(WINDOW_SIZE_PROP, 100);
+        this.minimumSamples = crestConfig.get(MINIMUM_SAMPLES_PROP, 20);
+    }
+
+    /**
+     * Creates a bounded executor service of daemon threads, suitable to execute the hedges. The executor service has no queue: once all its threads are busy, it rejects new hedges.
+     * @param crestConfig CRest configuration
+     * @return a new executor service, to be shut down by the caller once not needed anymore
+     * @see HedgingRequestExecutor#MAX_THREADS_PROP
+     */
+    public static ExecutorService newExecutorService(CRestConfig crestConfig) {
+        return new ThreadPoolExecutor(0, crestConfig.get(MAX_THREADS_PROP, 64), 60l, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new DaemonThreadFactory("crest-hedging"));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Response execute(Request request) throws Exception {
+        MethodConfig mc = request.getMethodConfig();
+        if(!isIdempotent(mc.getType())) {
+            return delegate.execute(request);
+        }
+
+        LatencyWindow window = windowOf(mc.getMethod());
+        return new Race(request, window).run(delayOf(window));
+    }
+
+    /**
+     * Stops the hedging timer. The executor service given at construction time is left to its owner.
+     */
+    public void dispose() {
+        timer.shutdownNow();
+    }
+
+    private long delayOf(LatencyWindow window) {
+        long delay = window.getPercentile(percentile);
+        return Math.max(minDelay, delay < 0 ? initialDelay : delay);
+    }
+
+    private LatencyWindow windowOf(Method method) {
+        LatencyWindow window = windows.get(method);
+        if(window == null) {
+            LatencyWindow newWindow = new LatencyWindow(windowSize, minimumSamples);
+            window = windows.putIfAbsent(method, newWindow);
+            if(window == null) {
+                window = newWindow;
+            }
+        }
+        return window;
+    }
+
+    private static boolean isIdempotent(MethodType type) {
+        return MethodType.GET.equals(type) || MethodType.HEAD.equals(type) || MethodType.OPTIONS.equals(type);
+    }
+
+    private static final class Attempt {
+        private final Response response;
+        private final Exception exception;
+
+        private Attempt(Response response, Exception exception) {
+            this.response = response;
+            this.exception = exception;
+        }
+    }
+
+    private final class Race implements Runnable {
+
+        private final Request request;
+        private final LatencyWindow window;
+        private final Thread caller = Thread.currentThread();
+        private final Lock lock = new ReentrantLock();
+        private final Condition hedgeDone = lock.newCondition();
+        private Future<?> timeout;
+        private Future<?> hedgeFuture;
+        private Attempt hedge;
+        private boolean primaryRunning = true;
+        private boolean hedging = false;
+        private boolean callerInterrupted = false;
+        private boolean settled = false;
+
+        private Race(Request request, LatencyWindow window) {
+            this.request = request;
+            this.window = window;
+        }
+
+        Response run(long delay) throws Exception {
+            try {
+                timeout = timer.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("Hedging timer is shut down, request not hedged: %s", request.getMethodConfig().getMethod());
+            }
+            Attempt primary = attempt();
+
+            lock.lock();
+            try {
+                primaryRunning = false;
+                if(timeout != null) {
+                    timeout.cancel(false);
+                }
+                if(callerInterrupted) {
+                    // interrupted by the winning hedge to cancel the primary attempt, not by the caller
+                    Thread.interrupted();
+                }
+                if(settled) {
+                    // the hedge won
+                    dispose(primary);
+                    return hedge.response;
+                }
+                if(primary.exception == null) {
+                    settle();
+                    return primary.response;
+                }
+                while(hedging && hedge == null) {
+                    try {
+                        hedgeDone.await();
+                    } catch (InterruptedException e) {
+                        settle();
+                        throw new RequestException(e);
+                    }
+                }
+                if(hedge != null && hedge.exception == null) {
+                    settled = true;
+                    return hedge.response;
+                }
+                settle();
+                if(hedge != null) {
+                    dispose(hedge);
+                }
+                throw primary.exception;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Fires the hedge once the delay elapsed, unless the primary attempt is back or no hedging thread is available.
+         */
+        public void run() {
+            lock.lock();
+            try {
+                if(!primaryRunning || settled) {
+                    return;
+                }
+                hedgeFuture = executor.submit(new Runnable() {
+                    public void run() {
+                        finish(attempt());
+                    }
+                });
+                hedging = true;
+                LOGGER.debug("Hedged request: %s", request.getMethodConfig().getMethod());
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("No hedging thread available, request not hedged: %s", request.getMethodConfig().getMethod());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void finish(Attempt attempt) {
+            lock.lock();
+            try {
+                if(settled) {
+                    dispose(attempt);
+                    return;
+                }
+                hedge = attempt;
+                if(primaryRunning && attempt.exception == null) {
+                    settled = true;
+                    LOGGER.debug("Cancelling hedged request loser: %s", request.getMethodConfig().getMethod());
+                    callerInterrupted = true;
+                    caller.interrupt();
+                }
+                hedgeDone.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Ends the race in favor of the primary attempt: a running hedge is cancelled, and disposed if it still comes back. Must be called with the lock held.
+         */
+        private void settle() {
+            settled = true;
+            if(hedgeFuture != null && hedge == null) {
+                LOGGER.debug("Cancelling hedged request loser: %s", request.getMethodConfig().getMethod());
+                hedgeFuture.cancel(true);
+            }
+        }
+
+        private Attempt attempt() {
+            long start = System.currentTimeMillis();
+            try {
+                Response response = delegate.execute(request);
+                window.record(System.currentTimeMillis() - start);
+                return new Attempt(response, null);
+            } catch (Exception e) {
+                return new Attempt(null, e);
+            } catch (Throwable e) {
+                return new Attempt(null, new RequestException(e));
+            }
+        }
+
+        private void dispose(Attempt attempt) {
+            LOGGER.debug("Disposing hedged request loser: %s", request.getMethodConfig().getMethod());
+            Disposables.dispose(attempt.response, attempt.exception);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+/**
+ * Store of cached responses used by the {@link org.codegist.crest.io.http.CachingRequestExecutor}.
+ * <p>Implementations must be threadsafe.</p>
+ * @author laurent.gilles@codegist.org
+ */
+interface HttpCache {
+
+    /**
+     * @param key cache key
+     * @return the entry stored for the given key, null if none
+     */
+    HttpCacheEntry get(String key);
+
+    /**
+     * Stores the given entry, replacing any previous entry stored for the same key
+     * @param key cache key
+     * @param entry entry to store
+     */
+    void put(String key, HttpCacheEntry entry);
+
+    /**
+     * Extends the freshness of the entry stored for the given key, if any, leaving the rest of the entry untouched
+     * @param key cache key
+     * @param expiresAt new time in milliseconds until which the entry is fresh
+     */
+    void refresh(String key, long expiresAt);
+
+    /**
+     * Evicts the entry stored for the given key, if any
+     * @param key cache key
+     */
+    void remove(String key);
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import java.util.Map;
+
+/**
+ * Cached response along with the validators and freshness information needed to serve it or revalidate it.
+ * @author laurent.gilles@codegist.org
+ */
+final class HttpCacheEntry {
+
+    private final BufferedHttpResource resource;
+    private final Map<String,String> varyHeaders;
+    private final long expiresAt;
+    private final String etag;
+    private final String lastModified;
+
+    /**
+     * @param resource buffered response
+     * @param varyHeaders values of the request headers listed by the response Vary header, keyed by lower-cased header name
+     * @param expiresAt time in milliseconds until which the response is fresh
+     * @param etag the response ETag header, null if none
+     * @param lastModified the response Last-Modified header, null if none
+     */
+    HttpCacheEntry(BufferedHttpResource resource, Map<String, String> varyHeaders, long expiresAt, String etag, String lastModified) {
+        this.resource = resource;
+        this.varyHeaders = varyHeaders;
+        this.expiresAt = expiresAt;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    BufferedHttpResource getResource() {
+        return resource;
+    }
+
+    Map<String, String> getVaryHeaders() {
+        return varyHeaders;
+    }
+
+    long getExpiresAt() {
+        return expiresAt;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    String getLastModified() {
+        return lastModified;
+    }
+
+    boolean isFresh(long now) {
+        return now < expiresAt;
+    }
+
+    boolean isRevalidable() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * @param expiresAt new freshness limit
+     * @return a copy of this entry fresh until the given time
+     */
+    HttpCacheEntry refresh(long expiresAt) {
+        return new HttpCacheEntry(resource, varyHeaders, expiresAt, etag, lastModified);
+    }
+}
@@ -26,6 +26,7 @@ import org.codegist.common.lang.Disposables;
 import org.codegist.common.log.Logger;
 import org.codegist.crest.config.MethodConfig;
 import org.codegist.crest.config.MethodType;
+import org.codegist.crest.io.DeadlineExceededException;
 import org.codegist.crest.io.Request;
 import org.codegist.crest.io.RequestException;
 import org.codegist.crest.io.RequestExecutor;
@@ -41,6 +42,8 @@ import static org.codegist.common.lang.Strings.isNotBlank;
 import static org.codegist.crest.config.ParamType.COOKIE;
 import static org.codegist.crest.config.ParamType.HEADER;
 import static org.codegist.crest.io.http.HttpRequests.toUrl;
+import static org.codegist.crest.util.Requests.getRemainingTime;
+import static org.codegist.crest.util.Requests.isDeadlineExceeded;
 
 /**
  * RequestExecutor HTTP implementation
@@ -74,6 +77,9 @@ public class HttpRequestExecutor implements RequestExecutor, Disposable {
         try {
             return doExecute(request);
         }catch(IOException e){
+            if(isDeadlineExceeded(request, e)) {
+                throw new DeadlineExceededException("Deadline exceeded while executing " + request.getMethodConfig().getMethod(), e);
+            }
             throw new RequestException(e);
         }
     }
@@ -85,14 +91,25 @@ public class HttpRequestExecutor implements RequestExecutor, Disposable {
 
         LOGGER.debug("Initiating HTTP Channel: %s %s", mc.getType(), url);
         LOGGER.trace(request);
+
+        int coTimeout = mc.getConnectionTimeout();
+        int soTimeout = mc.getSocketTimeout();
+        long remaining = getRemainingTime(request);
+        if(remaining != Long.MAX_VALUE && (coTimeout <= 0 || soTimeout <= 0 || (long) coTimeout + soTimeout > remaining)) {
+            // both phases must fit in the time left before the deadline, which is shared proportionally to their own timeouts, an infinite one weighting the whole time left
+            long coWeight = coTimeout > 0 ? Math.min(coTimeout, remaining) : remaining;
+            long soWeight = soTimeout > 0 ? Math.min(soTimeout, remaining) : remaining;
+            long coShare = Math.max(1, remaining * coWeight / (coWeight + soWeight));
+            coTimeout = (int) Math.min(coShare, Integer.MAX_VALUE);
+            soTimeout = (int) Math.min(Math.max(1, remaining - coShare), Integer.MAX_VALUE);
+        }
+
         MethodType methodType = mc.getType();
         HttpChannel httpChannel = channelFactory.open(methodType, url, charset);
 
-        int coTimeout = mc.getConnectionTimeout();
         LOGGER.debug("Set Connection Timeout: %d ", coTimeout);
         httpChannel.setConnectionTimeout(coTimeout);
 
-        int soTimeout = mc.getSocketTimeout();
         LOGGER.debug("Set Socket Timeout: %d ", soTimeout);
         httpChannel.setSocketTimeout(soTimeout);
 
@@ -25,8 +25,11 @@ import org.codegist.crest.config.PathBuilder;
 import org.codegist.crest.io.Request;
 import org.codegist.crest.param.EncodedPair;
 
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.Iterator;
+import java.util.Locale;
 
 import static org.codegist.common.lang.Strings.isNotBlank;
 import static org.codegist.crest.config.ParamType.*;
@@ -64,4 +67,15 @@ final class HttpRequests {
 
         return pathBuilder.build() + matrix + query;
     }
+
+    public static String toEndpoint(Request request) throws Exception {
+        return toEndpoint(toUrl(request));
+    }
+
+    public static String toEndpoint(String urlString) throws MalformedURLException {
+        URL url = new URL(urlString);
+        String endpoint = url.getProtocol() + "://" + url.getHost().toLowerCase(Locale.ENGLISH);
+        // scheme default port is implicit so that http://h:80 and http://h share the same endpoint
+        return url.getPort() != -1 && url.getPort() != url.getDefaultPort() ? endpoint + ":" + url.getPort() : endpoint;
+    }
 }
@@ -25,6 +25,7 @@ import org.codegist.common.lang.Disposable;
 import org.codegist.crest.io.Request;
 import org.codegist.crest.io.Response;
 import org.codegist.crest.serializer.ResponseDeserializer;
+import org.codegist.crest.util.ReturnTypes;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -86,11 +87,11 @@ class HttpResponse implements Response, Disposable {
     }
 
     public Type getExpectedGenericType() {
-        return request.getMethodConfig().getMethod().getGenericReturnType();
+        return ReturnTypes.getExpectedGenericType(request.getMethodConfig().getMethod());
     }
 
     public Class<?> getExpectedType() {
-        return request.getMethodConfig().getMethod().getReturnType();
+        return ReturnTypes.getExpectedType(request.getMethodConfig().getMethod());
     }
 
     public Request getRequest() {
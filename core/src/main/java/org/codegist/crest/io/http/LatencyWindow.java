@@ -0,0 +1,77 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed size window of the most recent call latencies, from which latency percentiles are computed.
+ * @author laurent.gilles@codegist.org
+ */
+class LatencyWindow {
+
+    private final long[] latencies;
+    private final int minimumSamples;
+    private final Lock lock = new ReentrantLock();
+    private int index = 0;
+    private int count = 0;
+
+    LatencyWindow(int size, int minimumSamples) {
+        this.latencies = new long[size];
+        this.minimumSamples = minimumSamples;
+    }
+
+    void record(long latency) {
+        lock.lock();
+        try {
+            latencies[index] = latency;
+            index = (index + 1) % latencies.length;
+            count = Math.min(count + 1, latencies.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param percentile percentile to compute, from 1 to 100
+     * @return the given percentile of the recorded latencies, or -1 if not enough latencies have been recorded yet
+     */
+    long getPercentile(int percentile) {
+        long[] sorted;
+        int count;
+        lock.lock();
+        try {
+            count = this.count;
+            if(count < minimumSamples || count == 0) {
+                return -1;
+            }
+            sorted = new long[count];
+            System.arraycopy(latencies, 0, sorted, 0, count);
+        } finally {
+            lock.unlock();
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100d * count) - 1;
+        return sorted[Math.max(0, Math.min(rank, count - 1))];
+    }
+}
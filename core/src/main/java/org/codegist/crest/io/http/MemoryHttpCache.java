@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory {@link org.codegist.crest.io.http.HttpCache} holding at most a given number of entries and a given total of response bytes, evicting the least recently used entries when full.
+ * <p>An entry larger than the total bytes limit is not cached.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class MemoryHttpCache implements HttpCache {
+
+    private final Map<String, HttpCacheEntry> entries = new LinkedHashMap<String, HttpCacheEntry>(16, 0.75f, true);
+    private final Lock lock = new ReentrantLock();
+    private final int maxEntries;
+    private final long maxSize;
+    private long size;
+
+    MemoryHttpCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE);
+    }
+
+    MemoryHttpCache(int maxEntries, long maxSize) {
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+    }
+
+    public HttpCacheEntry get(String key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(String key, HttpCacheEntry entry) {
+        long entrySize = sizeOf(entry);
+        lock.lock();
+        try {
+            size -= sizeOf(entries.remove(key));
+            if(entrySize > maxSize) {
+                return;
+            }
+            entries.put(key, entry);
+            size += entrySize;
+            Iterator<HttpCacheEntry> eldest = entries.values().iterator();
+            while(entries.size() > maxEntries || size > maxSize) {
+                size -= sizeOf(eldest.next());
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void refresh(String key, long expiresAt) {
+        lock.lock();
+        try {
+            HttpCacheEntry entry = entries.get(key);
+            if(entry != null) {
+                entries.put(key, entry.refresh(expiresAt));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(String key) {
+        lock.lock();
+        try {
+            size -= sizeOf(entries.remove(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long bytes() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long sizeOf(HttpCacheEntry entry) {
+        return entry != null && entry.getResource() != null ? entry.getResource().getEntityBytes().length : 0;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Response entity stream fed by an I/O thread.</p>
+ * <p>The I/O thread offers the entity bytes as they are read from the socket while the consumer thread reads them at its own pace. Once the buffered bytes reach a high watermark, the I/O thread is asked to stop reading from the socket until the consumer drained the buffer below a low watermark.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class NioEntityInputStream extends InputStream {
+
+    static final int HIGH_WATERMARK = 64 * 1024;
+    static final int LOW_WATERMARK = 16 * 1024;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition readable = lock.newCondition();
+    private final LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+    private final NioHttpExchange.Control control;
+    private final int timeout;
+    private int position;
+    private int buffered;
+    private boolean ended;
+    private boolean closed;
+    private boolean suspended;
+    private IOException failure;
+
+    /**
+     * @param control I/O thread control
+     * @param timeout maximum time in milliseconds to wait for data, 0 means infinite
+     */
+    NioEntityInputStream(NioHttpExchange.Control control, int timeout) {
+        this.control = control;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Offers bytes read from the socket. Called by the I/O thread.
+     * @return false if the buffer is full and the I/O thread should stop reading until resumed
+     */
+    boolean offer(byte[] data, int offset, int length) {
+        byte[] chunk = new byte[length];
+        System.arraycopy(data, offset, chunk, 0, length);
+        lock.lock();
+        try {
+            if (closed) {
+                return true;
+            }
+            chunks.add(chunk);
+            buffered += length;
+            readable.signal();
+            suspended = buffered >= HIGH_WATERMARK;
+            return !suspended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Signals the end of the entity. Called by the I/O thread.
+     */
+    void end() {
+        lock.lock();
+        try {
+            ended = true;
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Signals an I/O failure, any buffered bytes are still readable before the failure is rethrown.
+     */
+    void fail(IOException e) {
+        lock.lock();
+        try {
+            if (failure == null && !ended) {
+                failure = e;
+                readable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        boolean resume = false;
+        int read = 0;
+        lock.lock();
+        try {
+            awaitData();
+            if (chunks.isEmpty()) {
+                return -1;
+            }
+            while (read < len && !chunks.isEmpty()) {
+                byte[] chunk = chunks.getFirst();
+                int length = Math.min(len - read, chunk.length - position);
+                System.arraycopy(chunk, position, b, off + read, length);
+                read += length;
+                position += length;
+                if (position == chunk.length) {
+                    chunks.removeFirst();
+                    position = 0;
+                }
+            }
+            buffered -= read;
+            if (suspended && buffered <= LOW_WATERMARK) {
+                suspended = false;
+                resume = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (resume) {
+            control.resume();
+        }
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        lock.lock();
+        try {
+            return buffered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closing the stream before the entity end has been reached aborts the exchange and closes the underlying connection.
+     */
+    @Override
+    public void close() {
+        boolean abort;
+        lock.lock();
+        try {
+            abort = !closed && !ended && failure == null;
+            closed = true;
+            chunks.clear();
+            buffered = 0;
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (abort) {
+            control.abort();
+        }
+    }
+
+    private void awaitData() throws IOException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            while (chunks.isEmpty() && !ended && failure == null && !closed) {
+                if (timeout <= 0) {
+                    readable.await();
+                } else if (nanos <= 0) {
+                    throw new SocketTimeoutException("Read timed out");
+                } else {
+                    nanos = readable.awaitNanos(nanos);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (chunks.isEmpty() && !ended) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Request entity stream drained by an I/O thread.</p>
+ * <p>The {@link org.codegist.crest.io.http.HttpEntityWriter} writes the entity from the calling thread while the I/O thread writes the buffered bytes to the socket as it becomes writable. Writers block once the buffered bytes exceed the window size, the I/O thread is never blocked by a slow entity writer.</p>
+ * <p>When the entity length is unknown, each written block is framed as an HTTP/1.1 chunk.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class NioEntityOutputStream extends OutputStream {
+
+    static final int WINDOW_SIZE = 64 * 1024;
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition writable = lock.newCondition();
+    private final LinkedList<ByteBuffer> chunks = new LinkedList<ByteBuffer>();
+    private final NioHttpExchange.Control control;
+    private final boolean chunked;
+    private final int timeout;
+    private int buffered;
+    private boolean closed;
+    private boolean suspended;
+    private IOException failure;
+
+    /**
+     * @param control I/O thread control
+     * @param chunked whether to use the chunked transfer encoding
+     * @param timeout maximum time in milliseconds to wait for the window to open, 0 means infinite
+     */
+    NioEntityOutputStream(NioHttpExchange.Control control, boolean chunked, int timeout) {
+        this.control = control;
+        this.chunked = chunked;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        ByteBuffer chunk = chunked ? frame(b, off, len) : copy(b, off, len);
+        boolean resume;
+        lock.lock();
+        try {
+            awaitWindow();
+            chunks.add(chunk);
+            buffered += chunk.remaining();
+            resume = suspended;
+            suspended = false;
+        } finally {
+            lock.unlock();
+        }
+        if (resume) {
+            control.resume();
+        }
+    }
+
+    /**
+     * Marks the end of the entity, writing the last chunk if chunked.
+     */
+    @Override
+    public void close() throws IOException {
+        boolean resume;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (chunked && failure == null) {
+                chunks.add(ByteBuffer.wrap(LAST_CHUNK));
+            }
+            closed = true;
+            resume = suspended;
+            suspended = false;
+        } finally {
+            lock.unlock();
+        }
+        if (resume) {
+            control.resume();
+        }
+    }
+
+    /**
+     * Returns the next buffered block to write to the socket. Called by the I/O thread.
+     * @return the next block or null if none is available yet, in which case the I/O thread will be resumed once a new block is written
+     */
+    ByteBuffer poll() {
+        lock.lock();
+        try {
+            ByteBuffer chunk = chunks.poll();
+            if (chunk == null) {
+                suspended = !closed;
+                return null;
+            }
+            buffered -= chunk.remaining();
+            writable.signalAll();
+            return chunk;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true once the entity has been fully written and polled
+     */
+    boolean isComplete() {
+        lock.lock();
+        try {
+            return closed && chunks.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Signals an I/O failure, any blocked or subsequent write will rethrow it.
+     */
+    void fail(IOException e) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = e;
+                chunks.clear();
+                writable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitWindow() throws IOException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            while (buffered >= WINDOW_SIZE && failure == null && !closed) {
+                if (timeout <= 0) {
+                    writable.await();
+                } else if (nanos <= 0) {
+                    throw new SocketTimeoutException("Write timed out");
+                } else {
+                    nanos = writable.awaitNanos(nanos);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private static ByteBuffer copy(byte[] b, int off, int len) {
+        byte[] copy = new byte[len];
+        System.arraycopy(b, off, copy, 0, len);
+        return ByteBuffer.wrap(copy);
+    }
+
+    private static ByteBuffer frame(byte[] b, int off, int len) {
+        byte[] size = Integer.toHexString(len).getBytes(ISO_8859_1);
+        ByteBuffer frame = ByteBuffer.allocate(size.length + CRLF.length + len + CRLF.length);
+        frame.put(size).put(CRLF).put(b, off, len).put(CRLF);
+        frame.flip();
+        return frame;
+    }
+}
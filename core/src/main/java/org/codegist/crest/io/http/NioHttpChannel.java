@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.config.MethodType;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+final class NioHttpChannel implements HttpChannel {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private final NioHttpReactor reactor;
+    private final MethodType methodType;
+    private final URL url;
+    private final Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    private int socketTimeout;
+    private int connectionTimeout;
+    private HttpEntityWriter httpEntityWriter;
+
+    NioHttpChannel(NioHttpReactor reactor, MethodType methodType, URL url) {
+        this.reactor = reactor;
+        this.methodType = methodType;
+        this.url = url;
+        setHeader("User-Agent", "CodeGist-CRest Agent");
+    }
+
+    public void setSocketTimeout(int timeout) {
+        this.socketTimeout = timeout;
+    }
+
+    public void setConnectionTimeout(int timeout) {
+        this.connectionTimeout = timeout;
+    }
+
+    public void setHeader(String name, String value) {
+        List<String> values = new ArrayList<String>(1);
+        values.add(value);
+        headers.put(name, values);
+    }
+
+    public void addHeader(String name, String value) {
+        List<String> values = headers.get(name);
+        if (values == null) {
+            setHeader(name, value);
+        } else {
+            values.add(value);
+        }
+    }
+
+    public void setContentType(String value) {
+        setHeader("Content-Type", value);
+    }
+
+    public void setAccept(String value) {
+        setHeader("Accept", value);
+    }
+
+    public void writeEntityWith(HttpEntityWriter httpEntityWriter) {
+        this.httpEntityWriter = httpEntityWriter;
+    }
+
+    public Response send() throws IOException {
+        boolean hasEntity = methodType.hasEntity();
+        boolean chunked = false;
+        if (hasEntity) {
+            int contentLength = httpEntityWriter.getContentLength();
+            chunked = contentLength < 0;
+            if (chunked) {
+                setHeader("Transfer-Encoding", "chunked");
+            } else {
+                setHeader("Content-Length", String.valueOf(contentLength));
+            }
+        }
+
+        NioHttpExchange exchange = new NioHttpExchange(getRoute(), getAddress(), encodeHead(), MethodType.HEAD.equals(methodType), hasEntity, chunked, socketTimeout);
+        reactor.submit(exchange);
+        exchange.awaitConnection(connectionTimeout);
+
+        if (hasEntity) {
+            NioEntityOutputStream body = exchange.getBody();
+            try {
+                httpEntityWriter.writeEntityTo(body);
+                body.close();
+            } catch (IOException e) {
+                exchange.abort();
+                throw e;
+            }
+        }
+        return exchange.awaitResponse(socketTimeout);
+    }
+
+    private ByteBuffer encodeHead() {
+        StringBuilder head = new StringBuilder(256);
+        String file = url.getFile();
+        head.append(methodType.name()).append(' ').append(file.length() == 0 ? "/" : file).append(" HTTP/1.1\r\n");
+        if (!headers.containsKey("Host")) {
+            head.append("Host: ").append(url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort()).append("\r\n");
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        head.append("\r\n");
+        return ByteBuffer.wrap(head.toString().getBytes(ISO_8859_1));
+    }
+
+    private String getRoute() {
+        return getHost() + ":" + getPort();
+    }
+
+    private InetSocketAddress getAddress() throws UnknownHostException {
+        InetSocketAddress address = new InetSocketAddress(getHost(), getPort());
+        if (address.isUnresolved()) {
+            throw new UnknownHostException(getHost());
+        }
+        return address;
+    }
+
+    private String getHost() {
+        String host = url.getHost();
+        return host.startsWith("[") && host.endsWith("]") ? host.substring(1, host.length() - 1) : host;
+    }
+
+    private int getPort() {
+        return url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    }
+}
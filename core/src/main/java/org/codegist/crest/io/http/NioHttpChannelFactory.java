@@ -0,0 +1,134 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.codegist.common.lang.Disposable;
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.config.MethodType;
+import org.codegist.crest.util.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Non-blocking HttpChannelFactory implementation, built on a selector-driven HTTP/1.1 engine.</p>
+ * <p>Connections are multiplexed over a small, fixed number of I/O threads and kept alive for reuse, so that the number of in-flight requests is not bound by the number of I/O threads. Request entities are written by the calling thread into a bounded buffer drained by the I/O threads, response entities are streamed back the same way.</p>
+ * <p>Note that <b>https</b> URLs are delegated to {@link org.codegist.crest.io.http.HttpURLConnectionHttpChannelFactory}.</p>
+ * @author laurent.gilles@codegist.org
+ */
+public final class NioHttpChannelFactory implements HttpChannelFactory, Disposable {
+
+    /**
+     * <p>CRestConfig property to set the number of I/O threads.</p>
+     * <p>Default is the number of available processors.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String IO_THREADS_PROP = NioHttpChannelFactory.class.getName() + "#io-threads";
+
+    /**
+     * <p>CRestConfig property to set the maximum number of idle connections kept alive per host and I/O thread.</p>
+     * <p>Default is 32.</p>
+     * <p>Expects an int</p>
+     */
+    public static final String MAX_IDLE_CONNECTIONS_PROP = NioHttpChannelFactory.class.getName() + "#max-idle-connections";
+
+    /**
+     * <p>CRestConfig property to set the maximum time in milliseconds an idle connection is kept alive.</p>
+     * <p>Default is 30000 milliseconds.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String KEEP_ALIVE_PROP = NioHttpChannelFactory.class.getName() + "#keep-alive";
+
+    private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 32;
+    private static final long DEFAULT_KEEP_ALIVE = 30000l;
+
+    private final NioHttpReactor[] reactors;
+    private final AtomicInteger next = new AtomicInteger();
+    private final HttpChannelFactory secureChannelFactory = new HttpURLConnectionHttpChannelFactory();
+
+    /**
+     *
+     * @param ioThreads number of I/O threads
+     * @param maxIdleConnections maximum number of idle connections kept alive per host and I/O thread
+     * @param keepAlive maximum time in milliseconds an idle connection is kept alive
+     * @throws IOException failed to open the I/O selectors
+     */
+    public NioHttpChannelFactory(int ioThreads, int maxIdleConnections, long keepAlive) throws IOException {
+        ThreadFactory threadFactory = new DaemonThreadFactory("crest-nio");
+        this.reactors = new NioHttpReactor[ioThreads];
+        try {
+            for (int i = 0; i < ioThreads; i++) {
+                reactors[i] = new NioHttpReactor(maxIdleConnections, keepAlive);
+                threadFactory.newThread(reactors[i]).start();
+            }
+        } catch (IOException e) {
+            dispose();
+            throw e;
+        }
+    }
+
+    /**
+     *
+     * @param crestConfig the crest config
+     * @throws IOException failed to open the I/O selectors
+     */
+    public NioHttpChannelFactory(CRestConfig crestConfig) throws IOException {
+        this(
+                crestConfig.get(IO_THREADS_PROP, Runtime.getRuntime().availableProcessors()),
+                crestConfig.get(MAX_IDLE_CONNECTIONS_PROP, DEFAULT_MAX_IDLE_CONNECTIONS),
+                crestConfig.get(KEEP_ALIVE_PROP, DEFAULT_KEEP_ALIVE)
+        );
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public HttpChannel open(MethodType methodType, String url, Charset charset) throws IOException {
+        URL target = new URL(url);
+        if (!"http".equalsIgnoreCase(target.getProtocol())) {
+            return secureChannelFactory.open(methodType, url, charset);
+        }
+        return new NioHttpChannel(nextReactor(), methodType, target);
+    }
+
+    private NioHttpReactor nextReactor() {
+        return reactors[(next.getAndIncrement() & Integer.MAX_VALUE) % reactors.length];
+    }
+
+    public void dispose() {
+        for (NioHttpReactor reactor : reactors) {
+            if (reactor != null) {
+                reactor.dispose();
+            }
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            dispose();
+        } finally {
+            super.finalize();
+        }
+    }
+}
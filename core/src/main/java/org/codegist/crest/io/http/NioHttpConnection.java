@@ -0,0 +1,309 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.codegist.common.log.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.channels.SelectionKey.*;
+
+/**
+ * <p>Non-blocking HTTP/1.1 connection, driven by a single {@link org.codegist.crest.io.http.NioHttpReactor} thread.</p>
+ * <p>Carries one exchange at a time, and is handed back to the reactor for reuse once the response is complete and the connection can be kept alive.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class NioHttpConnection implements NioHttpResponseParser.Handler {
+
+    private static final Logger LOG = Logger.getLogger(NioHttpConnection.class);
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final NioHttpReactor reactor;
+    private final String route;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private NioHttpExchange exchange;
+    private NioHttpResponseParser parser;
+    private ByteBuffer writing;
+    private boolean connected;
+    private boolean reused;
+    private boolean headWritten;
+    private boolean requestWritten;
+    private boolean readSuspended;
+    private boolean writeSuspended;
+    private long idleSince;
+
+    private NioHttpConnection(NioHttpReactor reactor, String route, SocketChannel channel, boolean connected) throws IOException {
+        this.reactor = reactor;
+        this.route = route;
+        this.channel = channel;
+        this.connected = connected;
+        this.key = channel.register(reactor.getSelector(), 0, this);
+    }
+
+    /**
+     * Initiates a non-blocking connection to the given address. Must be called from the reactor thread.
+     */
+    static NioHttpConnection open(NioHttpReactor reactor, String route, InetSocketAddress address) throws IOException {
+        LOG.debug("Opening connection to %s", route);
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            boolean connected = channel.connect(address);
+            return new NioHttpConnection(reactor, route, channel, connected);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    String getRoute() {
+        return route;
+    }
+
+    long getIdleSince() {
+        return idleSince;
+    }
+
+    boolean isOpen() {
+        return channel.isOpen() && key.isValid();
+    }
+
+    /**
+     * Starts carrying the given exchange.
+     */
+    void assign(NioHttpExchange exchange) {
+        this.exchange = exchange;
+        this.parser = new NioHttpResponseParser(exchange.isHeadRequest(), this);
+        this.writing = null;
+        this.headWritten = false;
+        this.requestWritten = false;
+        this.readSuspended = false;
+        this.writeSuspended = false;
+        this.readBuffer.clear();
+        exchange.assigned(this);
+        if (connected) {
+            exchange.connected();
+            updateInterest();
+        } else {
+            key.interestOps(OP_CONNECT);
+        }
+    }
+
+    /**
+     * Handles the selected I/O events.
+     */
+    void onSelected() {
+        try {
+            if (key.isConnectable()) {
+                finishConnect();
+            }
+            if (key.isValid() && key.isWritable()) {
+                write();
+            }
+            if (key.isValid() && key.isReadable()) {
+                read();
+            }
+        } catch (CancelledKeyException e) {
+            fail(new IOException("Connection closed"));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void resumeReading(NioHttpExchange exchange) {
+        if (this.exchange == exchange && readSuspended && isOpen()) {
+            readSuspended = false;
+            updateInterest();
+        }
+    }
+
+    void resumeWriting(NioHttpExchange exchange) {
+        if (this.exchange == exchange && writeSuspended && isOpen()) {
+            writeSuspended = false;
+            updateInterest();
+        }
+    }
+
+    void abort(NioHttpExchange exchange) {
+        if (this.exchange == exchange) {
+            LOG.debug("Aborting exchange on %s", route);
+            this.exchange = null;
+            close();
+        }
+    }
+
+    /**
+     * Fails the current exchange if any, and closes the connection.
+     */
+    void fail(IOException e) {
+        NioHttpExchange failed = exchange;
+        exchange = null;
+        close();
+        if (failed == null) {
+            return;
+        }
+        if (reused && !parser.hasStarted() && failed.isReplayable() && !failed.isFailed()) {
+            LOG.debug("Stale connection to %s, replaying request on a new connection (%s)", route, e.getMessage());
+            failed.assigned(null);
+            reactor.dispatch(failed);
+        } else {
+            failed.fail(e);
+        }
+    }
+
+    /**
+     * Closes the connection, the current exchange, if any, is left untouched.
+     */
+    void close() {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.trace(e, "Failed to close connection to %s", route);
+        }
+        reactor.evict(this);
+    }
+
+    public void onHead(int statusCode, String statusMessage, Map<String, List<String>> headers) {
+        exchange.responded(new NioHttpResponse(statusCode, statusMessage, headers, exchange.getEntity()));
+    }
+
+    public void onBody(byte[] data, int offset, int length) {
+        if (!exchange.getEntity().offer(data, offset, length) && !readSuspended) {
+            readSuspended = true;
+            updateInterest();
+        }
+    }
+
+    private void finishConnect() throws IOException {
+        if (channel.finishConnect()) {
+            connected = true;
+            exchange.connected();
+            updateInterest();
+        }
+    }
+
+    private void write() throws IOException {
+        while (true) {
+            if (writing == null) {
+                writing = nextOutbound();
+                if (writing == null) {
+                    writeSuspended = !requestWritten;
+                    updateInterest();
+                    return;
+                }
+            }
+            channel.write(writing);
+            if (writing.hasRemaining()) {
+                return;
+            }
+            writing = null;
+        }
+    }
+
+    private ByteBuffer nextOutbound() {
+        if (!headWritten) {
+            headWritten = true;
+            return exchange.getHead();
+        }
+        NioEntityOutputStream body = exchange.getBody();
+        if (body == null) {
+            requestWritten = true;
+            return null;
+        }
+        ByteBuffer next = body.poll();
+        if (next == null && body.isComplete()) {
+            requestWritten = true;
+        }
+        return next;
+    }
+
+    private void read() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            endOfStream();
+            return;
+        }
+        if (exchange == null) {
+            LOG.debug("Unexpected data received on idle connection to %s, closing", route);
+            close();
+            return;
+        }
+        readBuffer.flip();
+        parser.parse(readBuffer);
+        boolean leftover = readBuffer.hasRemaining();
+        readBuffer.clear();
+        if (parser.isComplete()) {
+            complete(parser.isKeepAlive() && !leftover);
+        }
+    }
+
+    private void endOfStream() throws IOException {
+        if (exchange == null) {
+            LOG.trace("Idle connection to %s closed by server", route);
+            close();
+            return;
+        }
+        parser.endOfStream();
+        complete(false);
+    }
+
+    private void complete(boolean keepAlive) {
+        NioHttpExchange completed = exchange;
+        completed.getEntity().end();
+        if (keepAlive && requestWritten) {
+            exchange = null;
+            parser = null;
+            reused = true;
+            readSuspended = false;
+            writeSuspended = false;
+            idleSince = System.currentTimeMillis();
+            key.interestOps(OP_READ);
+            reactor.release(this);
+        } else {
+            exchange = null;
+            close();
+            if (completed.getBody() != null && !requestWritten) {
+                completed.getBody().fail(new IOException("Response received before the request entity was fully sent"));
+            }
+        }
+    }
+
+    private void updateInterest() {
+        int ops = 0;
+        if (!readSuspended) {
+            ops |= OP_READ;
+        }
+        if (!requestWritten && !writeSuspended) {
+            ops |= OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+}
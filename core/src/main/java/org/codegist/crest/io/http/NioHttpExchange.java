@@ -0,0 +1,288 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A single request/response exchange handed over to a {@link org.codegist.crest.io.http.NioHttpReactor}.</p>
+ * <p>Bridges the calling thread, waiting for the connection and the response head, with the I/O thread driving the connection.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class NioHttpExchange {
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final String route;
+    private final InetSocketAddress address;
+    private final ByteBuffer head;
+    private final boolean headRequest;
+    private final NioEntityOutputStream body;
+    private final NioEntityInputStream entity;
+    private volatile NioHttpReactor reactor;
+    private volatile NioHttpConnection connection;
+    private boolean connected;
+    private NioHttpResponse response;
+    private IOException failure;
+
+    /**
+     * @param route connection pool key
+     * @param address remote address
+     * @param head encoded request line and headers
+     * @param headRequest whether the request is a HEAD request, thus expecting no response entity
+     * @param hasBody whether the request has an entity
+     * @param chunked whether the request entity is chunked
+     * @param socketTimeout the socket timeout
+     */
+    NioHttpExchange(String route, InetSocketAddress address, ByteBuffer head, boolean headRequest, boolean hasBody, boolean chunked, int socketTimeout) {
+        this.route = route;
+        this.address = address;
+        this.head = head;
+        this.headRequest = headRequest;
+        this.body = hasBody ? new NioEntityOutputStream(new Control() {
+            public void resume() {
+                onReactor(new ConnectionTask() {
+                    void run(NioHttpConnection connection) {
+                        connection.resumeWriting(NioHttpExchange.this);
+                    }
+                });
+            }
+            public void abort() {
+                NioHttpExchange.this.abort();
+            }
+        }, chunked, socketTimeout) : null;
+        this.entity = new NioEntityInputStream(new Control() {
+            public void resume() {
+                onReactor(new ConnectionTask() {
+                    void run(NioHttpConnection connection) {
+                        connection.resumeReading(NioHttpExchange.this);
+                    }
+                });
+            }
+            public void abort() {
+                NioHttpExchange.this.abort();
+            }
+        }, socketTimeout);
+    }
+
+    String getRoute() {
+        return route;
+    }
+
+    InetSocketAddress getAddress() {
+        return address;
+    }
+
+    ByteBuffer getHead() {
+        return head.duplicate();
+    }
+
+    boolean isHeadRequest() {
+        return headRequest;
+    }
+
+    NioEntityOutputStream getBody() {
+        return body;
+    }
+
+    NioEntityInputStream getEntity() {
+        return entity;
+    }
+
+    /**
+     * @return true if the exchange can be safely sent again over a new connection, eg has no streamed entity
+     */
+    boolean isReplayable() {
+        return body == null;
+    }
+
+    void submitted(NioHttpReactor reactor) {
+        this.reactor = reactor;
+    }
+
+    void assigned(NioHttpConnection connection) {
+        this.connection = connection;
+    }
+
+    void connected() {
+        lock.lock();
+        try {
+            connected = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void responded(NioHttpResponse response) {
+        lock.lock();
+        try {
+            this.response = response;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void fail(IOException e) {
+        lock.lock();
+        try {
+            if (failure != null) {
+                return;
+            }
+            failure = e;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        entity.fail(e);
+        if (body != null) {
+            body.fail(e);
+        }
+    }
+
+    boolean isFailed() {
+        lock.lock();
+        try {
+            return failure != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Aborts the exchange, closing its connection if any.
+     */
+    void abort() {
+        fail(new IOException("Exchange aborted"));
+        onReactor(new ConnectionTask() {
+            void run(NioHttpConnection connection) {
+                connection.abort(NioHttpExchange.this);
+            }
+        });
+    }
+
+    /**
+     * Waits for the connection to be established.
+     * @param timeout maximum time to wait in milliseconds, 0 means infinite
+     * @throws IOException connection failure or timeout
+     */
+    void awaitConnection(int timeout) throws IOException {
+        lock.lock();
+        try {
+            await(timeout, "connect timed out", true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the response head to be received.
+     * @param timeout maximum time to wait in milliseconds, 0 means infinite
+     * @return the response
+     * @throws IOException exchange failure or timeout
+     */
+    NioHttpResponse awaitResponse(int timeout) throws IOException {
+        lock.lock();
+        try {
+            await(timeout, "Read timed out", false);
+            return response;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void await(int timeout, String timeoutMessage, boolean forConnection) throws IOException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            while (failure == null && (forConnection ? !connected : response == null)) {
+                if (timeout <= 0) {
+                    changed.await();
+                } else if (nanos <= 0) {
+                    lock.unlock();
+                    try {
+                        abort();
+                    } finally {
+                        lock.lock();
+                    }
+                    throw new SocketTimeoutException(timeoutMessage);
+                } else {
+                    nanos = changed.awaitNanos(nanos);
+                }
+            }
+        } catch (InterruptedException e) {
+            lock.unlock();
+            try {
+                abort();
+            } finally {
+                lock.lock();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (failure != null && (forConnection || response == null)) {
+            throw failure;
+        }
+    }
+
+    private void onReactor(final ConnectionTask task) {
+        NioHttpReactor current = reactor;
+        if (current == null) {
+            return;
+        }
+        current.execute(new Runnable() {
+            public void run() {
+                NioHttpConnection current = connection;
+                if (current != null) {
+                    task.run(current);
+                }
+            }
+        });
+    }
+
+    private abstract static class ConnectionTask {
+        abstract void run(NioHttpConnection connection);
+    }
+
+    /**
+     * Lets a stream consumer or producer drive the I/O thread
+     */
+    interface Control {
+
+        /**
+         * Resumes the I/O operations previously suspended because of a full or empty buffer
+         */
+        void resume();
+
+        /**
+         * Aborts the exchange
+         */
+        void abort();
+
+    }
+}
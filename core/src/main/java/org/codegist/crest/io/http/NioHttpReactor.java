@@ -0,0 +1,249 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.codegist.common.log.Logger;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <p>Selector-driven I/O loop multiplexing many {@link org.codegist.crest.io.http.NioHttpConnection} over a single thread.</p>
+ * <p>All connection state is confined to the reactor thread, other threads interact with it by submitting tasks. Keeps a per-route pool of idle keep-alive connections.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class NioHttpReactor implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(NioHttpReactor.class);
+    private static final long SELECT_TIMEOUT = 1000;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final Map<String, LinkedList<NioHttpConnection>> idleConnections = new HashMap<String, LinkedList<NioHttpConnection>>();
+    private final int maxIdleConnectionsPerRoute;
+    private final long keepAlive;
+    private volatile boolean running = true;
+
+    /**
+     * @param maxIdleConnectionsPerRoute maximum number of idle connections kept per route
+     * @param keepAlive maximum time in milliseconds an idle connection is kept
+     * @throws IOException failed to open the selector
+     */
+    NioHttpReactor(int maxIdleConnectionsPerRoute, long keepAlive) throws IOException {
+        this.maxIdleConnectionsPerRoute = maxIdleConnectionsPerRoute;
+        this.keepAlive = keepAlive;
+        this.selector = Selector.open();
+    }
+
+    Selector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Executes the given task on the reactor thread.
+     */
+    void execute(Runnable task) {
+        tasks.offer(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Submits an exchange to be sent over an idle or a new connection.
+     */
+    void submit(final NioHttpExchange exchange) throws IOException {
+        if (!running) {
+            throw new IOException("Channel factory has been disposed");
+        }
+        exchange.submitted(this);
+        execute(new Runnable() {
+            public void run() {
+                try {
+                    dispatch(exchange);
+                } catch (RuntimeException e) {
+                    exchange.fail(ioException("Failed to dispatch request", e));
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Assigns the given exchange to a connection. Must be called from the reactor thread.
+     */
+    void dispatch(NioHttpExchange exchange) {
+        if (!running) {
+            exchange.fail(new IOException("Channel factory has been disposed"));
+            return;
+        }
+        if (exchange.isFailed()) {
+            return;
+        }
+        try {
+            NioHttpConnection connection = pollIdle(exchange.getRoute());
+            if (connection == null) {
+                connection = NioHttpConnection.open(this, exchange.getRoute(), exchange.getAddress());
+            }
+            connection.assign(exchange);
+        } catch (IOException e) {
+            exchange.fail(e);
+        }
+    }
+
+    /**
+     * Gives back a keep-alive connection once its exchange is complete. Must be called from the reactor thread.
+     */
+    void release(NioHttpConnection connection) {
+        LinkedList<NioHttpConnection> idle = idleConnections.get(connection.getRoute());
+        if (idle == null) {
+            idle = new LinkedList<NioHttpConnection>();
+            idleConnections.put(connection.getRoute(), idle);
+        }
+        idle.addFirst(connection);
+        if (idle.size() > maxIdleConnectionsPerRoute) {
+            idle.getLast().close();
+        }
+    }
+
+    /**
+     * Removes a closed connection from the idle pool. Must be called from the reactor thread.
+     */
+    void evict(NioHttpConnection connection) {
+        LinkedList<NioHttpConnection> idle = idleConnections.get(connection.getRoute());
+        if (idle != null && idle.remove(connection) && idle.isEmpty()) {
+            idleConnections.remove(connection.getRoute());
+        }
+    }
+
+    /**
+     * Stops the reactor, failing any pending exchange.
+     */
+    void dispose() {
+        running = false;
+        selector.wakeup();
+    }
+
+    public void run() {
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT);
+                runTasks();
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    onSelected((NioHttpConnection) key.attachment());
+                }
+                closeExpiredConnections();
+            }
+        } catch (IOException e) {
+            LOG.error(e, "I/O reactor failure");
+        } catch (RuntimeException e) {
+            LOG.error(e, "I/O reactor failure");
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Handles the readiness of a single connection, a failure only affecting the connection and its pending exchange.
+     */
+    private void onSelected(NioHttpConnection connection) {
+        try {
+            connection.onSelected();
+        } catch (RuntimeException e) {
+            LOG.error(e, "Connection to %s failed", connection.getRoute());
+            try {
+                connection.fail(ioException("Connection failed", e));
+            } catch (RuntimeException e2) {
+                LOG.warn(e2, "Failed to close connection to %s", connection.getRoute());
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.error(e, "I/O reactor task failure");
+            }
+        }
+    }
+
+    private static IOException ioException(String message, Throwable cause) {
+        IOException e = new IOException(message + ": " + cause);
+        e.initCause(cause);
+        return e;
+    }
+
+    private NioHttpConnection pollIdle(String route) {
+        LinkedList<NioHttpConnection> idle = idleConnections.get(route);
+        while (idle != null && !idle.isEmpty()) {
+            NioHttpConnection connection = idle.removeFirst();
+            if (connection.isOpen()) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    private void closeExpiredConnections() {
+        if (idleConnections.isEmpty()) {
+            return;
+        }
+        long expiry = System.currentTimeMillis() - keepAlive;
+        List<NioHttpConnection> expired = new ArrayList<NioHttpConnection>();
+        for (LinkedList<NioHttpConnection> idle : idleConnections.values()) {
+            for (NioHttpConnection connection : idle) {
+                if (connection.getIdleSince() < expiry) {
+                    expired.add(connection);
+                }
+            }
+        }
+        for (NioHttpConnection connection : expired) {
+            LOG.trace("Closing expired idle connection to %s", connection.getRoute());
+            connection.close();
+        }
+    }
+
+    private void shutdown() {
+        running = false;
+        IOException disposed = new IOException("Channel factory has been disposed");
+        for (SelectionKey key : new ArrayList<SelectionKey>(selector.keys())) {
+            ((NioHttpConnection) key.attachment()).fail(disposed);
+        }
+        runTasks();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOG.warn(e, "Failed to close selector");
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.codegist.common.io.IOs;
+import org.codegist.common.log.Logger;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+final class NioHttpResponse implements HttpChannel.Response {
+
+    private static final Logger LOG = Logger.getLogger(NioHttpResponse.class);
+    private final int statusCode;
+    private final String statusMessage;
+    private final Map<String, List<String>> headers;
+    private final InputStream entity;
+
+    NioHttpResponse(int statusCode, String statusMessage, Map<String, List<String>> headers, InputStream entity) {
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.headers = headers;
+        this.entity = entity;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public String getHeaderField(String field) {
+        List<String> values = headers.get(field);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    public Map<String, List<String>> getHeaderFields() {
+        return headers;
+    }
+
+    public InputStream getEntity() {
+        return entity;
+    }
+
+    public String getContentType() {
+        return getHeaderField("Content-Type");
+    }
+
+    public String getContentEncoding() {
+        return getHeaderField("Content-Encoding");
+    }
+
+    public void close() {
+        LOG.trace("Releasing...");
+        IOs.close(entity);
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Incremental HTTP/1.1 response parser.</p>
+ * <p>Bytes are pushed as they are read from the socket, the parser never blocks nor waits for a complete response. The response head and entity chunks are passed to the given handler as soon as they are available. Supports fixed length, chunked and read-until-close entities.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class NioHttpResponseParser {
+
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final Handler handler;
+    private final boolean headRequest;
+    private final StringBuilder line = new StringBuilder();
+    private State state = State.STATUS_LINE;
+    private Map<String, List<String>> headers;
+    private String version;
+    private int statusCode;
+    private String statusMessage;
+    private long remaining;
+    private boolean keepAlive;
+    private boolean started;
+
+    NioHttpResponseParser(boolean headRequest, Handler handler) {
+        this.headRequest = headRequest;
+        this.handler = handler;
+    }
+
+    /**
+     * Consumes the given buffer until either the buffer has no more remaining bytes or the response is complete.
+     * @param in buffer to consume
+     * @throws IOException malformed response
+     */
+    void parse(ByteBuffer in) throws IOException {
+        started |= in.hasRemaining();
+        while (in.hasRemaining() && state != State.COMPLETE) {
+            String read;
+            switch (state) {
+                case STATUS_LINE:
+                    if ((read = readLine(in)) != null) {
+                        parseStatusLine(read);
+                        state = State.HEADERS;
+                    }
+                    break;
+                case HEADERS:
+                    if ((read = readLine(in)) != null) {
+                        if (read.length() == 0) {
+                            endOfHeaders();
+                        } else {
+                            parseHeader(read);
+                        }
+                    }
+                    break;
+                case FIXED_LENGTH_BODY:
+                    remaining -= readBody(in, remaining);
+                    if (remaining == 0) {
+                        state = State.COMPLETE;
+                    }
+                    break;
+                case UNTIL_CLOSE_BODY:
+                    readBody(in, Long.MAX_VALUE);
+                    break;
+                case CHUNK_SIZE:
+                    if ((read = readLine(in)) != null) {
+                        remaining = parseChunkSize(read);
+                        state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+                    }
+                    break;
+                case CHUNK_DATA:
+                    remaining -= readBody(in, remaining);
+                    if (remaining == 0) {
+                        state = State.CHUNK_END;
+                    }
+                    break;
+                case CHUNK_END:
+                    if ((read = readLine(in)) != null) {
+                        if (read.length() != 0) {
+                            throw new IOException("Malformed chunked entity, expected CRLF after chunk data");
+                        }
+                        state = State.CHUNK_SIZE;
+                    }
+                    break;
+                case TRAILERS:
+                    if ((read = readLine(in)) != null && read.length() == 0) {
+                        state = State.COMPLETE;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected state " + state);
+            }
+        }
+    }
+
+    /**
+     * Notifies the parser that the connection has been closed by the server.
+     * @throws IOException if the response is not complete yet and its end can't be inferred by the connection close
+     */
+    void endOfStream() throws IOException {
+        if (state == State.UNTIL_CLOSE_BODY) {
+            state = State.COMPLETE;
+        } else if (state != State.COMPLETE) {
+            throw new IOException("Connection closed before the response was complete");
+        }
+    }
+
+    /**
+     * @return true if at least one byte of the response has been received
+     */
+    boolean hasStarted() {
+        return started;
+    }
+
+    /**
+     * @return true once the response has been fully read
+     */
+    boolean isComplete() {
+        return state == State.COMPLETE;
+    }
+
+    /**
+     * @return true if the connection can be reused for another request once the response is complete
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    private String readLine(ByteBuffer in) throws IOException {
+        while (in.hasRemaining()) {
+            char c = (char) (in.get() & 0xff);
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                String read = line.toString();
+                line.setLength(0);
+                return read;
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("Response line exceeds " + MAX_LINE_LENGTH + " characters");
+            }
+            line.append(c);
+        }
+        return null;
+    }
+
+    private long readBody(ByteBuffer in, long max) throws IOException {
+        int length = (int) Math.min(in.remaining(), max);
+        handler.onBody(in.array(), in.arrayOffset() + in.position(), length);
+        in.position(in.position() + length);
+        return length;
+    }
+
+    private void parseStatusLine(String statusLine) throws IOException {
+        int firstSpace = statusLine.indexOf(' ');
+        if (firstSpace < 0 || !statusLine.startsWith("HTTP/")) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        int secondSpace = statusLine.indexOf(' ', firstSpace + 1);
+        String code = secondSpace < 0 ? statusLine.substring(firstSpace + 1) : statusLine.substring(firstSpace + 1, secondSpace);
+        try {
+            this.statusCode = Integer.parseInt(code.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        this.version = statusLine.substring(0, firstSpace);
+        this.statusMessage = secondSpace < 0 ? "" : statusLine.substring(secondSpace + 1);
+        this.headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    }
+
+    private void parseHeader(String header) throws IOException {
+        int colon = header.indexOf(':');
+        if (colon <= 0) {
+            throw new IOException("Malformed header: " + header);
+        }
+        String name = header.substring(0, colon).trim();
+        String value = header.substring(colon + 1).trim();
+        List<String> values = headers.get(name);
+        if (values == null) {
+            values = new ArrayList<String>(1);
+            headers.put(name, values);
+        }
+        values.add(value);
+    }
+
+    private void endOfHeaders() throws IOException {
+        if (statusCode >= 100 && statusCode < 200) {
+            // interim response, the final one follows
+            state = State.STATUS_LINE;
+            return;
+        }
+        String connection = getHeader("Connection");
+        if ("HTTP/1.0".equals(version)) {
+            keepAlive = "keep-alive".equalsIgnoreCase(connection);
+        } else {
+            keepAlive = !"close".equalsIgnoreCase(connection);
+        }
+
+        handler.onHead(statusCode, statusMessage, headers);
+
+        String transferEncoding = getHeader("Transfer-Encoding");
+        String contentLength = getHeader("Content-Length");
+        if (headRequest || statusCode == 204 || statusCode == 304) {
+            state = State.COMPLETE;
+        } else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            state = State.CHUNK_SIZE;
+        } else if (contentLength != null) {
+            try {
+                remaining = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed Content-Length: " + contentLength);
+            }
+            state = remaining == 0 ? State.COMPLETE : State.FIXED_LENGTH_BODY;
+        } else {
+            keepAlive = false;
+            state = State.UNTIL_CLOSE_BODY;
+        }
+    }
+
+    private long parseChunkSize(String chunkSize) throws IOException {
+        int extension = chunkSize.indexOf(';');
+        String size = extension < 0 ? chunkSize : chunkSize.substring(0, extension);
+        try {
+            return Long.parseLong(size.trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed chunk size: " + chunkSize);
+        }
+    }
+
+    private String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values != null && !values.isEmpty() ? values.get(values.size() - 1) : null;
+    }
+
+    private enum State {
+        STATUS_LINE, HEADERS, FIXED_LENGTH_BODY, UNTIL_CLOSE_BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS, COMPLETE
+    }
+
+    /**
+     * Receives the parsed response parts
+     */
+    interface Handler {
+
+        void onHead(int statusCode, String statusMessage, Map<String, List<String>> headers) throws IOException;
+
+        void onBody(byte[] data, int offset, int length) throws IOException;
+
+    }
+}
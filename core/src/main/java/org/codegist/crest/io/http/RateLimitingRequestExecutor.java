@@ -0,0 +1,165 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.common.log.Logger;
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.config.RateLimit;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.RequestRejectedException;
+import org.codegist.crest.io.Response;
+
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.unmodifiableMap;
+import static org.codegist.crest.io.http.HttpRequests.toEndpoint;
+import static org.codegist.crest.util.Requests.getRemainingTime;
+
+/**
+ * <p>RequestExecutor implementation that shapes the outgoing traffic to the configured rate limits.</p>
+ * <p>Rate limits can be set per endpoint (scheme, host and port) and per REST interface method, a request going through both kinds of limits needs a permit from each.</p>
+ * <p>Depending on {@link RateLimitingRequestExecutor#MAX_WAIT_PROP}, a request exceeding the rate either waits for its permit, is rejected right away, or waits up to a maximum time and gets rejected if its permit is not available by then. Rejected requests end with a {@link org.codegist.crest.io.RequestRejectedException}. A request never waits past its deadline.</p>
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.CRestBuilder#rateLimit(String, int, long)
+ * @see org.codegist.crest.annotate.RateLimited
+ */
+public class RateLimitingRequestExecutor implements RequestExecutor {
+
+    /**
+     * <p>CRestConfig property to set the maximum time in milliseconds a request waits for its permit before being rejected. Set to 0 to reject the requests exceeding the rate right away, to -1 to wait as long as needed.</p>
+     * <p>Default is -1.</p>
+     * <p>Expects a long</p>
+     */
+    public static final String MAX_WAIT_PROP = RateLimitingRequestExecutor.class.getName() + "#max-wait";
+
+    private static final Logger LOGGER = Logger.getLogger(RateLimitingRequestExecutor.class);
+    private final ConcurrentMap<Method, TokenBucket> methodBuckets = new ConcurrentHashMap<Method, TokenBucket>();
+    private final Map<String, TokenBucket> endpointBuckets;
+    private final RequestExecutor delegate;
+    private final long maxWait;
+
+    /**
+     * @param delegate request executor to delegate the requests execution to
+     * @param crestConfig CRest configuration
+     * @param endpointRateLimits rate limits per endpoint url
+     */
+    public RateLimitingRequestExecutor(RequestExecutor delegate, CRestConfig crestConfig, Map<String, RateLimit> endpointRateLimits) {
+        this.delegate = delegate;
+        this.maxWait = crestConfig.get(MAX_WAIT_PROP, -1l);
+        long now = System.nanoTime();
+        Map<String, TokenBucket> buckets = new HashMap<String, TokenBucket>();
+        for(Map.Entry<String, RateLimit> entry : endpointRateLimits.entrySet()) {
+            RateLimit rateLimit = entry.getValue();
+            buckets.put(toEndpointKey(entry.getKey()), new TokenBucket(rateLimit.getPermits(), rateLimit.getPeriod(), now));
+        }
+        this.endpointBuckets = unmodifiableMap(buckets);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Response execute(Request request) throws Exception {
+        RateLimit methodRateLimit = request.getMethodConfig().getRateLimit();
+        if(methodRateLimit == null && endpointBuckets.isEmpty()) {
+            return delegate.execute(request);
+        }
+
+        long now = System.nanoTime();
+        long remaining = getRemainingTime(request);
+        long maxWaitNanos = maxWait < 0 && remaining == Long.MAX_VALUE ? -1 : TimeUnit.MILLISECONDS.toNanos(maxWait < 0 ? remaining : Math.min(maxWait, remaining));
+        long wait = 0;
+
+        TokenBucket endpointBucket = null;
+        if(!endpointBuckets.isEmpty()) {
+            String endpoint = toEndpoint(request);
+            endpointBucket = endpointBuckets.get(endpoint);
+            if(endpointBucket != null) {
+                wait = reserve(endpointBucket, now, maxWaitNanos, endpoint);
+            }
+        }
+        TokenBucket methodBucket = null;
+        if(methodRateLimit != null) {
+            Method method = request.getMethodConfig().getMethod();
+            methodBucket = methodBucketOf(method, methodRateLimit, now);
+            try {
+                wait = Math.max(wait, reserve(methodBucket, now, maxWaitNanos, method));
+            } catch (RequestRejectedException e) {
+                if(endpointBucket != null) {
+                    endpointBucket.refund();
+                }
+                throw e;
+            }
+        }
+
+        if(wait > 0) {
+            LOGGER.debug("Rate limit reached, delaying request by %d ms", TimeUnit.NANOSECONDS.toMillis(wait));
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                // the request is never sent, give back the permits it reserved
+                if(endpointBucket != null) {
+                    endpointBucket.refund();
+                }
+                if(methodBucket != null) {
+                    methodBucket.refund();
+                }
+                Thread.currentThread().interrupt();
+                throw new RequestException(e);
+            }
+        }
+        return delegate.execute(request);
+    }
+
+    private static long reserve(TokenBucket bucket, long now, long maxWait, Object key) throws RequestRejectedException {
+        long wait = bucket.reserve(now, maxWait);
+        if(wait < 0) {
+            LOGGER.debug("Rate limit reached, rejecting request: %s", key);
+            throw new RequestRejectedException("Rate limit reached for " + key);
+        }
+        return wait;
+    }
+
+    private TokenBucket methodBucketOf(Method method, RateLimit rateLimit, long now) {
+        TokenBucket bucket = methodBuckets.get(method);
+        if(bucket != null) {
+            return bucket;
+        }
+        bucket = new TokenBucket(rateLimit.getPermits(), rateLimit.getPeriod(), now);
+        TokenBucket previous = methodBuckets.putIfAbsent(method, bucket);
+        return previous != null ? previous : bucket;
+    }
+
+    private static String toEndpointKey(String url) {
+        try {
+            return toEndpoint(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid rate limited endpoint: " + url, e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.io.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exposes a response as a resource holding a slot, eg of a bulkhead or a concurrency limit, until the response is closed.
+ * @author laurent.gilles@codegist.org
+ */
+abstract class SlotHoldingHttpResource implements HttpResource {
+
+    private final Response response;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    SlotHoldingHttpResource(Response response) {
+        this.response = response;
+    }
+
+    /**
+     * Releases the slot, called once when the response is closed.
+     */
+    protected abstract void release();
+
+    public InputStream getEntity() throws IOException {
+        try {
+            return response.asStream();
+        } catch (Exception e) {
+            throw toIOException(e);
+        }
+    }
+
+    public String getContentType() throws IOException {
+        try {
+            return response.getContentType();
+        } catch (Exception e) {
+            throw toIOException(e);
+        }
+    }
+
+    public Charset getCharset() throws IOException {
+        try {
+            return response.getCharset();
+        } catch (Exception e) {
+            throw toIOException(e);
+        }
+    }
+
+    public String getHeaderField(String field) throws IOException {
+        try {
+            return response.getHeaderField(field);
+        } catch (Exception e) {
+            throw toIOException(e);
+        }
+    }
+
+    public Map<String, List<String>> getHeaderFields() throws IOException {
+        try {
+            return response.getHeaderFields();
+        } catch (Exception e) {
+            throw toIOException(e);
+        }
+    }
+
+    public String getContentEncoding() throws IOException {
+        try {
+            return response.getContentEncoding();
+        } catch (Exception e) {
+            throw toIOException(e);
+        }
+    }
+
+    public String getStatusMessage() throws IOException {
+        return response instanceof HttpResponse ? ((HttpResponse) response).getStatusMessage() : null;
+    }
+
+    public int getStatusCode() throws IOException {
+        try {
+            return response.getStatusCode();
+        } catch (Exception e) {
+            throw toIOException(e);
+        }
+    }
+
+    public void close() {
+        if(!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            response.dispose();
+        } finally {
+            release();
+        }
+    }
+
+    private static IOException toIOException(Exception e) {
+        if(e instanceof IOException) {
+            return (IOException) e;
+        }
+        IOException exception = new IOException(e.getMessage());
+        exception.initCause(e);
+        return exception;
+    }
+}
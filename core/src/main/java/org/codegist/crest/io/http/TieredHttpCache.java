@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.common.lang.Disposable;
+import org.codegist.common.lang.Disposables;
+
+/**
+ * Two-tier {@link org.codegist.crest.io.http.HttpCache}, usually a small fast tier in front of a large persistent one.
+ * <p>Entries are stored in both tiers, entries only found in the second tier are promoted to the first one.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class TieredHttpCache implements HttpCache, Disposable {
+
+    private final HttpCache first;
+    private final HttpCache second;
+
+    TieredHttpCache(HttpCache first, HttpCache second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public HttpCacheEntry get(String key) {
+        HttpCacheEntry entry = first.get(key);
+        if(entry == null) {
+            entry = second.get(key);
+            if(entry != null) {
+                first.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    public void put(String key, HttpCacheEntry entry) {
+        first.put(key, entry);
+        second.put(key, entry);
+    }
+
+    public void refresh(String key, long expiresAt) {
+        first.refresh(key, expiresAt);
+        second.refresh(key, expiresAt);
+    }
+
+    public void remove(String key) {
+        first.remove(key);
+        second.remove(key);
+    }
+
+    public void dispose() {
+        Disposables.dispose(first, second);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Lock-free token bucket, implemented as a generic cell rate algorithm: rather than counting tokens, it tracks the theoretical time at which the next permit will be available.</p>
+ * <p>Permits are reserved in advance, a caller that can't be granted a permit right away reserves the next one and waits for it, so that waiting callers are served in reservation order.</p>
+ * @author laurent.gilles@codegist.org
+ */
+class TokenBucket {
+
+    private final AtomicLong theoreticalArrivalTime;
+    private final long interval;
+    private final long tolerance;
+
+    /**
+     * @param permits number of permits granted per period, also being the maximum burst size
+     * @param period period in milliseconds
+     * @param now current time in nanoseconds
+     */
+    TokenBucket(int permits, long period, long now) {
+        this.interval = Math.max(1, TimeUnit.MILLISECONDS.toNanos(period) / permits);
+        this.tolerance = interval * (permits - 1);
+        this.theoreticalArrivalTime = new AtomicLong(now);
+    }
+
+    /**
+     * Reserves a permit.
+     * @param now current time in nanoseconds
+     * @param maxWait maximum time in nanoseconds the caller accepts to wait for the permit, negative for no maximum
+     * @return the time in nanoseconds the caller has to wait before using the reserved permit, -1 if no permit could be reserved within the given maximum wait time
+     */
+    long reserve(long now, long maxWait) {
+        while(true) {
+            long tat = theoreticalArrivalTime.get();
+            long start = tat - now < 0 ? now : tat;
+            long wait = Math.max(0, start - tolerance - now);
+            if(maxWait >= 0 && wait > maxWait) {
+                return -1;
+            }
+            if(theoreticalArrivalTime.compareAndSet(tat, start + interval)) {
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit previously reserved and not used.
+     */
+    void refund() {
+        theoreticalArrivalTime.addAndGet(-interval);
+    }
+}
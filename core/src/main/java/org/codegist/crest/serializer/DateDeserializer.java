@@ -25,8 +25,6 @@ import org.codegist.crest.CRestConfig;
 
 import java.io.InputStream;
 import java.nio.charset.Charset;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**                                       
@@ -34,10 +32,10 @@ import java.util.Date;
  */
 public class DateDeserializer extends TypeDeserializer<Date> {
 
-    private final DateFormat formatter;
+    private final DateFormatPool formatters;
 
     public DateDeserializer(CRestConfig crestConfig) {
-        this.formatter = new SimpleDateFormat(crestConfig.getDateFormat());
+        this.formatters = new DateFormatPool(crestConfig.getDateFormat());
     }
 
     /**
@@ -45,8 +43,6 @@ public class DateDeserializer extends TypeDeserializer<Date> {
      */
     @Override
     protected Date deserialize(InputStream stream, Charset charset) throws Exception {
-         synchronized (formatter) {
-           return formatter.parse(IOs.toString(stream, charset, true));
-         }
+        return formatters.parse(IOs.toString(stream, charset, true));
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.serializer;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <p>Lock-free pool of {@link java.text.DateFormat} instances.</p>
+ * <p>DateFormat is not threadsafe, rather than synchronizing on a shared instance, each call borrows an idle copy from the pool or creates a new one, and gives it back once done. Callers never block on a monitor, which keeps virtual threads from pinning their carrier thread.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class DateFormatPool {
+
+    private final Queue<DateFormat> pool = new ConcurrentLinkedQueue<DateFormat>();
+    private final String pattern;
+
+    DateFormatPool(String pattern) {
+        this.pattern = pattern;
+        this.pool.offer(newDateFormat());
+    }
+
+    String format(Date date) {
+        DateFormat formatter = borrow();
+        try {
+            return formatter.format(date);
+        } finally {
+            pool.offer(formatter);
+        }
+    }
+
+    Date parse(String source) throws ParseException {
+        DateFormat formatter = borrow();
+        try {
+            return formatter.parse(source);
+        } finally {
+            pool.offer(formatter);
+        }
+    }
+
+    private DateFormat borrow(){
+        DateFormat formatter = pool.poll();
+        return formatter != null ? formatter : newDateFormat();
+    }
+
+    private DateFormat newDateFormat(){
+        return new SimpleDateFormat(pattern);
+    }
+}
@@ -23,8 +23,6 @@ package org.codegist.crest.serializer;
 import org.codegist.crest.CRestConfig;
 
 import java.nio.charset.Charset;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
@@ -32,19 +30,17 @@ import java.util.Date;
  */
 public class DateSerializer extends StringSerializer<Date> {
 
-    private final DateFormat formatter;
+    private final DateFormatPool formatters;
 
     public DateSerializer(CRestConfig crestConfig) {
-        this.formatter = new SimpleDateFormat(crestConfig.getDateFormat());
+        this.formatters = new DateFormatPool(crestConfig.getDateFormat());
     }
 
     /**
      * @inheritDoc
      */
     public String serialize(Date value, Charset charset) {
-        synchronized (formatter) {
-            return formatter.format(value);
-        }
+        return formatters.format(value);
     }
 
 }
@@ -20,10 +20,12 @@
 
 package org.codegist.crest.serializer.jackson;
 
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.codegist.common.io.IOs;
 import org.codegist.crest.CRestConfig;
 import org.codegist.crest.serializer.Deserializer;
+import org.codegist.crest.util.ReturnTypes;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -33,6 +35,7 @@ import java.nio.charset.Charset;
 
 /**
  * <p><a href="http://jackson.codehaus.org/">Jackson</a> JSON deserializer implementation</p>
+ * <p>When the expected type is a streaming type (see {@link org.codegist.crest.util.ReturnTypes#isStreaming(Class)}), the response is read lazily, one value at a time, either from a top-level JSON array or from a sequence of whitespace/newline delimited JSON values.</p>
  * @author laurent.gilles@codegist.org
  */
 public class JacksonDeserializer implements Deserializer {
@@ -76,10 +79,26 @@ public class JacksonDeserializer implements Deserializer {
      * @inheritDoc
      */
     public <T> T deserialize(Class<T> type, Type genericType, InputStream stream, Charset charset) throws IOException {
+        if(ReturnTypes.isStreaming(type)) {
+            return (T) stream(ReturnTypes.getStreamedElementType(genericType), stream, charset);
+        }
         try {
             return jackson.<T>readValue(new InputStreamReader(stream, charset), jackson.getTypeFactory().constructType(genericType));
         } finally {
             IOs.close(stream);
         }
     }
+
+    private JacksonIterator<Object> stream(Type elementType, InputStream stream, Charset charset) throws IOException {
+        boolean streaming = false;
+        try {
+            MappingIterator<Object> values = jackson.reader(jackson.getTypeFactory().constructType(elementType)).readValues(new InputStreamReader(stream, charset));
+            streaming = true;
+            return new JacksonIterator<Object>(values, stream);
+        } finally {
+            if(!streaming) {
+                IOs.close(stream);
+            }
+        }
+    }
 }
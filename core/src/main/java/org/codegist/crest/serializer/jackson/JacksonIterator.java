@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.serializer.jackson;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.codegist.common.io.IOs;
+import org.codegist.crest.util.CloseableIterator;
+
+import java.io.Closeable;
+import java.util.NoSuchElementException;
+
+/**
+ * Streamed response iterator reading the values one at a time from a jackson {@link com.fasterxml.jackson.databind.MappingIterator}, the underlying source is closed as soon as the last value has been read.
+ * @param <T> Element type
+ * @author laurent.gilles@codegist.org
+ */
+final class JacksonIterator<T> implements CloseableIterator<T> {
+
+    private final MappingIterator<T> values;
+    private final Closeable source;
+    private boolean closed = false;
+
+    JacksonIterator(MappingIterator<T> values, Closeable source) {
+        this.values = values;
+        this.source = source;
+    }
+
+    public boolean hasNext() {
+        if(closed) {
+            return false;
+        }
+        boolean hasNext = false;
+        try {
+            hasNext = values.hasNext();
+            return hasNext;
+        } finally {
+            if(!hasNext) {
+                close();
+            }
+        }
+    }
+
+    public T next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return values.next();
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        IOs.close(source);
+    }
+}
@@ -28,23 +28,27 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
-
+/**
+ * <p>Bounded pool of {@link org.codegist.crest.serializer.jaxb.SimpleJaxb}, lazily grown up to the given pool size.</p>
+ * <p>Idle instances are kept in a lock-free queue while the pool bound is enforced by a semaphore, waiting callers are parked rather than blocked on a monitor so virtual threads don't pin their carrier thread.</p>
+ * @author laurent.gilles@codegist.org
+ */
 class PooledJaxb implements Jaxb {
 
-    private final BlockingQueue<Jaxb> pool;
+    private final Queue<Jaxb> pool = new ConcurrentLinkedQueue<Jaxb>();
+    private final Semaphore permits;
+    private final JAXBContext jaxbContext;
     private final long maxWait;
 
-    public PooledJaxb(JAXBContext jaxbContext, int poolSize, long maxWait) throws JAXBException {
+    public PooledJaxb(JAXBContext jaxbContext, int poolSize, long maxWait) {
+        this.jaxbContext = jaxbContext;
         this.maxWait = maxWait;
-        this.pool = new ArrayBlockingQueue<Jaxb>(poolSize);
-        for (int i = 0; i < poolSize; i++) {
-            SimpleJaxb jaxb = new SimpleJaxb(jaxbContext);
-            this.pool.add(jaxb);
-        }
+        this.permits = new Semaphore(poolSize);
     }
 
     public <T> void marshal(T object, OutputStream out, Charset charset) throws Exception {
@@ -67,13 +71,25 @@ class PooledJaxb implements Jaxb {
 
     private void lend(Jaxb jaxb) {
         pool.offer(jaxb);
+        permits.release();
     }
 
-    private Jaxb borrow() throws InterruptedException {
-        Jaxb jaxb = pool.poll(maxWait, TimeUnit.MILLISECONDS);
-        if (jaxb == null) {
+    private Jaxb borrow() throws InterruptedException, JAXBException {
+        if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
             throw new CRestException("No jaxb could have been retrieved in the allowed time window");
         }
-        return jaxb;
+        Jaxb jaxb = pool.poll();
+        if (jaxb != null) {
+            return jaxb;
+        }
+        try {
+            return new SimpleJaxb(jaxbContext);
+        } catch (JAXBException e) {
+            permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.util;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * <p>Iterator over a streamed response's elements.</p>
+ * <p>REST interface methods can declare either an {@link java.util.Iterator} or a {@link CloseableIterator} return type to have the response body deserialized element by element, as they are pulled by the caller, rather than materialized all at once in memory.</p>
+ * <p>The underlying response is released once the iterator has been fully consumed. Callers that stop iterating before the end must close it.</p>
+ * @param <T> Element type
+ * @author laurent.gilles@codegist.org
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Closeable {
+
+}
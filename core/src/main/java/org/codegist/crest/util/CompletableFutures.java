@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.util;
+
+import org.codegist.crest.CRestException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Set of utility functions for dealing with {@code java.util.concurrent.CompletableFuture}.</p>
+ * <p>CompletableFuture is only available from Java 8, it is looked up reflectively so that <b>CRest</b> can still run on older JVMs, where no interface method can declare it anyway.</p>
+ * @author laurent.gilles@codegist.org
+ */
+public final class CompletableFutures {
+
+    private static final Class<?> COMPLETABLE_FUTURE = getCompletableFutureClass();
+    private static final Constructor<?> CONSTRUCTOR = getConstructor();
+    private static final Method COMPLETE = getMethod("complete", Object.class);
+    private static final Method COMPLETE_EXCEPTIONALLY = getMethod("completeExceptionally", Throwable.class);
+
+    private CompletableFutures(){
+        throw new IllegalStateException();
+    }
+
+    /**
+     * @param type type to check
+     * @return true if the given type is CompletableFuture
+     */
+    public static boolean isCompletableFuture(Class<?> type){
+        return COMPLETABLE_FUTURE != null && COMPLETABLE_FUTURE.equals(type);
+    }
+
+    /**
+     * <p>Executes the given task with the given executor, returning a CompletableFuture completed with its outcome.</p>
+     * <p>Cancelling the returned future does not interrupt the task, as for any CompletableFuture.</p>
+     * @param task task to execute
+     * @param executor executor to execute the task with
+     * @return a CompletableFuture completed with the task result or exception
+     * @throws CRestException if the current JVM does not support CompletableFuture
+     * @throws java.util.concurrent.RejectedExecutionException if the executor rejected the task
+     */
+    public static Future<?> supplyAsync(final Callable<?> task, Executor executor){
+        if(COMPLETABLE_FUTURE == null) {
+            throw new CRestException("CompletableFuture is not supported by the current JVM (java.version=" + System.getProperty("java.version") + ")");
+        }
+        final Future<?> future = newCompletableFuture();
+        executor.execute(new Runnable() {
+            public void run() {
+                Object result;
+                try {
+                    result = task.call();
+                } catch (Throwable e) {
+                    invoke(COMPLETE_EXCEPTIONALLY, future, e);
+                    if(e instanceof Error) {
+                        throw (Error) e;
+                    }
+                    return;
+                }
+                invoke(COMPLETE, future, result);
+            }
+        });
+        return future;
+    }
+
+    private static Future<?> newCompletableFuture(){
+        try {
+            return (Future<?>) CONSTRUCTOR.newInstance();
+        } catch (Exception e) {
+            throw CRestException.handle(e);
+        }
+    }
+
+    private static void invoke(Method method, Object target, Object arg){
+        try {
+            method.invoke(target, arg);
+        } catch (Exception e) {
+            throw CRestException.handle(e);
+        }
+    }
+
+    private static Class<?> getCompletableFutureClass(){
+        try {
+            return Class.forName("java.util.concurrent.CompletableFuture");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Constructor<?> getConstructor(){
+        if(COMPLETABLE_FUTURE == null) {
+            return null;
+        }
+        try {
+            return COMPLETABLE_FUTURE.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Method getMethod(String name, Class<?> parameterType){
+        if(COMPLETABLE_FUTURE == null) {
+            return null;
+        }
+        try {
+            return COMPLETABLE_FUTURE.getMethod(name, parameterType);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
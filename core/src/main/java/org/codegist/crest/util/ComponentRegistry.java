@@ -31,6 +31,7 @@ import java.util.concurrent.atomic.AtomicReference;
 /**
  * <p>Lazy CRest Component registry</p>
  * <p>Contains a map of CRest Component classes. CRest Components are instantiated the first time they are requested and internally cached to be re-used on following requests.</p>
+ * <p>Lock-free: the cache is an immutable snapshot replaced by a copy on each miss, so that once every requested key has been seen, a look-up is a single volatile read. Concurrent misses on the same key may each build it, but they all end up with the same component instance.</p>
  * @see org.codegist.crest.annotate.CRestComponent
  * @see org.codegist.crest.util.ComponentFactory
  * @author laurent.gilles@codegist.org
@@ -38,14 +39,13 @@ import java.util.concurrent.atomic.AtomicReference;
 public final class ComponentRegistry<K,T> {
 
     private final Map<K, ItemDescriptor<T>> mapping;
-    private final Map<K, T> cache = new HashMap<K, T>();
+    private final AtomicReference<Map<K, T>> cache = new AtomicReference<Map<K, T>>(Collections.<K, T>emptyMap());
     private final ItemDescriptor<T> defaultIfNotFoundDescriptor;
     private final CRestConfig crestConfig;
-    private T defaultIfNotFound;
 
     ComponentRegistry(Map<K, ItemDescriptor<T>> mapping, CRestConfig crestConfig, ItemDescriptor<T> defaultIfNotFoundDescriptor) {
         this.defaultIfNotFoundDescriptor = defaultIfNotFoundDescriptor;
-        this.mapping = mapping;
+        this.mapping = new HashMap<K, ItemDescriptor<T>>(mapping);
         this.crestConfig = crestConfig;
     }
 
@@ -64,28 +64,35 @@ public final class ComponentRegistry<K,T> {
      * @return the CRest Component
      */
     public T get(K key) {
-        T item = cache.get(key);
+        T item = cache.get().get(key);
         if (item == null) {
-            item = buildAndCache(key, crestConfig);
+            item = buildAndCache(key);
         }
         return item;
     }
 
-    private synchronized T buildAndCache(K key, CRestConfig crestConfig) {
-        T value;
+    private T buildAndCache(K key) {
         ItemDescriptor<T> item = mapping.get(key);
+        T value;
         if (item != null) {
             value = item.instanciate(crestConfig);
-        }else if(defaultIfNotFound != null) {
-            value = defaultIfNotFound;
         }else if(defaultIfNotFoundDescriptor != null) {
-            defaultIfNotFound = defaultIfNotFoundDescriptor.instanciate(crestConfig);
-            value = defaultIfNotFound;
-        }else{      
+            value = defaultIfNotFoundDescriptor.instanciate(crestConfig);
+        }else{
             throw new CRestException("No item bound to key: " + key);
         }
-        cache.put(key, value);
-        return value;
+
+        while(true) {
+            Map<K, T> current = cache.get();
+            if(current.containsKey(key)) {
+                return current.get(key);
+            }
+            Map<K, T> updated = new HashMap<K, T>(current);
+            updated.put(key, value);
+            if(cache.compareAndSet(current, Collections.unmodifiableMap(updated))) {
+                return value;
+            }
+        }
     }
 
     static final class ItemDescriptor<T> {
@@ -106,8 +113,7 @@ public final class ComponentRegistry<K,T> {
             try {
                 CRestConfig merged = config.isEmpty() ? crestConfig : crestConfig.merge(config) ;
                 instance = ComponentFactory.instantiate(clazz, merged);
-                instanceRef.set(instance);
-                return instance;
+                return instanceRef.compareAndSet(null, instance) ? instance : instanceRef.get();
             } catch (Exception e) {
                 throw CRestException.handle(e);
             }
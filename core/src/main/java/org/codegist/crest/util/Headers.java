@@ -0,0 +1,78 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.util;
+
+import org.codegist.common.log.Logger;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Set of utility functions to read HTTP response headers
+ * @author laurent.gilles@codegist.org
+ */
+public final class Headers {
+
+    private static final Logger LOGGER = Logger.getLogger(Headers.class);
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private Headers(){
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Returns the first value of the given header, looked up case-insensitively
+     * @param headers header fields, can be null
+     * @param name header name
+     * @return the header's first value, null if missing
+     */
+    public static String getHeader(Map<String, List<String>> headers, String name) {
+        if(headers == null) {
+            return null;
+        }
+        for(Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if(name.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a HTTP date header value, eg "Sun, 06 Nov 1994 08:49:37 GMT"
+     * @param value header value, can be null
+     * @return the date in milliseconds, 0 if the value is null or malformed
+     */
+    public static long parseDate(String value) {
+        if(value == null) {
+            return 0;
+        }
+        try {
+            return new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US).parse(value.trim()).getTime();
+        } catch (ParseException e) {
+            LOGGER.debug("Ignoring malformed date header: %s", value);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.util;
+
+/**
+ * Extracts the identifier of an item of a bulk method {@link java.util.List} or array result, used to give each collapsed call its own item back.
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.annotate.Collapsed#key()
+ */
+public interface ItemKeyExtractor {
+
+    /**
+     * @param item bulk result item, can be null
+     * @return the identifier the item was requested with, of the collapsed method parameter type
+     * @throws Exception Any exception
+     */
+    Object keyOf(Object item) throws Exception;
+
+}
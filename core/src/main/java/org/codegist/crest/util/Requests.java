@@ -23,11 +23,16 @@ package org.codegist.crest.util;
 import org.codegist.common.lang.Objects;
 import org.codegist.crest.config.MethodConfig;
 import org.codegist.crest.config.ParamConfig;
+import org.codegist.crest.io.DeadlineExceededException;
 import org.codegist.crest.io.Request;
 import org.codegist.crest.io.RequestBuilder;
 import org.codegist.crest.io.RequestBuilderFactory;
 
+import java.io.InterruptedIOException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import static org.codegist.common.collect.Collections.containsOnlyNulls;
 
@@ -38,6 +43,19 @@ import static org.codegist.common.collect.Collections.containsOnlyNulls;
  */
 public final class Requests {
 
+    private static final Map<Request, Long> TIMESTAMPS = Collections.synchronizedMap(new WeakHashMap<Request, Long>());
+    private static final Class<?> HTTP_TIMEOUT_EXCEPTION;
+
+    static {
+        Class<?> httpTimeoutException = null;
+        try {
+            httpTimeoutException = Class.forName("java.net.http.HttpTimeoutException");
+        } catch (ClassNotFoundException e) {
+            // JVM without java.net.http, interrupted I/O are the only timeouts
+        }
+        HTTP_TIMEOUT_EXCEPTION = httpTimeoutException;
+    }
+
     private Requests(){
         throw new IllegalStateException() ;
     }
@@ -56,6 +74,7 @@ public final class Requests {
      * @see org.codegist.crest.config.MethodConfig
      */
     public static Request from(RequestBuilderFactory factory, MethodConfig mc, Object[] args) throws Exception {
+        long timestamp = System.currentTimeMillis();
         RequestBuilder builder = factory.create().addParams(mc.getExtraParams());
         for (int i = 0; i < mc.getParamCount(); i++) {
             Collection<Object> values = Objects.asCollection(args[i]);
@@ -69,6 +88,114 @@ public final class Requests {
             }
         }
         mc.getRequestInterceptor().beforeFire(builder, mc, args);
-        return builder.build(mc);
+        Request request = builder.build(mc);
+        setTimestamp(request, timestamp);
+        return request;
+    }
+
+    /**
+     * <p>Carries the call start time of the given request over to a request decorating it, so that both share the same deadline.</p>
+     * @param request request being decorated
+     * @param decorator request decorating the given one
+     * @param <T> decorator type
+     * @return the given decorator
+     * @see org.codegist.crest.util.Requests#getTimestamp(org.codegist.crest.io.Request)
+     */
+    public static <T extends Request> T decorate(Request request, T decorator) {
+        setTimestamp(decorator, getTimestamp(request));
+        return decorator;
+    }
+
+    /**
+     * <p>Returns the time the call the given request belongs to has been issued at.</p>
+     * <p>Requests built by {@link org.codegist.crest.util.Requests#from(org.codegist.crest.io.RequestBuilderFactory, org.codegist.crest.config.MethodConfig, Object[])} are timestamped before the request interceptor runs, any other request is timestamped the first time it is looked up.</p>
+     * @param request request to get the call start time for
+     * @return time in milliseconds, as given by {@link System#currentTimeMillis()}
+     */
+    public static long getTimestamp(Request request) {
+        synchronized (TIMESTAMPS) {
+            Long timestamp = TIMESTAMPS.get(request);
+            if(timestamp == null) {
+                timestamp = System.currentTimeMillis();
+                TIMESTAMPS.put(request, timestamp);
+            }
+            return timestamp;
+        }
+    }
+
+    static void setTimestamp(Request request, long timestamp) {
+        TIMESTAMPS.put(request, timestamp);
+    }
+
+    /**
+     * <p>Returns the time after which the given request's call is abandoned, computed from its method config's deadline and the time it has been issued at.</p>
+     * @param request request to get the deadline for
+     * @return time in milliseconds, as given by {@link System#currentTimeMillis()}, 0 if the call has no deadline
+     * @see org.codegist.crest.config.MethodConfig#getDeadline()
+     */
+    public static long getDeadline(Request request) {
+        int deadline = request.getMethodConfig().getDeadline();
+        if(deadline <= 0) {
+            return 0;
+        }
+        return getTimestamp(request) + deadline;
+    }
+
+    /**
+     * <p>Returns the time left before the given request's deadline.</p>
+     * @param request request to get the time left for
+     * @return time left in milliseconds, {@link Long#MAX_VALUE} if the request has no deadline
+     * @throws DeadlineExceededException if the request's deadline has been reached
+     * @see org.codegist.crest.util.Requests#getDeadline(org.codegist.crest.io.Request)
+     */
+    public static long getRemainingTime(Request request) throws DeadlineExceededException {
+        long deadline = getDeadline(request);
+        if(deadline <= 0) {
+            return Long.MAX_VALUE;
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if(remaining <= 0) {
+            throw new DeadlineExceededException("Deadline exceeded by " + (-remaining) + "ms for " + request.getMethodConfig().getMethod());
+        }
+        return remaining;
+    }
+
+    /**
+     * <p>Bounds the given timeout to the time left before the given request's deadline.</p>
+     * @param request request to bound the timeout for
+     * @param timeout timeout in milliseconds, 0 meaning infinite
+     * @return the given timeout if shorter than the time left, the time left otherwise
+     * @throws DeadlineExceededException if the request's deadline has been reached
+     */
+    public static int getTimeout(Request request, int timeout) throws DeadlineExceededException {
+        long remaining = getRemainingTime(request);
+        if(remaining == Long.MAX_VALUE || (timeout > 0 && timeout <= remaining)) {
+            return timeout;
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    /**
+     * <p>Tells whether the given failure is a timeout that happened once the given request's deadline had been reached, and should then be reported as a {@link org.codegist.crest.io.DeadlineExceededException}.</p>
+     * @param request request that failed
+     * @param failure failure to check, along with its causes
+     * @return true if the request has a deadline, it has been reached and the failure is or has been caused by a timeout
+     */
+    public static boolean isDeadlineExceeded(Request request, Throwable failure) {
+        if(failure instanceof DeadlineExceededException || !isTimeout(failure)) {
+            return false;
+        }
+        long deadline = getDeadline(request);
+        return deadline > 0 && deadline <= System.currentTimeMillis();
+    }
+
+    private static boolean isTimeout(Throwable failure) {
+        for(Throwable cause = failure; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if(cause instanceof InterruptedIOException
+                    || (HTTP_TIMEOUT_EXCEPTION != null && HTTP_TIMEOUT_EXCEPTION.isInstance(cause))) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Iterator;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Set of utility functions for dealing with REST interface method's return types.</p>
+ * <p>Asynchronous methods declare a {@link java.util.concurrent.Future} or a {@code java.util.concurrent.CompletableFuture} return type, the type the response is expected to be deserialized to is then the future's type argument. They are executed on an executor thread with blocking I/O, not on a non-blocking path.</p>
+ * <p>Streaming methods declare a {@link java.util.Iterator} or {@link org.codegist.crest.util.CloseableIterator} return type, the response is then expected to be deserialized element by element.</p>
+ * @author laurent.gilles@codegist.org
+ */
+public final class ReturnTypes {
+
+    private ReturnTypes(){
+        throw new IllegalStateException();
+    }
+
+    /**
+     * @param method REST interface method
+     * @return whether the given method is asynchronous, eg returns a {@link java.util.concurrent.Future} or a {@code java.util.concurrent.CompletableFuture}
+     */
+    public static boolean isAsync(Method method) {
+        Class<?> returnType = method.getReturnType();
+        return Future.class.isAssignableFrom(returnType) && (Future.class.equals(returnType) || CompletableFutures.isCompletableFuture(returnType));
+    }
+
+    /**
+     * @param method REST interface method
+     * @return whether the given method returns a {@code java.util.concurrent.CompletableFuture}
+     */
+    public static boolean isCompletable(Method method) {
+        return CompletableFutures.isCompletableFuture(method.getReturnType());
+    }
+
+    /**
+     * @param method REST interface method
+     * @return the type the response is expected to be deserialized to
+     */
+    public static Class<?> getExpectedType(Method method) {
+        if(!isAsync(method)) {
+            return method.getReturnType();
+        }
+        return toClass(getExpectedGenericType(method));
+    }
+
+    /**
+     * @param method REST interface method
+     * @return the generic type the response is expected to be deserialized to
+     */
+    public static Type getExpectedGenericType(Method method) {
+        Type type = method.getGenericReturnType();
+        if(!isAsync(method)) {
+            return type;
+        }
+        if(type instanceof ParameterizedType) {
+            return ((ParameterizedType) type).getActualTypeArguments()[0];
+        }
+        return Object.class;
+    }
+
+    /**
+     * @param type type a response is expected to be deserialized to
+     * @return whether the given type requires the response to be streamed, eg is either a {@link java.util.Iterator} or a {@link org.codegist.crest.util.CloseableIterator}
+     */
+    public static boolean isStreaming(Class<?> type) {
+        return Iterator.class.equals(type) || CloseableIterator.class.equals(type);
+    }
+
+    /**
+     * @param type generic streaming type, as given by {@link ReturnTypes#getExpectedGenericType(java.lang.reflect.Method)}
+     * @return the type of the streamed elements
+     */
+    public static Type getStreamedElementType(Type type) {
+        if(!(type instanceof ParameterizedType)) {
+            return Object.class;
+        }
+        Type elementType = ((ParameterizedType) type).getActualTypeArguments()[0];
+        if(elementType instanceof WildcardType) {
+            return ((WildcardType) elementType).getUpperBounds()[0];
+        }
+        return elementType;
+    }
+
+    private static Class<?> toClass(Type type) {
+        if(type instanceof Class) {
+            return (Class<?>) type;
+        }else if(type instanceof ParameterizedType) {
+            return toClass(((ParameterizedType) type).getRawType());
+        }else if(type instanceof GenericArrayType) {
+            return Array.newInstance(toClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }else{
+            return Object.class;
+        }
+    }
+}
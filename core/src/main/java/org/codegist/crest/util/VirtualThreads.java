@@ -0,0 +1,71 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.util;
+
+import org.codegist.crest.CRestException;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>Set of utility functions for dealing with virtual threads.</p>
+ * <p>Virtual threads are only available from Java 21, they are looked up reflectively so that <b>CRest</b> can still run on older JVMs.</p>
+ * @author laurent.gilles@codegist.org
+ */
+public final class VirtualThreads {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = getNewVirtualThreadPerTaskExecutorMethod();
+
+    private VirtualThreads(){
+        throw new IllegalStateException();
+    }
+
+    /**
+     * @return true if the current JVM supports virtual threads
+     */
+    public static boolean isAvailable(){
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * <p>Creates an executor service that starts a new virtual thread for each submitted task.</p>
+     * @return a virtual thread per task executor service
+     * @throws CRestException if the current JVM does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(){
+        if(!isAvailable()) {
+            throw new CRestException("Virtual threads are not supported by the current JVM (java.version=" + System.getProperty("java.version") + ")");
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (Exception e) {
+            throw CRestException.handle(e);
+        }
+    }
+
+    private static Method getNewVirtualThreadPerTaskExecutorMethod(){
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.util;
+
+/**
+ * Computes the weight of a cached value, used to bound a cache by the total weight of its values rather than by their number.
+ * @author laurent.gilles@codegist.org
+ * @see org.codegist.crest.annotate.Cached#weigher()
+ */
+public interface Weigher {
+
+    /**
+     * @param value cached value, can be null
+     * @return the value weight, must be positive
+     */
+    long weigh(Object value);
+
+}
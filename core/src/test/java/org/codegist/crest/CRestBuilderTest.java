@@ -46,8 +46,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Pattern;
 
 import static org.codegist.crest.CRestConfig.*;
@@ -55,6 +58,8 @@ import static org.codegist.crest.test.util.Classes.getFieldValue;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.*;
 
@@ -82,6 +87,14 @@ public class CRestBuilderTest {
     public void buildShouldUseJdkProxyFactory() throws NoSuchFieldException, IllegalAccessException {
         CRest actual = toTest.build();
         assertEquals(JdkProxyFactory.class, getFieldValue(actual, "proxyFactory").getClass());
+        assertEquals(false, getFieldValue(actual, "generatedProxies"));
+    }
+
+    @Test
+    public void useGeneratedProxiesShouldKeepProxyFactoryAsFallback() throws NoSuchFieldException, IllegalAccessException {
+        CRest actual = toTest.useGeneratedProxies().build();
+        assertEquals(JdkProxyFactory.class, getFieldValue(actual, "proxyFactory").getClass());
+        assertEquals(true, getFieldValue(actual, "generatedProxies"));
     }
 
     @Test
@@ -107,10 +120,16 @@ public class CRestBuilderTest {
 
         CRest actual = toTest.build();
 
-        RequestExecutor retryingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        RequestExecutor coalescingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        assertEquals(CoalescingRequestExecutor.class, coalescingRequestExecutor.getClass());
+
+        RequestExecutor retryingRequestExecutor = getFieldValue(coalescingRequestExecutor, "delegate");
         assertEquals(RetryingRequestExecutor.class, retryingRequestExecutor.getClass());
 
-        RequestExecutor httpRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        RequestExecutor rateLimitingRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        assertSame(RateLimitingRequestExecutor.class, rateLimitingRequestExecutor.getClass());
+
+        RequestExecutor httpRequestExecutor = getFieldValue(rateLimitingRequestExecutor, "delegate");
         assertSame(HttpRequestExecutor.class, httpRequestExecutor.getClass());
 
         HttpChannelFactory channelFactory = getFieldValue(httpRequestExecutor, "channelFactory");
@@ -128,10 +147,16 @@ public class CRestBuilderTest {
 
         CRest actual = toTest.setHttpChannelFactory(TestHttpChannelFactory.class).build();
 
-        RequestExecutor retryingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        RequestExecutor coalescingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        assertEquals(CoalescingRequestExecutor.class, coalescingRequestExecutor.getClass());
+
+        RequestExecutor retryingRequestExecutor = getFieldValue(coalescingRequestExecutor, "delegate");
         assertEquals(RetryingRequestExecutor.class, retryingRequestExecutor.getClass());
 
-        RequestExecutor httpRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        RequestExecutor rateLimitingRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        assertSame(RateLimitingRequestExecutor.class, rateLimitingRequestExecutor.getClass());
+
+        RequestExecutor httpRequestExecutor = getFieldValue(rateLimitingRequestExecutor, "delegate");
         assertSame(HttpRequestExecutor.class, httpRequestExecutor.getClass());
 
         HttpChannelFactory channelFactory = getFieldValue(httpRequestExecutor, "channelFactory");
@@ -145,16 +170,174 @@ public class CRestBuilderTest {
 
         CRest actual = toTest.setHttpChannelFactory(expected).build();
 
-        RequestExecutor retryingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        RequestExecutor coalescingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        assertEquals(CoalescingRequestExecutor.class, coalescingRequestExecutor.getClass());
+
+        RequestExecutor retryingRequestExecutor = getFieldValue(coalescingRequestExecutor, "delegate");
         assertEquals(RetryingRequestExecutor.class, retryingRequestExecutor.getClass());
 
-        RequestExecutor httpRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        RequestExecutor rateLimitingRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        assertSame(RateLimitingRequestExecutor.class, rateLimitingRequestExecutor.getClass());
+
+        RequestExecutor httpRequestExecutor = getFieldValue(rateLimitingRequestExecutor, "delegate");
         assertSame(HttpRequestExecutor.class, httpRequestExecutor.getClass());
 
         HttpChannelFactory channelFactory = getFieldValue(httpRequestExecutor, "channelFactory");
         assertSame(expected, channelFactory);
     }
 
+    @Test
+    public void useCircuitBreakerShouldAddCircuitBreakingRequestExecutor() throws Exception{
+        TestHttpChannelFactory expected = mock(TestHttpChannelFactory.class);
+
+        CRest actual = toTest.setHttpChannelFactory(expected).useCircuitBreaker().build();
+
+        RequestExecutor coalescingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        RequestExecutor retryingRequestExecutor = getFieldValue(coalescingRequestExecutor, "delegate");
+        RequestExecutor rateLimitingRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        RequestExecutor circuitBreakingRequestExecutor = getFieldValue(rateLimitingRequestExecutor, "delegate");
+        assertSame(CircuitBreakingRequestExecutor.class, circuitBreakingRequestExecutor.getClass());
+
+        RequestExecutor httpRequestExecutor = getFieldValue(circuitBreakingRequestExecutor, "delegate");
+        assertSame(HttpRequestExecutor.class, httpRequestExecutor.getClass());
+        assertSame(expected, getFieldValue(httpRequestExecutor, "channelFactory"));
+    }
+
+    @Test
+    public void useConcurrencyLimiterShouldAddConcurrencyLimitingRequestExecutor() throws Exception{
+        TestHttpChannelFactory expected = mock(TestHttpChannelFactory.class);
+
+        CRest actual = toTest.setHttpChannelFactory(expected).useCircuitBreaker().useConcurrencyLimiter().build();
+
+        RequestExecutor coalescingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        RequestExecutor retryingRequestExecutor = getFieldValue(coalescingRequestExecutor, "delegate");
+        RequestExecutor rateLimitingRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        RequestExecutor concurrencyLimitingRequestExecutor = getFieldValue(rateLimitingRequestExecutor, "delegate");
+        assertSame(ConcurrencyLimitingRequestExecutor.class, concurrencyLimitingRequestExecutor.getClass());
+
+        RequestExecutor circuitBreakingRequestExecutor = getFieldValue(concurrencyLimitingRequestExecutor, "delegate");
+        assertSame(CircuitBreakingRequestExecutor.class, circuitBreakingRequestExecutor.getClass());
+    }
+
+    @Test
+    public void useHedgingShouldAddHedgingRequestExecutor() throws Exception{
+        TestHttpChannelFactory expected = mock(TestHttpChannelFactory.class);
+
+        CRest actual = toTest.setHttpChannelFactory(expected).useHedging().build();
+
+        RequestExecutor coalescingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        RequestExecutor retryingRequestExecutor = getFieldValue(coalescingRequestExecutor, "delegate");
+        RequestExecutor rateLimitingRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        assertSame(RateLimitingRequestExecutor.class, rateLimitingRequestExecutor.getClass());
+        RequestExecutor hedgingRequestExecutor = getFieldValue(rateLimitingRequestExecutor, "delegate");
+        assertSame(HedgingRequestExecutor.class, hedgingRequestExecutor.getClass());
+
+        ExecutorService hedgingExecutor = getFieldValue(hedgingRequestExecutor, "executor");
+        actual.dispose();
+        assertTrue(hedgingExecutor.isShutdown());
+
+        RequestExecutor httpRequestExecutor = getFieldValue(hedgingRequestExecutor, "delegate");
+        assertSame(HttpRequestExecutor.class, httpRequestExecutor.getClass());
+    }
+
+    @Test
+    public void hedgingShouldSitBelowTheLimiters() throws Exception{
+        TestHttpChannelFactory expected = mock(TestHttpChannelFactory.class);
+
+        CRest actual = toTest.setHttpChannelFactory(expected).useCircuitBreaker().useConcurrencyLimiter().useHedging().build();
+
+        RequestExecutor coalescingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        RequestExecutor retryingRequestExecutor = getFieldValue(coalescingRequestExecutor, "delegate");
+        RequestExecutor rateLimitingRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        RequestExecutor concurrencyLimitingRequestExecutor = getFieldValue(rateLimitingRequestExecutor, "delegate");
+        assertSame(ConcurrencyLimitingRequestExecutor.class, concurrencyLimitingRequestExecutor.getClass());
+        RequestExecutor hedgingRequestExecutor = getFieldValue(concurrencyLimitingRequestExecutor, "delegate");
+        assertSame(HedgingRequestExecutor.class, hedgingRequestExecutor.getClass());
+        RequestExecutor circuitBreakingRequestExecutor = getFieldValue(hedgingRequestExecutor, "delegate");
+        assertSame(CircuitBreakingRequestExecutor.class, circuitBreakingRequestExecutor.getClass());
+        actual.dispose();
+    }
+
+    @Test
+    public void useLazyMethodConfigsShouldSetLazyConfigFactory() throws Exception{
+        CRest actual = toTest.useLazyMethodConfigs(true).build();
+
+        Object configFactory = getFieldValue(actual, "configFactory");
+        assertEquals(true, getFieldValue(configFactory, "lazy"));
+        assertSame(getFieldValue(actual, "asyncExecutor"), getFieldValue(configFactory, "prewarmExecutor"));
+    }
+
+    @Test
+    public void useBulkheadsShouldAddBulkheadRequestExecutor() throws Exception{
+        TestHttpChannelFactory expected = mock(TestHttpChannelFactory.class);
+
+        CRest actual = toTest.setHttpChannelFactory(expected).useBulkheads().build();
+
+        RequestExecutor coalescingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        RequestExecutor bulkheadRequestExecutor = getFieldValue(coalescingRequestExecutor, "delegate");
+        assertSame(BulkheadRequestExecutor.class, bulkheadRequestExecutor.getClass());
+
+        RequestExecutor retryingRequestExecutor = getFieldValue(bulkheadRequestExecutor, "delegate");
+        assertSame(RetryingRequestExecutor.class, retryingRequestExecutor.getClass());
+    }
+
+    @Test
+    public void useResponseCacheShouldAddCachingRequestExecutor() throws Exception{
+        TestHttpChannelFactory expected = mock(TestHttpChannelFactory.class);
+
+        CRest actual = toTest.setHttpChannelFactory(expected).useResponseCache().build();
+
+        RequestExecutor cachingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        assertSame(CachingRequestExecutor.class, cachingRequestExecutor.getClass());
+
+        RequestExecutor coalescingRequestExecutor = getFieldValue(cachingRequestExecutor, "delegate");
+        assertSame(CoalescingRequestExecutor.class, coalescingRequestExecutor.getClass());
+
+        List<?> resources = getFieldValue(actual, "resources");
+        assertTrue(resources.contains(cachingRequestExecutor));
+    }
+
+    @Test
+    public void rateLimitShouldBeGivenToRateLimitingRequestExecutor() throws Exception{
+        TestHttpChannelFactory expected = mock(TestHttpChannelFactory.class);
+
+        CRest actual = toTest.setHttpChannelFactory(expected).rateLimit("http://a.com:8080/some/path", 10, 1000).build();
+
+        RequestExecutor coalescingRequestExecutor = getFieldValue(actual, "requestExecutor");
+        RequestExecutor retryingRequestExecutor = getFieldValue(coalescingRequestExecutor, "delegate");
+        RequestExecutor rateLimitingRequestExecutor = getFieldValue(retryingRequestExecutor, "delegate");
+        Map<String, ?> endpointBuckets = getFieldValue(rateLimitingRequestExecutor, "endpointBuckets");
+        assertEquals(Collections.singleton("http://a.com:8080"), endpointBuckets.keySet());
+    }
+
+    @Test
+    public void buildShouldUseADefaultAsyncExecutor() throws NoSuchFieldException, IllegalAccessException {
+        CRest actual = toTest.build();
+        assertNotNull(getFieldValue(actual, "asyncExecutor"));
+    }
+
+    @Test
+    public void setAsyncExecutorShouldOverrideDefault() throws NoSuchFieldException, IllegalAccessException {
+        ExecutorService expected = mock(ExecutorService.class);
+        CRest actual = toTest.setAsyncExecutor(expected).build();
+        assertSame(expected, getFieldValue(actual, "asyncExecutor"));
+    }
+
+    @Test
+    public void disposeShouldShutdownDefaultAsyncExecutor() throws NoSuchFieldException, IllegalAccessException {
+        CRest actual = toTest.build();
+        ExecutorService executor = getFieldValue(actual, "asyncExecutor");
+        actual.dispose();
+        assertTrue(executor.isShutdown());
+    }
+
+    @Test
+    public void disposeShouldNotShutdownGivenAsyncExecutor() throws NoSuchFieldException, IllegalAccessException {
+        ExecutorService expected = mock(ExecutorService.class);
+        toTest.setAsyncExecutor(expected).build().dispose();
+        verify(expected, never()).shutdown();
+    }
+
     @Test
     public void defaultBuildShouldUseDefaultCRestConfig() throws Exception{
         mockCRestConfig();
@@ -21,12 +21,16 @@
 package org.codegist.crest;
 
 import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.io.ResponseStatusException;
 import org.junit.Test;
 
 import java.lang.reflect.InvocationTargetException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author laurent.gilles@codegist.org
@@ -87,6 +91,18 @@ public class CRestExceptionTest {
         assertSame("msg", actual.getMessage());
     }
 
+    @Test
+    public void handleRequestExceptionWithResponseShouldKeepItsStatusCode() throws Exception {
+        Response response = mock(Response.class);
+        when(response.getStatusCode()).thenReturn(404);
+        RequestException e = new RequestException("msg", response);
+        RuntimeException actual = CRestException.handle(e);
+        assertEquals(ResponseStatusException.class, actual.getClass());
+        assertEquals(404, ((ResponseStatusException) actual).getStatusCode());
+        assertSame(e, actual.getCause());
+        assertSame("msg", actual.getMessage());
+    }
+
     @Test
     public void handleIllegalArgumentExceptionShouldReturnIt(){
         IllegalArgumentException e = new IllegalArgumentException();
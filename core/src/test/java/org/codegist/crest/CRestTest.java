@@ -20,15 +20,24 @@
 
 package org.codegist.crest;
 
+import org.codegist.crest.util.DaemonThreadFactory;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.powermock.api.mockito.PowerMockito.whenNew;
 
@@ -159,6 +168,57 @@ public class CRestTest {
     }
 
 
+    @Test
+    public void invokeAllShouldRunCallsOnItsOwnThreadsByDefault() throws Exception {
+        CRest toTest = new CRest() {
+            public <T> T build(Class<T> interfaze) throws CRestException {
+                throw new UnsupportedOperationException();
+            }
+        };
+        List<Callable<String>> calls = Arrays.<Callable<String>>asList(
+                new Callable<String>() {
+                    public String call() {
+                        return Thread.currentThread().getName();
+                    }
+                },
+                new Callable<String>() {
+                    public String call() {
+                        return "b";
+                    }
+                });
+
+        List<CallResult<String>> actual = toTest.invokeAll(calls, 2, 5000);
+
+        assertEquals(2, actual.size());
+        assertTrue(actual.get(0).getValue().startsWith("crest-invoke-all"));
+        assertEquals("b", actual.get(1).getValue());
+    }
+
+    @Test
+    public void invokeAllShouldRunCallsOnTheGivenExecutor() throws Exception {
+        CRest toTest = new CRest() {
+            public <T> T build(Class<T> interfaze) throws CRestException {
+                throw new UnsupportedOperationException();
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("given-executor"));
+        try {
+            List<Callable<String>> calls = Arrays.<Callable<String>>asList(
+                    new Callable<String>() {
+                        public String call() {
+                            return Thread.currentThread().getName();
+                        }
+                    });
+
+            List<CallResult<String>> actual = toTest.invokeAll(calls, 1, 5000, executor);
+
+            assertTrue(actual.get(0).getValue().startsWith("given-executor"));
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void getBasicAuthInstanceShouldReturnABasicAuthReadyCRest(){
         CRestBuilder expectedBuilder = mock(CRestBuilder.class);
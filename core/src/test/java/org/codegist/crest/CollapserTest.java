@@ -0,0 +1,373 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest;
+
+import org.codegist.crest.config.Collapse;
+import org.codegist.crest.io.DeadlineExceededException;
+import org.codegist.crest.test.util.Classes;
+import org.codegist.crest.util.ItemKeyExtractor;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class CollapserTest {
+
+    private final List<Object> bulkCalls = new ArrayList<Object>();
+
+    @Test
+    public void concurrentCallsShouldBeMergedIntoASingleBulkCall() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final Collapser toTest = new RecordingCollapser(BulkApi.GET_ALL_LIST, new Collapse("getAll", 60000, 2, new ItemKey())) {
+            @Override
+            Object result(Object arg) {
+                List<String> result = new ArrayList<String>();
+                for (Object item : (List<?>) arg) {
+                    result.add("item-" + item);
+                }
+                return result;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    started.countDown();
+                    return toTest.invoke("a");
+                }
+            });
+            started.await();
+            Thread.sleep(20);
+            Future<Object> second = executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    return toTest.invoke("a");
+                }
+            });
+            Thread.sleep(20);
+
+            assertEquals("item-b", toTest.invoke("b"));
+            assertEquals("item-a", first.get());
+            assertEquals("item-a", second.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, bulkCalls.size());
+        assertEquals(Arrays.asList("a", "b"), bulkCalls.get(0));
+    }
+
+    @Test
+    public void lonelyCallShouldBeSentOnceWindowElapsed() throws Exception {
+        Collapser toTest = new RecordingCollapser(BulkApi.GET_ALL_MAP, new Collapse("getAll", 10, 100)) {
+            @Override
+            Object result(Object arg) {
+                Map<Object,String> result = new HashMap<Object, String>();
+                for (Object item : (Set<?>) arg) {
+                    result.put(item, "item-" + item);
+                }
+                return result;
+            }
+        };
+
+        assertEquals("item-a", toTest.invoke("a"));
+        assertEquals("item-b", toTest.invoke("b"));
+        assertEquals(2, bulkCalls.size());
+    }
+
+    @Test
+    public void arrayBulkParameterAndResultShouldBeSupported() throws Exception {
+        Collapser toTest = new RecordingCollapser(BulkApi.GET_ALL_ARRAY, new Collapse("getAll", 0, 100, new IntItemKey())) {
+            @Override
+            Object result(Object arg) {
+                int[] ids = (int[]) arg;
+                return new String[]{"item-" + ids[0]};
+            }
+        };
+
+        assertEquals("item-1", toTest.invoke(1));
+    }
+
+    @Test
+    public void bulkFailureShouldBeThrownToCaller() throws Exception {
+        final Exception failure = new Exception();
+        Collapser toTest = new Collapser(BulkApi.GET_ALL_MAP, new Collapse("getAll", 0, 100), 0) {
+            Object call(Object[] args) throws Exception {
+                throw failure;
+            }
+        };
+
+        try {
+            toTest.invoke("a");
+            fail();
+        } catch (Exception e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void bulkFailureShouldBeWrappedForEachJoiningCaller() throws Exception {
+        final Exception failure = new Exception("failed");
+        final Collapser toTest = new Collapser(BulkApi.GET_ALL_MAP, new Collapse("getAll", 60000, 3), 0) {
+            Object call(Object[] args) throws Exception {
+                throw failure;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Object>> calls = new ArrayList<Future<Object>>();
+            for (final String item : Arrays.asList("a", "b", "c")) {
+                calls.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        return toTest.invoke(item);
+                    }
+                }));
+            }
+            Set<Throwable> thrown = new HashSet<Throwable>();
+            int wrapped = 0;
+            for (Future<Object> call : calls) {
+                try {
+                    call.get();
+                    fail();
+                } catch (ExecutionException e) {
+                    thrown.add(e.getCause());
+                    if(e.getCause() != failure) {
+                        assertTrue(e.getCause() instanceof CRestException);
+                        assertSame(failure, e.getCause().getCause());
+                        wrapped++;
+                    }
+                }
+            }
+            assertEquals(3, thrown.size());
+            assertEquals(2, wrapped);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void joiningCallerShouldGiveUpOnceTimeoutElapsed() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Collapser toTest = new Collapser(BulkApi.GET_ALL_LIST, new Collapse("getAll", 200, 2, new ItemKey()), 20) {
+            Object call(Object[] args) throws Exception {
+                release.await();
+                return Arrays.asList("item-a", "item-b");
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> leader = executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    started.countDown();
+                    return toTest.invoke("a");
+                }
+            });
+            started.await();
+            Thread.sleep(20);
+            try {
+                toTest.invoke("b");
+                fail();
+            } catch (DeadlineExceededException e) {
+                // expected
+            }
+            release.countDown();
+            assertEquals("item-a", leader.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void itemMissingFromBulkMapShouldBeNull() throws Exception {
+        Collapser toTest = new RecordingCollapser(BulkApi.GET_ALL_MAP, new Collapse("getAll", 0, 100)) {
+            @Override
+            Object result(Object arg) {
+                return new HashMap<Object, String>();
+            }
+        };
+
+        assertNull(toTest.invoke("a"));
+    }
+
+    @Test
+    public void bulkListResultShouldBeMatchedByKeyNotPosition() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final Collapser toTest = new RecordingCollapser(BulkApi.GET_ALL_LIST, new Collapse("getAll", 60000, 2, new ItemKey())) {
+            @Override
+            Object result(Object arg) {
+                return Arrays.asList("item-b", "item-a");
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> first = executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    started.countDown();
+                    return toTest.invoke("a");
+                }
+            });
+            started.await();
+            Thread.sleep(20);
+
+            assertEquals("item-b", toTest.invoke("b"));
+            assertEquals("item-a", first.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void itemMissingFromBulkListShouldBeNull() throws Exception {
+        Collapser toTest = new RecordingCollapser(BulkApi.GET_ALL_LIST, new Collapse("getAll", 0, 100, new ItemKey())) {
+            @Override
+            Object result(Object arg) {
+                return new ArrayList<String>();
+            }
+        };
+
+        assertNull(toTest.invoke("a"));
+    }
+
+    @Test
+    public void bulkMapKeyedByAnotherTypeShouldFail() throws Exception {
+        Collapser toTest = new RecordingCollapser(BulkApi.GET_ALL_MAP, new Collapse("getAll", 0, 100)) {
+            @Override
+            Object result(Object arg) {
+                Map<Object,String> result = new HashMap<Object, String>();
+                result.put(1, "item-1");
+                return result;
+            }
+        };
+
+        try {
+            toTest.invoke("1");
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("keyed by java.lang.Integer while the requested items are java.lang.String"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulkMapDeclaredWithAnotherKeyTypeShouldBeRejected() throws Exception {
+        new RecordingCollapser(BulkApi.GET_ALL_MAP_BY_INT, new Collapse("getAll", 0, 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulkListResultWithoutKeyExtractorShouldBeRejected() throws Exception {
+        new RecordingCollapser(BulkApi.GET_ALL_LIST, new Collapse("getAll", 0, 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulkMethodShouldTakeACollectionOrArray() throws Exception {
+        new RecordingCollapser(BulkApi.GET, new Collapse("get", 0, 100));
+    }
+
+    @Test
+    public void findBulkMethodShouldMatchExactItemType() throws Exception {
+        assertEquals(Overloads.class.getMethod("getAll", List.class), Collapser.findBulkMethod(Overloads.class.getMethods(), Overloads.GET, "getAll"));
+        assertEquals(Overloads.class.getMethod("getAll", Integer[].class), Collapser.findBulkMethod(Overloads.class.getMethods(), Overloads.GET_INT, "getAll"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findBulkMethodShouldFailIfNoneTakesTheItemType() throws Exception {
+        Collapser.findBulkMethod(Overloads.class.getMethods(), Overloads.GET_LONG, "getAll");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findBulkMethodShouldFailIfAmbiguous() throws Exception {
+        Collapser.findBulkMethod(Overloads.class.getMethods(), Overloads.GET, "getAmbiguous");
+    }
+
+    private class RecordingCollapser extends Collapser {
+
+        RecordingCollapser(Method bulkMethod, Collapse collapse) {
+            super(bulkMethod, collapse, 0);
+        }
+
+        Object call(Object[] args) throws Exception {
+            synchronized (bulkCalls) {
+                bulkCalls.add(args[0]);
+            }
+            return result(args[0]);
+        }
+
+        Object result(Object arg) {
+            return null;
+        }
+    }
+
+    static class ItemKey implements ItemKeyExtractor {
+        public Object keyOf(Object item) {
+            return ((String) item).substring("item-".length());
+        }
+    }
+
+    static class IntItemKey implements ItemKeyExtractor {
+        public Object keyOf(Object item) {
+            return Integer.valueOf(((String) item).substring("item-".length()));
+        }
+    }
+
+    interface BulkApi {
+        String get(String id);
+        List<String> getAllList(List<String> ids);
+        Map<String,String> getAllMap(Set<String> ids);
+        Map<Integer,String> getAllMapByInt(Set<String> ids);
+        String[] getAllArray(int[] ids);
+
+        Method GET = Classes.byName(BulkApi.class, "get");
+        Method GET_ALL_LIST = Classes.byName(BulkApi.class, "getAllList");
+        Method GET_ALL_MAP = Classes.byName(BulkApi.class, "getAllMap");
+        Method GET_ALL_MAP_BY_INT = Classes.byName(BulkApi.class, "getAllMapByInt");
+        Method GET_ALL_ARRAY = Classes.byName(BulkApi.class, "getAllArray");
+    }
+
+    interface Overloads {
+        String get(String id);
+        String getInt(int id);
+        String getLong(Long id);
+        Map<String,String> getAll(List<String> ids);
+        Map<Integer,String> getAll(Integer[] ids);
+        Map<Object,String> getAll(Set<Object> ids);
+        Map<String,String> getAmbiguous(List<String> ids);
+        Map<String,String> getAmbiguous(Set<String> ids);
+
+        Method GET = Classes.byName(Overloads.class, "get");
+        Method GET_INT = Classes.byName(Overloads.class, "getInt");
+        Method GET_LONG = Classes.byName(Overloads.class, "getLong");
+    }
+}
@@ -20,16 +20,16 @@
 
 package org.codegist.crest;
 
-import org.codegist.common.collect.Maps;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertNotSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.*;
@@ -38,23 +38,50 @@ import static org.powermock.api.mockito.PowerMockito.*;
  * @author Laurent Gilles (laurent.gilles@codegist.org)
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({DefaultCRestConfig.class, Maps.class})
+@PrepareForTest(DefaultCRestConfig.class)
 public class DefaultCRestConfigTest {
 
     private Map<String,Object> config = mock(Map.class);
     private final DefaultCRestConfig toTest = new DefaultCRestConfig(config);
 
     @Test
-    public void mergeShouldReturnNewInstanceWithMergedMap() throws Exception {
-        Map map = mock(Map.class);
-        Map mergedMap = mock(Map.class);
-        DefaultCRestConfig expected = mock(DefaultCRestConfig.class);
-
-        mockStatic(Maps.class);
-        when(Maps.merge(config, map)).thenReturn(mergedMap);
-        whenNew(DefaultCRestConfig.class).withArguments(mergedMap).thenReturn(expected);
-        
-        assertSame(expected, toTest.merge(map));
+    public void mergeShouldReturnNewInstanceLayeredOverThisOne() throws Exception {
+        Map<String,Object> base = new HashMap<String, Object>();
+        base.put("a", "1");
+        base.put("b", "2");
+        Map<String,Object> overlay = new HashMap<String, Object>();
+        overlay.put("b", "3");
+        overlay.put("c", null);
+        DefaultCRestConfig parent = new DefaultCRestConfig(base);
+
+        CRestConfig merged = parent.merge(overlay);
+
+        assertNotSame(parent, merged);
+        assertEquals("1", merged.get("a"));
+        assertEquals("3", merged.get("b"));
+        assertEquals(null, merged.get("c", "4"));
+        assertEquals("5", merged.get("d", "5"));
+        assertEquals("2", parent.get("b"));
+        assertEquals("4", parent.get("c", "4"));
+    }
+
+    @Test
+    public void mergeShouldNotBeAffectedByLaterChangesToMergedMap() throws Exception {
+        Map<String,Object> overlay = new HashMap<String, Object>();
+        overlay.put("a", "1");
+        CRestConfig merged = new DefaultCRestConfig(new HashMap<String, Object>()).merge(overlay);
+        overlay.put("a", "2");
+        assertEquals("1", merged.get("a"));
+    }
+
+    @Test
+    public void rootConfigShouldSeeLaterChangesToItsMap() throws Exception {
+        Map<String,Object> base = new HashMap<String, Object>();
+        CRestConfig root = new DefaultCRestConfig(base);
+        CRestConfig merged = root.merge(new HashMap<String, Object>());
+        base.put("a", "1");
+        assertEquals("1", root.get("a"));
+        assertEquals("1", merged.get("a"));
     }
 
     @Test
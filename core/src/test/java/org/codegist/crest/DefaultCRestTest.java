@@ -20,10 +20,13 @@
 
 package org.codegist.crest;
 
+import org.codegist.common.lang.Disposable;
 import org.codegist.common.lang.Disposables;
 import org.codegist.common.reflect.InvocationHandler;
 import org.codegist.common.reflect.ObjectMethodsAwareInvocationHandler;
 import org.codegist.common.reflect.ProxyFactory;
+import org.codegist.crest.config.CachePolicy;
+import org.codegist.crest.config.Collapse;
 import org.codegist.crest.config.InterfaceConfig;
 import org.codegist.crest.config.InterfaceConfigFactory;
 import org.codegist.crest.config.MethodConfig;
@@ -42,7 +45,17 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
@@ -60,8 +73,13 @@ public class DefaultCRestTest {
     private final RequestBuilderFactory requestBuilderFactory = mock(RequestBuilderFactory.class);
     private final InterfaceConfigFactory configFactory = mock(InterfaceConfigFactory.class);
     private final InterfaceConfig config = mock(InterfaceConfig.class);
+    private final ExecutorService asyncExecutor = mock(ExecutorService.class);
 
-    private final DefaultCRest toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory);
+    private final DefaultCRest toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor);
+
+    {
+        doReturn(TestInterface.class).when(config).getInterface();
+    }
 
     @Test
     public void buildShouldBuildAProxyWithCRestInvocationHandler() throws Exception, IllegalAccessException {
@@ -78,6 +96,28 @@ public class DefaultCRestTest {
         assertEquals(config, Classes.getFieldValue(objectMethodsAwareInvocationHandlerCaptor.getValue(), "interfaceConfig"));
     }
 
+    @Test
+    public void buildShouldUseGeneratedImplementationWhenEnabled() throws Exception {
+        when(configFactory.newConfig(GeneratedProxiesTest.Generated.class)).thenReturn(config);
+        doReturn(GeneratedProxiesTest.Generated.class).when(config).getInterface();
+        DefaultCRest toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor, Collections.<Disposable>emptyList(), true);
+
+        GeneratedProxiesTest.Generated actual = toTest.build(GeneratedProxiesTest.Generated.class);
+
+        assertEquals(GeneratedProxiesTest.Generated$$CRest.class, actual.getClass());
+        verify(proxyFactory, never()).createProxy(any(ClassLoader.class), any(InvocationHandler.class), any(Class[].class));
+    }
+
+    @Test
+    public void buildShouldFallbackToProxyFactoryWhenNoImplementationIsGenerated() throws Exception {
+        TestInterface expected = mock(TestInterface.class);
+        when(configFactory.newConfig(TestInterface.class)).thenReturn(config);
+        when(proxyFactory.createProxy(eq(TestInterface.class.getClassLoader()), isA(InvocationHandler.class), eq(new Class[]{TestInterface.class}))).thenReturn(expected);
+        DefaultCRest toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor, Collections.<Disposable>emptyList(), true);
+
+        assertSame(expected, toTest.build(TestInterface.class));
+    }
+
     @Test
     public void buildShouldWrapInCRestExceptionWhenFailure() {
         RuntimeException e = new RuntimeException();
@@ -113,12 +153,38 @@ public class DefaultCRestTest {
         when(requestExecutor.execute(request)).thenReturn(response);
         when(responseHandler.handle(response)).thenReturn(expected);
 
-        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory).new CRestInvocationHandler(config);
+        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor).new CRestInvocationHandler(config);
 
         Object actual = toTest.doInvoke(null, TestInterface.GET, args);
         assertSame(expected, actual);
     }
 
+    @Test
+    public void crestInvocationHandlerShouldResolveMethodConfigOnce() throws Throwable {
+        Object[] args = new Object[0];
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        Request request = mock(Request.class);
+        ResponseHandler responseHandler= mock(ResponseHandler.class);
+
+        when(methodConfig.getResponseHandler()).thenReturn(responseHandler);
+        when(config.getMethodConfig(TestInterface.GET)).thenReturn(methodConfig);
+        mockStatic(Requests.class);
+        when(Requests.from(requestBuilderFactory, methodConfig, args)).thenReturn(request);
+
+        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor).new CRestInvocationHandler(config);
+
+        toTest.doInvoke(null, TestInterface.GET, args);
+        toTest.doInvoke(null, TestInterface.GET, args);
+        verify(config, times(1)).getMethodConfig(TestInterface.GET);
+        verify(requestExecutor, times(2)).execute(request);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void crestInvocationHandlerShouldRejectMethodsNotDeclaredByTheInterface() throws Throwable {
+        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor).new CRestInvocationHandler(config);
+        toTest.doInvoke(null, Runnable.class.getMethod("run"), null);
+    }
+
     @Test
     public void crestInvocationHandlerInvokeBuildARequestExecuteItAndHandleError() throws Throwable {
         Object expected = new Object();
@@ -136,7 +202,7 @@ public class DefaultCRestTest {
         when(errorHandler.handle(request, e)).thenReturn(expected);
 
 
-        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory).new CRestInvocationHandler(config);
+        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor).new CRestInvocationHandler(config);
 
         Object actual = toTest.doInvoke(null, TestInterface.GET, args);
         assertSame(expected, actual);
@@ -144,8 +210,151 @@ public class DefaultCRestTest {
         Disposables.dispose(null, e);
     }
 
+    @Test
+    public void crestInvocationHandlerInvokeOfStreamingMethodShouldNotBeCached() throws Throwable {
+        Object[] args = new Object[0];
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+        ResponseHandler responseHandler= mock(ResponseHandler.class);
+
+        when(methodConfig.getCachePolicy()).thenReturn(new CachePolicy(60000, 10));
+        when(methodConfig.getResponseHandler()).thenReturn(responseHandler);
+        when(config.getMethodConfig(TestInterface.STREAM)).thenReturn(methodConfig);
+        mockStatic(Requests.class);
+        when(Requests.from(requestBuilderFactory, methodConfig, args)).thenReturn(request);
+        when(requestExecutor.execute(request)).thenReturn(response);
+        when(responseHandler.handle(response)).thenReturn(Collections.emptyList().iterator());
+
+        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor).new CRestInvocationHandler(config);
+
+        toTest.doInvoke(null, TestInterface.STREAM, args);
+        toTest.doInvoke(null, TestInterface.STREAM, args);
+        verify(requestExecutor, times(2)).execute(request);
+    }
+
+    @Test
+    public void crestInvocationHandlerInvokeOfFutureMethodShouldBuildRequestAndSubmitExecution() throws Throwable {
+        Object expected = new Object();
+        Object[] args = new Object[0];
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+        ResponseHandler responseHandler= mock(ResponseHandler.class);
+        Future future = mock(Future.class);
+        ArgumentCaptor<Callable> callable = ArgumentCaptor.forClass(Callable.class);
+
+        when(methodConfig.getResponseHandler()).thenReturn(responseHandler);
+        when(config.getMethodConfig(TestInterface.GET_ASYNC)).thenReturn(methodConfig);
+        mockStatic(Requests.class);
+        when(Requests.from(requestBuilderFactory, methodConfig, args)).thenReturn(request);
+        when(requestExecutor.execute(request)).thenReturn(response);
+        when(responseHandler.handle(response)).thenReturn(expected);
+        when(asyncExecutor.submit(callable.capture())).thenReturn(future);
+
+        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor).new CRestInvocationHandler(config);
+
+        Object actual = toTest.doInvoke(null, TestInterface.GET_ASYNC, args);
+        assertSame(future, actual);
+        verify(requestExecutor, never()).execute(request);
+
+        assertSame(expected, callable.getValue().call());
+    }
+
+    @Test
+    public void crestInvocationHandlerInvokeOfCompletableFutureMethodShouldCompleteFutureFromExecutor() throws Throwable {
+        Object[] args = new Object[0];
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+        ResponseHandler responseHandler= mock(ResponseHandler.class);
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+
+        when(methodConfig.getResponseHandler()).thenReturn(responseHandler);
+        when(config.getMethodConfig(TestInterface.GET_COMPLETABLE)).thenReturn(methodConfig);
+        mockStatic(Requests.class);
+        when(Requests.from(requestBuilderFactory, methodConfig, args)).thenReturn(request);
+        when(requestExecutor.execute(request)).thenReturn(response);
+        when(responseHandler.handle(response)).thenReturn("hello");
+        doNothing().when(asyncExecutor).execute(runnable.capture());
+
+        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor).new CRestInvocationHandler(config);
+
+        CompletableFuture<?> actual = (CompletableFuture<?>) toTest.doInvoke(null, TestInterface.GET_COMPLETABLE, args);
+        assertFalse(actual.isDone());
+        verify(requestExecutor, never()).execute(request);
+
+        runnable.getValue().run();
+        assertEquals("hello", actual.get());
+    }
+
+    @Test
+    public void crestInvocationHandlerInvokeOfCompletableFutureMethodShouldCompleteFutureExceptionallyOnFailure() throws Throwable {
+        Object[] args = new Object[0];
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        Request request = mock(Request.class);
+        ErrorHandler errorHandler = mock(ErrorHandler.class);
+        Exception e = new Exception();
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+
+        when(methodConfig.getErrorHandler()).thenReturn(errorHandler);
+        when(config.getMethodConfig(TestInterface.GET_COMPLETABLE)).thenReturn(methodConfig);
+        mockStatic(Requests.class);
+        when(Requests.from(requestBuilderFactory, methodConfig, args)).thenReturn(request);
+        when(requestExecutor.execute(request)).thenThrow(e);
+        when(errorHandler.handle(request, e)).thenThrow(e);
+        doNothing().when(asyncExecutor).execute(runnable.capture());
+
+        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor).new CRestInvocationHandler(config);
+
+        CompletableFuture<?> actual = (CompletableFuture<?>) toTest.doInvoke(null, TestInterface.GET_COMPLETABLE, args);
+        runnable.getValue().run();
+        try {
+            actual.get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertSame(e, expected.getCause());
+        }
+    }
+
+    @Test
+    public void crestInvocationHandlerInvokeOfCollapsedMethodShouldCallBulkMethod() throws Throwable {
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        MethodConfig bulkMethodConfig = mock(MethodConfig.class);
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+        ResponseHandler responseHandler= mock(ResponseHandler.class);
+        ArgumentCaptor<Object[]> bulkArgs = ArgumentCaptor.forClass(Object[].class);
+
+        when(methodConfig.getMethod()).thenReturn(TestInterface.GET_ONE);
+        when(methodConfig.getCollapse()).thenReturn(new Collapse("getAll", 0, 10));
+        when(bulkMethodConfig.getResponseHandler()).thenReturn(responseHandler);
+        when(config.getMethodConfig(TestInterface.GET_ONE)).thenReturn(methodConfig);
+        when(config.getMethodConfig(TestInterface.GET_ALL)).thenReturn(bulkMethodConfig);
+        mockStatic(Requests.class);
+        when(Requests.from(eq(requestBuilderFactory), eq(bulkMethodConfig), bulkArgs.capture())).thenReturn(request);
+        when(requestExecutor.execute(request)).thenReturn(response);
+        when(responseHandler.handle(response)).thenReturn(Collections.singletonMap("a", "item-a"));
+
+        DefaultCRest.CRestInvocationHandler toTest = new DefaultCRest(proxyFactory, requestExecutor, requestBuilderFactory, configFactory, asyncExecutor).new CRestInvocationHandler(config);
+
+        Object actual = toTest.doInvoke(null, TestInterface.GET_ONE, new Object[]{"a"});
+        assertEquals("item-a", actual);
+        assertEquals(asList("a"), bulkArgs.getValue()[0]);
+    }
+
     public interface TestInterface {
         void get();
+        Future<String> getAsync();
+        CompletableFuture<String> getCompletable();
+        String getOne(String id);
+        Map<String,String> getAll(List<String> ids);
+        Iterator<String> stream();
         Method GET = Classes.byName(TestInterface.class, "get");
+        Method GET_ASYNC = Classes.byName(TestInterface.class, "getAsync");
+        Method GET_COMPLETABLE = Classes.byName(TestInterface.class, "getCompletable");
+        Method GET_ONE = Classes.byName(TestInterface.class, "getOne");
+        Method GET_ALL = Classes.byName(TestInterface.class, "getAll");
+        Method STREAM = Classes.byName(TestInterface.class, "stream");
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest;
+
+import org.codegist.common.reflect.InvocationHandler;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class GeneratedProxiesTest {
+
+    private final MethodDispatcher dispatcher = new MethodDispatcher() {
+        public int indexOf(Method method) {
+            return 7;
+        }
+
+        public Object dispatch(int index, Object[] args) {
+            return "dispatched-" + index;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    @Test
+    public void newProxyShouldInstantiateGeneratedImplementation() throws Exception {
+        Generated actual = GeneratedProxies.newProxy(Generated.class, dispatcher);
+        assertEquals(Generated$$CRest.class, actual.getClass());
+        assertEquals("dispatched-7", actual.get());
+    }
+
+    @Test
+    public void newProxyShouldReturnNullWhenNoImplementationIsGenerated() throws Exception {
+        assertNull(GeneratedProxies.newProxy(NotGenerated.class, dispatcher));
+    }
+
+    @Test
+    public void newProxyShouldIgnoreClassNotImplementingInterface() throws Exception {
+        assertNull(GeneratedProxies.newProxy(Mismatch.class, dispatcher));
+    }
+
+    @Test
+    public void newProxyShouldIgnoreImplementationNotTakingADispatcher() throws Exception {
+        assertNull(GeneratedProxies.newProxy(Outdated.class, dispatcher));
+    }
+
+    interface Generated {
+        String get();
+    }
+
+    interface NotGenerated {
+        String get();
+    }
+
+    interface Mismatch {
+        String get();
+    }
+
+    interface Outdated {
+        String get();
+    }
+
+    public static final class Generated$$CRest implements Generated {
+        private final MethodDispatcher dispatcher;
+        private final int index;
+
+        public Generated$$CRest(MethodDispatcher dispatcher) throws NoSuchMethodException {
+            this.dispatcher = dispatcher;
+            this.index = dispatcher.indexOf(Generated.class.getMethod("get"));
+        }
+
+        public String get() {
+            try {
+                return (String) dispatcher.dispatch(index, null);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    public static final class Outdated$$CRest implements Outdated {
+        public Outdated$$CRest(InvocationHandler handler) {
+        }
+
+        public String get() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static final class Mismatch$$CRest {
+        public Mismatch$$CRest(MethodDispatcher dispatcher) {
+        }
+    }
+}
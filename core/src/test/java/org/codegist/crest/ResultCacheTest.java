@@ -0,0 +1,283 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest;
+
+import org.codegist.crest.config.CachePolicy;
+import org.codegist.crest.io.ResponseStatusException;
+import org.codegist.crest.util.UnitWeigher;
+import org.codegist.crest.util.Weigher;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class ResultCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<Runnable> refreshes = new ArrayList<Runnable>();
+    private final Executor refreshExecutor = new Executor() {
+        public void execute(Runnable command) {
+            refreshes.add(command);
+        }
+    };
+
+    @Test
+    public void getShouldServeCachedValueWithinTtl() throws Exception {
+        ResultCache toTest = new ResultCache(new CachePolicy(60000, 10), refreshExecutor);
+
+        assertEquals("value-1", toTest.get(new Object[]{"a"}, new Loader()));
+        assertEquals("value-1", toTest.get(new Object[]{"a"}, new Loader()));
+        assertEquals("value-2", toTest.get(new Object[]{"b"}, new Loader()));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void getShouldCompareArrayArgumentsByContent() throws Exception {
+        ResultCache toTest = new ResultCache(new CachePolicy(60000, 10), refreshExecutor);
+
+        toTest.get(new Object[]{new int[]{1, 2}}, new Loader());
+        toTest.get(new Object[]{new int[]{1, 2}}, new Loader());
+        toTest.get(null, new Loader());
+        toTest.get(new Object[0], new Loader());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void getShouldReloadExpiredValue() throws Exception {
+        ResultCache toTest = new ResultCache(new CachePolicy(1, 10), refreshExecutor);
+
+        assertEquals("value-1", toTest.get(new Object[]{"a"}, new Loader()));
+        Thread.sleep(10);
+        assertEquals("value-2", toTest.get(new Object[]{"a"}, new Loader()));
+        assertTrue(refreshes.isEmpty());
+    }
+
+    @Test
+    public void getShouldServeStaleValueWhileRefreshingOnce() throws Exception {
+        ResultCache toTest = new ResultCache(new CachePolicy(1, 10, 0, new UnitWeigher(), 60000), refreshExecutor);
+
+        assertEquals("value-1", toTest.get(new Object[]{"a"}, new Loader()));
+        Thread.sleep(10);
+        assertEquals("value-1", toTest.get(new Object[]{"a"}, new Loader()));
+        assertEquals("value-1", toTest.get(new Object[]{"a"}, new Loader()));
+        assertEquals(1, refreshes.size());
+        assertEquals(1, loads.get());
+
+        refreshes.get(0).run();
+
+        assertEquals(2, loads.get());
+        assertEquals("value-2", toTest.get(new Object[]{"a"}, new Loader()));
+    }
+
+    @Test
+    public void concurrentMissesShouldShareASingleLoad() throws Exception {
+        final ResultCache toTest = new ResultCache(new CachePolicy(60000, 10), refreshExecutor);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> leader = executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    return toTest.get(new Object[]{"a"}, new Callable<Object>() {
+                        public Object call() throws Exception {
+                            loading.countDown();
+                            release.await();
+                            return "value-" + loads.incrementAndGet();
+                        }
+                    });
+                }
+            });
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Thread releaser = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                    release.countDown();
+                }
+            };
+            releaser.start();
+
+            assertEquals("value-1", toTest.get(new Object[]{"a"}, new Loader()));
+            assertEquals("value-1", leader.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getShouldNotCacheFailures() throws Exception {
+        ResultCache toTest = new ResultCache(new CachePolicy(60000, 10), refreshExecutor);
+        final Exception failure = new Exception();
+
+        try {
+            toTest.get(new Object[]{"a"}, new Callable<Object>() {
+                public Object call() throws Exception {
+                    throw failure;
+                }
+            });
+            fail();
+        } catch (Exception e) {
+            assertSame(failure, e);
+        }
+        assertEquals(0, toTest.size());
+        assertEquals("value-1", toTest.get(new Object[]{"a"}, new Loader()));
+    }
+
+    @Test
+    public void getShouldCacheClientErrorsForNegativeTtl() throws Exception {
+        ResultCache toTest = new ResultCache(new CachePolicy(60000, 10, 0, new UnitWeigher(), 0, 60000), refreshExecutor);
+        Failing loader = new Failing(new CRestException("wrapped", new ResponseStatusException("not found", 404)));
+
+        try {
+            toTest.get(new Object[]{"a"}, loader);
+            fail();
+        } catch (CRestException e) {
+            assertSame(loader.failure, e);
+        }
+        ResponseStatusException previous = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                toTest.get(new Object[]{"a"}, loader);
+                fail();
+            } catch (ResponseStatusException e) {
+                assertNotSame(previous, e);
+                assertSame(loader.failure, e.getCause());
+                assertEquals(404, e.getStatusCode());
+                assertEquals("not found", e.getMessage());
+                previous = e;
+            }
+        }
+        assertEquals(1, loader.calls);
+        assertEquals(1, toTest.size());
+        assertEquals(0, toTest.getWeight());
+    }
+
+    @Test
+    public void getShouldReloadExpiredClientErrors() throws Exception {
+        ResultCache toTest = new ResultCache(new CachePolicy(60000, 10, 0, new UnitWeigher(), 0, 1), refreshExecutor);
+        Failing loader = new Failing(new ResponseStatusException("gone", 410));
+
+        try {
+            toTest.get(new Object[]{"a"}, loader);
+            fail();
+        } catch (ResponseStatusException e) {
+            assertSame(loader.failure, e);
+        }
+        Thread.sleep(10);
+        assertEquals("value-1", toTest.get(new Object[]{"a"}, new Loader()));
+        assertEquals(1, loader.calls);
+    }
+
+    @Test
+    public void getShouldNotCacheTransientErrors() throws Exception {
+        ResultCache toTest = new ResultCache(new CachePolicy(60000, 10, 0, new UnitWeigher(), 0, 60000), refreshExecutor);
+        Exception[] failures = {
+                new ResponseStatusException("throttled", 429),
+                new ResponseStatusException("unauthorized", 401),
+                new ResponseStatusException("unavailable", 503),
+                new CRestException("io")
+        };
+
+        for (Exception failure : failures) {
+            try {
+                toTest.get(new Object[]{"a"}, new Failing(failure));
+                fail();
+            } catch (Exception e) {
+                assertSame(failure, e);
+            }
+            assertEquals(0, toTest.size());
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedValueShouldBeEvictedWhenFull() throws Exception {
+        ResultCache toTest = new ResultCache(new CachePolicy(60000, 2), refreshExecutor);
+
+        toTest.get(new Object[]{"a"}, new Loader());
+        toTest.get(new Object[]{"b"}, new Loader());
+        toTest.get(new Object[]{"a"}, new Loader());
+        toTest.get(new Object[]{"c"}, new Loader());
+
+        assertEquals(2, toTest.size());
+        assertEquals("value-1", toTest.get(new Object[]{"a"}, new Loader()));
+        assertEquals("value-4", toTest.get(new Object[]{"b"}, new Loader()));
+    }
+
+    @Test
+    public void valuesShouldBeEvictedWhenMaxWeightIsExceeded() throws Exception {
+        Weigher lengthWeigher = new Weigher() {
+            public long weigh(Object value) {
+                return ((String) value).length();
+            }
+        };
+        ResultCache toTest = new ResultCache(new CachePolicy(60000, 100, 16, lengthWeigher, 0), refreshExecutor);
+
+        toTest.get(new Object[]{"a"}, new Loader());
+        toTest.get(new Object[]{"b"}, new Loader());
+        assertEquals(14, toTest.getWeight());
+
+        toTest.get(new Object[]{"c"}, new Loader());
+
+        assertEquals(2, toTest.size());
+        assertEquals(14, toTest.getWeight());
+        assertEquals("value-3", toTest.get(new Object[]{"c"}, new Loader()));
+        assertEquals("value-4", toTest.get(new Object[]{"a"}, new Loader()));
+    }
+
+    private static final class Failing implements Callable<Object> {
+        private final Exception failure;
+        private int calls;
+
+        private Failing(Exception failure) {
+            this.failure = failure;
+        }
+
+        public Object call() throws Exception {
+            calls++;
+            throw failure;
+        }
+    }
+
+    private final class Loader implements Callable<Object> {
+        public Object call() {
+            return "value-" + loads.incrementAndGet();
+        }
+    }
+}
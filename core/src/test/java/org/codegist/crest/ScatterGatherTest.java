@@ -0,0 +1,196 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest;
+
+import org.codegist.crest.io.DeadlineExceededException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class ScatterGatherTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void runShouldGatherResultsAndFailuresInOrder() throws Exception {
+        final Exception failure = new Exception();
+        List<Callable<String>> calls = Arrays.<Callable<String>>asList(
+                new Constant("a"),
+                new Callable<String>() {
+                    public String call() throws Exception {
+                        throw failure;
+                    }
+                },
+                new Constant("c"));
+
+        List<CallResult<String>> actual = new ScatterGather<String>(executor, calls, 2).run(5000);
+
+        assertEquals(3, actual.size());
+        assertEquals("a", actual.get(0).get());
+        assertFalse(actual.get(1).isSuccess());
+        assertSame(failure, actual.get(1).getFailure());
+        assertEquals("c", actual.get(2).getValue());
+    }
+
+    @Test
+    public void runShouldNotExceedMaxParallelism() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        List<Callable<Integer>> calls = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 20; i++) {
+            final int value = i;
+            calls.add(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    int current = inFlight.incrementAndGet();
+                    synchronized (maxInFlight) {
+                        maxInFlight.set(Math.max(maxInFlight.get(), current));
+                    }
+                    Thread.sleep(5);
+                    inFlight.decrementAndGet();
+                    return value;
+                }
+            });
+        }
+
+        List<CallResult<Integer>> actual = new ScatterGather<Integer>(executor, calls, 3).run(5000);
+
+        assertTrue(maxInFlight.get() <= 3);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.valueOf(i), actual.get(i).get());
+        }
+    }
+
+    @Test
+    public void runShouldReportCallsNotCompletedInTimeAsDeadlineExceeded() throws Exception {
+        final CountDownLatch never = new CountDownLatch(1);
+        List<Callable<String>> calls = Arrays.<Callable<String>>asList(
+                new Constant("a"),
+                new Callable<String>() {
+                    public String call() throws Exception {
+                        never.await();
+                        return "b";
+                    }
+                });
+
+        List<CallResult<String>> actual = new ScatterGather<String>(executor, calls, 2).run(50);
+
+        assertEquals("a", actual.get(0).get());
+        assertTrue(actual.get(1).getFailure() instanceof DeadlineExceededException);
+    }
+
+    @Test
+    public void runShouldNotReportCancellationFailureOfTimedOutCalls() throws Exception {
+        List<Callable<String>> calls = Arrays.<Callable<String>>asList(
+                new Callable<String>() {
+                    public String call() throws Exception {
+                        try {
+                            Thread.sleep(5000);
+                            return "a";
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException("interrupted");
+                        }
+                    }
+                });
+
+        for (int i = 0; i < 20; i++) {
+            List<CallResult<String>> actual = new ScatterGather<String>(executor, calls, 1).run(10);
+            assertTrue(actual.get(0).getFailure() instanceof DeadlineExceededException);
+        }
+    }
+
+    @Test
+    public void runShouldAbortTheBatchAndRethrowErrors() throws Exception {
+        final Error error = new AssertionError("fatal");
+        final CountDownLatch never = new CountDownLatch(1);
+        final AtomicInteger started = new AtomicInteger();
+        List<Callable<String>> calls = new ArrayList<Callable<String>>();
+        calls.add(new Callable<String>() {
+            public String call() throws Exception {
+                never.await();
+                return "a";
+            }
+        });
+        calls.add(new Callable<String>() {
+            public String call() throws Exception {
+                throw error;
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            calls.add(new Callable<String>() {
+                public String call() throws Exception {
+                    started.incrementAndGet();
+                    return "c";
+                }
+            });
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            new ScatterGather<String>(executor, calls, 2).run(5000);
+            fail();
+        } catch (AssertionError e) {
+            assertSame(error, e);
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(0, started.get());
+    }
+
+    @Test
+    public void runShouldReturnEmptyResultsForEmptyBatch() throws Exception {
+        List<CallResult<String>> actual = new ScatterGather<String>(executor, new ArrayList<Callable<String>>(), 2).run(50);
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxParallelismShouldBeStrictlyPositive() {
+        new ScatterGather<String>(executor, new ArrayList<Callable<String>>(), 0);
+    }
+
+    private static final class Constant implements Callable<String> {
+        private final String value;
+
+        private Constant(String value) {
+            this.value = value;
+        }
+
+        public String call() {
+            return value;
+        }
+    }
+}
@@ -118,6 +118,29 @@ public class AnnotationDrivenInterfaceConfigFactoryTest {
         verify(mockAnn3Handler).handleMethodAnnotation(M2.getAnnotation(Ann3.class), mockMethodM2ConfigBuilder);
     }
 
+    @Test
+    public void shouldHandleMethodAnnotationsOnFirstAccessWhenLazy() throws Exception {
+        AnnotationDrivenInterfaceConfigFactory lazyToTest = new AnnotationDrivenInterfaceConfigFactory(mockInterfaceConfigBuilderFactory, mockHandlersRegistry, true, null);
+        MethodConfig expected = mock(MethodConfig.class);
+        when(mockMethodM2ConfigBuilder.build()).thenReturn(expected);
+
+        InterfaceConfig actual = lazyToTest.newConfig(TestInterface.class);
+
+        verify(mockAnn2Handler).handleInterfaceAnnotation(TestInterface.class.getAnnotation(Ann2.class), mockInterfaceConfigBuilder);
+        verify(mockAnn3Handler).handleInterfaceAnnotation(TestInterface.class.getAnnotation(Ann3.class), mockInterfaceConfigBuilder);
+        verify(mockInterfaceConfigBuilder, never()).startMethodConfig(any(Method.class));
+        verify(mockInterfaceConfigBuilder, never()).build();
+
+        assertSame(TestInterface.class, actual.getInterface());
+        assertSame(expected, actual.getMethodConfig(M2));
+        assertSame(expected, actual.getMethodConfig(M2));
+
+        verify(mockInterfaceConfigBuilder).startMethodConfig(M2);
+        verify(mockAnn3Handler).handleMethodAnnotation(M2.getAnnotation(Ann3.class), mockMethodM2ConfigBuilder);
+        verify(mockMethodM2ConfigBuilder).build();
+        verify(mockInterfaceConfigBuilder, never()).startMethodConfig(M1);
+    }
+
     @Ann2("a")
     @Ann3("b")
     static interface TestInterface {
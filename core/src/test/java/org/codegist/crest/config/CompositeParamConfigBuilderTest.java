@@ -94,4 +94,17 @@ public class CompositeParamConfigBuilderTest {
         verify(mockParamConfigBuilder2).setType(ParamType.getDefault());
     }
 
+    @Test
+    public void addShouldReplayPreviousSettingsOnTheAddedParamConfigBuilder() throws Exception {
+        ParamConfigBuilder mockParamConfigBuilder3 = mock(ParamConfigBuilder.class);
+        toTest.setName("a").forQuery();
+
+        toTest.add(mockParamConfigBuilder3);
+        toTest.setDefaultValue("b");
+
+        verify(mockParamConfigBuilder3).setName("a");
+        verify(mockParamConfigBuilder3).forQuery();
+        verify(mockParamConfigBuilder3).setDefaultValue("b");
+    }
+
 }
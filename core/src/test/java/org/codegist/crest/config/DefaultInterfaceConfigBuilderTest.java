@@ -38,7 +38,9 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.codegist.crest.test.util.TestInterface.M1;
@@ -146,6 +148,36 @@ public class DefaultInterfaceConfigBuilderTest {
         verify(mockM2MethodConfigBuilder).setEntityWriter(EntityWriter.class);
     }
 
+    @Test
+    public void setMethodsCoalescedShouldSetCoalescedOnAllMethodConfigs(){
+        assertSame(toTest, toTest.setMethodsCoalesced(true));
+        verify(mockM1MethodConfigBuilder).setCoalesced(true);
+        verify(mockM2MethodConfigBuilder).setCoalesced(true);
+    }
+
+    @Test
+    public void setMethodsDeadlineShouldSetDeadlineOnAllMethodConfigs(){
+        assertSame(toTest, toTest.setMethodsDeadline(500));
+        verify(mockM1MethodConfigBuilder).setDeadline(500);
+        verify(mockM2MethodConfigBuilder).setDeadline(500);
+    }
+
+    @Test
+    public void setMethodsCachePolicyShouldSetCachePolicyOnAllMethodConfigs(){
+        CachePolicy cachePolicy = new CachePolicy(60000, 10);
+        assertSame(toTest, toTest.setMethodsCachePolicy(cachePolicy));
+        verify(mockM1MethodConfigBuilder).setCachePolicy(cachePolicy);
+        verify(mockM2MethodConfigBuilder).setCachePolicy(cachePolicy);
+    }
+
+    @Test
+    public void setMethodsRateLimitShouldSetRateLimitOnAllMethodConfigs(){
+        RateLimit rateLimit = new RateLimit(10, 1000);
+        assertSame(toTest, toTest.setMethodsRateLimit(rateLimit));
+        verify(mockM1MethodConfigBuilder).setRateLimit(rateLimit);
+        verify(mockM2MethodConfigBuilder).setRateLimit(rateLimit);
+    }
+
 
     @Test
     public void setMethodsDeserializerShouldSetDeserializerOnAllMethodConfigs(){
@@ -223,7 +255,30 @@ public class DefaultInterfaceConfigBuilderTest {
         ParamConfigBuilder actual = toTest.startMethodsExtraParamConfig();
 
         assertEquals(DefaultInterfaceConfigBuilder.CompositeParamConfigBuilder.class, actual.getClass());
-        assertArrayEquals(expectedBuilders, Classes.<ParamConfigBuilder[]>getFieldValue(actual, "builders"));
+        assertEquals(Arrays.asList(expectedBuilders), Classes.<List<ParamConfigBuilder>>getFieldValue(actual, "builders"));
+    }
+
+    @Test
+    public void startMethodConfigShouldCreateMethodConfigBuildersOnDemandAndReplayMethodsSettings() throws Exception {
+        DefaultInterfaceConfigBuilder lazy = new DefaultInterfaceConfigBuilder(interfaze, mockCRestConfig, mockMimeDeserializerRegistry, mockClassSerializerRegistry);
+        ParamConfigBuilder mockParamConfigBuilderM1 = mock(ParamConfigBuilder.class);
+        when(mockM1MethodConfigBuilder.startExtraParamConfig()).thenReturn(mockParamConfigBuilderM1);
+
+        lazy.setMethodsCharset(Values.ISO_8859_1);
+        lazy.startMethodsExtraParamConfig().setName("a").forHeader();
+        verifyNew(DefaultMethodConfigBuilder.class, never())
+                .withArguments(lazy, M1, mockCRestConfig, mockMimeDeserializerRegistry, mockClassSerializerRegistry);
+
+        assertSame(mockM1MethodConfigBuilder, lazy.startMethodConfig(M1));
+        assertSame(mockM1MethodConfigBuilder, lazy.startMethodConfig(M1));
+
+        verifyNew(DefaultMethodConfigBuilder.class, times(1))
+                .withArguments(lazy, M1, mockCRestConfig, mockMimeDeserializerRegistry, mockClassSerializerRegistry);
+        verifyNew(DefaultMethodConfigBuilder.class, times(1))
+                .withArguments(toTest, M2, mockCRestConfig, mockMimeDeserializerRegistry, mockClassSerializerRegistry);
+        verify(mockM1MethodConfigBuilder).setCharset(Values.ISO_8859_1);
+        verify(mockParamConfigBuilderM1).setName("a");
+        verify(mockParamConfigBuilderM1).forHeader();
     }
 
     {
@@ -240,6 +295,8 @@ public class DefaultInterfaceConfigBuilderTest {
                     mockMimeDeserializerRegistry,
                     mockClassSerializerRegistry
             );
+            toTest.startMethodConfig(M1);
+            toTest.startMethodConfig(M2);
             verifyNew(DefaultMethodConfigBuilder.class)
                     .withArguments(toTest, M1, mockCRestConfig, mockMimeDeserializerRegistry, mockClassSerializerRegistry);
             verifyNew(DefaultMethodConfigBuilder.class)
@@ -241,6 +241,137 @@ public class DefaultMethodConfigBuilderTest {
     }
 
 
+    @Test
+    public void shouldUseDefaultValueForCoalesced() throws Exception {
+        mockEndpoint();
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.build();
+        assertCommons(actual);
+        assertFalse(actual.isCoalesced());
+    }
+
+    @Test
+    public void shouldOverrideValueForCoalesced() throws Exception {
+        mockEndpoint();
+        mockOverride(MethodConfig.METHOD_CONFIG_DEFAULT_COALESCED, true);
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.build();
+        assertCommons(actual);
+        assertTrue(actual.isCoalesced());
+    }
+
+    @Test
+    public void shouldUseGivenValueForCoalesced() throws Exception {
+        mockEndpoint();
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.setCoalesced(true).build();
+        assertCommons(actual);
+        assertTrue(actual.isCoalesced());
+    }
+
+    @Test
+    public void shouldUseDefaultValueForCollapse() throws Exception {
+        mockEndpoint();
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.build();
+        assertCommons(actual);
+        assertNull(actual.getCollapse());
+    }
+
+    @Test
+    public void shouldUseGivenValueForCollapse() throws Exception {
+        mockEndpoint();
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.setCollapse(new Collapse("getAll", 10, 50)).build();
+        assertCommons(actual);
+        assertEquals(new Collapse("getAll", 10, 50), actual.getCollapse());
+    }
+
+    @Test
+    public void shouldUseDefaultValueForDeadline() throws Exception {
+        mockEndpoint();
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.build();
+        assertCommons(actual);
+        assertEquals(0, actual.getDeadline());
+    }
+
+    @Test
+    public void shouldOverrideValueForDeadline() throws Exception {
+        mockEndpoint();
+        mockOverride(MethodConfig.METHOD_CONFIG_DEFAULT_DEADLINE, 500);
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.build();
+        assertCommons(actual);
+        assertEquals(500, actual.getDeadline());
+    }
+
+    @Test
+    public void shouldUseGivenValueForDeadline() throws Exception {
+        mockEndpoint();
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.setDeadline(500).build();
+        assertCommons(actual);
+        assertEquals(500, actual.getDeadline());
+    }
+
+    @Test
+    public void shouldUseDefaultValueForCachePolicy() throws Exception {
+        mockEndpoint();
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.build();
+        assertCommons(actual);
+        assertNull(actual.getCachePolicy());
+    }
+
+    @Test
+    public void shouldOverrideValueForCachePolicy() throws Exception {
+        mockEndpoint();
+        mockOverride(MethodConfig.METHOD_CONFIG_DEFAULT_CACHE_POLICY, new CachePolicy(60000, 10));
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.build();
+        assertCommons(actual);
+        assertEquals(new CachePolicy(60000, 10), actual.getCachePolicy());
+    }
+
+    @Test
+    public void shouldUseGivenValueForCachePolicy() throws Exception {
+        mockEndpoint();
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.setCachePolicy(new CachePolicy(60000, 10)).build();
+        assertCommons(actual);
+        assertEquals(new CachePolicy(60000, 10), actual.getCachePolicy());
+    }
+
+    @Test
+    public void shouldUseDefaultValueForRateLimit() throws Exception {
+        mockEndpoint();
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.build();
+        assertCommons(actual);
+        assertNull(actual.getRateLimit());
+    }
+
+    @Test
+    public void shouldOverrideValueForRateLimit() throws Exception {
+        mockEndpoint();
+        mockOverride(MethodConfig.METHOD_CONFIG_DEFAULT_RATE_LIMIT, new RateLimit(10, 1000));
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.build();
+        assertCommons(actual);
+        assertEquals(new RateLimit(10, 1000), actual.getRateLimit());
+    }
+
+    @Test
+    public void shouldUseGivenValueForRateLimit() throws Exception {
+        mockEndpoint();
+        DefaultMethodConfigBuilder toTest = newToTest();
+        MethodConfig actual = toTest.setRateLimit(new RateLimit(10, 1000)).build();
+        assertCommons(actual);
+        assertEquals(new RateLimit(10, 1000), actual.getRateLimit());
+    }
+
+
     @Test
     public void shouldUseDefaultValueForConnectionTimeout() throws Exception {
         mockEndpoint();
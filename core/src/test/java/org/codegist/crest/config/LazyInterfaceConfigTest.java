@@ -0,0 +1,134 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config;
+
+import org.codegist.crest.CRestException;
+import org.codegist.crest.test.util.Classes;
+import org.codegist.crest.test.util.TestInterface;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class LazyInterfaceConfigTest {
+
+    private final List<Method> builds = new ArrayList<Method>();
+    private final LazyInterfaceConfig toTest = new LazyInterfaceConfig(TestInterface.class) {
+        MethodConfig buildMethodConfig(Method meth) throws Exception {
+            synchronized (builds) {
+                builds.add(meth);
+            }
+            return mock(MethodConfig.class);
+        }
+    };
+
+    @Test
+    public void getInterfaceShouldReturnInterface(){
+        assertSame(TestInterface.class, toTest.getInterface());
+    }
+
+    @Test
+    public void getMethodConfigShouldBuildConfigOnceOnFirstAccess(){
+        assertTrue(builds.isEmpty());
+        MethodConfig actual = toTest.getMethodConfig(TestInterface.M1);
+        assertNotNull(actual);
+        assertSame(actual, toTest.getMethodConfig(TestInterface.M1));
+        assertEquals(1, builds.size());
+    }
+
+    @Test
+    public void getMethodConfigShouldReturnNullForUnknownMethod(){
+        assertNull(toTest.getMethodConfig(Classes.byName(Object.class, "toString")));
+        assertTrue(builds.isEmpty());
+    }
+
+    @Test
+    public void getMethodConfigShouldRethrowBuildFailureOnEveryAccess(){
+        final Exception failure = new Exception("failed");
+        final int[] attempts = {0};
+        LazyInterfaceConfig failing = new LazyInterfaceConfig(TestInterface.class) {
+            MethodConfig buildMethodConfig(Method meth) throws Exception {
+                attempts[0]++;
+                throw failure;
+            }
+        };
+        for (int i = 0; i < 2; i++) {
+            try {
+                failing.getMethodConfig(TestInterface.M1);
+                fail();
+            } catch (CRestException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+        assertEquals(1, attempts[0]);
+    }
+
+    @Test
+    public void getMethodConfigShouldBuildConfigOnceUnderConcurrentAccess() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final MethodConfig[] actual = new MethodConfig[8];
+        Thread[] threads = new Thread[actual.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    actual[index] = toTest.getMethodConfig(TestInterface.M1);
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, builds.size());
+        for (MethodConfig config : actual) {
+            assertSame(actual[0], config);
+        }
+    }
+
+    @Test
+    public void prewarmShouldBuildAllConfigs(){
+        toTest.prewarm(new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        assertEquals(TestInterface.class.getDeclaredMethods().length, builds.size());
+        toTest.getMethodConfig(TestInterface.M1);
+        assertEquals(TestInterface.class.getDeclaredMethods().length, builds.size());
+    }
+
+}
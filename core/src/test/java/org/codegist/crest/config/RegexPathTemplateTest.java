@@ -140,4 +140,35 @@ public class RegexPathTemplateTest {
                             .build();
         assertEquals("http://localhost/fgfg123/sdf%20df/12345/d%20d/df", url);
     }
+
+    @Test
+    public void pathBuilderShouldMergeParamsInAnyOrderAndAtTemplateBoundaries() throws Exception {
+        PathTemplate toTest = RegexPathTemplate.create("{aaa}/b/{bbb}{ccc}");
+        String url = toTest.getBuilder(UTF8)
+                            .merge("ccc", "3", false)
+                            .merge("aaa", "1", false)
+                            .merge("bbb", "{ccc}", true)
+                            .build();
+        assertEquals("1/b/{ccc}3", url);
+    }
+
+    @Test
+    public void pathBuildersShouldBeIndependent() throws Exception {
+        PathTemplate toTest = RegexPathTemplate.create("http://localhost/{aaa}");
+        PathBuilder first = toTest.getBuilder(UTF8).merge("aaa", "1", false);
+        PathBuilder second = toTest.getBuilder(UTF8).merge("aaa", "2", false);
+        assertEquals("http://localhost/1", first.build());
+        assertEquals("http://localhost/2", second.build());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void pathBuilderShouldFailOnEmptyValueWithDefaultValidator() throws Exception {
+        PathBuilder builder = RegexPathTemplate.create("http://localhost/{aaa}").getBuilder(UTF8);
+        try {
+            builder.merge("aaa", "", false);
+        } catch (IllegalArgumentException e) {
+            assertEquals("Path param aaa= don't matches expected format ^[^/]+$", e.getMessage());
+            throw e;
+        }
+    }
 }
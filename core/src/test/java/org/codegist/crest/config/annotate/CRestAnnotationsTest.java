@@ -43,9 +43,13 @@ public class CRestAnnotationsTest extends NonInstanciableClassTest {
     @Test
     public void mappingShouldContainsAllSupportedJaxRsAnnotations(){
         
-        assertEquals(36, CRestAnnotations.getMapping().size());
+        assertEquals(41, CRestAnnotations.getMapping().size());
+        assertEquals(CachedAnnotationHandler.class, CRestAnnotations.getMapping().get(Cached.class));
+        assertEquals(CoalescedAnnotationHandler.class, CRestAnnotations.getMapping().get(Coalesced.class));
+        assertEquals(CollapsedAnnotationHandler.class, CRestAnnotations.getMapping().get(Collapsed.class));
         assertEquals(ConnectionTimeoutAnnotationHandler.class, CRestAnnotations.getMapping().get(ConnectionTimeout.class));
         assertEquals(ConsumesAnnotationHandler.class, CRestAnnotations.getMapping().get(Consumes.class));
+        assertEquals(DeadlineAnnotationHandler.class, CRestAnnotations.getMapping().get(Deadline.class));
         assertEquals(CookieParamAnnotationHandler.class, CRestAnnotations.getMapping().get(CookieParam.class));
         assertEquals(CookieParamsAnnotationHandler.class, CRestAnnotations.getMapping().get(CookieParams.class));
         assertEquals(DELETEAnnotationHandler.class, CRestAnnotations.getMapping().get(DELETE.class));
@@ -74,6 +78,7 @@ public class CRestAnnotationsTest extends NonInstanciableClassTest {
         assertEquals(PUTAnnotationHandler.class, CRestAnnotations.getMapping().get(PUT.class));
         assertEquals(QueryParamAnnotationHandler.class, CRestAnnotations.getMapping().get(QueryParam.class));
         assertEquals(QueryParamsAnnotationHandler.class, CRestAnnotations.getMapping().get(QueryParams.class));
+        assertEquals(RateLimitedAnnotationHandler.class, CRestAnnotations.getMapping().get(RateLimited.class));
         assertEquals(RequestInterceptorAnnotationHandler.class, CRestAnnotations.getMapping().get(RequestInterceptor.class));
         assertEquals(ResponseHandlerAnnotationHandler.class, CRestAnnotations.getMapping().get(ResponseHandler.class));
         assertEquals(RetryHandlerAnnotationHandler.class, CRestAnnotations.getMapping().get(RetryHandler.class));
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config.annotate;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.annotate.Cached;
+import org.codegist.crest.config.CachePolicy;
+import org.codegist.crest.util.UnitWeigher;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class CachedAnnotationHandlerTest extends DownToMethodAnnotationBaseTest<Cached> {
+
+    private final CachedAnnotationHandler toTest = new CachedAnnotationHandler(mock(CRestConfig.class));
+
+    public CachedAnnotationHandlerTest() {
+        super(Cached.class);
+    }
+
+    @Test
+    public void handleInterfaceAnnotationShouldSetMethodsCachePolicy() throws Exception {
+        mockCached();
+        toTest.handleInterfaceAnnotation(mockAnnotation, mockInterfaceConfigBuilder);
+        verify(mockInterfaceConfigBuilder).setMethodsCachePolicy(new CachePolicy(60000, 10, 100, new UnitWeigher(), 5000, 30000));
+    }
+
+    @Test
+    public void handleMethodAnnotationShouldSetCachePolicy() throws Exception {
+        mockCached();
+        toTest.handleMethodAnnotation(mockAnnotation, mockMethodConfigBuilder);
+        verify(mockMethodConfigBuilder).setCachePolicy(new CachePolicy(60000, 10, 100, new UnitWeigher(), 5000, 30000));
+    }
+
+    private void mockCached() {
+        when(mockAnnotation.value()).thenReturn(60000l);
+        when(mockAnnotation.maxSize()).thenReturn(10);
+        when(mockAnnotation.maxWeight()).thenReturn(100l);
+        doReturn(UnitWeigher.class).when(mockAnnotation).weigher();
+        when(mockAnnotation.staleWhileRevalidate()).thenReturn(5000l);
+        when(mockAnnotation.negativeTtl()).thenReturn(30000l);
+    }
+
+    @Override
+    public AnnotationHandler<Cached> getToTest() {
+        return toTest;
+    }
+}
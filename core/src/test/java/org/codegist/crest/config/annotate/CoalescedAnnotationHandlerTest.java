@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config.annotate;
+
+import org.codegist.crest.annotate.Coalesced;
+import org.junit.Test;
+
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class CoalescedAnnotationHandlerTest extends DownToMethodAnnotationBaseTest<Coalesced> {
+
+    private final CoalescedAnnotationHandler toTest = new CoalescedAnnotationHandler();
+
+    public CoalescedAnnotationHandlerTest() {
+        super(Coalesced.class);
+    }
+
+    @Test
+    public void handleInterfaceAnnotationShouldSetMethodsCoalesced() throws Exception {
+        toTest.handleInterfaceAnnotation(mockAnnotation, mockInterfaceConfigBuilder);
+        verify(mockInterfaceConfigBuilder).setMethodsCoalesced(true);
+    }
+
+    @Test
+    public void handleMethodAnnotationShouldSetCoalesced() throws Exception {
+        toTest.handleMethodAnnotation(mockAnnotation, mockMethodConfigBuilder);
+        verify(mockMethodConfigBuilder).setCoalesced(true);
+    }
+
+    @Override
+    public AnnotationHandler<Coalesced> getToTest() {
+        return toTest;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config.annotate;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.annotate.Collapsed;
+import org.codegist.crest.config.Collapse;
+import org.codegist.crest.util.ItemKeyExtractor;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class CollapsedAnnotationHandlerTest extends MethodOnlyAnnotationBaseTest<Collapsed> {
+
+    private final CollapsedAnnotationHandler toTest = new CollapsedAnnotationHandler(mock(CRestConfig.class));
+
+    public CollapsedAnnotationHandlerTest() {
+        super(Collapsed.class);
+    }
+
+    @Test
+    public void handleMethodAnnotationShouldSetCollapse() throws Exception {
+        when(mockAnnotation.into()).thenReturn("getAll");
+        when(mockAnnotation.window()).thenReturn(10l);
+        when(mockAnnotation.maxBatchSize()).thenReturn(50);
+        doReturn(ItemKeyExtractor.class).when(mockAnnotation).key();
+        toTest.handleMethodAnnotation(mockAnnotation, mockMethodConfigBuilder);
+        verify(mockMethodConfigBuilder).setCollapse(new Collapse("getAll", 10, 50));
+    }
+
+    @Test
+    public void handleMethodAnnotationShouldSetCollapseKeyExtractor() throws Exception {
+        when(mockAnnotation.into()).thenReturn("getAll");
+        when(mockAnnotation.window()).thenReturn(10l);
+        when(mockAnnotation.maxBatchSize()).thenReturn(50);
+        doReturn(ItemKey.class).when(mockAnnotation).key();
+        toTest.handleMethodAnnotation(mockAnnotation, mockMethodConfigBuilder);
+        verify(mockMethodConfigBuilder).setCollapse(new Collapse("getAll", 10, 50, new ItemKey()));
+    }
+
+    public static class ItemKey implements ItemKeyExtractor {
+        public Object keyOf(Object item) {
+            return item;
+        }
+    }
+
+    @Override
+    public AnnotationHandler<Collapsed> getToTest() {
+        return toTest;
+    }
+}
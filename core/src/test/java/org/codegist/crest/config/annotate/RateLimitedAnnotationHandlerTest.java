@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.config.annotate;
+
+import org.codegist.crest.annotate.RateLimited;
+import org.codegist.crest.config.RateLimit;
+import org.junit.Test;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class RateLimitedAnnotationHandlerTest extends DownToMethodAnnotationBaseTest<RateLimited> {
+
+    private final RateLimitedAnnotationHandler toTest = new RateLimitedAnnotationHandler();
+
+    public RateLimitedAnnotationHandlerTest() {
+        super(RateLimited.class);
+    }
+
+    @Test
+    public void handleInterfaceAnnotationShouldSetMethodsRateLimit() throws Exception {
+        when(mockAnnotation.value()).thenReturn(12);
+        when(mockAnnotation.period()).thenReturn(1000l);
+        toTest.handleInterfaceAnnotation(mockAnnotation, mockInterfaceConfigBuilder);
+        verify(mockInterfaceConfigBuilder).setMethodsRateLimit(new RateLimit(12, 1000));
+    }
+
+    @Test
+    public void handleMethodAnnotationShouldSetRateLimit() throws Exception {
+        when(mockAnnotation.value()).thenReturn(12);
+        when(mockAnnotation.period()).thenReturn(1000l);
+        toTest.handleMethodAnnotation(mockAnnotation, mockMethodConfigBuilder);
+        verify(mockMethodConfigBuilder).setRateLimit(new RateLimit(12, 1000));
+    }
+
+    @Override
+    public AnnotationHandler<RateLimited> getToTest() {
+        return toTest;
+    }
+}
@@ -21,8 +21,8 @@
 package org.codegist.crest.handler;
 
 import org.codegist.crest.CRestConfig;
-import org.codegist.crest.CRestException;
 import org.codegist.crest.io.Response;
+import org.codegist.crest.io.ResponseStatusException;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -57,8 +57,9 @@ public class DefaultResponseHandlerTest {
         try {
             toTest.handle(response);
             fail();
-        } catch (CRestException e) {
+        } catch (ResponseStatusException e) {
             assertEquals("Response Status Code:123\nResponse: hello", e.getMessage());
+            assertEquals(123, e.getStatusCode());
         }
 
     }
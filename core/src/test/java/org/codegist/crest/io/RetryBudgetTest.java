@@ -0,0 +1,64 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class RetryBudgetTest {
+
+    @Test
+    public void minRetriesPerSecondShouldAlwaysBeGranted() {
+        RetryBudget toTest = new RetryBudget(0, 2);
+        assertTrue(toTest.tryWithdraw(0));
+        assertTrue(toTest.tryWithdraw(10));
+        assertFalse(toTest.tryWithdraw(20));
+        assertTrue(toTest.tryWithdraw(1000));
+    }
+
+    @Test
+    public void retriesShouldBeBoundedByRequestsRatio() {
+        RetryBudget toTest = new RetryBudget(50, 0);
+        assertFalse(toTest.tryWithdraw(0));
+        toTest.deposit();
+        assertFalse(toTest.tryWithdraw(0));
+        toTest.deposit();
+        assertTrue(toTest.tryWithdraw(0));
+        assertFalse(toTest.tryWithdraw(0));
+    }
+
+    @Test
+    public void balanceShouldBeCapped() {
+        RetryBudget toTest = new RetryBudget(100, 0);
+        for(int i = 0; i < 5000; i++) {
+            toTest.deposit();
+        }
+        for(int i = 0; i < 1000; i++) {
+            assertTrue(toTest.tryWithdraw(0));
+        }
+        assertFalse(toTest.tryWithdraw(0));
+    }
+}
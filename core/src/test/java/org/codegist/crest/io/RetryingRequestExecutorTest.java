@@ -20,13 +20,21 @@
 
 package org.codegist.crest.io;
 
+import org.codegist.crest.CRestConfig;
 import org.codegist.crest.config.MethodConfig;
 import org.codegist.crest.handler.RetryHandler;
+import org.codegist.crest.test.util.CRestConfigs;
+import org.codegist.crest.util.Requests;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertSame;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 /**
@@ -115,6 +123,163 @@ public class RetryingRequestExecutorTest {
         verify(requestException1).dispose();
     }
 
+    @Test
+    public void executeShouldBackOffBetweenAttempts() throws Exception {
+        RequestException requestException = mock(RequestException.class);
+        when(retryHandler.retry(eq(requestException), anyInt())).thenReturn(true);
+        when(mockRequestExecutor.execute(request)).thenThrow(requestException, requestException, requestException, requestException).thenReturn(expected);
+        SleepRecordingRetryingRequestExecutor toTest = new SleepRecordingRetryingRequestExecutor(backOffConfig());
+
+        assertSame(expected, toTest.execute(request));
+
+        assertEquals(4, toTest.sleeps.size());
+        long previous = 100;
+        for(long sleep : toTest.sleeps) {
+            assertTrue(sleep >= 100);
+            assertTrue(sleep <= previous * 3);
+            previous = sleep;
+        }
+    }
+
+    @Test
+    public void executeShouldHonorRetryAfterHeader() throws Exception {
+        Response unavailable = mockResponse(503, "5");
+        when(retryHandler.retry(any(RequestException.class), eq(2))).thenReturn(true);
+        when(mockRequestExecutor.execute(request)).thenReturn(unavailable, expected);
+        SleepRecordingRetryingRequestExecutor toTest = new SleepRecordingRetryingRequestExecutor(backOffConfig());
+
+        assertSame(expected, toTest.execute(request));
+
+        assertEquals(Arrays.asList(5000l), toTest.sleeps);
+        verify(unavailable).dispose();
+    }
+
+    @Test
+    public void executeShouldNotRetryIfRetryAfterIsTooFar() throws Exception {
+        Response tooManyRequests = mockResponse(429, "3600");
+        when(retryHandler.retry(any(RequestException.class), eq(2))).thenReturn(true);
+        when(mockRequestExecutor.execute(request)).thenReturn(tooManyRequests, expected);
+        SleepRecordingRetryingRequestExecutor toTest = new SleepRecordingRetryingRequestExecutor(backOffConfig());
+
+        assertSame(tooManyRequests, toTest.execute(request));
+        assertTrue(toTest.sleeps.isEmpty());
+    }
+
+    @Test
+    public void executeShouldNotRetryOnceRetryBudgetIsExhausted() throws Exception {
+        CRestConfig crestConfig = CRestConfigs.mockDefaultBehavior();
+        when(crestConfig.get(RetryingRequestExecutor.RETRY_BUDGET_PERCENT_PROP, -1)).thenReturn(0);
+        when(crestConfig.get(RetryingRequestExecutor.RETRY_BUDGET_MIN_PER_SECOND_PROP, 10)).thenReturn(1);
+        RequestException requestException = mock(RequestException.class);
+        when(retryHandler.retry(eq(requestException), anyInt())).thenReturn(true);
+        when(mockRequestExecutor.execute(request)).thenThrow(requestException);
+        SleepRecordingRetryingRequestExecutor toTest = new SleepRecordingRetryingRequestExecutor(crestConfig);
+
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (RequestException e) {
+            assertSame(requestException, e);
+        }
+        verify(mockRequestExecutor, times(2)).execute(request);
+    }
+
+    @Test
+    public void executeShouldNotRetryIfDeadlineWouldBeReachedBeforeNextAttempt() throws Exception {
+        Response unavailable = mockResponse(503, "5");
+        when(methodConfig.getDeadline()).thenReturn(1000);
+        Requests.getTimestamp(request);
+        when(retryHandler.retry(any(RequestException.class), eq(2))).thenReturn(true);
+        when(mockRequestExecutor.execute(request)).thenReturn(unavailable, expected);
+        SleepRecordingRetryingRequestExecutor toTest = new SleepRecordingRetryingRequestExecutor(backOffConfig());
+
+        assertSame(unavailable, toTest.execute(request));
+        assertTrue(toTest.sleeps.isEmpty());
+    }
+
+    @Test
+    public void executeShouldNotDelayRetriesByDefault() throws Exception {
+        Response serverError = mockResponse(500, null);
+        when(retryHandler.retry(any(RequestException.class), eq(2))).thenReturn(true);
+        when(mockRequestExecutor.execute(request)).thenReturn(serverError, expected);
+        SleepRecordingRetryingRequestExecutor toTest = new SleepRecordingRetryingRequestExecutor(CRestConfigs.mockDefaultBehavior());
+
+        assertSame(expected, toTest.execute(request));
+        assertTrue(toTest.sleeps.isEmpty());
+        verify(serverError).dispose();
+    }
+
+    @Test
+    public void executeShouldHonorRetryAfterHeaderByDefault() throws Exception {
+        Response unavailable = mockResponse(503, "5");
+        when(retryHandler.retry(any(RequestException.class), eq(2))).thenReturn(true);
+        when(mockRequestExecutor.execute(request)).thenReturn(unavailable, expected);
+        SleepRecordingRetryingRequestExecutor toTest = new SleepRecordingRetryingRequestExecutor(CRestConfigs.mockDefaultBehavior());
+
+        assertSame(expected, toTest.execute(request));
+        assertEquals(Arrays.asList(5000l), toTest.sleeps);
+        verify(unavailable).dispose();
+    }
+
+    @Test
+    public void executeShouldNotRetryByDefaultIfRetryAfterIsTooFar() throws Exception {
+        Response tooManyRequests = mockResponse(429, "3600");
+        when(retryHandler.retry(any(RequestException.class), eq(2))).thenReturn(true);
+        when(mockRequestExecutor.execute(request)).thenReturn(tooManyRequests, expected);
+        SleepRecordingRetryingRequestExecutor toTest = new SleepRecordingRetryingRequestExecutor(CRestConfigs.mockDefaultBehavior());
+
+        assertSame(tooManyRequests, toTest.execute(request));
+        assertTrue(toTest.sleeps.isEmpty());
+    }
+
+    @Test
+    public void executeShouldDisposeLastFailedResponseIfInterruptedWhileBackingOff() throws Exception {
+        Response unavailable = mockResponse(503, "5");
+        when(retryHandler.retry(any(RequestException.class), eq(2))).thenReturn(true);
+        when(mockRequestExecutor.execute(request)).thenReturn(unavailable, expected);
+        RetryingRequestExecutor toTest = new RetryingRequestExecutor(mockRequestExecutor, 400, backOffConfig()) {
+            @Override
+            void sleep(long millis) throws RequestException {
+                throw new RequestException(new InterruptedException());
+            }
+        };
+
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (RequestException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        }
+        verify(unavailable).dispose();
+    }
+
+    @Test
+    public void parseRetryAfterShouldSupportSecondsAndHttpDates() {
+        assertEquals(120000, RetryingRequestExecutor.parseRetryAfter("120", 0, Long.MAX_VALUE));
+        assertEquals(0, RetryingRequestExecutor.parseRetryAfter("-1", 0, Long.MAX_VALUE));
+        assertEquals(2000, RetryingRequestExecutor.parseRetryAfter("Thu, 01 Jan 1970 00:00:05 GMT", 3000, Long.MAX_VALUE));
+        assertEquals(0, RetryingRequestExecutor.parseRetryAfter("soon", 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void parseRetryAfterShouldCapHugeDelaysWithoutOverflowing() {
+        assertEquals(60001, RetryingRequestExecutor.parseRetryAfter("9223372036854775807", 0, 60001));
+        assertEquals(60001, RetryingRequestExecutor.parseRetryAfter("99999999999999999999", 0, 60001));
+        assertEquals(60001, RetryingRequestExecutor.parseRetryAfter("Fri, 31 Dec 9999 23:59:59 GMT", 0, 60001));
+        assertEquals(Long.MAX_VALUE, RetryingRequestExecutor.parseRetryAfter("9223372036854775807", 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void executeShouldNotRetryIfRetryAfterOverflows() throws Exception {
+        Response tooManyRequests = mockResponse(429, "9223372036854775807");
+        when(retryHandler.retry(any(RequestException.class), eq(2))).thenReturn(true);
+        when(mockRequestExecutor.execute(request)).thenReturn(tooManyRequests, expected);
+        SleepRecordingRetryingRequestExecutor toTest = new SleepRecordingRetryingRequestExecutor(CRestConfigs.mockDefaultBehavior());
+
+        assertSame(tooManyRequests, toTest.execute(request));
+        assertTrue(toTest.sleeps.isEmpty());
+    }
+
     @Test
     public void executeShouldCancelAllIfDelegateThrowUnexpectedException() throws Exception {
         Exception expected = mock(Exception.class);
@@ -126,4 +291,31 @@ public class RetryingRequestExecutorTest {
             assertSame(expected, e);
         }
     }
+
+    private static CRestConfig backOffConfig() {
+        CRestConfig crestConfig = CRestConfigs.mockDefaultBehavior();
+        when(crestConfig.get(RetryingRequestExecutor.BACKOFF_BASE_PROP, 0l)).thenReturn(100l);
+        return crestConfig;
+    }
+
+    private static Response mockResponse(int statusCode, String retryAfter) throws Exception {
+        Response response = mock(Response.class);
+        when(response.getStatusCode()).thenReturn(statusCode);
+        when(response.getHeaderFields()).thenReturn(singletonMap("Retry-After", Collections.singletonList(retryAfter)));
+        return response;
+    }
+
+    private final class SleepRecordingRetryingRequestExecutor extends RetryingRequestExecutor {
+
+        private final List<Long> sleeps = new ArrayList<Long>();
+
+        private SleepRecordingRetryingRequestExecutor(CRestConfig crestConfig) {
+            super(mockRequestExecutor, 400, crestConfig);
+        }
+
+        @Override
+        void sleep(long millis) {
+            sleeps.add(millis);
+        }
+    }
 }
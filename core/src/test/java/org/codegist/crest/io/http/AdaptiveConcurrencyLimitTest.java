@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    public void acquireShouldFailOnceLimitIsReached() throws InterruptedException {
+        AdaptiveConcurrencyLimit toTest = new AdaptiveConcurrencyLimit(2, 1, 10);
+        assertTrue(toTest.acquire(0));
+        assertTrue(toTest.acquire(0));
+        assertFalse(toTest.acquire(0));
+        assertEquals(2, toTest.getInFlight());
+    }
+
+    @Test
+    public void acquireShouldWaitForASlot() throws Exception {
+        final AdaptiveConcurrencyLimit toTest = new AdaptiveConcurrencyLimit(1, 1, 10);
+        assertTrue(toTest.acquire(0));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> waiting = executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    return toTest.acquire(10000);
+                }
+            });
+            toTest.cancel();
+            assertTrue(waiting.get());
+            assertEquals(1, toTest.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void droppedCallsShouldDecreaseLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimit toTest = new AdaptiveConcurrencyLimit(10, 1, 10);
+        toTest.acquire(0);
+        toTest.release(1000, true);
+        assertEquals(9, toTest.getLimit());
+        assertEquals(0, toTest.getInFlight());
+    }
+
+    @Test
+    public void limitShouldNotGoUnderMinimum() throws InterruptedException {
+        AdaptiveConcurrencyLimit toTest = new AdaptiveConcurrencyLimit(2, 2, 10);
+        for (int i = 0; i < 10; i++) {
+            toTest.acquire(0);
+            toTest.release(1000, true);
+        }
+        assertEquals(2, toTest.getLimit());
+    }
+
+    @Test
+    public void stableLatencyShouldIncreaseLimitUpToMaximum() throws InterruptedException {
+        AdaptiveConcurrencyLimit toTest = new AdaptiveConcurrencyLimit(4, 1, 50);
+        for (int i = 0; i < 500; i++) {
+            saturate(toTest, 1000);
+        }
+        assertEquals(50, toTest.getLimit());
+    }
+
+    @Test
+    public void risingLatencyShouldDecreaseLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimit toTest = new AdaptiveConcurrencyLimit(40, 1, 50);
+        for (int i = 0; i < 100; i++) {
+            toTest.acquire(0);
+            toTest.release(1000, false);
+        }
+        int before = toTest.getLimit();
+        saturate(toTest, 10000);
+        assertTrue(toTest.getLimit() < before);
+    }
+
+    @Test
+    public void underusedLimitShouldNotGrow() throws InterruptedException {
+        AdaptiveConcurrencyLimit toTest = new AdaptiveConcurrencyLimit(10, 1, 50);
+        for (int i = 0; i < 100; i++) {
+            toTest.acquire(0);
+            toTest.release(1000, false);
+        }
+        assertEquals(10, toTest.getLimit());
+    }
+
+    private static void saturate(AdaptiveConcurrencyLimit limit, long rtt) throws InterruptedException {
+        int count = 0;
+        while(limit.acquire(0)) {
+            count++;
+        }
+        for (int i = 0; i < count; i++) {
+            limit.release(rtt, false);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.codegist.crest.test.util.Values.UTF8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class BufferedHttpResourceTest {
+
+    private final BufferedHttpResource toTest;
+
+    {
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        headers.put("Cache-Control", Arrays.asList("no-cache", "max-age=60"));
+        toTest = new BufferedHttpResource(200, "OK", "text/plain", UTF8, null, headers, new byte[0]);
+    }
+
+    @Test
+    public void getHeaderFieldShouldReturnTheLastValue() {
+        assertEquals("max-age=60", toTest.getHeaderField("Cache-Control"));
+    }
+
+    @Test
+    public void getHeaderFieldShouldIgnoreCase() {
+        assertEquals("max-age=60", toTest.getHeaderField("cache-control"));
+    }
+
+    @Test
+    public void getHeaderFieldShouldReturnNullWhenMissing() {
+        assertNull(toTest.getHeaderField("ETag"));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.RequestRejectedException;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.serializer.ResponseDeserializer;
+import org.codegist.crest.test.util.CRestConfigs;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class BulkheadRequestExecutorTest {
+
+    private final RequestExecutor mockRequestExecutor = mock(RequestExecutor.class);
+    private final CRestConfig crestConfig = CRestConfigs.mockDefaultBehavior();
+    private final ResponseDeserializer baseResponseDeserializer = mock(ResponseDeserializer.class);
+    private final ResponseDeserializer customTypeResponseDeserializer = mock(ResponseDeserializer.class);
+    private final Response response = mock(Response.class);
+
+    {
+        when(crestConfig.get(BulkheadRequestExecutor.MAX_CONCURRENT_CALLS_PROP, 10)).thenReturn(1);
+        try {
+            when(response.getStatusCode()).thenReturn(200);
+            when(response.asStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void executeShouldHoldSlotUntilResponseIsDisposed() throws Exception {
+        Request request = mockRequest(Object.class.getMethod("toString"));
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+        BulkheadRequestExecutor toTest = newBulkheadRequestExecutor();
+
+        Response actual = toTest.execute(request);
+        assertEquals(200, actual.getStatusCode());
+        assertRejected(toTest, request);
+        verify(response, never()).dispose();
+
+        actual.dispose();
+        verify(response).dispose();
+        assertEquals(200, toTest.execute(request).getStatusCode());
+    }
+
+    @Test
+    public void executeShouldHoldSlotUntilResponseStreamIsClosed() throws Exception {
+        Request request = mockRequest(Object.class.getMethod("toString"));
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+        BulkheadRequestExecutor toTest = newBulkheadRequestExecutor();
+
+        Response actual = toTest.execute(request);
+        assertRejected(toTest, request);
+
+        actual.asStream().close();
+        assertEquals(200, toTest.execute(request).getStatusCode());
+    }
+
+    @Test
+    public void executeShouldReleaseSlotOnFailure() throws Exception {
+        Request request = mockRequest(Object.class.getMethod("toString"));
+        RequestException exception = new RequestException(new Exception());
+        when(mockRequestExecutor.execute(request)).thenThrow(exception).thenReturn(response);
+        BulkheadRequestExecutor toTest = newBulkheadRequestExecutor();
+
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (RequestException e) {
+            assertSame(exception, e);
+        }
+        assertEquals(200, toTest.execute(request).getStatusCode());
+    }
+
+    @Test
+    public void executeShouldReleaseSlotOnError() throws Exception {
+        Request request = mockRequest(Object.class.getMethod("toString"));
+        Error error = new OutOfMemoryError();
+        when(mockRequestExecutor.execute(request)).thenThrow(error).thenReturn(response);
+        BulkheadRequestExecutor toTest = newBulkheadRequestExecutor();
+
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (OutOfMemoryError e) {
+            assertSame(error, e);
+        }
+        assertEquals(200, toTest.execute(request).getStatusCode());
+    }
+
+    @Test
+    public void executeShouldRejectCallsOfAFullInterfaceOnly() throws Exception {
+        final Request request = mockRequest(Object.class.getMethod("toString"));
+        final Request sameInterfaceRequest = mockRequest(Object.class.getMethod("hashCode"));
+        final Request otherInterfaceRequest = mockRequest(Callable.class.getMethod("call"));
+        final BulkheadRequestExecutor toTest = newBulkheadRequestExecutor();
+        when(mockRequestExecutor.execute(request)).thenAnswer(new Answer<Response>() {
+            public Response answer(InvocationOnMock invocation) throws Throwable {
+                try {
+                    toTest.execute(sameInterfaceRequest);
+                    fail();
+                } catch (RequestRejectedException e) {
+                    // expected
+                }
+                return toTest.execute(otherInterfaceRequest);
+            }
+        });
+        when(mockRequestExecutor.execute(otherInterfaceRequest)).thenReturn(response);
+
+        assertEquals(200, toTest.execute(request).getStatusCode());
+        verify(mockRequestExecutor, never()).execute(sameInterfaceRequest);
+    }
+
+    @Test
+    public void methodScopeShouldIsolateMethods() throws Exception {
+        when(crestConfig.get(BulkheadRequestExecutor.SCOPE_PROP, "interface")).thenReturn("method");
+        final Request request = mockRequest(Object.class.getMethod("toString"));
+        final Request otherMethodRequest = mockRequest(Object.class.getMethod("hashCode"));
+        final BulkheadRequestExecutor toTest = newBulkheadRequestExecutor();
+        when(mockRequestExecutor.execute(request)).thenAnswer(new Answer<Response>() {
+            public Response answer(InvocationOnMock invocation) throws Throwable {
+                return toTest.execute(otherMethodRequest);
+            }
+        });
+        when(mockRequestExecutor.execute(otherMethodRequest)).thenReturn(response);
+
+        assertEquals(200, toTest.execute(request).getStatusCode());
+    }
+
+    private BulkheadRequestExecutor newBulkheadRequestExecutor() {
+        return new BulkheadRequestExecutor(mockRequestExecutor, crestConfig, baseResponseDeserializer, customTypeResponseDeserializer);
+    }
+
+    private static void assertRejected(BulkheadRequestExecutor toTest, Request request) throws Exception {
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (RequestRejectedException e) {
+            // expected
+        }
+    }
+
+    private static Request mockRequest(Method method) {
+        Request request = mock(Request.class);
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        when(request.getMethodConfig()).thenReturn(methodConfig);
+        when(methodConfig.getMethod()).thenReturn(method);
+        return request;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class BulkheadTest {
+
+    @Test
+    public void acquireShouldFailOnceFullWithoutWaiting() throws Exception {
+        Bulkhead toTest = new Bulkhead(2, 10);
+        assertTrue(toTest.acquire(0));
+        assertTrue(toTest.acquire(0));
+        assertFalse(toTest.acquire(0));
+        assertEquals(2, toTest.getActiveCalls());
+
+        toTest.release();
+        assertEquals(1, toTest.getActiveCalls());
+        assertTrue(toTest.acquire(0));
+    }
+
+    @Test
+    public void acquireShouldWaitForReleasedSlot() throws Exception {
+        final Bulkhead toTest = new Bulkhead(1, 10);
+        assertTrue(toTest.acquire(0));
+        new Thread() {
+            @Override
+            public void run() {
+                while(toTest.getQueuedCalls() == 0) {
+                    Thread.yield();
+                }
+                toTest.release();
+            }
+        }.start();
+
+        assertTrue(toTest.acquire(5000));
+        assertEquals(0, toTest.getQueuedCalls());
+    }
+
+    @Test
+    public void acquireShouldFailIfWaitQueueIsFull() throws Exception {
+        final Bulkhead toTest = new Bulkhead(1, 1);
+        final CountDownLatch queued = new CountDownLatch(1);
+        final AtomicBoolean acquired = new AtomicBoolean();
+        assertTrue(toTest.acquire(0));
+        Thread waiting = new Thread() {
+            @Override
+            public void run() {
+                queued.countDown();
+                try {
+                    acquired.set(toTest.acquire(5000));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        waiting.start();
+        queued.await();
+        while(toTest.getQueuedCalls() == 0) {
+            Thread.yield();
+        }
+
+        assertFalse(toTest.acquire(5000));
+
+        toTest.release();
+        waiting.join();
+        assertTrue(acquired.get());
+    }
+
+    @Test
+    public void acquireShouldTimeout() throws Exception {
+        Bulkhead toTest = new Bulkhead(1, 10);
+        assertTrue(toTest.acquire(0));
+        assertFalse(toTest.acquire(20));
+        assertEquals(0, toTest.getQueuedCalls());
+    }
+}
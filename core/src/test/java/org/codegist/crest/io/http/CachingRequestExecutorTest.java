@@ -0,0 +1,290 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.config.MethodType;
+import org.codegist.crest.config.ParamType;
+import org.codegist.crest.config.PathBuilder;
+import org.codegist.crest.config.PathTemplate;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.param.EncodedPair;
+import org.codegist.crest.param.SimpleEncodedPair;
+import org.codegist.crest.serializer.ResponseDeserializer;
+import org.codegist.crest.test.util.Classes;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.codegist.crest.test.util.Values.UTF8;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class CachingRequestExecutorTest {
+
+    private final ResponseDeserializer baseResponseDeserializer = mock(ResponseDeserializer.class);
+    private final ResponseDeserializer customTypeResponseDeserializer = mock(ResponseDeserializer.class);
+    private final RequestExecutor mockRequestExecutor = mock(RequestExecutor.class);
+    private final MemoryHttpCache cache = new MemoryHttpCache(10);
+    private final CachingRequestExecutor toTest = new CachingRequestExecutor(mockRequestExecutor, baseResponseDeserializer, customTypeResponseDeserializer, cache, 10);
+
+    @Test
+    public void freshResponseShouldBeServedFromCache() throws Exception {
+        Request request = mockRequest(MethodType.GET, "*/*");
+        Response response = mockResponse(200, "hello", "Cache-Control", "max-age=60");
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+
+        Response actual1 = toTest.execute(request);
+        Response actual2 = toTest.execute(request);
+
+        assertEquals("hello", read(actual1.asStream()));
+        assertEquals("hello", read(actual2.asStream()));
+        assertEquals(200, actual2.getStatusCode());
+        assertSame(request, actual2.getRequest());
+        verify(mockRequestExecutor, times(1)).execute(request);
+        verify(response).dispose();
+    }
+
+    @Test
+    public void staleResponseShouldBeRevalidatedWithConditionalRequest() throws Exception {
+        Request request = mockRequest(MethodType.GET, "*/*");
+        Response response = mockResponse(200, "hello", "Cache-Control", "no-cache", "ETag", "\"v1\"", "Last-Modified", "Sat, 01 Jan 2011 00:00:00 GMT");
+        Response notModified = mockResponse(304, "", "Cache-Control", "no-cache");
+        ArgumentCaptor<Request> sent = ArgumentCaptor.forClass(Request.class);
+        when(mockRequestExecutor.execute(sent.capture())).thenReturn(response, notModified);
+
+        toTest.execute(request);
+        Response actual = toTest.execute(request);
+
+        assertEquals("hello", read(actual.asStream()));
+        assertEquals(200, actual.getStatusCode());
+        verify(notModified).dispose();
+        Map<String,String> headers = new HashMap<String, String>();
+        Iterator<EncodedPair> iterator = sent.getAllValues().get(1).getEncodedParamsIterator(ParamType.HEADER);
+        while(iterator.hasNext()) {
+            EncodedPair pair = iterator.next();
+            headers.put(pair.getName(), pair.getValue());
+        }
+        assertEquals("\"v1\"", headers.get("If-None-Match"));
+        assertEquals("Sat, 01 Jan 2011 00:00:00 GMT", headers.get("If-Modified-Since"));
+    }
+
+    @Test
+    public void noStoreResponseShouldNotBeCached() throws Exception {
+        Request request = mockRequest(MethodType.GET, "*/*");
+        Response response = mockResponse(200, "hello", "Cache-Control", "no-store, max-age=60");
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+
+        assertSame(response, toTest.execute(request));
+        assertSame(response, toTest.execute(request));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void streamingMethodResponseShouldNotBeCached() throws Exception {
+        Request request = mockRequest(MethodType.GET, "*/*");
+        when(request.getMethodConfig().getMethod()).thenReturn(Api.STREAM);
+        Response response = mockResponse(200, "hello", "Cache-Control", "max-age=60");
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+
+        assertSame(response, toTest.execute(request));
+        assertEquals(0, cache.size());
+        verify(response, never()).asStream();
+    }
+
+    @Test
+    public void responseLargerThanMaxSizeShouldNotBeBuffered() throws Exception {
+        Request request = mockRequest(MethodType.GET, "*/*");
+        Response response = mockResponse(200, "hello world", "Cache-Control", "max-age=60", "Content-Length", "11");
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+
+        assertSame(response, toTest.execute(request));
+        assertEquals(0, cache.size());
+        verify(response, never()).asStream();
+    }
+
+    @Test
+    public void errorResponseShouldNotBeCached() throws Exception {
+        Request request = mockRequest(MethodType.GET, "*/*");
+        Response response = mockResponse(500, "error", "Cache-Control", "max-age=60");
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+
+        assertSame(response, toTest.execute(request));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void responseToRequestCarryingAuthorizationShouldNotBeCachedUnlessPublic() throws Exception {
+        Request request = mockAuthorizedRequest();
+        Response response = mockResponse(200, "hello", "Cache-Control", "max-age=60");
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+
+        assertSame(response, toTest.execute(request));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void publicResponseToRequestCarryingAuthorizationShouldBeCached() throws Exception {
+        Request request = mockAuthorizedRequest();
+        when(mockRequestExecutor.execute(request)).thenReturn(mockResponse(200, "hello", "Cache-Control", "public, max-age=60"));
+
+        toTest.execute(request);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void responseToAuthorizedCRestShouldNotBeCachedUnlessPublic() throws Exception {
+        CachingRequestExecutor toTest = new CachingRequestExecutor(mockRequestExecutor, baseResponseDeserializer, customTypeResponseDeserializer, cache, 10, true);
+        Request request = mockRequest(MethodType.GET, "*/*");
+        when(mockRequestExecutor.execute(request)).thenReturn(mockResponse(200, "hello", "Cache-Control", "max-age=60"), mockResponse(200, "hello", "Cache-Control", "public, max-age=60"));
+
+        toTest.execute(request);
+        assertEquals(0, cache.size());
+        toTest.execute(request);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void requestNotMatchingVaryHeadersShouldMiss() throws Exception {
+        Request jsonRequest = mockRequest(MethodType.GET, "application/json");
+        Request xmlRequest = mockRequest(MethodType.GET, "application/xml");
+        when(mockRequestExecutor.execute(jsonRequest)).thenReturn(mockResponse(200, "json", "Cache-Control", "max-age=60", "Vary", "Accept"));
+        when(mockRequestExecutor.execute(xmlRequest)).thenReturn(mockResponse(200, "xml", "Cache-Control", "max-age=60", "Vary", "Accept"));
+
+        assertEquals("json", read(toTest.execute(jsonRequest).asStream()));
+        assertEquals("xml", read(toTest.execute(xmlRequest).asStream()));
+        verify(mockRequestExecutor).execute(xmlRequest);
+    }
+
+    @Test
+    public void successfulNonGetRequestShouldEvictUrl() throws Exception {
+        Request get = mockRequest(MethodType.GET, "*/*");
+        Request put = mockRequest(MethodType.PUT, "*/*");
+        when(mockRequestExecutor.execute(get)).thenReturn(mockResponse(200, "hello", "Cache-Control", "max-age=60"));
+        when(mockRequestExecutor.execute(put)).thenReturn(mockResponse(204, ""));
+
+        toTest.execute(get);
+        assertEquals(1, cache.size());
+        toTest.execute(put);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void expiresAtShouldHonorMaxAgeMinusAge() {
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        headers.put("cache-control", asList("public, max-age=60"));
+        headers.put("Age", asList("10"));
+        assertEquals(1000 + 50000, CachingRequestExecutor.expiresAt(headers, 1000));
+    }
+
+    @Test
+    public void expiresAtShouldHonorExpiresRelativeToDate() {
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        headers.put("Date", asList("Sat, 01 Jan 2011 00:00:00 GMT"));
+        headers.put("Expires", asList("Sat, 01 Jan 2011 00:01:00 GMT"));
+        assertEquals(1000 + 60000, CachingRequestExecutor.expiresAt(headers, 1000));
+    }
+
+    @Test
+    public void expiresAtShouldBeNowWithoutFreshnessInformation() {
+        assertEquals(1000, CachingRequestExecutor.expiresAt(Collections.<String, List<String>>emptyMap(), 1000));
+    }
+
+    private static Request mockRequest(MethodType type, String accept) throws Exception {
+        Request request = mock(Request.class);
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        PathTemplate pathTemplate = mock(PathTemplate.class);
+        PathBuilder pathBuilder = mock(PathBuilder.class);
+        when(request.getMethodConfig()).thenReturn(methodConfig);
+        when(request.getEncodedParamsIterator(any(ParamType.class))).thenAnswer(new Answer<Iterator<EncodedPair>>() {
+            public Iterator<EncodedPair> answer(InvocationOnMock invocation) {
+                return Collections.<EncodedPair>emptyList().iterator();
+            }
+        });
+        when(methodConfig.getType()).thenReturn(type);
+        when(methodConfig.getMethod()).thenReturn(Api.GET);
+        when(methodConfig.getCharset()).thenReturn(UTF8);
+        when(methodConfig.getConsumes()).thenReturn(new String[]{accept});
+        when(methodConfig.getPathTemplate()).thenReturn(pathTemplate);
+        when(pathTemplate.getBuilder(UTF8)).thenReturn(pathBuilder);
+        when(pathBuilder.build()).thenReturn("http://localhost/item/1");
+        return request;
+    }
+
+    private static Request mockAuthorizedRequest() throws Exception {
+        Request request = mockRequest(MethodType.GET, "*/*");
+        when(request.getEncodedParamsIterator(ParamType.HEADER)).thenAnswer(new Answer<Iterator<EncodedPair>>() {
+            public Iterator<EncodedPair> answer(InvocationOnMock invocation) {
+                return Collections.<EncodedPair>singletonList(new SimpleEncodedPair("Authorization", "Bearer token")).iterator();
+            }
+        });
+        return request;
+    }
+
+    private static Response mockResponse(int status, String content, String... headers) throws Exception {
+        Map<String, List<String>> headerFields = new HashMap<String, List<String>>();
+        for (int i = 0; i < headers.length; i += 2) {
+            headerFields.put(headers[i], asList(headers[i + 1]));
+        }
+        Response response = mock(Response.class);
+        when(response.getStatusCode()).thenReturn(status);
+        when(response.getContentType()).thenReturn("application/json");
+        when(response.getCharset()).thenReturn(UTF8);
+        when(response.getHeaderFields()).thenReturn(headerFields);
+        when(response.asStream()).thenReturn(new ByteArrayInputStream(content.getBytes("UTF-8")));
+        return response;
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while((c = stream.read()) != -1) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    interface Api {
+        String get();
+        Iterator<String> stream();
+
+        Method GET = Classes.byName(Api.class, "get");
+        Method STREAM = Classes.byName(Api.class, "stream");
+    }
+}
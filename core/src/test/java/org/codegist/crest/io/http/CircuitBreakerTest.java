@@ -0,0 +1,151 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.junit.Test;
+
+import static org.codegist.crest.io.http.CircuitBreaker.State.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class CircuitBreakerTest {
+
+    private final CircuitBreaker toTest = new CircuitBreaker(50, 100, 1000, 10, 4, 5000, 2);
+
+    @Test
+    public void shouldStayClosedUntilMinimumCallsAreRecorded() {
+        call(toTest, true, 10, 0);
+        call(toTest, true, 10, 0);
+        call(toTest, true, 10, 0);
+        assertEquals(CLOSED, toTest.getState());
+        assertEquals(0, toTest.tryAcquire(0));
+    }
+
+    @Test
+    public void shouldOpenWhenFailureRateReachesThreshold() {
+        call(toTest, false, 10, 0);
+        call(toTest, false, 10, 0);
+        call(toTest, true, 10, 0);
+        call(toTest, true, 10, 0);
+        assertEquals(OPEN, toTest.getState());
+        assertEquals(-1, toTest.tryAcquire(4999));
+    }
+
+    @Test
+    public void shouldStayClosedWhenFailureRateIsUnderThreshold() {
+        call(toTest, false, 10, 0);
+        call(toTest, false, 10, 0);
+        call(toTest, false, 10, 0);
+        call(toTest, true, 10, 0);
+        assertEquals(CLOSED, toTest.getState());
+    }
+
+    @Test
+    public void shouldOpenWhenSlowCallRateReachesThreshold() {
+        for (int i = 0; i < 4; i++) {
+            call(toTest, false, 1000, 0);
+        }
+        assertEquals(OPEN, toTest.getState());
+    }
+
+    @Test
+    public void shouldOnlyConsiderTheMostRecentCalls() {
+        CircuitBreaker toTest = new CircuitBreaker(50, 100, 1000, 4, 4, 5000, 2);
+        call(toTest, false, 10, 0);
+        call(toTest, false, 10, 0);
+        call(toTest, false, 10, 0);
+        call(toTest, true, 10, 0);
+        assertEquals(CLOSED, toTest.getState());
+        call(toTest, true, 10, 0);
+        assertEquals(OPEN, toTest.getState());
+    }
+
+    @Test
+    public void shouldPermitLimitedTrialCallsOnceOpenDurationElapsed() {
+        open();
+        assertTrue(toTest.tryAcquire(5000) >= 0);
+        assertEquals(HALF_OPEN, toTest.getState());
+        assertTrue(toTest.tryAcquire(5000) >= 0);
+        assertEquals(-1, toTest.tryAcquire(5000));
+    }
+
+    @Test
+    public void shouldCloseWhenTrialCallsSucceed() {
+        open();
+        long first = toTest.tryAcquire(5000);
+        long second = toTest.tryAcquire(5000);
+        toTest.record(first, false, 10, 5000);
+        assertEquals(HALF_OPEN, toTest.getState());
+        toTest.record(second, false, 10, 5000);
+        assertEquals(CLOSED, toTest.getState());
+        assertTrue(toTest.tryAcquire(5000) >= 0);
+    }
+
+    @Test
+    public void shouldReopenWhenTrialCallsFail() {
+        open();
+        long first = toTest.tryAcquire(5000);
+        long second = toTest.tryAcquire(5000);
+        toTest.record(first, true, 10, 6000);
+        toTest.record(second, false, 10, 6000);
+        assertEquals(OPEN, toTest.getState());
+        assertEquals(-1, toTest.tryAcquire(10999));
+        assertTrue(toTest.tryAcquire(11000) >= 0);
+    }
+
+    @Test
+    public void shouldIgnoreOutcomesOfCallsPermittedBeforeTheCircuitOpened() {
+        long stale = toTest.tryAcquire(0);
+        open();
+        toTest.tryAcquire(5000);
+        toTest.tryAcquire(5000);
+        toTest.record(stale, true, 10, 5000);
+        toTest.record(stale, true, 10, 5000);
+        assertEquals(HALF_OPEN, toTest.getState());
+    }
+
+    @Test
+    public void shouldIgnoreOutcomesOfTrialCallsOnceClosed() {
+        open();
+        long first = toTest.tryAcquire(5000);
+        long second = toTest.tryAcquire(5000);
+        toTest.record(first, false, 10, 5000);
+        toTest.record(second, false, 10, 5000);
+        assertEquals(CLOSED, toTest.getState());
+        for (int i = 0; i < 4; i++) {
+            toTest.record(first, true, 10, 5000);
+        }
+        assertEquals(CLOSED, toTest.getState());
+    }
+
+    private static void call(CircuitBreaker circuit, boolean failed, long duration, long now) {
+        circuit.record(circuit.tryAcquire(now), failed, duration, now);
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            call(toTest, true, 10, 0);
+        }
+        assertEquals(OPEN, toTest.getState());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.config.ParamType;
+import org.codegist.crest.config.PathBuilder;
+import org.codegist.crest.config.PathTemplate;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.RequestRejectedException;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.param.EncodedPair;
+import org.codegist.crest.test.util.CRestConfigs;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.codegist.crest.test.util.Values.UTF8;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class CircuitBreakingRequestExecutorTest {
+
+    private final RequestExecutor mockRequestExecutor = mock(RequestExecutor.class);
+    private final CRestConfig crestConfig = CRestConfigs.mockDefaultBehavior();
+    private final Response okResponse = mockResponse(200);
+    private final Response errorResponse = mockResponse(503);
+
+    {
+        when(crestConfig.get(CircuitBreakingRequestExecutor.WINDOW_SIZE_PROP, 100)).thenReturn(2);
+        when(crestConfig.get(CircuitBreakingRequestExecutor.MINIMUM_CALLS_PROP, 20)).thenReturn(2);
+    }
+
+    @Test
+    public void executeShouldReturnDelegateResponse() throws Exception {
+        Request request = mockRequest("http://a.com/b");
+        when(mockRequestExecutor.execute(request)).thenReturn(okResponse);
+        CircuitBreakingRequestExecutor toTest = new CircuitBreakingRequestExecutor(mockRequestExecutor, crestConfig);
+
+        assertSame(okResponse, toTest.execute(request));
+    }
+
+    @Test
+    public void executeShouldRejectRequestsOnceCircuitIsOpen() throws Exception {
+        Request request = mockRequest("http://a.com/b");
+        RequestException exception = new RequestException(new Exception());
+        when(mockRequestExecutor.execute(request)).thenThrow(exception).thenReturn(errorResponse);
+        CircuitBreakingRequestExecutor toTest = new CircuitBreakingRequestExecutor(mockRequestExecutor, crestConfig);
+
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (RequestException e) {
+            assertSame(exception, e);
+        }
+        assertSame(errorResponse, toTest.execute(request));
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (RequestRejectedException e) {
+            verify(mockRequestExecutor, times(2)).execute(request);
+        }
+    }
+
+    @Test
+    public void executeShouldNotCountClientErrorsAsFailures() throws Exception {
+        Request request = mockRequest("http://a.com/b");
+        Response notFound = mockResponse(404);
+        when(mockRequestExecutor.execute(request)).thenReturn(notFound);
+        CircuitBreakingRequestExecutor toTest = new CircuitBreakingRequestExecutor(mockRequestExecutor, crestConfig);
+
+        for (int i = 0; i < 5; i++) {
+            assertSame(notFound, toTest.execute(request));
+        }
+    }
+
+    @Test
+    public void circuitsShouldBeMaintainedPerEndpoint() throws Exception {
+        Request request1 = mockRequest("http://a.com/b");
+        Request request2 = mockRequest("http://a.com/c");
+        Request request3 = mockRequest("http://b.com/b");
+        when(mockRequestExecutor.execute(request1)).thenReturn(errorResponse);
+        when(mockRequestExecutor.execute(request3)).thenReturn(okResponse);
+        CircuitBreakingRequestExecutor toTest = new CircuitBreakingRequestExecutor(mockRequestExecutor, crestConfig);
+
+        toTest.execute(request1);
+        toTest.execute(request1);
+        try {
+            toTest.execute(request2);
+            fail();
+        } catch (RequestRejectedException e) {
+            verify(mockRequestExecutor, never()).execute(request2);
+        }
+        assertSame(okResponse, toTest.execute(request3));
+    }
+
+    @Test
+    public void circuitsShouldBeMaintainedPerMethodWhenConfigured() throws Exception {
+        when(crestConfig.get(CircuitBreakingRequestExecutor.SCOPE_PROP, "endpoint")).thenReturn("method");
+        Request request1 = mockRequest("http://a.com/b");
+        Request request2 = mockRequest("http://a.com/b");
+        when(request2.getMethodConfig().getMethod()).thenReturn(Object.class.getMethod("toString"));
+        when(mockRequestExecutor.execute(request1)).thenReturn(errorResponse);
+        when(mockRequestExecutor.execute(request2)).thenReturn(okResponse);
+        CircuitBreakingRequestExecutor toTest = new CircuitBreakingRequestExecutor(mockRequestExecutor, crestConfig);
+
+        toTest.execute(request1);
+        toTest.execute(request1);
+        assertSame(okResponse, toTest.execute(request2));
+    }
+
+    private static Request mockRequest(String url) throws Exception {
+        Request request = mock(Request.class);
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        PathTemplate pathTemplate = mock(PathTemplate.class);
+        PathBuilder pathBuilder = mock(PathBuilder.class);
+        when(request.getMethodConfig()).thenReturn(methodConfig);
+        when(request.getEncodedParamsIterator(any(ParamType.class))).thenReturn(Collections.<EncodedPair>emptyList().iterator());
+        when(methodConfig.getMethod()).thenReturn(Object.class.getMethod("hashCode"));
+        when(methodConfig.getCharset()).thenReturn(UTF8);
+        when(methodConfig.getPathTemplate()).thenReturn(pathTemplate);
+        when(pathTemplate.getBuilder(UTF8)).thenReturn(pathBuilder);
+        when(pathBuilder.build()).thenReturn(url);
+        return request;
+    }
+
+    private static Response mockResponse(int statusCode) {
+        Response response = mock(Response.class);
+        try {
+            when(response.getStatusCode()).thenReturn(statusCode);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return response;
+    }
+}
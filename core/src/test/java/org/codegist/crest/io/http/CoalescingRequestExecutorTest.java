@@ -0,0 +1,308 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.config.MethodType;
+import org.codegist.crest.config.ParamType;
+import org.codegist.crest.config.PathBuilder;
+import org.codegist.crest.config.PathTemplate;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.param.EncodedPair;
+import org.codegist.crest.serializer.ResponseDeserializer;
+import org.codegist.crest.test.util.Classes;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.codegist.crest.test.util.Values.UTF8;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class CoalescingRequestExecutorTest {
+
+    private final ResponseDeserializer baseResponseDeserializer = mock(ResponseDeserializer.class);
+    private final ResponseDeserializer customTypeResponseDeserializer = mock(ResponseDeserializer.class);
+    private final RequestExecutor mockRequestExecutor = mock(RequestExecutor.class);
+    private final CoalescingRequestExecutor toTest = new CoalescingRequestExecutor(mockRequestExecutor, baseResponseDeserializer, customTypeResponseDeserializer);
+
+    @Test
+    public void executeShouldDelegateWhenMethodIsNotCoalesced() throws Exception {
+        Request request = mockRequest(MethodType.GET, false);
+        Response expected = mock(Response.class);
+        when(mockRequestExecutor.execute(request)).thenReturn(expected);
+
+        assertSame(expected, toTest.execute(request));
+    }
+
+    @Test
+    public void executeShouldDelegateWhenMethodIsNotIdempotent() throws Exception {
+        Request request = mockRequest(MethodType.POST, true);
+        Response expected = mock(Response.class);
+        when(mockRequestExecutor.execute(request)).thenReturn(expected);
+
+        assertSame(expected, toTest.execute(request));
+    }
+
+    @Test
+    public void executeShouldDelegateWhenMethodIsStreaming() throws Exception {
+        Request request = mockRequest(MethodType.GET, true);
+        when(request.getMethodConfig().getMethod()).thenReturn(Api.STREAM);
+        Response expected = mock(Response.class);
+        when(mockRequestExecutor.execute(request)).thenReturn(expected);
+        assertSame(expected, toTest.execute(request));
+        verify(expected, never()).dispose();
+    }
+
+    @Test
+    public void executeShouldBufferAndDisposeDelegateResponse() throws Exception {
+        Request request = mockRequest(MethodType.GET, true);
+        Response response = mockResponse("hello");
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+
+        Response actual = toTest.execute(request);
+
+        assertEquals(200, actual.getStatusCode());
+        assertEquals("application/json", actual.getContentType());
+        assertEquals(UTF8, actual.getCharset());
+        assertSame(request, actual.getRequest());
+        assertEquals("hello", read(actual.asStream()));
+        verify(response).dispose();
+    }
+
+    @Test
+    public void executeShouldRethrowDelegateException() throws Exception {
+        Request request = mockRequest(MethodType.GET, true);
+        IOException expected = new IOException();
+        when(mockRequestExecutor.execute(request)).thenThrow(expected);
+
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (IOException e) {
+            assertSame(expected, e);
+        }
+    }
+
+    @Test
+    public void concurrentIdenticalRequestsShouldShareOneRoundTrip() throws Exception {
+        final Request request1 = mockRequest(MethodType.GET, true);
+        final Request request2 = mockRequest(MethodType.GET, true);
+        final Response response = mockResponse("hello");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final CoalescingRequestExecutor toTest = new CoalescingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await();
+                return response;
+            }
+        }, baseResponseDeserializer, customTypeResponseDeserializer);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Response> actual1 = executor.submit(new Callable<Response>() {
+                public Response call() throws Exception {
+                    return toTest.execute(request1);
+                }
+            });
+            started.await();
+            final Thread[] follower = new Thread[1];
+            Future<Response> actual2 = executor.submit(new Callable<Response>() {
+                public Response call() throws Exception {
+                    follower[0] = Thread.currentThread();
+                    return toTest.execute(request2);
+                }
+            });
+            while(follower[0] == null || follower[0].getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertSame(request1, actual1.get().getRequest());
+            assertSame(request2, actual2.get().getRequest());
+            assertEquals("hello", read(actual1.get().asStream()));
+            assertEquals("hello", read(actual2.get().asStream()));
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void followerShouldGetItsOwnExceptionWrappingTheFailure() throws Exception {
+        final Request request1 = mockRequest(MethodType.GET, true);
+        final Request request2 = mockRequest(MethodType.GET, true);
+        final IOException failure = new IOException();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CoalescingRequestExecutor toTest = new CoalescingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                started.countDown();
+                release.await();
+                throw failure;
+            }
+        }, baseResponseDeserializer, customTypeResponseDeserializer);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Response> actual1 = executor.submit(new Callable<Response>() {
+                public Response call() throws Exception {
+                    return toTest.execute(request1);
+                }
+            });
+            started.await();
+            final Thread[] follower = new Thread[1];
+            Future<Response> actual2 = executor.submit(new Callable<Response>() {
+                public Response call() throws Exception {
+                    follower[0] = Thread.currentThread();
+                    return toTest.execute(request2);
+                }
+            });
+            while(follower[0] == null || follower[0].getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            try {
+                actual1.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+            try {
+                actual2.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RequestException);
+                assertSame(failure, e.getCause().getCause());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void followerShouldGiveUpOnceItsOwnTimeoutsElapsed() throws Exception {
+        final Request request1 = mockRequest(MethodType.GET, true);
+        Request request2 = mockRequest(MethodType.GET, true);
+        when(request2.getMethodConfig().getConnectionTimeout()).thenReturn(10);
+        when(request2.getMethodConfig().getSocketTimeout()).thenReturn(10);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Response response = mockResponse("hello");
+        final CoalescingRequestExecutor toTest = new CoalescingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                started.countDown();
+                release.await();
+                return response;
+            }
+        }, baseResponseDeserializer, customTypeResponseDeserializer);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response> leader = executor.submit(new Callable<Response>() {
+                public Response call() throws Exception {
+                    return toTest.execute(request1);
+                }
+            });
+            started.await();
+            try {
+                toTest.execute(request2);
+                fail();
+            } catch (RequestException e) {
+                assertTrue(e.getCause() instanceof SocketTimeoutException);
+            }
+            release.countDown();
+            assertEquals("hello", read(leader.get().asStream()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Request mockRequest(MethodType type, boolean coalesced) throws Exception {
+        Request request = mock(Request.class);
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        PathTemplate pathTemplate = mock(PathTemplate.class);
+        PathBuilder pathBuilder = mock(PathBuilder.class);
+        when(request.getMethodConfig()).thenReturn(methodConfig);
+        when(request.getEncodedParamsIterator(any(ParamType.class))).thenReturn(Collections.<EncodedPair>emptyList().iterator());
+        when(methodConfig.getType()).thenReturn(type);
+        when(methodConfig.getMethod()).thenReturn(Api.GET);
+        when(methodConfig.isCoalesced()).thenReturn(coalesced);
+        when(methodConfig.getCharset()).thenReturn(UTF8);
+        when(methodConfig.getConsumes()).thenReturn(new String[]{"*/*"});
+        when(methodConfig.getPathTemplate()).thenReturn(pathTemplate);
+        when(pathTemplate.getBuilder(UTF8)).thenReturn(pathBuilder);
+        when(pathBuilder.build()).thenReturn("http://localhost/item/1");
+        return request;
+    }
+
+    private static Response mockResponse(String content) throws Exception {
+        Response response = mock(Response.class);
+        when(response.getStatusCode()).thenReturn(200);
+        when(response.getContentType()).thenReturn("application/json");
+        when(response.getCharset()).thenReturn(UTF8);
+        when(response.getHeaderFields()).thenReturn(Collections.<String, List<String>>emptyMap());
+        when(response.asStream()).thenReturn(new ByteArrayInputStream(content.getBytes("UTF-8")));
+        return response;
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while((c = stream.read()) != -1) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    interface Api {
+        String get();
+        Iterator<String> stream();
+
+        Method GET = Classes.byName(Api.class, "get");
+        Method STREAM = Classes.byName(Api.class, "stream");
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.config.ParamType;
+import org.codegist.crest.config.PathBuilder;
+import org.codegist.crest.config.PathTemplate;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.RequestRejectedException;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.param.EncodedPair;
+import org.codegist.crest.serializer.ResponseDeserializer;
+import org.codegist.crest.test.util.CRestConfigs;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.codegist.crest.test.util.Classes.getFieldValue;
+import static org.codegist.crest.test.util.Values.UTF8;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class ConcurrencyLimitingRequestExecutorTest {
+
+    private final RequestExecutor mockRequestExecutor = mock(RequestExecutor.class);
+    private final CRestConfig crestConfig = CRestConfigs.mockDefaultBehavior();
+
+    {
+        when(crestConfig.get(ConcurrencyLimitingRequestExecutor.INITIAL_LIMIT_PROP, 20)).thenReturn(10);
+    }
+
+    private final ConcurrencyLimitingRequestExecutor toTest = new ConcurrencyLimitingRequestExecutor(mockRequestExecutor, crestConfig, mock(ResponseDeserializer.class), mock(ResponseDeserializer.class));
+
+    @Test
+    public void executeShouldHoldSlotUntilResponseIsDisposed() throws Exception {
+        Request request = mockRequest("http://a.com/b");
+        Response response = mockResponse(200);
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+
+        Response actual = toTest.execute(request);
+        assertEquals(200, actual.getStatusCode());
+        assertEquals(1, limitOf("http://a.com").getInFlight());
+        verify(response, never()).dispose();
+
+        actual.dispose();
+        verify(response).dispose();
+        assertEquals(0, limitOf("http://a.com").getInFlight());
+        assertEquals(10, limitOf("http://a.com").getLimit());
+    }
+
+    @Test
+    public void slowlyConsumedResponseShouldNotInflateRoundTripTime() throws Exception {
+        AdaptiveConcurrencyLimit limit = limitOf("http://a.com");
+        Request request = mockRequest("http://a.com/b");
+        when(mockRequestExecutor.execute(request)).thenReturn(mockResponse(200));
+
+        Response actual = toTest.execute(request);
+        Thread.sleep(200);
+        actual.dispose();
+
+        assertEquals(0, limit.getInFlight());
+        assertTrue(limit.getLongRtt() < TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void closingResponseStreamShouldReleaseSlot() throws Exception {
+        Request request = mockRequest("http://a.com/b");
+        when(mockRequestExecutor.execute(request)).thenReturn(mockResponse(200));
+
+        toTest.execute(request).asStream().close();
+
+        assertEquals(0, limitOf("http://a.com").getInFlight());
+    }
+
+    @Test
+    public void overloadResponseShouldDecreaseLimit() throws Exception {
+        Request request = mockRequest("http://a.com/b");
+        Response response = mockResponse(503);
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+
+        Response actual = toTest.execute(request);
+        assertEquals(10, limitOf("http://a.com").getLimit());
+        actual.dispose();
+        assertEquals(9, limitOf("http://a.com").getLimit());
+    }
+
+    @Test
+    public void failedRequestShouldDecreaseLimit() throws Exception {
+        Request request = mockRequest("http://a.com/b");
+        RequestException expected = new RequestException(new Exception());
+        when(mockRequestExecutor.execute(request)).thenThrow(expected);
+
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (RequestException e) {
+            assertSame(expected, e);
+        }
+        assertEquals(0, limitOf("http://a.com").getInFlight());
+        assertEquals(9, limitOf("http://a.com").getLimit());
+    }
+
+    @Test
+    public void rejectedRequestShouldNotUpdateLimit() throws Exception {
+        Request request = mockRequest("http://a.com/b");
+        RequestRejectedException expected = new RequestRejectedException("");
+        when(mockRequestExecutor.execute(request)).thenThrow(expected);
+
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (RequestRejectedException e) {
+            assertSame(expected, e);
+        }
+        assertEquals(0, limitOf("http://a.com").getInFlight());
+        assertEquals(10, limitOf("http://a.com").getLimit());
+    }
+
+    @Test(expected = RequestRejectedException.class)
+    public void executeShouldRejectRequestsOverTheLimit() throws Exception {
+        Request request = mockRequest("http://a.com/b");
+        AdaptiveConcurrencyLimit limit = limitOf("http://a.com");
+        while(limit.acquire(0));
+
+        toTest.execute(request);
+    }
+
+    private AdaptiveConcurrencyLimit limitOf(String endpoint) throws Exception {
+        Request request = mockRequest(endpoint);
+        Map<String, AdaptiveConcurrencyLimit> limits = getFieldValue(toTest, "limits");
+        if(!limits.containsKey(endpoint)) {
+            when(mockRequestExecutor.execute(request)).thenReturn(mockResponse(200));
+            toTest.execute(request).dispose();
+        }
+        return limits.get(endpoint);
+    }
+
+    private static Request mockRequest(String url) throws Exception {
+        Request request = mock(Request.class);
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        PathTemplate pathTemplate = mock(PathTemplate.class);
+        PathBuilder pathBuilder = mock(PathBuilder.class);
+        when(request.getMethodConfig()).thenReturn(methodConfig);
+        when(request.getEncodedParamsIterator(any(ParamType.class))).thenReturn(Collections.<EncodedPair>emptyList().iterator());
+        when(methodConfig.getCharset()).thenReturn(UTF8);
+        when(methodConfig.getPathTemplate()).thenReturn(pathTemplate);
+        when(pathTemplate.getBuilder(UTF8)).thenReturn(pathBuilder);
+        when(pathBuilder.build()).thenReturn(url);
+        return request;
+    }
+
+    private static Response mockResponse(int statusCode) throws Exception {
+        Response response = mock(Response.class);
+        when(response.getStatusCode()).thenReturn(statusCode);
+        when(response.asStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        return response;
+    }
+}
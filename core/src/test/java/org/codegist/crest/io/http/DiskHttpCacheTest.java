@@ -0,0 +1,276 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class DiskHttpCacheTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private File directory;
+    private DiskHttpCache toTest;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("crest-cache", "");
+        assertTrue(directory.delete());
+        toTest = new DiskHttpCache(directory, 1024 * 1024, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        toTest.dispose();
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void getShouldReturnStoredEntry() throws IOException {
+        toTest.put("http://localhost/a", newEntry("hello"));
+
+        HttpCacheEntry actual = toTest.get("http://localhost/a");
+
+        assertEntry("hello", actual);
+        assertNull(toTest.get("http://localhost/b"));
+    }
+
+    @Test
+    public void entriesShouldSurviveReopening() throws IOException {
+        toTest.put("http://localhost/a", newEntry("first"));
+        toTest.put("http://localhost/a", newEntry("hello"));
+        toTest.put("http://localhost/b", newEntry("removed"));
+        toTest.remove("http://localhost/b");
+        toTest.dispose();
+
+        toTest = new DiskHttpCache(directory, 1024 * 1024, 1024 * 1024);
+
+        assertEquals(1, toTest.size());
+        assertEntry("hello", toTest.get("http://localhost/a"));
+        assertNull(toTest.get("http://localhost/b"));
+    }
+
+    @Test
+    public void truncatedRecordShouldBeIgnoredOnReopening() throws IOException {
+        toTest.put("http://localhost/a", newEntry("hello"));
+        toTest.put("http://localhost/b", newEntry("truncated"));
+        toTest.dispose();
+        File segment = segmentFiles()[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+
+        toTest = new DiskHttpCache(directory, 1024 * 1024, 1024 * 1024);
+        toTest.put("http://localhost/c", newEntry("appended"));
+
+        assertEntry("hello", toTest.get("http://localhost/a"));
+        assertNull(toTest.get("http://localhost/b"));
+        assertEntry("appended", toTest.get("http://localhost/c"));
+    }
+
+    @Test
+    public void corruptedRecordShouldBeIgnoredOnReopening() throws IOException {
+        toTest.put("http://localhost/a", newEntry("hello"));
+        toTest.dispose();
+        File segment = segmentFiles()[0];
+        long corrupted = segment.length();
+        toTest = new DiskHttpCache(directory, 1024 * 1024, 1024 * 1024);
+        toTest.put("http://localhost/b", newEntry("corrupted"));
+        toTest.dispose();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.seek(corrupted + 8);
+            file.writeShort(0xFFFF);
+        } finally {
+            file.close();
+        }
+
+        toTest = new DiskHttpCache(directory, 1024 * 1024, 1024 * 1024);
+        toTest.put("http://localhost/c", newEntry("appended"));
+
+        assertEntry("hello", toTest.get("http://localhost/a"));
+        assertNull(toTest.get("http://localhost/b"));
+        assertEntry("appended", toTest.get("http://localhost/c"));
+    }
+
+    @Test
+    public void entryExceedingSegmentSizeShouldNotBeStored() throws IOException {
+        toTest.dispose();
+        toTest = new DiskHttpCache(directory, 1024 * 1024, 400);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            content.append('x');
+        }
+
+        toTest.put("http://localhost/a", newEntry("hello"));
+        toTest.put("http://localhost/b", newEntry(content.toString()));
+
+        assertEntry("hello", toTest.get("http://localhost/a"));
+        assertNull(toTest.get("http://localhost/b"));
+        for (File segment : segmentFiles()) {
+            assertTrue(segment.length() <= 400);
+        }
+    }
+
+    @Test
+    public void oldestSegmentShouldBeEvictedOnceMaxSizeIsReached() throws IOException {
+        toTest.dispose();
+        toTest = new DiskHttpCache(directory, 1000, 400);
+
+        for (int i = 0; i < 10; i++) {
+            toTest.put("http://localhost/" + i, newEntry("entry-" + i));
+        }
+
+        assertTrue(toTest.getSegmentCount() > 1);
+        assertTrue(segmentFiles().length == toTest.getSegmentCount());
+        assertNull(toTest.get("http://localhost/0"));
+        assertEntry("entry-9", toTest.get("http://localhost/9"));
+    }
+
+    @Test
+    public void refreshShouldOnlyAppendFreshnessAndSurviveReopening() throws IOException {
+        String content = "a rather long response body that should not be written again on refresh";
+        toTest.put("http://localhost/a", newEntry(content));
+        long size = segmentFiles()[0].length();
+
+        toTest.refresh("http://localhost/a", 5678l);
+        toTest.refresh("http://localhost/b", 5678l);
+
+        assertTrue(segmentFiles()[0].length() - size < content.length());
+        assertEquals(5678l, toTest.get("http://localhost/a").getExpiresAt());
+        assertNull(toTest.get("http://localhost/b"));
+        toTest.dispose();
+
+        toTest = new DiskHttpCache(directory, 1024 * 1024, 1024 * 1024);
+
+        HttpCacheEntry actual = toTest.get("http://localhost/a");
+        assertEquals(5678l, actual.getExpiresAt());
+        assertEquals(content, read(actual.getResource().getEntity()));
+    }
+
+    @Test
+    public void supersededRecordsShouldBeCompacted() throws IOException {
+        toTest.dispose();
+        toTest = new DiskHttpCache(directory, 1024 * 1024, 400);
+
+        for (int i = 0; i < 100; i++) {
+            toTest.put("http://localhost/a", newEntry("hello"));
+            toTest.put("http://localhost/b", newEntry("entry-" + i));
+            toTest.refresh("http://localhost/b", 1234l);
+        }
+
+        assertTrue(toTest.getSegmentCount() <= 3);
+        assertEquals(toTest.getSegmentCount(), segmentFiles().length);
+        assertEntry("hello", toTest.get("http://localhost/a"));
+        assertEntry("entry-99", toTest.get("http://localhost/b"));
+        toTest.dispose();
+
+        toTest = new DiskHttpCache(directory, 1024 * 1024, 400);
+
+        assertEquals(2, toTest.size());
+        assertEntry("hello", toTest.get("http://localhost/a"));
+        assertEntry("entry-99", toTest.get("http://localhost/b"));
+    }
+
+    @Test
+    public void directoryShouldOnlyBeUsedByOneCacheAtATime() throws IOException {
+        try {
+            new DiskHttpCache(directory, 1024 * 1024, 1024 * 1024);
+            fail();
+        } catch (DiskHttpCache.DirectoryLockedException e) {
+            // expected
+        }
+        toTest.put("http://localhost/a", newEntry("hello"));
+        toTest.dispose();
+
+        toTest = new DiskHttpCache(directory, 1024 * 1024, 1024 * 1024);
+
+        assertEntry("hello", toTest.get("http://localhost/a"));
+    }
+
+    private File[] segmentFiles() {
+        return directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".dat");
+            }
+        });
+    }
+
+    private static HttpCacheEntry newEntry(String content) throws IOException {
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        headers.put("ETag", asList("\"" + content + "\""));
+        headers.put(null, asList("HTTP/1.1 200 OK"));
+        BufferedHttpResource resource = new BufferedHttpResource(200, "OK", "text/plain", UTF8, null, headers, content.getBytes("UTF-8"));
+        return new HttpCacheEntry(resource, Collections.singletonMap("accept", "text/plain"), 1234l, "\"" + content + "\"", null);
+    }
+
+    private static void assertEntry(String content, HttpCacheEntry actual) throws IOException {
+        assertNotNull(actual);
+        assertEquals(1234l, actual.getExpiresAt());
+        assertEquals("\"" + content + "\"", actual.getEtag());
+        assertNull(actual.getLastModified());
+        assertEquals(Collections.singletonMap("accept", "text/plain"), actual.getVaryHeaders());
+        BufferedHttpResource resource = actual.getResource();
+        assertEquals(200, resource.getStatusCode());
+        assertEquals("OK", resource.getStatusMessage());
+        assertEquals("text/plain", resource.getContentType());
+        assertEquals(UTF8, resource.getCharset());
+        assertNull(resource.getContentEncoding());
+        assertEquals(asList("\"" + content + "\""), resource.getHeaderFields().get("ETag"));
+        assertEquals(asList("HTTP/1.1 200 OK"), resource.getHeaderFields().get(null));
+        assertEquals(content, read(resource.getEntity()));
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while((c = stream.read()) != -1) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+}
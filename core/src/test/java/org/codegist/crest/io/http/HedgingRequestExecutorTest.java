@@ -0,0 +1,240 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.config.MethodType;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.test.util.CRestConfigs;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class HedgingRequestExecutorTest {
+
+    private final CRestConfig crestConfig = CRestConfigs.mockDefaultBehavior();
+    private final CountDownLatch slowCallLatch = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final Response fastResponse = mock(Response.class);
+    private final Response slowResponse = mock(Response.class);
+    private final RequestException exception = new RequestException(new Exception());
+
+    {
+        when(crestConfig.get(HedgingRequestExecutor.INITIAL_DELAY_PROP, 1000l)).thenReturn(50l);
+    }
+
+    @Test
+    public void nonIdempotentRequestShouldNotBeHedged() throws Exception {
+        final Thread caller = Thread.currentThread();
+        HedgingRequestExecutor toTest = newHedgingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                assertSame(caller, Thread.currentThread());
+                calls.incrementAndGet();
+                return fastResponse;
+            }
+        });
+
+        assertSame(fastResponse, toTest.execute(mockRequest(MethodType.POST)));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void fastResponseShouldNotBeHedged() throws Exception {
+        HedgingRequestExecutor toTest = newHedgingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                calls.incrementAndGet();
+                return fastResponse;
+            }
+        });
+
+        assertSame(fastResponse, toTest.execute(mockRequest(MethodType.GET)));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void slowResponseShouldBeHedgedAndCancelled() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        HedgingRequestExecutor toTest = newHedgingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                if(calls.incrementAndGet() == 1) {
+                    try {
+                        slowCallLatch.await();
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw e;
+                    }
+                    return slowResponse;
+                }
+                return fastResponse;
+            }
+        });
+
+        assertSame(fastResponse, toTest.execute(mockRequest(MethodType.GET)));
+        assertEquals(2, calls.get());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        verify(fastResponse, never()).dispose();
+    }
+
+    @Test
+    public void firstAttemptShouldRunOnCallerThread() throws Exception {
+        final Thread caller = Thread.currentThread();
+        HedgingRequestExecutor toTest = newHedgingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                assertSame(caller, Thread.currentThread());
+                calls.incrementAndGet();
+                return fastResponse;
+            }
+        });
+
+        assertSame(fastResponse, toTest.execute(mockRequest(MethodType.GET)));
+        assertEquals(1, calls.get());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void slowResponseShouldNotBeHedgedWhenNoThreadIsAvailable() throws Exception {
+        when(crestConfig.get(HedgingRequestExecutor.MAX_THREADS_PROP, 64)).thenReturn(1);
+        ExecutorService executor = HedgingRequestExecutor.newExecutorService(crestConfig);
+        final CountDownLatch busy = new CountDownLatch(1);
+        executor.submit(new Runnable() {
+            public void run() {
+                try {
+                    busy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        HedgingRequestExecutor toTest = new HedgingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                calls.incrementAndGet();
+                Thread.sleep(200);
+                return slowResponse;
+            }
+        }, crestConfig, executor);
+
+        try {
+            assertSame(slowResponse, toTest.execute(mockRequest(MethodType.GET)));
+            assertEquals(1, calls.get());
+        } finally {
+            busy.countDown();
+            executor.shutdown();
+            toTest.dispose();
+        }
+    }
+
+    @Test
+    public void uninterruptibleSlowResponseShouldBeHedgedAndDisposedOnceBack() throws Exception {
+        HedgingRequestExecutor toTest = newHedgingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                if(calls.incrementAndGet() == 1) {
+                    while(true) {
+                        try {
+                            slowCallLatch.await();
+                            return slowResponse;
+                        } catch (InterruptedException e) {
+                            // keeps waiting as a blocking socket read would
+                        }
+                    }
+                }
+                new Thread() {
+                    public void run() {
+                        try {
+                            Thread.sleep(100);
+                        } catch (InterruptedException e) {
+                            // releases the slow call right away
+                        }
+                        slowCallLatch.countDown();
+                    }
+                }.start();
+                return fastResponse;
+            }
+        });
+
+        assertSame(fastResponse, toTest.execute(mockRequest(MethodType.GET)));
+        assertEquals(2, calls.get());
+        assertFalse(Thread.currentThread().isInterrupted());
+        verify(slowResponse).dispose();
+        verify(fastResponse, never()).dispose();
+    }
+
+    @Test
+    public void failedHedgeShouldWaitForSlowResponse() throws Exception {
+        HedgingRequestExecutor toTest = newHedgingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                if(calls.incrementAndGet() == 1) {
+                    slowCallLatch.await();
+                    return slowResponse;
+                }
+                slowCallLatch.countDown();
+                throw exception;
+            }
+        });
+
+        assertSame(slowResponse, toTest.execute(mockRequest(MethodType.GET)));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void failedRequestShouldNotBeHedged() throws Exception {
+        HedgingRequestExecutor toTest = newHedgingRequestExecutor(new RequestExecutor() {
+            public Response execute(Request request) throws Exception {
+                calls.incrementAndGet();
+                throw exception;
+            }
+        });
+
+        try {
+            toTest.execute(mockRequest(MethodType.GET));
+            fail();
+        } catch (RequestException e) {
+            assertSame(exception, e);
+        }
+        assertEquals(1, calls.get());
+    }
+
+    private HedgingRequestExecutor newHedgingRequestExecutor(RequestExecutor delegate) {
+        return new HedgingRequestExecutor(delegate, crestConfig, Executors.newCachedThreadPool());
+    }
+
+    private static Request mockRequest(MethodType type) throws Exception {
+        Request request = mock(Request.class);
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        when(request.getMethodConfig()).thenReturn(methodConfig);
+        when(methodConfig.getType()).thenReturn(type);
+        when(methodConfig.getMethod()).thenReturn(Object.class.getMethod("toString"));
+        return request;
+    }
+}
@@ -24,19 +24,26 @@ import org.codegist.common.lang.Disposables;
 import org.codegist.crest.config.MethodConfig;
 import org.codegist.crest.config.MethodType;
 import org.codegist.crest.config.ParamType;
+import org.codegist.crest.io.DeadlineExceededException;
 import org.codegist.crest.entity.EntityWriter;
 import org.codegist.crest.io.Request;
 import org.codegist.crest.io.RequestException;
 import org.codegist.crest.param.EncodedPair;
 import org.codegist.crest.serializer.ResponseDeserializer;
 import org.codegist.crest.util.Pairs;
+import org.codegist.crest.util.Requests;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
 import java.util.Iterator;
 
 import static java.util.Arrays.asList;
@@ -252,6 +259,64 @@ public class HttpRequestExecutorTest {
         verifyNoMoreInteractions(mockChannel);
     }
 
+    @Test
+    public void executeShouldSplitTheTimeLeftBeforeTheDeadlineBetweenConnectionAndSocketTimeouts() throws Exception {
+        Request request = mockGetRequest(60000);
+        when(mockChannel.send()).thenThrow(new IOException());
+
+        try {
+            toTest.execute(request);
+            fail();
+        }catch(RequestException e){
+            // expected
+        }
+
+        ArgumentCaptor<Integer> coTimeout = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<Integer> soTimeout = ArgumentCaptor.forClass(Integer.class);
+        verify(mockChannel).setConnectionTimeout(coTimeout.capture());
+        verify(mockChannel).setSocketTimeout(soTimeout.capture());
+        assertTrue(coTimeout.getValue() > 0);
+        assertTrue(soTimeout.getValue() > 0);
+        assertTrue(coTimeout.getValue() + soTimeout.getValue() <= 60000);
+        assertTrue(Math.abs(coTimeout.getValue() - soTimeout.getValue()) <= 1);
+    }
+
+    @Test
+    public void executeShouldReportTimeoutsPastTheDeadlineAsDeadlineExceeded() throws Exception {
+        Request request = mockGetRequest(50);
+        final SocketTimeoutException expected = new SocketTimeoutException();
+        when(mockChannel.send()).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(100);
+                throw expected;
+            }
+        });
+
+        try {
+            toTest.execute(request);
+            fail();
+        }catch(DeadlineExceededException e){
+            assertSame(expected, e.getCause());
+        }
+    }
+
+    private Request mockGetRequest(int deadline) throws Exception {
+        Request request = mock(Request.class);
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        mockStatic(HttpRequests.class);
+        when(HttpRequests.toUrl(request)).thenReturn("some-url");
+        when(request.getMethodConfig()).thenReturn(methodConfig);
+        when(request.getEncodedParamsIterator(ParamType.HEADER)).thenReturn(Collections.<EncodedPair>emptyList().iterator());
+        when(request.getEncodedParamsIterator(ParamType.COOKIE)).thenReturn(Collections.<EncodedPair>emptyList().iterator());
+        when(methodConfig.getCharset()).thenReturn(UTF8);
+        when(methodConfig.getType()).thenReturn(MethodType.GET);
+        when(methodConfig.getConsumes()).thenReturn(new String[0]);
+        when(methodConfig.getDeadline()).thenReturn(deadline);
+        when(mockChannelFactory.open(MethodType.GET, "some-url", UTF8)).thenReturn(mockChannel);
+        Requests.getTimestamp(request);
+        return request;
+    }
+
     @Test
     public void finalizeShouldDisposeChannelFactory() throws Throwable {
         toTest.finalize();
@@ -113,4 +113,41 @@ public class HttpRequestsTest extends NonInstanciableClassTest {
         verify(pathBuilder).merge("p1", "v1", true);
         verify(pathBuilder).merge("p2", "v2", true);
     }
+
+    @Test
+    public void toEndpointShouldKeepSchemeHostAndPortOnly() throws Exception {
+        Request request = mock(Request.class);
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        PathTemplate pathTemplate = mock(PathTemplate.class);
+        PathBuilder pathBuilder = mock(PathBuilder.class);
+        Iterator<EncodedPair> pathPairs = mock(Iterator.class);
+        Iterator<EncodedPair> queryPairs = mock(Iterator.class);
+        Iterator<EncodedPair> matrixPairs = mock(Iterator.class);
+
+        when(request.getEncodedParamsIterator(PATH)).thenReturn(pathPairs);
+        when(request.getEncodedParamsIterator(QUERY)).thenReturn(queryPairs);
+        when(request.getEncodedParamsIterator(MATRIX)).thenReturn(matrixPairs);
+        when(pathTemplate.getBuilder(UTF8)).thenReturn(pathBuilder);
+        when(methodConfig.getCharset()).thenReturn(UTF8);
+        when(methodConfig.getPathTemplate()).thenReturn(pathTemplate);
+        when(request.getMethodConfig()).thenReturn(methodConfig);
+        when(pathBuilder.build()).thenReturn("http://user@localhost:8080/some/path");
+        mockStatic(Pairs.class);
+        when(Pairs.join(queryPairs, '&')).thenReturn("a=b");
+        when(Pairs.join(matrixPairs, ';')).thenReturn("");
+
+        assertEquals("http://localhost:8080", HttpRequests.toEndpoint(request));
+    }
+
+    @Test
+    public void toEndpointShouldOmitUnspecifiedPort() throws Exception {
+        assertEquals("https://a.com", HttpRequests.toEndpoint("https://a.com/b?c=d"));
+    }
+
+    @Test
+    public void toEndpointShouldOmitDefaultPort() throws Exception {
+        assertEquals("http://a.com", HttpRequests.toEndpoint("http://a.com:80/b"));
+        assertEquals("https://a.com", HttpRequests.toEndpoint("https://A.com:443/b"));
+        assertEquals("http://a.com:443", HttpRequests.toEndpoint("http://a.com:443/b"));
+    }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class LatencyWindowTest {
+
+    @Test
+    public void percentileShouldBeUnknownUntilMinimumSamplesAreRecorded() {
+        LatencyWindow toTest = new LatencyWindow(10, 3);
+        toTest.record(10);
+        toTest.record(20);
+        assertEquals(-1, toTest.getPercentile(50));
+        toTest.record(30);
+        assertEquals(20, toTest.getPercentile(50));
+    }
+
+    @Test
+    public void percentileShouldBeComputedOnRecordedLatencies() {
+        LatencyWindow toTest = new LatencyWindow(100, 1);
+        for(int i = 100; i > 0; i--) {
+            toTest.record(i);
+        }
+        assertEquals(1, toTest.getPercentile(1));
+        assertEquals(50, toTest.getPercentile(50));
+        assertEquals(95, toTest.getPercentile(95));
+        assertEquals(100, toTest.getPercentile(100));
+    }
+
+    @Test
+    public void percentileShouldOnlyAccountForMostRecentLatencies() {
+        LatencyWindow toTest = new LatencyWindow(2, 1);
+        toTest.record(1000);
+        toTest.record(10);
+        toTest.record(20);
+        assertEquals(20, toTest.getPercentile(100));
+        assertEquals(10, toTest.getPercentile(50));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class MemoryHttpCacheTest {
+
+    private final MemoryHttpCache toTest = new MemoryHttpCache(2);
+
+    @Test
+    public void putShouldEvictLeastRecentlyUsedEntryWhenFull() {
+        HttpCacheEntry a = newEntry();
+        HttpCacheEntry b = newEntry();
+        HttpCacheEntry c = newEntry();
+        toTest.put("a", a);
+        toTest.put("b", b);
+        assertSame(a, toTest.get("a"));
+
+        toTest.put("c", c);
+
+        assertEquals(2, toTest.size());
+        assertSame(a, toTest.get("a"));
+        assertNull(toTest.get("b"));
+        assertSame(c, toTest.get("c"));
+    }
+
+    @Test
+    public void putShouldEvictLeastRecentlyUsedEntriesOverTotalSize() {
+        MemoryHttpCache toTest = new MemoryHttpCache(10, 10);
+        HttpCacheEntry a = newEntry(4);
+        HttpCacheEntry b = newEntry(4);
+        HttpCacheEntry c = newEntry(6);
+        toTest.put("a", a);
+        toTest.put("b", b);
+        assertSame(a, toTest.get("a"));
+
+        toTest.put("c", c);
+
+        assertEquals(2, toTest.size());
+        assertEquals(10, toTest.bytes());
+        assertSame(a, toTest.get("a"));
+        assertNull(toTest.get("b"));
+        assertSame(c, toTest.get("c"));
+    }
+
+    @Test
+    public void putShouldNotCacheEntryLargerThanTotalSize() {
+        MemoryHttpCache toTest = new MemoryHttpCache(10, 10);
+        toTest.put("a", newEntry(4));
+        toTest.put("a", newEntry(11));
+
+        assertNull(toTest.get("a"));
+        assertEquals(0, toTest.size());
+        assertEquals(0, toTest.bytes());
+    }
+
+    @Test
+    public void removeShouldEvictEntry() {
+        toTest.put("a", newEntry());
+        toTest.remove("a");
+        assertNull(toTest.get("a"));
+        assertEquals(0, toTest.size());
+    }
+
+    @Test
+    public void refreshShouldExtendEntryFreshness() {
+        HttpCacheEntry a = newEntry();
+        toTest.put("a", a);
+        toTest.refresh("a", 1234l);
+        toTest.refresh("b", 1234l);
+
+        assertEquals(1234l, toTest.get("a").getExpiresAt());
+        assertSame(a.getVaryHeaders(), toTest.get("a").getVaryHeaders());
+        assertNull(toTest.get("b"));
+    }
+
+    private static HttpCacheEntry newEntry() {
+        return new HttpCacheEntry(null, Collections.<String, String>emptyMap(), 0, null, null);
+    }
+
+    private static HttpCacheEntry newEntry(int size) {
+        BufferedHttpResource resource = new BufferedHttpResource(200, "OK", null, null, null, Collections.<String, List<String>>emptyMap(), new byte[size]);
+        return new HttpCacheEntry(resource, Collections.<String, String>emptyMap(), 0, null, null);
+    }
+}
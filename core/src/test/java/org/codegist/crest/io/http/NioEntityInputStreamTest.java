@@ -0,0 +1,95 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class NioEntityInputStreamTest {
+
+    private final NioHttpExchange.Control control = mock(NioHttpExchange.Control.class);
+    private final NioEntityInputStream toTest = new NioEntityInputStream(control, 50);
+
+    @Test
+    public void shouldReadOfferedBytesThenEndOfStream() throws IOException {
+        assertTrue(toTest.offer("hello".getBytes(), 0, 5));
+        assertTrue(toTest.offer("--world--".getBytes(), 2, 5));
+        toTest.end();
+
+        byte[] read = new byte[20];
+        assertEquals(10, toTest.read(read, 0, 20));
+        assertEquals("helloworld", new String(read, 0, 10));
+        assertEquals(-1, toTest.read());
+        verifyZeroInteractions(control);
+    }
+
+    @Test(expected = SocketTimeoutException.class)
+    public void shouldTimeoutWhenNoDataIsAvailable() throws IOException {
+        toTest.read();
+    }
+
+    @Test
+    public void shouldRethrowFailureOnceBufferedBytesAreRead() throws IOException {
+        IOException expected = new IOException();
+        toTest.offer(new byte[]{1}, 0, 1);
+        toTest.fail(expected);
+        assertEquals(1, toTest.read());
+        try {
+            toTest.read();
+            fail();
+        } catch (IOException e) {
+            assertSame(expected, e);
+        }
+    }
+
+    @Test
+    public void shouldSuspendAboveHighWatermarkAndResumeBelowLowWatermark() throws IOException {
+        byte[] chunk = new byte[NioEntityInputStream.HIGH_WATERMARK];
+        assertFalse(toTest.offer(chunk, 0, chunk.length));
+
+        byte[] read = new byte[NioEntityInputStream.HIGH_WATERMARK - NioEntityInputStream.LOW_WATERMARK - 1];
+        toTest.read(read, 0, read.length);
+        verify(control, never()).resume();
+
+        toTest.read();
+        verify(control).resume();
+    }
+
+    @Test
+    public void closeBeforeEndShouldAbort() {
+        toTest.close();
+        verify(control).abort();
+    }
+
+    @Test
+    public void closeAfterEndShouldNotAbort() {
+        toTest.end();
+        toTest.close();
+        verify(control, never()).abort();
+    }
+}
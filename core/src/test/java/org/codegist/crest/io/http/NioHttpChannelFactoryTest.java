@@ -0,0 +1,58 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.config.MethodType;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class NioHttpChannelFactoryTest {
+
+    private final NioHttpChannelFactory toTest;
+
+    public NioHttpChannelFactoryTest() throws IOException {
+        toTest = new NioHttpChannelFactory(1, 1, 1000);
+    }
+
+    @After
+    public void dispose() {
+        toTest.dispose();
+    }
+
+    @Test
+    public void openShouldReturnANioHttpChannelForHttpUrls() throws IOException {
+        HttpChannel actual = toTest.open(MethodType.GET, "http://localhost:8080/path", Charset.forName("UTF-8"));
+        assertEquals(NioHttpChannel.class, actual.getClass());
+    }
+
+    @Test
+    public void openShouldDelegateHttpsUrlsToHttpURLConnection() throws IOException {
+        HttpChannel actual = toTest.open(MethodType.GET, "https://localhost:8443/path", Charset.forName("UTF-8"));
+        assertEquals(HttpURLConnectionHttpChannel.class, actual.getClass());
+    }
+}
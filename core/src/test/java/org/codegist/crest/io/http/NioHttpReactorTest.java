@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class NioHttpReactorTest {
+
+    private final NioHttpReactor toTest;
+
+    public NioHttpReactorTest() throws IOException {
+        toTest = new NioHttpReactor(1, 1000);
+        Thread thread = new Thread(toTest);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void dispose() {
+        toTest.dispose();
+    }
+
+    @Test
+    public void reactorShouldKeepRunningAfterAFailingTask() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(1);
+        toTest.execute(new Runnable() {
+            public void run() {
+                throw new IllegalStateException("test");
+            }
+        });
+        toTest.execute(new Runnable() {
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class NioHttpResponseParserTest {
+
+    private final RecordingHandler handler = new RecordingHandler();
+    private final NioHttpResponseParser toTest = new NioHttpResponseParser(false, handler);
+
+    @Test
+    public void shouldParseFixedLengthResponse() throws IOException {
+        parse("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 5\r\n\r\nhello");
+        assertTrue(toTest.isComplete());
+        assertTrue(toTest.isKeepAlive());
+        assertEquals(200, handler.statusCode);
+        assertEquals("OK", handler.statusMessage);
+        assertEquals(asList("text/plain"), handler.headers.get("content-type"));
+        assertEquals("hello", handler.body());
+    }
+
+    @Test
+    public void shouldParseResponseSplitAcrossManyBuffers() throws IOException {
+        String response = "HTTP/1.1 201 Created\r\nContent-Length: 11\r\n\r\nhello world";
+        for (char c : response.toCharArray()) {
+            assertFalse(toTest.isComplete());
+            parse(String.valueOf(c));
+        }
+        assertTrue(toTest.isComplete());
+        assertEquals(201, handler.statusCode);
+        assertEquals("hello world", handler.body());
+    }
+
+    @Test
+    public void shouldParseChunkedResponse() throws IOException {
+        parse("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n5;ext=1\r\nhello\r\n6\r\n world\r\n0\r\nX-Trailer: 1\r\n\r\n");
+        assertTrue(toTest.isComplete());
+        assertTrue(toTest.isKeepAlive());
+        assertEquals("hello world", handler.body());
+    }
+
+    @Test
+    public void shouldReadUntilCloseWhenNoLengthIsGiven() throws IOException {
+        parse("HTTP/1.1 200 OK\r\n\r\nhello");
+        assertFalse(toTest.isComplete());
+        toTest.endOfStream();
+        assertTrue(toTest.isComplete());
+        assertFalse(toTest.isKeepAlive());
+        assertEquals("hello", handler.body());
+    }
+
+    @Test
+    public void shouldSkipInterimResponses() throws IOException {
+        parse("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 204 No Content\r\n\r\n");
+        assertTrue(toTest.isComplete());
+        assertEquals(204, handler.statusCode);
+        assertEquals(1, handler.heads);
+    }
+
+    @Test
+    public void shouldNotExpectEntityForHeadRequests() throws IOException {
+        NioHttpResponseParser toTest = new NioHttpResponseParser(true, handler);
+        toTest.parse(ByteBuffer.wrap("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\n".getBytes()));
+        assertTrue(toTest.isComplete());
+        assertEquals("", handler.body());
+    }
+
+    @Test
+    public void shouldHonorConnectionClose() throws IOException {
+        parse("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\n\r\n");
+        assertTrue(toTest.isComplete());
+        assertFalse(toTest.isKeepAlive());
+    }
+
+    @Test
+    public void shouldOnlyKeepAliveHttp10WhenAsked() throws IOException {
+        parse("HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n");
+        assertTrue(toTest.isComplete());
+        assertFalse(toTest.isKeepAlive());
+    }
+
+    @Test
+    public void shouldLeaveBytesFollowingTheResponseUnread() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nokGARBAGE".getBytes());
+        toTest.parse(buffer);
+        assertTrue(toTest.isComplete());
+        assertEquals(7, buffer.remaining());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailWhenConnectionClosedBeforeResponseIsComplete() throws IOException {
+        parse("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nhello");
+        toTest.endOfStream();
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailOnMalformedStatusLine() throws IOException {
+        parse("FOO\r\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailOnMalformedChunkSize() throws IOException {
+        parse("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nzz\r\n");
+    }
+
+    @Test
+    public void hasStartedShouldBeFalseUntilFirstByte() throws IOException {
+        assertFalse(toTest.hasStarted());
+        parse("H");
+        assertTrue(toTest.hasStarted());
+    }
+
+    @Test
+    public void shouldPassBodyWithoutCopy() throws IOException {
+        NioHttpResponseParser.Handler mock = mock(NioHttpResponseParser.Handler.class);
+        NioHttpResponseParser toTest = new NioHttpResponseParser(false, mock);
+        byte[] bytes = "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes();
+        toTest.parse(ByteBuffer.wrap(bytes));
+        ArgumentCaptor<byte[]> data = ArgumentCaptor.forClass(byte[].class);
+        verify(mock).onBody(data.capture(), anyInt(), eq(2));
+        assertSame(bytes, data.getValue());
+    }
+
+    private void parse(String data) throws IOException {
+        toTest.parse(ByteBuffer.wrap(data.getBytes("ISO-8859-1")));
+    }
+
+    private static final class RecordingHandler implements NioHttpResponseParser.Handler {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private int heads;
+        private int statusCode;
+        private String statusMessage;
+        private Map<String, List<String>> headers;
+
+        public void onHead(int statusCode, String statusMessage, Map<String, List<String>> headers) {
+            this.heads++;
+            this.statusCode = statusCode;
+            this.statusMessage = statusMessage;
+            this.headers = headers;
+        }
+
+        public void onBody(byte[] data, int offset, int length) {
+            body.write(data, offset, length);
+        }
+
+        String body() {
+            return new String(body.toByteArray());
+        }
+    }
+}
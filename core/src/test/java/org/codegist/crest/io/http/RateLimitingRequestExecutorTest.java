@@ -0,0 +1,184 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.config.MethodConfig;
+import org.codegist.crest.config.ParamType;
+import org.codegist.crest.config.PathBuilder;
+import org.codegist.crest.config.PathTemplate;
+import org.codegist.crest.config.RateLimit;
+import org.codegist.crest.io.Request;
+import org.codegist.crest.io.RequestException;
+import org.codegist.crest.io.RequestExecutor;
+import org.codegist.crest.io.RequestRejectedException;
+import org.codegist.crest.io.Response;
+import org.codegist.crest.param.EncodedPair;
+import org.codegist.crest.test.util.CRestConfigs;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static java.util.Collections.singletonMap;
+import static org.codegist.crest.test.util.Values.UTF8;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class RateLimitingRequestExecutorTest {
+
+    private final RequestExecutor mockRequestExecutor = mock(RequestExecutor.class);
+    private final CRestConfig crestConfig = CRestConfigs.mockDefaultBehavior();
+    private final Response response = mock(Response.class);
+
+    {
+        when(crestConfig.get(RateLimitingRequestExecutor.MAX_WAIT_PROP, -1l)).thenReturn(0l);
+    }
+
+    @Test
+    public void executeShouldPassThroughIfNoRateLimitApplies() throws Exception {
+        Request request = mockRequest("http://a.com/b", null);
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+        RateLimitingRequestExecutor toTest = new RateLimitingRequestExecutor(mockRequestExecutor, crestConfig, Collections.<String, RateLimit>emptyMap());
+
+        for(int i = 0; i < 10; i++) {
+            assertSame(response, toTest.execute(request));
+        }
+        verify(mockRequestExecutor, times(10)).execute(request);
+    }
+
+    @Test
+    public void executeShouldRejectRequestsExceedingEndpointRateLimit() throws Exception {
+        Request request = mockRequest("http://a.com/b", null);
+        Request otherEndpointRequest = mockRequest("http://b.com/b", null);
+        when(mockRequestExecutor.execute(any(Request.class))).thenReturn(response);
+        RateLimitingRequestExecutor toTest = new RateLimitingRequestExecutor(mockRequestExecutor, crestConfig, endpointRateLimit("http://a.com", 2));
+
+        assertSame(response, toTest.execute(request));
+        assertSame(response, toTest.execute(request));
+        assertRejected(toTest, request);
+        assertSame(response, toTest.execute(otherEndpointRequest));
+    }
+
+    @Test
+    public void executeShouldRejectRequestsExceedingMethodRateLimit() throws Exception {
+        Request request = mockRequest("http://a.com/b", new RateLimit(1, 60000));
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+        RateLimitingRequestExecutor toTest = new RateLimitingRequestExecutor(mockRequestExecutor, crestConfig, Collections.<String, RateLimit>emptyMap());
+
+        assertSame(response, toTest.execute(request));
+        assertRejected(toTest, request);
+        verify(mockRequestExecutor, times(1)).execute(request);
+    }
+
+    @Test
+    public void executeShouldNotConsumeEndpointPermitIfRejectedByMethodRateLimit() throws Exception {
+        Request request = mockRequest("http://a.com/b", new RateLimit(1, 60000));
+        Request otherMethodRequest = mockRequest("http://a.com/c", null);
+        when(mockRequestExecutor.execute(any(Request.class))).thenReturn(response);
+        RateLimitingRequestExecutor toTest = new RateLimitingRequestExecutor(mockRequestExecutor, crestConfig, endpointRateLimit("http://a.com", 2));
+
+        assertSame(response, toTest.execute(request));
+        assertRejected(toTest, request);
+        assertRejected(toTest, request);
+        assertSame(response, toTest.execute(otherMethodRequest));
+        assertRejected(toTest, otherMethodRequest);
+    }
+
+    @Test
+    public void executeShouldDelayRequestsExceedingRateLimitWhenAllowedToWait() throws Exception {
+        when(crestConfig.get(RateLimitingRequestExecutor.MAX_WAIT_PROP, -1l)).thenReturn(-1l);
+        Request request = mockRequest("http://a.com/b", new RateLimit(1, 50));
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+        RateLimitingRequestExecutor toTest = new RateLimitingRequestExecutor(mockRequestExecutor, crestConfig, Collections.<String, RateLimit>emptyMap());
+
+        assertSame(response, toTest.execute(request));
+        assertSame(response, toTest.execute(request));
+        verify(mockRequestExecutor, times(2)).execute(request);
+    }
+
+    @Test
+    public void executeShouldRefundPermitsWhenInterruptedWhileWaiting() throws Exception {
+        when(crestConfig.get(RateLimitingRequestExecutor.MAX_WAIT_PROP, -1l)).thenReturn(-1l);
+        Request request = mockRequest("http://a.com/b", new RateLimit(1, 200));
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+        RateLimitingRequestExecutor toTest = new RateLimitingRequestExecutor(mockRequestExecutor, crestConfig, Collections.<String, RateLimit>emptyMap());
+
+        assertSame(response, toTest.execute(request));
+        Thread.currentThread().interrupt();
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (RequestException e) {
+            assertTrue(Thread.interrupted());
+        }
+        Thread.sleep(210);
+        long start = System.currentTimeMillis();
+        assertSame(response, toTest.execute(request));
+        assertTrue(System.currentTimeMillis() - start < 100);
+        verify(mockRequestExecutor, times(2)).execute(request);
+    }
+
+    @Test
+    public void executeShouldMatchEndpointRateLimitRegardlessOfDefaultPort() throws Exception {
+        Request request = mockRequest("http://a.com:80/b", null);
+        when(mockRequestExecutor.execute(request)).thenReturn(response);
+        RateLimitingRequestExecutor toTest = new RateLimitingRequestExecutor(mockRequestExecutor, crestConfig, endpointRateLimit("http://a.com", 1));
+
+        assertSame(response, toTest.execute(request));
+        assertRejected(toTest, request);
+    }
+
+    private void assertRejected(RateLimitingRequestExecutor toTest, Request request) throws Exception {
+        try {
+            toTest.execute(request);
+            fail();
+        } catch (RequestRejectedException e) {
+            // expected
+        }
+    }
+
+    private static Map<String, RateLimit> endpointRateLimit(String endpoint, int permits) {
+        return singletonMap(endpoint, new RateLimit(permits, 60000));
+    }
+
+    private static Request mockRequest(String url, RateLimit rateLimit) throws Exception {
+        Request request = mock(Request.class);
+        MethodConfig methodConfig = mock(MethodConfig.class);
+        PathTemplate pathTemplate = mock(PathTemplate.class);
+        PathBuilder pathBuilder = mock(PathBuilder.class);
+        when(request.getMethodConfig()).thenReturn(methodConfig);
+        when(request.getEncodedParamsIterator(any(ParamType.class))).thenReturn(Collections.<EncodedPair>emptyList().iterator());
+        when(methodConfig.getCharset()).thenReturn(UTF8);
+        when(methodConfig.getPathTemplate()).thenReturn(pathTemplate);
+        when(methodConfig.getRateLimit()).thenReturn(rateLimit);
+        when(methodConfig.getMethod()).thenReturn(Object.class.getMethod("toString"));
+        when(pathTemplate.getBuilder(UTF8)).thenReturn(pathBuilder);
+        when(pathBuilder.build()).thenReturn(url);
+        return request;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class TieredHttpCacheTest {
+
+    private final MemoryHttpCache first = new MemoryHttpCache(10);
+    private final MemoryHttpCache second = new MemoryHttpCache(10);
+    private final TieredHttpCache toTest = new TieredHttpCache(first, second);
+    private final HttpCacheEntry entry = new HttpCacheEntry(null, Collections.<String, String>emptyMap(), 0, null, null);
+
+    @Test
+    public void putShouldStoreInBothTiers() {
+        toTest.put("a", entry);
+        assertSame(entry, first.get("a"));
+        assertSame(entry, second.get("a"));
+    }
+
+    @Test
+    public void getShouldPromoteSecondTierEntries() {
+        second.put("a", entry);
+        assertSame(entry, toTest.get("a"));
+        assertSame(entry, first.get("a"));
+    }
+
+    @Test
+    public void refreshShouldExtendFreshnessInBothTiers() {
+        toTest.put("a", entry);
+        toTest.refresh("a", 1234l);
+        assertEquals(1234l, first.get("a").getExpiresAt());
+        assertEquals(1234l, second.get("a").getExpiresAt());
+    }
+
+    @Test
+    public void removeShouldEvictFromBothTiers() {
+        toTest.put("a", entry);
+        toTest.remove("a");
+        assertNull(first.get("a"));
+        assertNull(second.get("a"));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.io.http;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void burstShouldBeGrantedRightAway() {
+        TokenBucket toTest = new TokenBucket(3, 1000, 0);
+        assertEquals(0, toTest.reserve(0, 0));
+        assertEquals(0, toTest.reserve(0, 0));
+        assertEquals(0, toTest.reserve(0, 0));
+        assertEquals(-1, toTest.reserve(0, 0));
+    }
+
+    @Test
+    public void reservationsShouldBeSpacedOutOnceBurstIsConsumed() {
+        TokenBucket toTest = new TokenBucket(2, 1000, 0);
+        assertEquals(0, toTest.reserve(0, -1));
+        assertEquals(0, toTest.reserve(0, -1));
+        assertEquals(SECOND / 2, toTest.reserve(0, -1));
+        assertEquals(SECOND, toTest.reserve(0, -1));
+    }
+
+    @Test
+    public void rejectedReservationShouldNotConsumeAPermit() {
+        TokenBucket toTest = new TokenBucket(1, 1000, 0);
+        assertEquals(0, toTest.reserve(0, 0));
+        assertEquals(-1, toTest.reserve(0, SECOND / 2));
+        assertEquals(SECOND / 2, toTest.reserve(SECOND / 2, SECOND / 2));
+    }
+
+    @Test
+    public void refundedPermitShouldBeGrantedAgain() {
+        TokenBucket toTest = new TokenBucket(1, 1000, 0);
+        assertEquals(0, toTest.reserve(0, 0));
+        assertEquals(-1, toTest.reserve(0, 0));
+        toTest.refund();
+        assertEquals(0, toTest.reserve(0, 0));
+        assertEquals(-1, toTest.reserve(0, 0));
+    }
+
+    @Test
+    public void permitsShouldBeRefilledOverTime() {
+        TokenBucket toTest = new TokenBucket(2, 1000, 0);
+        assertEquals(0, toTest.reserve(0, 0));
+        assertEquals(0, toTest.reserve(0, 0));
+        assertEquals(-1, toTest.reserve(0, 0));
+        assertEquals(0, toTest.reserve(SECOND / 2, 0));
+        assertEquals(-1, toTest.reserve(SECOND / 2, 0));
+        assertEquals(0, toTest.reserve(10 * SECOND, 0));
+        assertEquals(0, toTest.reserve(10 * SECOND, 0));
+        assertEquals(-1, toTest.reserve(10 * SECOND, 0));
+    }
+}
@@ -56,7 +56,7 @@ public abstract class BaseDeserializerTest {
         };
     }
 
-    private void assertInputStreamAsBeenClosed(){
+    protected void assertInputStreamAsBeenClosed(){
         if(inputStreamSet) {
             assertTrue(closeFlag);
         }
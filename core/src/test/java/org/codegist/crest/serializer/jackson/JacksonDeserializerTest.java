@@ -23,6 +23,7 @@ package org.codegist.crest.serializer.jackson;
 import org.codegist.common.io.IOs;
 import org.codegist.crest.CRestConfig;
 import org.codegist.crest.serializer.BaseDeserializerTest;
+import org.codegist.crest.util.CloseableIterator;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -35,10 +36,15 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
-import static org.junit.Assert.assertEquals;
+import static org.codegist.crest.test.util.Classes.byName;
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
@@ -85,4 +91,48 @@ public class JacksonDeserializerTest extends BaseDeserializerTest {
         mockTypeFactory.constructType(mockType);
     }
 
+    @Test
+    public void shouldStreamTopLevelJsonArrayElements() throws IOException {
+        InputStream stream = toInputStream("[{\"a\":1},{\"a\":2}]");
+        Iterator<Map<String,Integer>> actual = streamingDeserializer().deserialize(Iterator.class, Streams.STREAM.getGenericReturnType(), stream, Charset.forName("UTF-8"));
+
+        assertTrue(actual.hasNext());
+        assertEquals(Integer.valueOf(1), actual.next().get("a"));
+        assertTrue(actual.hasNext());
+        assertEquals(Integer.valueOf(2), actual.next().get("a"));
+        assertFalse(actual.hasNext());
+        assertInputStreamAsBeenClosed();
+    }
+
+    @Test
+    public void shouldStreamNewLineDelimitedJsonValues() throws IOException {
+        InputStream stream = toInputStream("{\"a\":1}\n{\"a\":2}\n");
+        CloseableIterator<Map<String,Integer>> actual = streamingDeserializer().deserialize(CloseableIterator.class, Streams.CLOSEABLE_STREAM.getGenericReturnType(), stream, Charset.forName("UTF-8"));
+
+        assertEquals(Integer.valueOf(1), actual.next().get("a"));
+        assertEquals(Integer.valueOf(2), actual.next().get("a"));
+        assertFalse(actual.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void closedStreamShouldHaveNoMoreElements() throws IOException {
+        CloseableIterator<Map<String,Integer>> actual = streamingDeserializer().deserialize(CloseableIterator.class, Streams.CLOSEABLE_STREAM.getGenericReturnType(), toInputStream("[{\"a\":1}]"), Charset.forName("UTF-8"));
+        actual.close();
+        assertInputStreamAsBeenClosed();
+        assertFalse(actual.hasNext());
+        actual.next();
+    }
+
+    private JacksonDeserializer streamingDeserializer(){
+        when(crestConfig.get(JacksonDeserializer.OBJECT_MAPPER_PROP)).thenReturn(new ObjectMapper());
+        return new JacksonDeserializer(crestConfig);
+    }
+
+    interface Streams {
+        Iterator<Map<String,Integer>> stream();
+        CloseableIterator<Map<String,Integer>> closeableStream();
+
+        Method STREAM = byName(Streams.class, "stream");
+        Method CLOSEABLE_STREAM = byName(Streams.class, "closeableStream");
+    }
 }
@@ -35,6 +35,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
 import java.util.Queue;
+import java.util.concurrent.Semaphore;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
@@ -59,21 +60,33 @@ public class PooledJaxbText {
 
     @Test(expected= CRestException.class)
     public void shouldTryToBorrowForUnmarshallAndFailWithTimeout() throws Exception {
-        Queue<Jaxb> queue = getQueue();
-        assertQueueState(queue);
-        queue.poll();
-        queue.poll();
+        getPermits().acquire(2);
         toTest.unmarshal(null, null, null);
     }
     @Test(expected= CRestException.class)
     public void shouldTryToBorrowForMarshallAndFailWithTimeout() throws Exception {
-        Queue<Jaxb> queue = getQueue();
-        assertQueueState(queue);
-        queue.poll();
-        queue.poll();
+        getPermits().acquire(2);
         toTest.marshal(null, null, null);
     }
     @Test
+    public void shouldNotCreateAnyJaxbUntilFirstBorrow() throws Exception {
+        verifyNew(SimpleJaxb.class, never()).withArguments(mockJaxbContext);
+        assertTrue(getQueue().isEmpty());
+        assertEquals(2, getPermits().availablePermits());
+    }
+    @Test
+    public void shouldReleasePermitWhenJaxbCreationFails() throws Exception {
+        JAXBException expected = new JAXBException("");
+        whenNew(SimpleJaxb.class).withArguments(mockJaxbContext).thenThrow(expected);
+        try {
+            toTest.unmarshal(null, null, null);
+            fail();
+        } catch (JAXBException e) {
+            assertSame(expected, e);
+        }
+        assertEquals(2, getPermits().availablePermits());
+    }
+    @Test
     public void shouldBorrowThenUnmarshallWithGivenArgsAndFinallyLendBack() throws Exception {
         Class arg1 = String.class;
         Type arg2 = Object.class;
@@ -81,15 +94,16 @@ public class PooledJaxbText {
         Object expected = new Object();
         Queue<Jaxb> queue = getQueue();
 
-        when(mockJaxb2.unmarshal(arg1, arg2, arg3)).thenReturn(expected);
+        when(mockJaxb1.unmarshal(arg1, arg2, arg3)).thenReturn(expected);
 
-        assertQueueState(queue);
-        Jaxb jaxb = queue.poll();
         Object actual = toTest.unmarshal(arg1, arg2, arg3);
-        assertSame(mockJaxb1, jaxb);
-        queue.offer(jaxb);
-        assertQueueState(queue);
         assertSame(expected, actual);
+        assertQueueState(queue, mockJaxb1);
+
+        actual = toTest.unmarshal(arg1, arg2, arg3);
+        assertSame(expected, actual);
+        assertQueueState(queue, mockJaxb1);
+        verifyNew(SimpleJaxb.class, times(1)).withArguments(mockJaxbContext);
     }
 
     @Test
@@ -98,27 +112,34 @@ public class PooledJaxbText {
         OutputStream arg2 = mock(OutputStream.class);
         Charset arg3 = Values.UTF8;
         Queue<Jaxb> queue = getQueue();
+        queue.offer(mockJaxb2);
 
-        assertQueueState(queue);
-        Jaxb jaxb = queue.poll();
         toTest.marshal(arg1, arg2, arg3);
-        queue.offer(jaxb);
-        assertSame(mockJaxb1, jaxb);
-        assertQueueState(queue);
+        assertQueueState(queue, mockJaxb2);
 
         verify(mockJaxb2).marshal(arg1, arg2, arg3);
+        verifyNew(SimpleJaxb.class, never()).withArguments(mockJaxbContext);
     }
 
-    public void assertQueueState(Queue<Jaxb> queue){
-        assertEquals(2, queue.size());
-        assertTrue(queue.containsAll(asList(mockJaxb1, mockJaxb2)));
+    public void assertQueueState(Queue<Jaxb> queue, Jaxb... expected){
+        assertEquals(expected.length, queue.size());
+        assertTrue(queue.containsAll(asList(expected)));
+        assertEquals(2, getPermits().availablePermits());
     }
 
     private Queue<Jaxb> getQueue(){
+        return getField("pool");
+    }
+
+    private Semaphore getPermits(){
+        return getField("permits");
+    }
+
+    private <T> T getField(String name){
         try {
-            Field field = toTest.getClass().getDeclaredField("pool");
+            Field field = toTest.getClass().getDeclaredField(name);
             field.setAccessible(true);
-            return (Queue<Jaxb>) field.get(toTest);
+            return (T) field.get(toTest);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -127,9 +148,7 @@ public class PooledJaxbText {
     private PooledJaxb newToTest(){
         try {
             whenNew(SimpleJaxb.class).withArguments(mockJaxbContext).thenReturn(mockJaxb1,mockJaxb2);
-            PooledJaxb toTest = new PooledJaxb(mockJaxbContext, 2, maxwait);
-            verifyNew(SimpleJaxb.class, times(2)).withArguments(mockJaxbContext);
-            return toTest;
+            return new PooledJaxb(mockJaxbContext, 2, maxwait);
         } catch (Exception e) {
             throw new ExceptionInInitializerError(e);
         }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.util;
+
+import org.codegist.crest.NonInstanciableClassTest;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class CompletableFuturesTest extends NonInstanciableClassTest {
+
+    private static final Executor DIRECT = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    public CompletableFuturesTest() {
+        super(CompletableFutures.class);
+    }
+
+    @Test
+    public void isCompletableFutureShouldOnlyMatchCompletableFuture() {
+        assertTrue(CompletableFutures.isCompletableFuture(CompletableFuture.class));
+        assertFalse(CompletableFutures.isCompletableFuture(Future.class));
+        assertFalse(CompletableFutures.isCompletableFuture(Object.class));
+    }
+
+    @Test
+    public void supplyAsyncShouldCompleteWithTaskResult() throws Exception {
+        Future<?> actual = CompletableFutures.supplyAsync(new Callable<String>() {
+            public String call() {
+                return "hello";
+            }
+        }, DIRECT);
+        assertTrue(actual instanceof CompletableFuture);
+        assertEquals("hello", actual.get());
+    }
+
+    @Test
+    public void supplyAsyncShouldCompleteExceptionallyWithTaskFailure() throws Exception {
+        final Exception failure = new Exception();
+        Future<?> actual = CompletableFutures.supplyAsync(new Callable<String>() {
+            public String call() throws Exception {
+                throw failure;
+            }
+        }, DIRECT);
+        try {
+            actual.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void supplyAsyncShouldCompleteExceptionallyAndRethrowErrors() throws Exception {
+        final Error failure = new Error();
+        final Throwable[] rethrown = new Throwable[1];
+        Future<?> actual = CompletableFutures.supplyAsync(new Callable<String>() {
+            public String call() {
+                throw failure;
+            }
+        }, new Executor() {
+            public void execute(Runnable command) {
+                try {
+                    command.run();
+                } catch (Error e) {
+                    rethrown[0] = e;
+                }
+            }
+        });
+        assertSame(failure, rethrown[0]);
+        try {
+            actual.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+}
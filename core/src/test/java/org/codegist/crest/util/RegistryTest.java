@@ -30,6 +30,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -76,6 +77,43 @@ public class RegistryTest {
         assertSame(toTest.get("3"), toTest.get("3"));
     }
 
+    @Test
+    public void containsShouldIgnoreItemsRegisteredAfterBuild(){
+        ComponentRegistry<String,SomeClass> toTest = toTest();
+        builder.register(SomeClass.class, "3");
+        assertFalse(toTest.contains("3"));
+    }
+
+    @Test
+    public void getShouldReturnTheSameInstanceToConcurrentCallers() throws InterruptedException {
+        final ComponentRegistry<String,SomeClass> toTest = toTest(SomeClass2.class);
+        final CountDownLatch start = new CountDownLatch(1);
+        final SomeClass[] actual = new SomeClass[16];
+        Thread[] threads = new Thread[actual.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    actual[index] = toTest.get(String.valueOf(index % 4));
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < actual.length; i++) {
+            assertSame(toTest.get(String.valueOf(i % 4)), actual[i]);
+        }
+        assertSame(toTest.get("0"), toTest.get("3"));
+    }
+
     @Test(expected = CRestException.class)
     public void getUnknownItemShouldFailIfNoDefaultValueIsSet(){
         ComponentRegistry<String,SomeClass> toTest = toTest();
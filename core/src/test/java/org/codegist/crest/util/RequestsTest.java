@@ -24,16 +24,19 @@ import org.codegist.crest.NonInstanciableClassTest;
 import org.codegist.crest.config.MethodConfig;
 import org.codegist.crest.config.ParamConfig;
 import org.codegist.crest.interceptor.RequestInterceptor;
+import org.codegist.crest.io.DeadlineExceededException;
 import org.codegist.crest.io.Request;
 import org.codegist.crest.io.RequestBuilder;
 import org.codegist.crest.io.RequestBuilderFactory;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.util.Arrays;
 import java.util.Collections;
 
 import static java.util.Arrays.asList;
-import static org.junit.Assert.assertSame;
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import static org.powermock.api.mockito.PowerMockito.when;
 
@@ -93,4 +96,98 @@ public class RequestsTest extends NonInstanciableClassTest {
         verifyNoMoreInteractions(mockRequestBuilder);
 
     }
+
+    @Test
+    public void getRemainingTimeShouldBeUnboundedWithoutDeadline() throws Exception {
+        Request request = mock(Request.class);
+        when(request.getMethodConfig()).thenReturn(mockMethodConfig);
+        assertEquals(Long.MAX_VALUE, Requests.getRemainingTime(request));
+        assertEquals(20000, Requests.getTimeout(request, 20000));
+        assertEquals(0, Requests.getTimeout(request, 0));
+    }
+
+    @Test
+    public void getDeadlineShouldBeComputedFromMethodDeadlineAndTimestamp() throws Exception {
+        Request request = mock(Request.class);
+        when(request.getMethodConfig()).thenReturn(mockMethodConfig);
+        when(mockMethodConfig.getDeadline()).thenReturn(500);
+        Requests.setTimestamp(request, 1000l);
+        assertEquals(1500, Requests.getDeadline(request));
+    }
+
+    @Test
+    public void getDeadlineShouldBeZeroIfMethodHasNoDeadline() throws Exception {
+        Request request = mock(Request.class);
+        when(request.getMethodConfig()).thenReturn(mockMethodConfig);
+        Requests.setTimestamp(request, 1000l);
+        assertEquals(0, Requests.getDeadline(request));
+    }
+
+    @Test
+    public void getTimeoutShouldBeBoundedByDeadline() throws Exception {
+        Request request = mock(Request.class);
+        when(request.getMethodConfig()).thenReturn(mockMethodConfig);
+        when(mockMethodConfig.getDeadline()).thenReturn(60000);
+        Requests.setTimestamp(request, System.currentTimeMillis());
+        assertEquals(10, Requests.getTimeout(request, 10));
+        assertTrue(Requests.getTimeout(request, 120000) <= 60000);
+        assertTrue(Requests.getTimeout(request, 0) <= 60000);
+        assertTrue(Requests.getTimeout(request, 0) > 0);
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void getRemainingTimeShouldFailOnceDeadlineIsReached() throws Exception {
+        Request request = mock(Request.class);
+        when(request.getMethodConfig()).thenReturn(mockMethodConfig);
+        when(mockMethodConfig.getDeadline()).thenReturn(1);
+        Requests.setTimestamp(request, System.currentTimeMillis() - 2);
+        Requests.getRemainingTime(request);
+    }
+
+    @Test
+    public void fromShouldTimestampTheBuiltRequest() throws Exception {
+        Request request = mock(Request.class);
+        when(mockRequestBuilderFactory.create()).thenReturn(mockRequestBuilder);
+        when(mockRequestBuilder.addParams(new ParamConfig[0])).thenReturn(mockRequestBuilder);
+        when(mockRequestBuilder.build(mockMethodConfig)).thenReturn(request);
+        when(mockMethodConfig.getExtraParams()).thenReturn(new ParamConfig[0]);
+        when(mockMethodConfig.getRequestInterceptor()).thenReturn(mock(RequestInterceptor.class));
+        long before = System.currentTimeMillis();
+        Requests.from(mockRequestBuilderFactory, mockMethodConfig, new Object[0]);
+        long actual = Requests.getTimestamp(request);
+        assertTrue(actual >= before && actual <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void decorateShouldShareTheDecoratedRequestTimestamp() throws Exception {
+        Request request = mock(Request.class);
+        Request decorator = mock(Request.class);
+        Requests.setTimestamp(request, 1000l);
+        assertSame(decorator, Requests.decorate(request, decorator));
+        assertEquals(1000l, Requests.getTimestamp(decorator));
+    }
+
+    @Test
+    public void getTimestampShouldTimestampUnknownRequestsOnFirstLookup() throws Exception {
+        Request request = mock(Request.class);
+        long actual = Requests.getTimestamp(request);
+        Thread.sleep(5);
+        assertEquals(actual, Requests.getTimestamp(request));
+    }
+
+    @Test
+    public void isDeadlineExceededShouldOnlyHoldForTimeoutsPastTheDeadline() throws Exception {
+        Request request = mock(Request.class);
+        when(request.getMethodConfig()).thenReturn(mockMethodConfig);
+        when(mockMethodConfig.getDeadline()).thenReturn(1);
+        Requests.setTimestamp(request, System.currentTimeMillis() - 2);
+        assertTrue(Requests.isDeadlineExceeded(request, new SocketTimeoutException()));
+        assertTrue(Requests.isDeadlineExceeded(request, new RuntimeException(new SocketTimeoutException())));
+        assertFalse(Requests.isDeadlineExceeded(request, new IOException()));
+        assertFalse(Requests.isDeadlineExceeded(request, new DeadlineExceededException("test")));
+
+        Requests.setTimestamp(request, System.currentTimeMillis());
+        when(mockMethodConfig.getDeadline()).thenReturn(60000);
+        assertFalse(Requests.isDeadlineExceeded(request, new SocketTimeoutException()));
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.util;
+
+import org.codegist.crest.NonInstanciableClassTest;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static org.codegist.crest.test.util.Classes.byName;
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class ReturnTypesTest extends NonInstanciableClassTest {
+
+    public ReturnTypesTest() {
+        super(ReturnTypes.class);
+    }
+
+    @Test
+    public void isAsyncShouldBeTrueOnlyForFutureReturnTypes() {
+        assertFalse(ReturnTypes.isAsync(Sample.SYNC));
+        assertTrue(ReturnTypes.isAsync(Sample.ASYNC));
+        assertTrue(ReturnTypes.isAsync(Sample.ASYNC_LIST));
+        assertTrue(ReturnTypes.isAsync(Sample.ASYNC_RAW));
+        assertTrue(ReturnTypes.isAsync(Sample.COMPLETABLE));
+        assertFalse(ReturnTypes.isAsync(Sample.FUTURE_TASK));
+    }
+
+    @Test
+    public void isCompletableShouldBeTrueOnlyForCompletableFutureReturnTypes() {
+        assertTrue(ReturnTypes.isCompletable(Sample.COMPLETABLE));
+        assertFalse(ReturnTypes.isCompletable(Sample.ASYNC));
+        assertFalse(ReturnTypes.isCompletable(Sample.SYNC));
+    }
+
+    @Test
+    public void getExpectedTypeShouldUnwrapCompletableFutureTypeArgument() {
+        assertEquals(String.class, ReturnTypes.getExpectedType(Sample.COMPLETABLE));
+        assertEquals(String.class, ReturnTypes.getExpectedGenericType(Sample.COMPLETABLE));
+    }
+
+    @Test
+    public void getExpectedTypeShouldReturnMethodReturnTypeForNonFutureMethods() {
+        assertEquals(String.class, ReturnTypes.getExpectedType(Sample.SYNC));
+        assertEquals(String.class, ReturnTypes.getExpectedGenericType(Sample.SYNC));
+    }
+
+    @Test
+    public void getExpectedTypeShouldUnwrapFutureTypeArgument() {
+        assertEquals(String.class, ReturnTypes.getExpectedType(Sample.ASYNC));
+        assertEquals(String.class, ReturnTypes.getExpectedGenericType(Sample.ASYNC));
+    }
+
+    @Test
+    public void getExpectedTypeShouldUnwrapParameterizedFutureTypeArgument() {
+        assertEquals(List.class, ReturnTypes.getExpectedType(Sample.ASYNC_LIST));
+        Type actual = ReturnTypes.getExpectedGenericType(Sample.ASYNC_LIST);
+        assertTrue(actual instanceof ParameterizedType);
+        assertEquals(List.class, ((ParameterizedType) actual).getRawType());
+        assertEquals(String.class, ((ParameterizedType) actual).getActualTypeArguments()[0]);
+    }
+
+    @Test
+    public void getExpectedTypeShouldDefaultToObjectForRawFuture() {
+        assertEquals(Object.class, ReturnTypes.getExpectedType(Sample.ASYNC_RAW));
+        assertEquals(Object.class, ReturnTypes.getExpectedGenericType(Sample.ASYNC_RAW));
+    }
+
+    @Test
+    public void isStreamingShouldBeTrueOnlyForIteratorTypes() {
+        assertTrue(ReturnTypes.isStreaming(Iterator.class));
+        assertTrue(ReturnTypes.isStreaming(CloseableIterator.class));
+        assertFalse(ReturnTypes.isStreaming(List.class));
+        assertFalse(ReturnTypes.isStreaming(null));
+    }
+
+    @Test
+    public void getStreamedElementTypeShouldUnwrapIteratorTypeArgument() {
+        assertEquals(String.class, ReturnTypes.getStreamedElementType(Sample.STREAM.getGenericReturnType()));
+        assertEquals(String.class, ReturnTypes.getStreamedElementType(Sample.STREAM_WILDCARD.getGenericReturnType()));
+        assertEquals(Object.class, ReturnTypes.getStreamedElementType(Iterator.class));
+    }
+
+    @Test
+    public void getExpectedTypeShouldUnwrapFutureOfIterator() {
+        assertEquals(CloseableIterator.class, ReturnTypes.getExpectedType(Sample.ASYNC_STREAM));
+        assertEquals(String.class, ReturnTypes.getStreamedElementType(ReturnTypes.getExpectedGenericType(Sample.ASYNC_STREAM)));
+    }
+
+    interface Sample {
+        String sync();
+        Future<String> async();
+        Future<List<String>> asyncList();
+        Future asyncRaw();
+        Iterator<String> stream();
+        Iterator<? extends String> streamWildcard();
+        Future<CloseableIterator<String>> asyncStream();
+        CompletableFuture<String> completable();
+        FutureTask<String> futureTask();
+
+        Method SYNC = byName(Sample.class, "sync");
+        Method ASYNC = byName(Sample.class, "async");
+        Method ASYNC_LIST = byName(Sample.class, "asyncList");
+        Method ASYNC_RAW = byName(Sample.class, "asyncRaw");
+        Method STREAM = byName(Sample.class, "stream");
+        Method STREAM_WILDCARD = byName(Sample.class, "streamWildcard");
+        Method ASYNC_STREAM = byName(Sample.class, "asyncStream");
+        Method COMPLETABLE = byName(Sample.class, "completable");
+        Method FUTURE_TASK = byName(Sample.class, "futureTask");
+    }
+}
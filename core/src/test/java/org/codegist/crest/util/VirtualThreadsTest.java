@@ -0,0 +1,69 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.util;
+
+import org.codegist.crest.CRestException;
+import org.codegist.crest.NonInstanciableClassTest;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class VirtualThreadsTest extends NonInstanciableClassTest {
+
+    public VirtualThreadsTest() {
+        super(VirtualThreads.class);
+    }
+
+    @Test
+    public void isAvailableShouldReflectJvmSupport() {
+        assertEquals(hasVirtualThreadSupport(), VirtualThreads.isAvailable());
+    }
+
+    @Test
+    public void newVirtualThreadPerTaskExecutorShouldFailWhenNotSupported() {
+        if (hasVirtualThreadSupport()) {
+            ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            assertNotNull(executor);
+            executor.shutdown();
+        } else {
+            try {
+                VirtualThreads.newVirtualThreadPerTaskExecutor();
+                fail();
+            } catch (CRestException e) {
+                assertTrue(e.getMessage().startsWith("Virtual threads are not supported"));
+            }
+        }
+    }
+
+    private static boolean hasVirtualThreadSupport() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.codegist.crest.config.annotate.XmlEntityAnnotationHandler;
 import org.codegist.crest.entity.JsonEntityWriter;
 import org.codegist.crest.entity.XmlEntityWriter;
 import org.codegist.crest.io.http.HttpClientHttpChannelFactory;
+import org.codegist.crest.io.http.NioHttpChannelFactory;
 import org.codegist.crest.serializer.Serializer;
 import org.codegist.crest.serializer.jackson.JsonEncodedFormJacksonSerializer;
 import org.codegist.crest.serializer.jaxb.XmlEncodedFormJaxbSerializer;
@@ -256,6 +257,11 @@ public abstract class BaseCRestTest<T> {
                 return new CRestHolder(builder.setHttpChannelFactory(HttpClientHttpChannelFactory.class).build());
             }
         }));
+        holders.addAll(forEachBaseBuilder(new Builder() {
+            public CRestHolder build(CRestBuilder builder) {
+                return new CRestHolder(builder.setHttpChannelFactory(NioHttpChannelFactory.class).build());
+            }
+        }));
         return arrify(holders);
     }
 
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.codegist.common.log.Logger;
+import org.codegist.crest.config.MethodType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import static java.util.Arrays.asList;
+
+/**
+ * <p>A request entity of known length is written to memory first and sent as a byte array. One of unknown length is streamed to the client as it is written, through a bounded in-memory pipe the client reads from while the calling thread writes the entity.</p>
+ * <p>{@link java.net.http.HttpClient} only bounds the time to get the response headers, the connection and socket timeouts are added up into the request timeout.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class JdkHttpClientHttpChannel implements HttpChannel {
+
+    private static final Logger LOG = Logger.getLogger(JdkHttpClientHttpChannel.class);
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+    private static final Map<Integer, String> REASON_PHRASES = new HashMap<Integer, String>();
+    private static final int PIPE_SIZE = 8192;
+
+    static {
+        RESTRICTED_HEADERS.addAll(asList("Connection", "Content-Length", "Date", "Expect", "From", "Host", "Upgrade", "Via", "Warning"));
+        String[] reasonPhrases = {
+                "100", "Continue", "101", "Switching Protocols",
+                "200", "OK", "201", "Created", "202", "Accepted", "203", "Non-Authoritative Information", "204", "No Content", "205", "Reset Content", "206", "Partial Content",
+                "300", "Multiple Choices", "301", "Moved Permanently", "302", "Found", "303", "See Other", "304", "Not Modified", "305", "Use Proxy", "307", "Temporary Redirect", "308", "Permanent Redirect",
+                "400", "Bad Request", "401", "Unauthorized", "402", "Payment Required", "403", "Forbidden", "404", "Not Found", "405", "Method Not Allowed", "406", "Not Acceptable",
+                "407", "Proxy Authentication Required", "408", "Request Timeout", "409", "Conflict", "410", "Gone", "411", "Length Required", "412", "Precondition Failed",
+                "413", "Payload Too Large", "414", "URI Too Long", "415", "Unsupported Media Type", "416", "Range Not Satisfiable", "417", "Expectation Failed",
+                "422", "Unprocessable Entity", "426", "Upgrade Required", "428", "Precondition Required", "429", "Too Many Requests", "431", "Request Header Fields Too Large",
+                "500", "Internal Server Error", "501", "Not Implemented", "502", "Bad Gateway", "503", "Service Unavailable", "504", "Gateway Timeout", "505", "HTTP Version Not Supported"
+        };
+        for (int i = 0; i < reasonPhrases.length; i += 2) {
+            REASON_PHRASES.put(Integer.valueOf(reasonPhrases[i]), reasonPhrases[i + 1]);
+        }
+    }
+
+    private final HttpClient client;
+    private final MethodType methodType;
+    private final String url;
+    private final Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    private int socketTimeout;
+    private int connectionTimeout;
+    private HttpEntityWriter httpEntityWriter;
+
+    JdkHttpClientHttpChannel(HttpClient client, MethodType methodType, String url) {
+        this.client = client;
+        this.methodType = methodType;
+        this.url = url;
+        setHeader("User-Agent", "CodeGist-CRest Agent");
+    }
+
+    public void setSocketTimeout(int timeout) {
+        this.socketTimeout = timeout;
+    }
+
+    public void setConnectionTimeout(int timeout) {
+        this.connectionTimeout = timeout;
+    }
+
+    public void setHeader(String name, String value) {
+        if (isRestricted(name)) {
+            return;
+        }
+        List<String> values = new ArrayList<String>(1);
+        values.add(value);
+        headers.put(name, values);
+    }
+
+    public void addHeader(String name, String value) {
+        if (isRestricted(name)) {
+            return;
+        }
+        List<String> values = headers.get(name);
+        if (values == null) {
+            setHeader(name, value);
+        } else {
+            values.add(value);
+        }
+    }
+
+    public void setContentType(String value) {
+        setHeader("Content-Type", value);
+    }
+
+    public void setAccept(String value) {
+        setHeader("Accept", value);
+    }
+
+    public void writeEntityWith(HttpEntityWriter httpEntityWriter) {
+        this.httpEntityWriter = httpEntityWriter;
+    }
+
+    public Response send() throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url));
+        if (socketTimeout > 0) {
+            builder.timeout(Duration.ofMillis((long) socketTimeout + Math.max(connectionTimeout, 0)));
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                builder.header(header.getKey(), value);
+            }
+        }
+
+        try {
+            if (!methodType.hasEntity()) {
+                builder.method(methodType.name(), HttpRequest.BodyPublishers.noBody());
+                return new JdkHttpClientResponse(client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream()));
+            }
+            int contentLength = httpEntityWriter.getContentLength();
+            if (contentLength >= 0) {
+                ByteArrayOutputStream entity = new ByteArrayOutputStream(contentLength);
+                httpEntityWriter.writeEntityTo(entity);
+                builder.method(methodType.name(), HttpRequest.BodyPublishers.ofByteArray(entity.toByteArray()));
+                return new JdkHttpClientResponse(client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream()));
+            }
+            return streamEntity(builder);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Writes the entity on the calling thread into a pipe the client reads from. Should the client stop reading, eg on failure or on an early response, the pipe is closed to unblock the writer.
+     */
+    private Response streamEntity(HttpRequest.Builder builder) throws IOException, InterruptedException {
+        EntityPipe pipe = new EntityPipe(PIPE_SIZE);
+        final InputStream entity = pipe.getInputStream();
+        OutputStream out = pipe.getOutputStream();
+        builder.method(methodType.name(), HttpRequest.BodyPublishers.ofInputStream(new Supplier<InputStream>() {
+            public InputStream get() {
+                return entity;
+            }
+        }));
+
+        CompletableFuture<HttpResponse<InputStream>> response = client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        response.whenComplete(new BiConsumer<HttpResponse<InputStream>, Throwable>() {
+            public void accept(HttpResponse<InputStream> response, Throwable failure) {
+                try {
+                    entity.close();
+                } catch (IOException e) {
+                    LOG.trace(e, "Failed to close the request entity pipe");
+                }
+            }
+        });
+        try {
+            httpEntityWriter.writeEntityTo(out);
+            out.close();
+        } catch (IOException e) {
+            if (!response.isDone()) {
+                response.cancel(true);
+                throw e;
+            }
+            LOG.debug("Response received before the request entity has been fully written");
+        }
+
+        try {
+            return new JdkHttpClientResponse(response.get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static boolean isRestricted(String name) {
+        if (RESTRICTED_HEADERS.contains(name)) {
+            LOG.debug("Header %s is managed by the HTTP client, ignoring", name);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Bounded in-memory pipe, unlike {@link java.io.PipedInputStream} it doesn't tie either end to the thread that last used it, the client reading from any of its executor threads.
+     */
+    private static final class EntityPipe {
+
+        private final Lock lock = new ReentrantLock();
+        private final Condition readable = lock.newCondition();
+        private final Condition writable = lock.newCondition();
+        private final byte[] buffer;
+        private int head;
+        private int count;
+        private boolean writerClosed;
+        private boolean readerClosed;
+
+        private EntityPipe(int size) {
+            this.buffer = new byte[size];
+        }
+
+        private InputStream getInputStream() {
+            return new InputStream() {
+                public int read() throws IOException {
+                    byte[] b = new byte[1];
+                    return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+                }
+
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    lock.lock();
+                    try {
+                        while (count == 0 && !writerClosed && !readerClosed) {
+                            await(readable);
+                        }
+                        if (count == 0) {
+                            return -1;
+                        }
+                        int read = Math.min(len, Math.min(count, buffer.length - head));
+                        System.arraycopy(buffer, head, b, off, read);
+                        head = (head + read) % buffer.length;
+                        count -= read;
+                        writable.signalAll();
+                        return read;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+
+                public void close() {
+                    lock.lock();
+                    try {
+                        readerClosed = true;
+                        writable.signalAll();
+                        readable.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            };
+        }
+
+        private OutputStream getOutputStream() {
+            return new OutputStream() {
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                public void write(byte[] b, int off, int len) throws IOException {
+                    lock.lock();
+                    try {
+                        while (len > 0) {
+                            while (count == buffer.length && !readerClosed) {
+                                await(writable);
+                            }
+                            if (readerClosed) {
+                                throw new IOException("Request entity is not read anymore");
+                            }
+                            int tail = (head + count) % buffer.length;
+                            int written = Math.min(len, Math.min(buffer.length - count, buffer.length - tail));
+                            System.arraycopy(b, off, buffer, tail, written);
+                            count += written;
+                            off += written;
+                            len -= written;
+                            readable.signalAll();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+
+                public void close() {
+                    lock.lock();
+                    try {
+                        writerClosed = true;
+                        readable.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            };
+        }
+
+        private static void await(Condition condition) throws InterruptedIOException {
+            try {
+                condition.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    private static final class JdkHttpClientResponse implements Response {
+
+        private final HttpResponse<InputStream> response;
+
+        private JdkHttpClientResponse(HttpResponse<InputStream> response) {
+            this.response = response;
+        }
+
+        public int getStatusCode() {
+            return response.statusCode();
+        }
+
+        /**
+         * {@link java.net.http.HttpClient} doesn't expose the reason phrase, HTTP/2 not having any.
+         * @return the standard reason phrase of the status code, null if not a standard one
+         */
+        public String getStatusMessage() {
+            return REASON_PHRASES.get(response.statusCode());
+        }
+
+        public InputStream getEntity() {
+            return response.body();
+        }
+
+        public String getHeaderField(String field) {
+            return response.headers().firstValue(field).orElse(null);
+        }
+
+        public Map<String, List<String>> getHeaderFields() {
+            return response.headers().map();
+        }
+
+        public String getContentType() {
+            return getHeaderField("Content-Type");
+        }
+
+        public String getContentEncoding() {
+            return getHeaderField("Content-Encoding");
+        }
+
+        public void close() throws IOException {
+            LOG.trace("Releasing...");
+            response.body().close();
+        }
+    }
+}
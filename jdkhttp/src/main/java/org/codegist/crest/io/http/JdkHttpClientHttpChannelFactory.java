@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.config.MethodType;
+
+import java.net.http.HttpClient;
+import java.nio.charset.Charset;
+import java.time.Duration;
+
+/**
+ * <p>JDK's {@link java.net.http.HttpClient}-backed HttpChannelFactory implementation.</p>
+ * <p>Negotiates HTTP/2 by default, either through ALPN for <b>https</b> or through the h2c upgrade for plain <b>http</b>, falling back to HTTP/1.1 if the server doesn't support it. Concurrent channels opened to the same end-point share a single multiplexed connection.</p>
+ * <p>Requires Java 11 or later.</p>
+ * @author laurent.gilles@codegist.org
+ */
+public final class JdkHttpClientHttpChannelFactory implements HttpChannelFactory {
+
+    /**
+     * <p>CRestConfig property to provide a preconfigured {@link java.net.http.HttpClient} instance.</p>
+     * <p>Can be overridden by setting this property as follow:</p>
+     * <code><pre>
+     * HttpClient httpClient = ...;
+     * CRest crest = CRest.property(JdkHttpClientHttpChannelFactory.HTTP_CLIENT_PROP, httpClient).buid();
+     * </pre></code>
+     * <p>Default is automatically instanciated</p>
+     * <p>Expects a {@link java.net.http.HttpClient} instance</p>
+     */
+    public static final String HTTP_CLIENT_PROP = JdkHttpClientHttpChannelFactory.class.getName() + "#user-http-client";
+
+    /**
+     * <p>CRestConfig property to set the preferred HTTP protocol version of the automatically instanciated client.</p>
+     * <p>Default is {@link java.net.http.HttpClient.Version#HTTP_2}</p>
+     * <p>Expects a {@link java.net.http.HttpClient.Version}</p>
+     */
+    public static final String HTTP_VERSION_PROP = JdkHttpClientHttpChannelFactory.class.getName() + "#http-version";
+
+    /**
+     * <p>CRestConfig property to set the connection timeout in milliseconds of the automatically instanciated client.</p>
+     * <p>{@link java.net.http.HttpClient} only supports a client wide connection timeout, the per method connection timeout is added to the per method socket timeout to bound the time to get the response.</p>
+     * <p>Default is 20000 milliseconds</p>
+     * <p>Expects an int</p>
+     */
+    public static final String CONNECTION_TIMEOUT_PROP = JdkHttpClientHttpChannelFactory.class.getName() + "#connection-timeout";
+
+    private static final int DEFAULT_CONNECTION_TIMEOUT = 20000;
+
+    private final HttpClient client;
+
+    /**
+     *
+     * @param client the HTTP client instance to use
+     */
+    public JdkHttpClientHttpChannelFactory(HttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     *
+     * @param crestConfig the crest config
+     */
+    public JdkHttpClientHttpChannelFactory(CRestConfig crestConfig) {
+        this(createClient(crestConfig));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public HttpChannel open(MethodType methodType, String url, Charset charset) {
+        return new JdkHttpClientHttpChannel(client, methodType, url);
+    }
+
+    private static HttpClient createClient(CRestConfig crestConfig) {
+        HttpClient client = crestConfig.get(HTTP_CLIENT_PROP);
+        if (client != null) {
+            return client;
+        }
+        int connectionTimeout = crestConfig.get(CONNECTION_TIMEOUT_PROP, DEFAULT_CONNECTION_TIMEOUT);
+        return HttpClient.newBuilder()
+                .version(crestConfig.get(HTTP_VERSION_PROP, HttpClient.Version.HTTP_2))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectionTimeout))
+                .build();
+    }
+}
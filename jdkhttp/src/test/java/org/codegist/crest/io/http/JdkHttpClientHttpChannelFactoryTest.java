@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import org.codegist.crest.CRestConfig;
+import org.codegist.crest.config.MethodType;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.net.http.HttpClient;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class JdkHttpClientHttpChannelFactoryTest {
+
+    private final CRestConfig crestConfig = mock(CRestConfig.class);
+
+    @Test
+    public void shouldUseUserHttpClientIfProvided() throws Exception {
+        HttpClient expected = HttpClient.newHttpClient();
+        when(crestConfig.get(JdkHttpClientHttpChannelFactory.HTTP_CLIENT_PROP)).thenReturn(expected);
+
+        JdkHttpClientHttpChannelFactory toTest = new JdkHttpClientHttpChannelFactory(crestConfig);
+        HttpChannel channel = toTest.open(MethodType.GET, "http://localhost", Charset.forName("UTF-8"));
+
+        assertSame(expected, getClient(channel));
+    }
+
+    @Test
+    public void shouldNegotiateHttp2ByDefault() throws Exception {
+        when(crestConfig.get(JdkHttpClientHttpChannelFactory.HTTP_VERSION_PROP, HttpClient.Version.HTTP_2)).thenReturn(HttpClient.Version.HTTP_2);
+        when(crestConfig.get(JdkHttpClientHttpChannelFactory.CONNECTION_TIMEOUT_PROP, 20000)).thenReturn(1000);
+
+        JdkHttpClientHttpChannelFactory toTest = new JdkHttpClientHttpChannelFactory(crestConfig);
+        HttpClient actual = getClient(toTest.open(MethodType.GET, "http://localhost", Charset.forName("UTF-8")));
+
+        assertEquals(HttpClient.Version.HTTP_2, actual.version());
+        assertEquals(1000, actual.connectTimeout().get().toMillis());
+    }
+
+    @Test
+    public void openShouldReturnAJdkHttpClientHttpChannel() {
+        JdkHttpClientHttpChannelFactory toTest = new JdkHttpClientHttpChannelFactory(HttpClient.newHttpClient());
+        HttpChannel actual = toTest.open(MethodType.POST, "http://localhost", Charset.forName("UTF-8"));
+        assertEquals(JdkHttpClientHttpChannel.class, actual.getClass());
+    }
+
+    private static HttpClient getClient(HttpChannel channel) throws Exception {
+        Field field = JdkHttpClientHttpChannel.class.getDeclaredField("client");
+        field.setAccessible(true);
+        return (HttpClient) field.get(channel);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+package org.codegist.crest.io.http;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.codegist.crest.config.MethodType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class JdkHttpClientHttpChannelTest {
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private HttpServer server;
+    private volatile String receivedMethod;
+    private volatile String receivedHeader;
+    private volatile Headers receivedHeaders;
+    private volatile byte[] receivedEntity;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/echo", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                receivedMethod = exchange.getRequestMethod();
+                receivedHeader = exchange.getRequestHeaders().getFirst("X-Request");
+                receivedHeaders = exchange.getRequestHeaders();
+                receivedEntity = read(exchange.getRequestBody());
+                byte[] entity = "world".getBytes("UTF-8");
+                exchange.getResponseHeaders().add("X-Response", "bar");
+                exchange.sendResponseHeaders(201, entity.length);
+                exchange.getResponseBody().write(entity);
+                exchange.close();
+            }
+        });
+        server.createContext("/slow", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void sendShouldWriteRequestAndReadResponse() throws IOException {
+        JdkHttpClientHttpChannel toTest = new JdkHttpClientHttpChannel(client, MethodType.POST, url("/echo"));
+        toTest.setHeader("X-Request", "foo");
+        toTest.writeEntityWith(new BytesEntityWriter("hello".getBytes("UTF-8"), 5));
+
+        HttpChannel.Response actual = toTest.send();
+
+        assertEquals("POST", receivedMethod);
+        assertEquals("foo", receivedHeader);
+        assertEquals("hello", new String(receivedEntity, "UTF-8"));
+        assertEquals(201, actual.getStatusCode());
+        assertEquals("Created", actual.getStatusMessage());
+        assertEquals("bar", actual.getHeaderField("X-Response"));
+        assertEquals("world", new String(read(actual.getEntity()), "UTF-8"));
+        actual.close();
+    }
+
+    @Test
+    public void sendShouldStreamEntityOfUnknownLength() throws IOException {
+        byte[] expected = new byte[256 * 1024];
+        Arrays.fill(expected, (byte) 'a');
+        JdkHttpClientHttpChannel toTest = new JdkHttpClientHttpChannel(client, MethodType.PUT, url("/echo"));
+        toTest.writeEntityWith(new BytesEntityWriter(expected, -1));
+
+        HttpChannel.Response actual = toTest.send();
+
+        assertEquals("PUT", receivedMethod);
+        assertTrue(Arrays.equals(expected, receivedEntity));
+        assertEquals(201, actual.getStatusCode());
+        actual.close();
+    }
+
+    @Test
+    public void sendShouldStreamEntityWrittenInSmallChunks() throws IOException {
+        final byte[] expected = new byte[64 * 1024];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) i;
+        }
+        JdkHttpClientHttpChannel toTest = new JdkHttpClientHttpChannel(client, MethodType.PUT, url("/echo"));
+        toTest.writeEntityWith(new HttpEntityWriter() {
+            public void writeEntityTo(OutputStream out) throws IOException {
+                for (int i = 0; i < expected.length; i += 100) {
+                    out.write(expected, i, Math.min(100, expected.length - i));
+                }
+                out.write(42);
+            }
+
+            public int getContentLength() {
+                return -1;
+            }
+        });
+
+        HttpChannel.Response actual = toTest.send();
+
+        assertEquals(expected.length + 1, receivedEntity.length);
+        assertTrue(Arrays.equals(expected, Arrays.copyOf(receivedEntity, expected.length)));
+        assertEquals(42, receivedEntity[expected.length]);
+        actual.close();
+    }
+
+    @Test
+    public void restrictedHeadersShouldBeIgnored() throws IOException {
+        JdkHttpClientHttpChannel toTest = new JdkHttpClientHttpChannel(client, MethodType.GET, url("/echo"));
+        for (String header : Arrays.asList("Connection", "Content-Length", "Date", "Expect", "From", "Host", "Upgrade", "Via", "Warning")) {
+            toTest.setHeader(header, "value");
+            toTest.addHeader(header.toLowerCase(), "value");
+        }
+        toTest.setHeader("X-Request", "foo");
+
+        HttpChannel.Response actual = toTest.send();
+
+        assertEquals("foo", receivedHeader);
+        for (String header : Arrays.asList("Date", "From", "Via", "Warning")) {
+            assertFalse(header, receivedHeaders.containsKey(header));
+        }
+        assertFalse("value".equals(receivedHeaders.getFirst("Connection")));
+        assertFalse("value".equals(receivedHeaders.getFirst("Host")));
+        assertEquals(201, actual.getStatusCode());
+        actual.close();
+    }
+
+    @Test
+    public void sendShouldNotWriteEntityOfGetRequest() throws IOException {
+        JdkHttpClientHttpChannel toTest = new JdkHttpClientHttpChannel(client, MethodType.GET, url("/echo"));
+
+        HttpChannel.Response actual = toTest.send();
+
+        assertEquals("GET", receivedMethod);
+        assertEquals(0, receivedEntity.length);
+        assertEquals(201, actual.getStatusCode());
+        actual.close();
+    }
+
+    @Test
+    public void sendShouldTimeOutOnceConnectionAndSocketTimeoutsElapsed() throws IOException {
+        JdkHttpClientHttpChannel toTest = new JdkHttpClientHttpChannel(client, MethodType.GET, url("/slow"));
+        toTest.setConnectionTimeout(100);
+        toTest.setSocketTimeout(100);
+
+        long start = System.currentTimeMillis();
+        try {
+            toTest.send();
+            fail();
+        } catch (HttpTimeoutException e) {
+            assertTrue(System.currentTimeMillis() - start < 2000);
+        }
+    }
+
+    @Test
+    public void sendShouldNotBlockWritingEntityOnceRequestFailed() throws IOException {
+        String url = url("/echo");
+        server.stop(0);
+        JdkHttpClientHttpChannel toTest = new JdkHttpClientHttpChannel(client, MethodType.POST, url);
+        toTest.writeEntityWith(new BytesEntityWriter(new byte[1024 * 1024], -1));
+
+        try {
+            toTest.send();
+            fail();
+        } catch (IOException e) {
+            // expected, connection refused
+        }
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static final class BytesEntityWriter implements HttpEntityWriter {
+
+        private final byte[] entity;
+        private final int contentLength;
+
+        private BytesEntityWriter(byte[] entity, int contentLength) {
+            this.entity = entity;
+            this.contentLength = contentLength;
+        }
+
+        public void writeEntityTo(OutputStream out) throws IOException {
+            out.write(entity);
+        }
+
+        public int getContentLength() {
+            return contentLength;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * <p>Compile-time annotation processor generating an implementation class for every interface using the {@link org.codegist.crest.annotate} or {@link javax.ws.rs} annotations.</p>
+ * <p>Implementations are only generated when CRest itself is on the compilation classpath, so that modules only exposing JAX-RS server side resources are left alone. Interfaces only using {@link javax.ws.rs} annotations can also be left alone with the {@value #JAXRS_OPTION}=false processor option, eg for modules both exposing resources and calling remote ones.</p>
+ * <p>The generated class is named after the interface binary name suffixed with {@value #GENERATED_CLASS_SUFFIX}, lives in the same package, and dispatches every method declared by the interface directly to CRest through a slot resolved once per instance.</p>
+ * <p>CRest picks it up when building the interface, in place of a runtime proxy, once enabled with {@code CRestBuilder.useGeneratedProxies()}. Interface configurations are still built at runtime.</p>
+ * <p>Enabled by adding this module to the compilation classpath.</p>
+ * @author laurent.gilles@codegist.org
+ */
+@SupportedAnnotationTypes({"org.codegist.crest.annotate.*", "javax.ws.rs.*"})
+@SupportedOptions(CRestProcessor.JAXRS_OPTION)
+public class CRestProcessor extends AbstractProcessor {
+
+    /**
+     * Generated class name suffix, appended to the interface binary name
+     */
+    public static final String GENERATED_CLASS_SUFFIX = "$$CRest";
+
+    /**
+     * Processor option telling whether to generate implementations for interfaces only using JAX-RS annotations, default is true
+     */
+    public static final String JAXRS_OPTION = "crest.jaxrs";
+
+    private static final String DISPATCHER_CLASS = "org.codegist.crest.MethodDispatcher";
+    private static final String CREST_ANNOTATIONS_PACKAGE = "org.codegist.crest.annotate";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (annotations.isEmpty() || processingEnv.getElementUtils().getTypeElement(DISPATCHER_CLASS) == null) {
+            return false;
+        }
+        boolean jaxrs = !"false".equalsIgnoreCase(processingEnv.getOptions().get(JAXRS_OPTION));
+        Set<TypeElement> interfaces = new LinkedHashSet<TypeElement>();
+        for (TypeElement annotation : annotations) {
+            if (!jaxrs && !isCRestAnnotation(annotation)) {
+                continue;
+            }
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                TypeElement interfaze = getEnclosingInterface(element);
+                if (interfaze != null && isImplementable(interfaze)) {
+                    interfaces.add(interfaze);
+                }
+            }
+        }
+        for (TypeElement interfaze : interfaces) {
+            generate(interfaze);
+        }
+        return false;
+    }
+
+    private void generate(TypeElement interfaze) {
+        ProxySourceWriter source = new ProxySourceWriter(processingEnv, interfaze);
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(source.getQualifiedName(), interfaze);
+            Writer writer = file.openWriter();
+            try {
+                source.writeTo(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to generate " + source.getQualifiedName() + ": " + e.getMessage(), interfaze);
+        }
+    }
+
+    private boolean isCRestAnnotation(TypeElement annotation) {
+        return processingEnv.getElementUtils().getPackageOf(annotation).getQualifiedName().contentEquals(CREST_ANNOTATIONS_PACKAGE);
+    }
+
+    private static TypeElement getEnclosingInterface(Element element) {
+        for (Element e = element; e != null; e = e.getEnclosingElement()) {
+            if (e.getKind() == ElementKind.INTERFACE) {
+                return (TypeElement) e;
+            } else if (e.getKind().isClass() || e.getKind() == ElementKind.ANNOTATION_TYPE || e.getKind() == ElementKind.PACKAGE) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The generated top level class must be able to implement the interface from within the same package.
+     */
+    private static boolean isImplementable(TypeElement interfaze) {
+        for (Element e = interfaze; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the source of the class implementing a given interface, dispatching every method to a {@code org.codegist.crest.MethodDispatcher}.
+ * <p>The dispatch slots of the methods declared by the interface are resolved once per instance, each method then dispatches directly to its own slot. Inherited methods and equals/hashCode/toString go through the dispatcher invocation handler, as they would with a runtime proxy.</p>
+ * <p>Behaves as a JDK proxy would: no-arg methods are given null arguments and undeclared checked exceptions are wrapped into {@link java.lang.reflect.UndeclaredThrowableException}.</p>
+ * @author laurent.gilles@codegist.org
+ */
+final class ProxySourceWriter {
+
+    private static final List<String> OBJECT_METHODS = Arrays.asList("equals", "hashCode", "toString");
+    private final Types types;
+    private final Elements elements;
+    private final TypeElement interfaze;
+    private final String packageName;
+    private final String simpleName;
+    private final List<ProxiedMethod> methods = new ArrayList<ProxiedMethod>();
+    private int dispatchedMethods;
+
+    ProxySourceWriter(ProcessingEnvironment processingEnv, TypeElement interfaze) {
+        this.types = processingEnv.getTypeUtils();
+        this.elements = processingEnv.getElementUtils();
+        this.interfaze = interfaze;
+        this.packageName = elements.getPackageOf(interfaze).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(interfaze).toString();
+        this.simpleName = (packageName.length() > 0 ? binaryName.substring(packageName.length() + 1) : binaryName) + CRestProcessor.GENERATED_CLASS_SUFFIX;
+
+        Set<String> signatures = new HashSet<String>();
+        List<ExecutableElement> objectMethods = new ArrayList<ExecutableElement>();
+        TypeElement object = elements.getTypeElement(Object.class.getName());
+        for (ExecutableElement method : ElementFilter.methodsIn(object.getEnclosedElements())) {
+            if (OBJECT_METHODS.contains(method.getSimpleName().toString()) && method.getModifiers().contains(Modifier.PUBLIC)) {
+                objectMethods.add(method);
+                signatures.add(signatureOf(method));
+            }
+        }
+        DeclaredType interfaceType = (DeclaredType) interfaze.asType();
+        List<ProxiedMethod> inherited = new ArrayList<ProxiedMethod>();
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(interfaze))) {
+            if (method.getEnclosingElement().getKind() == ElementKind.INTERFACE && method.getModifiers().contains(Modifier.ABSTRACT) && signatures.add(signatureOf(method))) {
+                ProxiedMethod proxied = new ProxiedMethod(method, (ExecutableType) types.asMemberOf(interfaceType, method), interfaze.getQualifiedName().toString());
+                if (method.getEnclosingElement().equals(interfaze)) {
+                    methods.add(proxied);
+                } else {
+                    inherited.add(proxied);
+                }
+            }
+        }
+        this.dispatchedMethods = methods.size();
+        methods.addAll(inherited);
+        for (ExecutableElement method : objectMethods) {
+            methods.add(new ProxiedMethod(method, (ExecutableType) method.asType(), Object.class.getName()));
+        }
+    }
+
+    String getQualifiedName() {
+        return packageName.length() > 0 ? packageName + "." + simpleName : simpleName;
+    }
+
+    void writeTo(Writer writer) throws IOException {
+        StringBuilder src = new StringBuilder();
+        if (packageName.length() > 0) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        src.append("/**\n * Generated by ").append(CRestProcessor.class.getName()).append(", do not edit.\n */\n");
+        src.append("@SuppressWarnings(\"unchecked\")\n");
+        src.append("public final class ").append(simpleName).append(typeParameters(interfaze.getTypeParameters()))
+           .append(" implements ").append(interfaze.getQualifiedName()).append(typeArguments(interfaze.getTypeParameters())).append(" {\n\n");
+
+        src.append("    private static final java.lang.reflect.Method[] METHODS;\n\n");
+        src.append("    static {\n        try {\n            METHODS = new java.lang.reflect.Method[]{");
+        for (Iterator<ProxiedMethod> i = methods.iterator(); i.hasNext(); ) {
+            ProxiedMethod method = i.next();
+            src.append("\n                ").append(method.owner).append(".class.getMethod(\"").append(method.element.getSimpleName()).append("\"");
+            for (VariableElement param : method.element.getParameters()) {
+                src.append(", ").append(types.erasure(param.asType())).append(".class");
+            }
+            src.append(i.hasNext() ? ")," : ")");
+        }
+        src.append("\n            };\n");
+        src.append("        } catch (java.lang.NoSuchMethodException e) {\n            throw new java.lang.NoSuchMethodError(e.getMessage());\n        }\n    }\n\n");
+
+        src.append("    private final org.codegist.crest.MethodDispatcher dispatcher;\n");
+        src.append("    private final int[] indexes;\n\n");
+        src.append("    public ").append(simpleName).append("(org.codegist.crest.MethodDispatcher dispatcher) {\n        this.dispatcher = dispatcher;\n");
+        src.append("        this.indexes = new int[").append(dispatchedMethods).append("];\n");
+        src.append("        for (int i = 0; i < indexes.length; i++) {\n            indexes[i] = dispatcher.indexOf(METHODS[i]);\n        }\n    }\n");
+
+        for (int i = 0; i < methods.size(); i++) {
+            writeMethod(src, i, methods.get(i));
+        }
+        src.append("}\n");
+        writer.write(src.toString());
+    }
+
+    private void writeMethod(StringBuilder src, int index, ProxiedMethod method) {
+        ExecutableElement element = method.element;
+        ExecutableType type = method.type;
+        List<? extends TypeMirror> paramTypes = type.getParameterTypes();
+
+        src.append("\n    public ");
+        if (!element.getTypeParameters().isEmpty()) {
+            src.append(typeParameters(element.getTypeParameters())).append(" ");
+        }
+        src.append(type.getReturnType()).append(" ").append(element.getSimpleName()).append("(");
+        for (int i = 0; i < paramTypes.size(); i++) {
+            String paramType = paramTypes.get(i).toString();
+            if (element.isVarArgs() && i == paramTypes.size() - 1) {
+                paramType = paramType.substring(0, paramType.length() - 2) + "...";
+            }
+            src.append(i > 0 ? ", " : "").append(paramType).append(" p").append(i);
+        }
+        src.append(")");
+        if (!type.getThrownTypes().isEmpty()) {
+            src.append(" throws ").append(join(type.getThrownTypes()));
+        }
+        src.append(" {\n        try {\n            ");
+
+        StringBuilder call = new StringBuilder();
+        if (index < dispatchedMethods) {
+            call.append("dispatcher.dispatch(indexes[").append(index).append("], ");
+        } else {
+            call.append("dispatcher.invoke(this, METHODS[").append(index).append("], ");
+        }
+        if (paramTypes.isEmpty()) {
+            call.append("null");
+        } else {
+            call.append("new java.lang.Object[]{");
+            for (int i = 0; i < paramTypes.size(); i++) {
+                call.append(i > 0 ? ", " : "").append("p").append(i);
+            }
+            call.append("}");
+        }
+        call.append(")");
+
+        TypeMirror returnType = type.getReturnType();
+        if (returnType.getKind() == TypeKind.VOID) {
+            src.append(call).append(";\n");
+        } else if (returnType.getKind().isPrimitive()) {
+            src.append("return ((").append(types.boxedClass((PrimitiveType) returnType).getQualifiedName()).append(") ").append(call).append(").")
+               .append(returnType).append("Value();\n");
+        } else {
+            src.append("return (").append(returnType).append(") ").append(call).append(";\n");
+        }
+
+        List<TypeMirror> rethrown = rethrownTypes(type.getThrownTypes());
+        for (TypeMirror thrown : rethrown) {
+            src.append("        } catch (").append(thrown).append(" e) {\n            throw e;\n");
+        }
+        if (!containsThrowable(rethrown)) {
+            src.append("        } catch (java.lang.Throwable e) {\n            throw new java.lang.reflect.UndeclaredThrowableException(e);\n");
+        }
+        src.append("        }\n    }\n");
+    }
+
+    /**
+     * Unchecked exceptions and the declared ones, minus the ones already covered by a super type as the compiler would reject their catch block.
+     */
+    private List<TypeMirror> rethrownTypes(List<? extends TypeMirror> declared) {
+        List<TypeMirror> candidates = new ArrayList<TypeMirror>();
+        candidates.add(elements.getTypeElement(RuntimeException.class.getName()).asType());
+        candidates.add(elements.getTypeElement(Error.class.getName()).asType());
+        candidates.addAll(declared);
+
+        List<TypeMirror> rethrown = new ArrayList<TypeMirror>();
+        for (TypeMirror candidate : candidates) {
+            boolean covered = false;
+            for (TypeMirror other : candidates) {
+                if (other != candidate && types.isSubtype(candidate, other) && (!types.isSameType(candidate, other) || candidates.indexOf(other) < candidates.indexOf(candidate))) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                rethrown.add(candidate);
+            }
+        }
+        return rethrown;
+    }
+
+    private boolean containsThrowable(List<TypeMirror> typeMirrors) {
+        for (TypeMirror typeMirror : typeMirrors) {
+            if (typeMirror.toString().equals(Throwable.class.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String signatureOf(ExecutableElement element) {
+        StringBuilder signature = new StringBuilder(element.getSimpleName());
+        for (VariableElement param : element.getParameters()) {
+            signature.append(",").append(types.erasure(param.asType()));
+        }
+        return signature.toString();
+    }
+
+    private static String typeParameters(List<? extends TypeParameterElement> typeParameters) {
+        if (typeParameters.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("<");
+        for (int i = 0; i < typeParameters.size(); i++) {
+            TypeParameterElement typeParameter = typeParameters.get(i);
+            sb.append(i > 0 ? ", " : "").append(typeParameter.getSimpleName());
+            List<? extends TypeMirror> bounds = typeParameter.getBounds();
+            if (!bounds.isEmpty() && !(bounds.size() == 1 && bounds.get(0).toString().equals(Object.class.getName()))) {
+                sb.append(" extends ");
+                for (int j = 0; j < bounds.size(); j++) {
+                    sb.append(j > 0 ? " & " : "").append(bounds.get(j));
+                }
+            }
+        }
+        return sb.append(">").toString();
+    }
+
+    private static String typeArguments(List<? extends TypeParameterElement> typeParameters) {
+        if (typeParameters.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("<");
+        for (int i = 0; i < typeParameters.size(); i++) {
+            sb.append(i > 0 ? ", " : "").append(typeParameters.get(i).getSimpleName());
+        }
+        return sb.append(">").toString();
+    }
+
+    private static String join(List<? extends TypeMirror> typeMirrors) {
+        StringBuilder sb = new StringBuilder();
+        for (TypeMirror typeMirror : typeMirrors) {
+            sb.append(sb.length() > 0 ? ", " : "").append(typeMirror);
+        }
+        return sb.toString();
+    }
+
+    private static final class ProxiedMethod {
+        private final ExecutableElement element;
+        private final ExecutableType type;
+        private final String owner;
+
+        private ProxiedMethod(ExecutableElement element, ExecutableType type, String owner) {
+            this.element = element;
+            this.type = type;
+            this.owner = owner;
+        }
+    }
+}
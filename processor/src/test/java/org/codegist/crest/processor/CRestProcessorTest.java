@@ -0,0 +1,282 @@
+/*
+ * Copyright 2011 CodeGist.org
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *  ===================================================================
+ *
+ *  More information at http://www.codegist.org.
+ */
+
+package org.codegist.crest.processor;
+
+import org.codegist.crest.MethodDispatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author laurent.gilles@codegist.org
+ */
+public class CRestProcessorTest {
+
+    private File dir;
+    private final List<Method> indexed = new ArrayList<Method>();
+    private final List<Method> methods = new ArrayList<Method>();
+    private final List<Object[]> args = new ArrayList<Object[]>();
+    private final List<Method> invoked = new ArrayList<Method>();
+    private Object result;
+    private Exception failure;
+    private final MethodDispatcher dispatcher = new MethodDispatcher() {
+        public int indexOf(Method method) {
+            assertFalse("resolved twice", indexed.contains(method));
+            indexed.add(method);
+            return indexed.size() - 1;
+        }
+
+        public Object dispatch(int index, Object[] a) throws Exception {
+            methods.add(indexed.get(index));
+            args.add(a);
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] a) {
+            invoked.add(method);
+            return "invoked";
+        }
+    };
+
+    @Before
+    public void setup() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "crest-processor-" + System.nanoTime());
+        assertTrue(dir.mkdirs());
+    }
+
+    @After
+    public void teardown() {
+        delete(dir);
+    }
+
+    @Test
+    public void shouldGenerateImplementationDispatchingToHandler() throws Exception {
+        ClassLoader classLoader = compile("test.Api",
+                "package test;\n" +
+                "@org.codegist.crest.annotate.EndPoint(\"http://localhost\")\n" +
+                "public interface Api {\n" +
+                "    String get(String id, int count);\n" +
+                "    int count();\n" +
+                "    void delete(String... ids);\n" +
+                "}\n");
+        Class<?> api = classLoader.loadClass("test.Api");
+        Object proxy = newProxy(classLoader, "test.Api$$CRest");
+        assertTrue(api.isInstance(proxy));
+        assertEquals(3, indexed.size());
+
+        result = "hello";
+        assertEquals("hello", api.getMethod("get", String.class, int.class).invoke(proxy, "a", 2));
+        assertEquals(api.getMethod("get", String.class, int.class), methods.get(0));
+        assertArrayEquals(new Object[]{"a", 2}, args.get(0));
+
+        result = 3;
+        assertEquals(3, api.getMethod("count").invoke(proxy));
+        assertNull(args.get(1));
+
+        result = null;
+        api.getMethod("delete", String[].class).invoke(proxy, new Object[]{new String[]{"a", "b"}});
+        assertArrayEquals(new String[]{"a", "b"}, (String[]) args.get(2)[0]);
+
+        api.getMethod("delete", String[].class).invoke(proxy, new Object[]{new String[0]});
+        assertEquals(4, methods.size());
+        assertEquals(3, indexed.size());
+    }
+
+    @Test
+    public void shouldRethrowDeclaredExceptionsAndWrapUndeclaredOnes() throws Exception {
+        ClassLoader classLoader = compile("test.Api",
+                "package test;\n" +
+                "public interface Api {\n" +
+                "    @org.codegist.crest.annotate.GET\n" +
+                "    String get() throws java.io.IOException, java.io.FileNotFoundException, IllegalStateException;\n" +
+                "}\n");
+        Object proxy = newProxy(classLoader, "test.Api$$CRest");
+        Method get = classLoader.loadClass("test.Api").getMethod("get");
+
+        failure = new IOException();
+        assertSame(failure, invokeAndCatch(get, proxy));
+        failure = new IllegalArgumentException();
+        assertSame(failure, invokeAndCatch(get, proxy));
+        failure = new Exception();
+        Throwable actual = invokeAndCatch(get, proxy);
+        assertEquals(UndeclaredThrowableException.class, actual.getClass());
+        assertSame(failure, actual.getCause());
+    }
+
+    @Test
+    public void shouldDispatchInheritedAndObjectMethodsThroughInvocationHandler() throws Exception {
+        ClassLoader classLoader = compile("test.Outer",
+                "package test;\n" +
+                "public class Outer {\n" +
+                "    public interface Base<T> {\n" +
+                "        T find(T example);\n" +
+                "        <R extends Number> R convert(Class<R> type);\n" +
+                "    }\n" +
+                "    @org.codegist.crest.annotate.Path(\"/api\")\n" +
+                "    interface Api<K extends Comparable<K>> extends Base<String> {\n" +
+                "        K key();\n" +
+                "        String toString();\n" +
+                "    }\n" +
+                "}\n");
+        Object proxy = newProxy(classLoader, "test.Outer$Api$$CRest");
+
+        Method key = classLoader.loadClass("test.Outer$Api").getMethod("key");
+        assertEquals(Arrays.asList(key), indexed);
+
+        result = "k";
+        key.setAccessible(true);
+        assertEquals("k", key.invoke(proxy));
+        assertEquals(key, methods.get(0));
+
+        Method find = classLoader.loadClass("test.Outer$Base").getMethod("find", Object.class);
+        find.setAccessible(true);
+        assertEquals("invoked", find.invoke(proxy, "example"));
+        assertEquals(find, invoked.get(0));
+
+        assertEquals("invoked", proxy.toString());
+        assertEquals(Object.class.getMethod("toString"), invoked.get(1));
+        assertEquals(1, methods.size());
+    }
+
+    @Test
+    public void shouldIgnoreInterfacesWithoutCRestAnnotations() throws Exception {
+        ClassLoader classLoader = compile("test.Api",
+                "package test;\n" +
+                "public interface Api {\n" +
+                "    @Deprecated String get();\n" +
+                "}\n");
+        assertNotGenerated(classLoader, "test.Api$$CRest");
+    }
+
+    @Test
+    public void shouldGenerateImplementationOfInterfacesOnlyUsingJaxRsAnnotations() throws Exception {
+        ClassLoader classLoader = compile("test.Api",
+                "package test;\n" +
+                "@javax.ws.rs.Path(\"/api\")\n" +
+                "public interface Api {\n" +
+                "    @javax.ws.rs.GET String get();\n" +
+                "}\n");
+        result = "hello";
+        Object proxy = newProxy(classLoader, "test.Api$$CRest");
+        assertEquals("hello", classLoader.loadClass("test.Api").getMethod("get").invoke(proxy));
+    }
+
+    @Test
+    public void shouldIgnoreInterfacesOnlyUsingJaxRsAnnotationsWhenDisabled() throws Exception {
+        ClassLoader classLoader = compile("test.Api",
+                "package test;\n" +
+                "@javax.ws.rs.Path(\"/api\")\n" +
+                "public interface Api {\n" +
+                "    @javax.ws.rs.GET String get();\n" +
+                "}\n", "-A" + CRestProcessor.JAXRS_OPTION + "=false");
+        assertNotGenerated(classLoader, "test.Api$$CRest");
+    }
+
+    @Test
+    public void shouldGenerateImplementationOfInterfacesMixingJaxRsAndCRestAnnotationsWhenJaxRsDisabled() throws Exception {
+        ClassLoader classLoader = compile("test.Api",
+                "package test;\n" +
+                "@org.codegist.crest.annotate.EndPoint(\"http://localhost\")\n" +
+                "@javax.ws.rs.Path(\"/api\")\n" +
+                "public interface Api {\n" +
+                "    @javax.ws.rs.GET String get();\n" +
+                "}\n", "-A" + CRestProcessor.JAXRS_OPTION + "=false");
+        assertNotNull(newProxy(classLoader, "test.Api$$CRest"));
+    }
+
+    private static void assertNotGenerated(ClassLoader classLoader, String className) {
+        try {
+            classLoader.loadClass(className);
+            fail();
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+    }
+
+    private Throwable invokeAndCatch(Method method, Object proxy) throws Exception {
+        try {
+            method.invoke(proxy);
+            throw new AssertionError("should have failed");
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            return e.getCause();
+        }
+    }
+
+    private Object newProxy(ClassLoader classLoader, String className) throws Exception {
+        return classLoader.loadClass(className).getConstructor(MethodDispatcher.class).newInstance(dispatcher);
+    }
+
+    private ClassLoader compile(String className, String source, String... extraOptions) throws Exception {
+        File file = new File(dir, className.replace('.', File.separatorChar) + ".java");
+        assertTrue(file.getParentFile().mkdirs());
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(file);
+            List<String> options = new ArrayList<String>(Arrays.asList("-d", dir.getPath(), "-s", dir.getPath(), "-classpath", System.getProperty("java.class.path")));
+            options.addAll(Arrays.asList(extraOptions));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, units);
+            task.setProcessors(Arrays.asList(new CRestProcessor()));
+            assertTrue("Compilation failed", task.call());
+        } finally {
+            fileManager.close();
+        }
+        return new URLClassLoader(new URL[]{dir.toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}